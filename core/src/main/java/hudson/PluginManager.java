@@ -49,6 +49,7 @@ import hudson.util.CyclicGraphDetector.CycleDetectedException;
 import hudson.util.FormValidation;
 import hudson.util.PersistedList;
 import hudson.util.Retrier;
+import hudson.util.RobustReflectionConverter;
 import hudson.util.Service;
 import hudson.util.VersionNumber;
 import hudson.util.XStream2;
@@ -587,6 +588,8 @@ public abstract class PluginManager extends AbstractModelObject implements OnMas
                         public void run(Reactor reactor) throws Exception {
                             // rescan to find plugin-contributed @Initializer
                             reactor.addAll(initializerFinder.discoverTasks(reactor));
+                            // plugins may have changed how existing types are read
+                            RobustReflectionConverter.invalidatePlans();
                         }
                     });
 
@@ -993,6 +996,7 @@ public abstract class PluginManager extends AbstractModelObject implements OnMas
           }
         }.discoverTasks(r));
         new InitReactorRunner().run(r);
+        RobustReflectionConverter.invalidatePlans();
       }
     }
 
@@ -111,7 +111,7 @@ public class WebAppMain implements ServletContextListener {
 
     private final RingBufferLogHandler handler = new RingBufferLogHandler(WebAppMain.getDefaultRingBufferSize()) {
       
-        @Override public synchronized void publish(LogRecord record) {
+        @Override public void publish(LogRecord record) {
             if (record.getLevel().intValue() >= Level.INFO.intValue()) {
                 super.publish(record);
             }
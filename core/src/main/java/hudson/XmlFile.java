@@ -30,9 +30,13 @@ import com.thoughtworks.xstream.converters.UnmarshallingContext;
 import com.thoughtworks.xstream.io.HierarchicalStreamDriver;
 import com.thoughtworks.xstream.io.HierarchicalStreamReader;
 import hudson.diagnosis.OldDataMonitor;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import hudson.model.Descriptor;
+import hudson.model.Saveable;
 import hudson.util.AtomicFileWriter;
+import hudson.util.Utf8Buffer;
 import hudson.util.XStream2;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
 import org.xml.sax.Attributes;
@@ -52,13 +56,18 @@ import java.io.Reader;
 import java.io.Serializable;
 import java.io.Writer;
 import java.io.StringWriter;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.IdentityHashMap;
 import java.util.Map;
 import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import jenkins.util.SystemProperties;
+import jenkins.util.io.WriteBehind;
 import org.apache.commons.io.IOUtils;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
 
 /**
  * Represents an XML data file that Jenkins uses as a data file.
@@ -145,6 +154,7 @@ public final class XmlFile {
         if (LOGGER.isLoggable(Level.FINE)) {
             LOGGER.fine("Reading "+file);
         }
+        WriteBehind.flush(file);
         try (InputStream in = new BufferedInputStream(Files.newInputStream(file.toPath()))) {
             return xs.fromXML(in);
         } catch (RuntimeException | Error e) {
@@ -172,6 +182,7 @@ public final class XmlFile {
     }
 
     private Object unmarshal(Object o, boolean nullOut) throws IOException {
+        WriteBehind.flush(file);
         try (InputStream in = new BufferedInputStream(Files.newInputStream(file.toPath()))) {
             // TODO: expose XStream the driver from XStream
             if (nullOut) {
@@ -186,17 +197,79 @@ public final class XmlFile {
 
     public void write( Object o ) throws IOException {
         mkdirs();
-        AtomicFileWriter w = new AtomicFileWriter(file);
+        Utf8Buffer buf = Utf8Buffer.acquire();
         try {
-            w.write("<?xml version='1.1' encoding='UTF-8'?>\n");
+            marshal(o, buf);
+            writeRaw(buf.toByteBuffer());
+        } finally {
+            buf.release();
+        }
+    }
+
+    /**
+     * Like {@link #write(Object)}, but the file may be written later in the background,
+     * coalescing successive saves of the same file, if {@link WriteBehind} is enabled.
+     * The object is still marshalled before this method returns, so it may be modified right after.
+     * @since TODO
+     */
+    public void writeBehind(Object o) throws IOException {
+        writeBehind(o, o instanceof Saveable ? (Saveable) o : null);
+    }
+
+    /**
+     * Like {@link #writeBehind(Object)}, for an object saved on behalf of another {@link Saveable},
+     * which is the one reported to {@link hudson.model.listeners.SaveableListener#onWriteBehind}.
+     * @since TODO
+     */
+    public void writeBehind(Object o, @CheckForNull Saveable owner) throws IOException {
+        if (!WriteBehind.isActive()) {
+            write(o);
+            return;
+        }
+        mkdirs();
+        byte[] content;
+        Utf8Buffer buf = Utf8Buffer.acquire();
+        try {
+            marshal(o, buf);
+            ByteBuffer bb = buf.toByteBuffer();
+            content = Arrays.copyOf(bb.array(), bb.limit());
+        } finally {
+            buf.release();
+        }
+        if (!WriteBehind.enqueue(this, owner, content)) {
+            writeRaw(ByteBuffer.wrap(content));
+        }
+    }
+
+    private void marshal(Object o, Utf8Buffer buf) throws IOException {
+        try {
+            buf.write("<?xml version='1.1' encoding='UTF-8'?>\n");
             beingWritten.put(o, null);
             writing.set(file);
             try {
-                xs.toXML(o, w);
+                xs.toXML(o, buf);
             } finally {
                 beingWritten.remove(o);
                 writing.set(null);
             }
+        } catch(RuntimeException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Writes already marshalled content to the file, replacing any content pending in {@link WriteBehind}.
+     */
+    @Restricted(NoExternalUse.class)
+    public void writeRaw(ByteBuffer content) throws IOException {
+        WriteBehind.discard(file);
+        if (SKIP_UNCHANGED && Utf8Buffer.contentEquals(content, file.toPath())) {
+            LOGGER.log(Level.FINER, "{0} is unchanged, not writing it", file);
+            return;
+        }
+        AtomicFileWriter w = new AtomicFileWriter(file);
+        try {
+            w.write(content);
             w.commit();
         } catch(RuntimeException e) {
             throw new IOException(e);
@@ -227,10 +300,12 @@ public final class XmlFile {
     }
 
     public boolean exists() {
+        WriteBehind.flush(file);
         return file.exists();
     }
 
     public void delete() {
+        WriteBehind.discard(file);
         file.delete();
     }
     
@@ -251,6 +326,7 @@ public final class XmlFile {
      * @return Reader for the file. should be close externally once read.
      */
     public Reader readRaw() throws IOException {
+        WriteBehind.flush(file);
         try {
             InputStream fileInputStream = Files.newInputStream(file.toPath());
             try {
@@ -301,6 +377,7 @@ public final class XmlFile {
             }
         }
 
+        WriteBehind.flush(file);
         try (InputStream in = Files.newInputStream(file.toPath())) {
             InputSource input = new InputSource(file.toURI().toASCIIString());
             input.setByteStream(in);
@@ -356,6 +433,13 @@ public final class XmlFile {
 
     private static final Logger LOGGER = Logger.getLogger(XmlFile.class.getName());
 
+    /**
+     * Whether {@link #write} leaves the file alone when it already has the exact content to be written,
+     * so that saving an unchanged object costs no disk write nor {@code fsync}.
+     */
+    @Restricted(NoExternalUse.class)
+    public static /* non-final for Groovy */ boolean SKIP_UNCHANGED = SystemProperties.getBoolean(XmlFile.class.getName() + ".skipUnchanged", true);
+
     private static final SAXParserFactory JAXP = SAXParserFactory.newInstance();
 
     private static final HierarchicalStreamDriver DEFAULT_DRIVER = XStream2.getDefaultDriver();
@@ -25,31 +25,48 @@
  */
 package hudson.console;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import jenkins.model.Jenkins;
+import hudson.model.Run;
 import hudson.remoting.ObjectInputStreamEx;
 import java.util.concurrent.TimeUnit;
 import jenkins.security.CryptoConfidentialKey;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.output.ByteArrayOutputStream;
+import org.kohsuke.stapler.HttpResponse;
+import org.kohsuke.stapler.HttpResponses;
+import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.Stapler;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
 import org.kohsuke.stapler.framework.io.ByteBuffer;
+import org.kohsuke.stapler.framework.io.CharSpool;
 import org.kohsuke.stapler.framework.io.LargeText;
+import org.kohsuke.stapler.framework.io.LineEndNormalizingWriter;
 
 import javax.crypto.Cipher;
+import javax.servlet.http.HttpServletResponse;
 import javax.crypto.CipherInputStream;
 import javax.crypto.CipherOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
+import java.io.Reader;
 import java.io.Writer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
 
 import com.jcraft.jzlib.GZIPInputStream;
 import com.jcraft.jzlib.GZIPOutputStream;
@@ -57,6 +74,8 @@ import com.jcraft.jzlib.GZIPOutputStream;
 import static java.lang.Math.abs;
 import edu.umd.cs.findbugs.annotations.CheckReturnValue;
 import org.jenkinsci.remoting.util.AnonymousClassWarnings;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
 
 /**
  * Extension to {@link LargeText} that handles annotations by {@link ConsoleAnnotator}.
@@ -81,21 +100,134 @@ public class AnnotatedLargeText<T> extends LargeText {
      */
     private T context;
 
+    /**
+     * The file, if the text is not in memory.
+     */
+    private final @CheckForNull File file;
+
+    /**
+     * The file, if it is a compressed log which can be read from any offset.
+     */
+    private final @CheckForNull FramedLog framed;
+
     public AnnotatedLargeText(File file, Charset charset, boolean completed, T context) {
         super(file, charset, completed, true);
         this.context = context;
+        this.file = file;
+        this.framed = file != null ? FramedLog.of(file) : null;
     }
 
     public AnnotatedLargeText(ByteBuffer memory, Charset charset, boolean completed, T context) {
         super(memory, charset, completed);
         this.context = context;
+        this.file = null;
+        this.framed = null;
+    }
+
+    @Override
+    public long length() {
+        return framed != null ? framed.length() : super.length();
+    }
+
+    @Override
+    public Reader readAll() throws IOException {
+        return framed != null ? new InputStreamReader(framed.open(0), charset) : super.readAll();
+    }
+
+    /**
+     * Reads the raw text from the given offset, as {@link LargeText#writeLogTo(long, OutputStream)} does.
+     */
+    private long readTo(long start, OutputStream out) throws IOException {
+        if (framed == null) {
+            return super.writeLogTo(start, out);
+        }
+        try (InputStream in = framed.open(start)) {
+            long n = IOUtils.copyLarge(in, out);
+            out.flush();
+            return Math.max(start, 0) + n;
+        }
+    }
+
+    /**
+     * Gets the last lines of the text, without annotations.
+     * A file is read backwards from its end; other sources are streamed through.
+     *
+     * @param maxLines the maximum number of lines to return. If there are more lines than that,
+     *      the first line returned tells how much was left out.
+     * @see LogTail
+     * @since TODO
+     */
+    public @NonNull List<String> getLastLines(int maxLines) throws IOException {
+        if (maxLines == 0) {
+            return Collections.emptyList();
+        }
+        List<String> lines;
+        if (file != null && file.isFile()) {
+            lines = LogTail.lastLines(file, charset, maxLines);
+        } else {
+            LogTail.Collector c = new LogTail.Collector(charset, maxLines, 0);
+            readTo(0, c);
+            lines = c.getLines();
+        }
+        return ConsoleNote.removeNotes(lines);
+    }
+
+    /**
+     * Same as {@link LargeText#doProgressText}, which cannot tell the length of a {@link FramedLog}.
+     */
+    @Override
+    public void doProgressText(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        if (framed == null) {
+            super.doProgressText(req, rsp);
+            return;
+        }
+        setContentType(rsp);
+        rsp.setStatus(HttpServletResponse.SC_OK);
+        long start = 0;
+        String s = req.getParameter("start");
+        if (s != null) {
+            start = Long.parseLong(s);
+        }
+        if (framed.length() < start) {
+            start = 0;
+        }
+        CharSpool spool = new CharSpool();
+        long r = writeLogTo(start, spool);
+        rsp.addHeader("X-Text-Size", String.valueOf(r));
+        if (!isComplete()) {
+            rsp.addHeader("X-More-Data", "true");
+        }
+        Writer w = createWriter(req, rsp, r - start);
+        spool.writeTo(new LineEndNormalizingWriter(w));
+        w.close();
     }
 
     public void doProgressiveHtml(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        if (ConsoleHtmlCache.serveProgressiveHtml(this, file, context, req, rsp)) {
+            return;
+        }
         req.setAttribute("html",true);
         doProgressText(req,rsp);
     }
 
+    /**
+     * Streams the output of a running build over a WebSocket, as {@link LiveConsole} describes.
+     *
+     * @param start where the client is in the log
+     * @param annotator the {@code X-ConsoleAnnotator} header of the last {@link #doProgressiveHtml} response, if any
+     * @param plain whether to send the text without annotations rather than HTML
+     * @since TODO
+     */
+    @Restricted(NoExternalUse.class)
+    public HttpResponse doWebSocket(StaplerRequest req, @QueryParameter long start, @QueryParameter String annotator, @QueryParameter boolean plain) throws IOException {
+        if (!(context instanceof Run) || file == null || framed != null || !LiveConsole.isEnabled()) {
+            throw HttpResponses.notFound();
+        }
+        @SuppressWarnings("unchecked")
+        ConsoleAnnotator<Run<?, ?>> a = plain ? null : (ConsoleAnnotator<Run<?, ?>>) createAnnotator(annotator);
+        return LiveConsole.upgrade(req, (Run<?, ?>) context, file, charset, start, a);
+    }
+
     /**
      * Aliasing what I think was a wrong name in {@link LargeText}
      */
@@ -118,8 +250,11 @@ public class AnnotatedLargeText<T> extends LargeText {
     }
 
     private ConsoleAnnotator<T> createAnnotator(StaplerRequest req) throws IOException {
+        return createAnnotator(req!=null ? req.getHeader("X-ConsoleAnnotator") : null);
+    }
+
+    private ConsoleAnnotator<T> createAnnotator(String base64) throws IOException {
         try {
-            String base64 = req!=null ? req.getHeader("X-ConsoleAnnotator") : null;
             if (base64!=null) {
                 Cipher sym = PASSING_ANNOTATOR.decrypt();
 
@@ -162,7 +297,7 @@ public class AnnotatedLargeText<T> extends LargeText {
     @CheckReturnValue
     @Override
     public long writeLogTo(long start, OutputStream out) throws IOException {
-        return super.writeLogTo(start, new PlainTextConsoleOutputStream(out));
+        return readTo(start, new PlainTextConsoleOutputStream(out));
     }
 
     /**
@@ -171,15 +306,140 @@ public class AnnotatedLargeText<T> extends LargeText {
      */
     @CheckReturnValue
     public long writeRawLogTo(long start, OutputStream out) throws IOException {
-        return super.writeLogTo(start, out);
+        return readTo(start, out);
     }
 
     @CheckReturnValue
     public long writeHtmlTo(long start, Writer w) throws IOException {
         ConsoleAnnotationOutputStream<T> caw = new ConsoleAnnotationOutputStream<>(
                 w, createAnnotator(Stapler.getCurrentRequest()), context, charset);
-        long r = super.writeLogTo(start,caw);
+        long r = readTo(start, caw);
+        passAnnotator(caw);
+        return r;
+    }
 
+    /**
+     * Like {@link #writeHtmlTo}, but serves the rendering of a completed log from the {@link ConsoleHtmlCache} when enabled.
+     */
+    @Restricted(NoExternalUse.class)
+    public void writeCachedHtmlTo(long start, Writer w) throws IOException {
+        if (!ConsoleHtmlCache.writeHtmlTo(this, file, context, start, w)) {
+            writeHtmlTo(start, w);
+        }
+    }
+
+    /**
+     * Writes a range of lines as plain text, stripping annotations.
+     * A plain log file is read from the first line using its {@link LineIndex}; other logs are streamed through.
+     *
+     * @param fromLine the first line to write, 0-based
+     * @param toLine the line after the last one to write
+     * @return the offset where {@code toLine} starts, or the end of the text,
+     *      which can be passed to {@link #writeLogTo(long, OutputStream)} to keep on reading
+     * @since TODO
+     */
+    @CheckReturnValue
+    public long writeLinesTo(long fromLine, long toLine, OutputStream out) throws IOException {
+        return writeLines(fromLine, toLine, new PlainTextConsoleOutputStream(out));
+    }
+
+    /**
+     * Like {@link #writeLinesTo} but renders HTML as {@link #writeHtmlTo} does.
+     * @since TODO
+     */
+    @CheckReturnValue
+    public long writeHtmlLinesTo(long fromLine, long toLine, Writer w) throws IOException {
+        ConsoleAnnotationOutputStream<T> caw = new ConsoleAnnotationOutputStream<>(
+                w, createAnnotator(Stapler.getCurrentRequest()), context, charset);
+        long r = writeLines(fromLine, toLine, caw);
+        passAnnotator(caw);
+        return r;
+    }
+
+    private long writeLines(long fromLine, long toLine, OutputStream out) throws IOException {
+        toLine = Math.max(fromLine, toLine);
+        if (file != null && file.isFile() && !file.getName().endsWith(".gz")) {
+            try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                LineIndex index = LineIndex.load(file, isComplete());
+                long start = index.offsetOf(ch, fromLine);
+                long end = toLine > fromLine ? index.offsetOf(ch, toLine) : start;
+                java.nio.ByteBuffer buf = java.nio.ByteBuffer.allocate((int) Math.min(end - start, 64 * 1024) + 1);
+                for (long pos = start; pos < end; ) {
+                    buf.clear();
+                    buf.limit((int) Math.min(buf.capacity(), end - pos));
+                    int n = ch.read(buf, pos);
+                    if (n < 0) {
+                        break;
+                    }
+                    out.write(buf.array(), 0, n);
+                    pos += n;
+                }
+                out.flush();
+                return end;
+            }
+        }
+        LineRangeOutputStream range = new LineRangeOutputStream(out, fromLine, toLine);
+        readTo(0, range);
+        out.flush();
+        return range.getEnd();
+    }
+
+    /**
+     * Passes through the bytes of a range of lines.
+     */
+    private static final class LineRangeOutputStream extends OutputStream {
+        private final OutputStream out;
+        private final long fromLine;
+        private final long toLine;
+        /**
+         * Number of complete lines seen so far.
+         */
+        private long line;
+        private long pos;
+        /**
+         * Where {@code toLine} starts, or -1 if not seen yet.
+         */
+        private long end;
+
+        LineRangeOutputStream(OutputStream out, long fromLine, long toLine) {
+            this.out = out;
+            this.fromLine = fromLine;
+            this.toLine = toLine;
+            this.end = toLine == 0 ? 0 : -1;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(@NonNull byte[] b, int off, int len) throws IOException {
+            int start = line >= fromLine ? off : -1;
+            int i = off;
+            for (int last = off + len; i < last && line < toLine; ) {
+                if (b[i++] == '\n') {
+                    line++;
+                    if (line == fromLine) {
+                        start = i;
+                    }
+                    if (line == toLine) {
+                        end = pos + (i - off);
+                    }
+                }
+            }
+            if (start >= 0 && start < i) {
+                out.write(b, start, i - start);
+            }
+            pos += len;
+        }
+
+        long getEnd() {
+            return end >= 0 ? end : pos;
+        }
+    }
+
+    private void passAnnotator(ConsoleAnnotationOutputStream<T> caw) throws IOException {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         Cipher sym = PASSING_ANNOTATOR.encrypt();
         ObjectOutputStream oos = AnonymousClassWarnings.checkingObjectOutputStream(new GZIPOutputStream(new CipherOutputStream(baos,sym)));
@@ -189,7 +449,6 @@ public class AnnotatedLargeText<T> extends LargeText {
         StaplerResponse rsp = Stapler.getCurrentResponse();
         if (rsp!=null)
             rsp.setHeader("X-ConsoleAnnotator", new String(Base64.getEncoder().encode(baos.toByteArray())));
-        return r;
     }
 
     /**
@@ -0,0 +1,277 @@
+package hudson.console;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.util.ClassLoaderSanityThreadFactory;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.util.SystemProperties;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Opt-in asynchronous sink for build logs, so that the threads producing build output,
+ * such as remoting channel readers, do not wait for the disk on every small write.
+ *
+ * <p>
+ * Writes are appended to a buffer in memory, which a writer thread dedicated to the disk holding the log
+ * writes out after {@link #LINGER} milliseconds, together with whatever all the other logs on that disk
+ * have buffered meanwhile. A producer getting more than {@link #BUFFER_SIZE} bytes ahead of the disk blocks
+ * until the writer catches up.
+ *
+ * <p>
+ * {@link #flush} does not wait for the disk, but {@link #close} does, so a build log is complete on disk
+ * by the time its build is seen as completed, and readers such as {@link AnnotatedLargeText} never see a
+ * complete log in part. While the build runs, they see the log lag behind by up to {@link #LINGER} milliseconds.
+ * A failure to write is thrown from the next write, flush or close.
+ *
+ * @since TODO
+ */
+@Restricted(NoExternalUse.class)
+public final class AsyncLogOutputStream extends OutputStream {
+    /**
+     * Whether build logs are written asynchronously.
+     */
+    public static /* non-final for Groovy */ boolean ENABLED = SystemProperties.getBoolean(AsyncLogOutputStream.class.getName() + ".enabled", false);
+
+    /**
+     * How many bytes a log may buffer before its producer waits for the disk.
+     */
+    public static /* non-final for Groovy */ int BUFFER_SIZE = SystemProperties.getInteger(AsyncLogOutputStream.class.getName() + ".bufferSize", 1024 * 1024);
+
+    /**
+     * How long in milliseconds the writer of a disk waits for more output before writing.
+     */
+    public static /* non-final for Groovy */ long LINGER = SystemProperties.getLong(AsyncLogOutputStream.class.getName() + ".linger", 20L);
+
+    private static final Map<Object, DiskWriter> WRITERS = new ConcurrentHashMap<>();
+
+    private final OutputStream out;
+    private final DiskWriter writer;
+
+    // all guarded by this
+    private byte[] buf = new byte[8192];
+    private int count;
+    private byte[] spare;
+    private boolean queued;
+    private boolean writing;
+    private boolean closed;
+    private IOException failure;
+
+    private AsyncLogOutputStream(OutputStream out, DiskWriter writer) {
+        this.out = out;
+        this.writer = writer;
+    }
+
+    /**
+     * Wraps the stream writing a log, which this then owns.
+     *
+     * @return the given stream if asynchronous writing is disabled
+     */
+    public static @NonNull OutputStream wrap(@NonNull File log, @NonNull OutputStream out) {
+        if (!ENABLED) {
+            return out;
+        }
+        Object disk;
+        try {
+            FileStore store = Files.getFileStore(log.toPath());
+            disk = store.name() + '\u0000' + store.type();
+        } catch (IOException | RuntimeException x) {
+            LOGGER.log(Level.FINE, "Cannot find the disk of " + log, x);
+            disk = "";
+        }
+        return new AsyncLogOutputStream(out, WRITERS.computeIfAbsent(disk, DiskWriter::new));
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public synchronized void write(@NonNull byte[] b, int off, int len) throws IOException {
+        if ((off | len | (b.length - (len + off)) | (off + len)) < 0) {
+            throw new IndexOutOfBoundsException();
+        }
+        check();
+        // a single write larger than the buffer goes through once the buffer is empty
+        while (count > 0 && count + len > BUFFER_SIZE) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+            check();
+        }
+        if (count + len > buf.length) {
+            byte[] bigger = new byte[Math.max(count + len, buf.length * 2)];
+            System.arraycopy(buf, 0, bigger, 0, count);
+            buf = bigger;
+        }
+        System.arraycopy(b, off, buf, count, len);
+        count += len;
+        if (!queued && !writing) {
+            queued = true;
+            writer.submit(this);
+        }
+    }
+
+    /**
+     * Does not wait for the disk: buffered output is written within {@link #LINGER} milliseconds anyway.
+     */
+    @Override
+    public synchronized void flush() throws IOException {
+        if (failure != null) {
+            throw new IOException("Failed to write the log", failure);
+        }
+    }
+
+    /**
+     * Waits for all the buffered output to be written, then closes the underlying stream.
+     */
+    @Override
+    public void close() throws IOException {
+        boolean interrupted = false;
+        try {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                while (count > 0 || queued || writing) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        // the log still has to be complete
+                        interrupted = true;
+                    }
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            out.close();
+        } finally {
+            IOException x;
+            synchronized (this) {
+                x = failure;
+            }
+            if (x != null) {
+                throw new IOException("Failed to write the log", x);
+            }
+        }
+    }
+
+    private void check() throws IOException {
+        if (closed) {
+            throw new IOException("closed");
+        }
+        if (failure != null) {
+            throw new IOException("Failed to write the log", failure);
+        }
+    }
+
+    /**
+     * Called on the writer thread: writes out what is buffered so far.
+     */
+    private void drain() {
+        byte[] data;
+        int n;
+        synchronized (this) {
+            queued = false;
+            if (count == 0) {
+                notifyAll();
+                return;
+            }
+            data = buf;
+            n = count;
+            buf = spare != null ? spare : new byte[Math.min(data.length, BUFFER_SIZE)];
+            spare = null;
+            count = 0;
+            writing = true;
+            // producers blocked on a full buffer can go on
+            notifyAll();
+        }
+        IOException x = null;
+        try {
+            out.write(data, 0, n);
+            out.flush();
+        } catch (IOException e) {
+            x = e;
+        } catch (RuntimeException e) {
+            x = new IOException(e);
+        }
+        synchronized (this) {
+            writing = false;
+            if (x != null && failure == null) {
+                failure = x;
+                // nothing more gets written: let close go on
+                count = 0;
+            }
+            if (data.length <= BUFFER_SIZE) {
+                spare = data;
+            }
+            if (count > 0 && !queued) {
+                queued = true;
+                writer.submit(this);
+            }
+            notifyAll();
+        }
+    }
+
+    /**
+     * Writes out the logs of one disk, one at a time.
+     */
+    private static final class DiskWriter implements Runnable {
+        private final Queue<AsyncLogOutputStream> dirty = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final ScheduledExecutorService executor;
+
+        DiskWriter(Object disk) {
+            executor = new ScheduledThreadPoolExecutor(1,
+                    new NamingThreadFactory(new ClassLoaderSanityThreadFactory(new DaemonThreadFactory()), "AsyncLogOutputStream " + disk.toString().replace('\u0000', ' ').trim()));
+        }
+
+        void submit(AsyncLogOutputStream s) {
+            dirty.add(s);
+            if (scheduled.compareAndSet(false, true)) {
+                executor.schedule(this, LINGER, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        @Override
+        public void run() {
+            // anything submitted from now on gets another run
+            scheduled.set(false);
+            AsyncLogOutputStream s;
+            while ((s = dirty.poll()) != null) {
+                try {
+                    s.drain();
+                } catch (RuntimeException x) {
+                    LOGGER.log(Level.WARNING, "Failed to write a build log", x);
+                }
+            }
+        }
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(AsyncLogOutputStream.class.getName());
+}
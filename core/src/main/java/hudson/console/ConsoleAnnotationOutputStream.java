@@ -24,6 +24,7 @@
 package hudson.console;
 
 import hudson.MarkupText;
+import hudson.Util;
 import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
@@ -105,26 +106,37 @@ public class ConsoleAnnotationOutputStream<T> extends LineTransformationOutputSt
                 final int charPos = strBuf.length();
 
                 int rest = sz - next;
-                ByteArrayInputStream b = new ByteArrayInputStream(in, next, rest);
-
-                try {
-                    final ConsoleNote a = ConsoleNote.readFrom(new DataInputStream(b));
-                    if (a!=null) {
-                        if (annotators==null)
-                            annotators = new ArrayList<>();
-                        annotators.add(new ConsoleAnnotator<T>() {
-                            @Override
-                            public ConsoleAnnotator<T> annotate(T context, MarkupText text) {
-                                return a.annotate(context,text,charPos);
-                            }
-                        });
+                int end = ConsoleNote.findPostamble(in, next, sz);
+                ConsoleNote a = end > 0 ? ConsoleNote.getCached(in, next, end) : null;
+                int bytesUsed; // bytes consumed by annotations
+                if (a != null) {
+                    bytesUsed = end - next;
+                } else {
+                    ByteArrayInputStream b = new ByteArrayInputStream(in, next, rest);
+                    try {
+                        a = ConsoleNote.readFrom(new DataInputStream(b));
+                    } catch (IOException | ClassNotFoundException e) {
+                        // if we failed to resurrect an annotation, ignore it.
+                        LOGGER.log(Level.FINE, "Failed to resurrect annotation from \"" + StringEscapeUtils.escapeJava(new String(in, next, rest)) + "\"", e);
+                    }
+                    bytesUsed = rest - b.available();
+                    if (a != null && bytesUsed == end - next) {
+                        ConsoleNote.cache(in, next, end, a);
                     }
-                } catch (IOException | ClassNotFoundException e) {
-                    // if we failed to resurrect an annotation, ignore it.
-                    LOGGER.log(Level.FINE, "Failed to resurrect annotation from \"" + StringEscapeUtils.escapeJava(new String(in, next, rest)) + "\"", e);
                 }
 
-                int bytesUsed = rest - b.available(); // bytes consumed by annotations
+                if (a!=null) {
+                    final ConsoleNote note = a;
+                    if (annotators==null)
+                        annotators = new ArrayList<>();
+                    annotators.add(new ConsoleAnnotator<T>() {
+                        @Override
+                        public ConsoleAnnotator<T> annotate(T context, MarkupText text) {
+                            return note.annotate(context,text,charPos);
+                        }
+                    });
+                }
+
                 written += bytesUsed;
 
 
@@ -141,9 +153,13 @@ public class ConsoleAnnotationOutputStream<T> extends LineTransformationOutputSt
         }
 
         lineOut.flush();
+        if (ann==null) {
+            // nothing to mark up
+            out.write(Util.xmlEscape(strBuf.toString()));
+            return;
+        }
         MarkupText mt = new MarkupText(strBuf.toString());
-        if (ann!=null)
-            ann = ann.annotate(context,mt);
+        ann = ann.annotate(context,mt);
         out.write(mt.toString(true)); // this perform escapes
     }
 
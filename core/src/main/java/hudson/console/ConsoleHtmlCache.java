@@ -0,0 +1,300 @@
+package hudson.console;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.PluginManager;
+import hudson.PluginWrapper;
+import hudson.Util;
+import hudson.model.Run;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+import org.apache.commons.io.IOUtils;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.kohsuke.stapler.Stapler;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+import org.kohsuke.stapler.framework.io.LineEndNormalizingWriter;
+
+/**
+ * Opt-in cache of the HTML rendering of the logs of completed builds, kept under {@code $JENKINS_HOME/caches/console-html}.
+ *
+ * <p>
+ * Renderings are keyed by the build, the size and timestamp of its log, the offset the rendering starts from,
+ * the viewer and the request state annotators may depend on,
+ * and the {@link ConsoleAnnotatorFactory}s and plugins in use, so a rendering is never reused after a plugin changes.
+ * They are stored compressed, and sent as is to clients accepting compressed responses.
+ * The least recently used renderings are deleted when the cache grows over {@link #MAX_SIZE} bytes.
+ *
+ * @since TODO
+ */
+@Restricted(NoExternalUse.class)
+public final class ConsoleHtmlCache {
+    /**
+     * Whether the HTML console of completed builds is rendered once and served from the cache.
+     */
+    public static /* non-final for Groovy */ boolean ENABLED = SystemProperties.getBoolean(ConsoleHtmlCache.class.getName() + ".enabled", false);
+
+    /**
+     * Maximum size of the cache in bytes.
+     */
+    public static /* non-final for Groovy */ long MAX_SIZE = SystemProperties.getLong(ConsoleHtmlCache.class.getName() + ".maxSize", 256L * 1024 * 1024);
+
+    /**
+     * Logs smaller than this are quick enough to render every time.
+     */
+    public static /* non-final for Groovy */ long MIN_LOG_SIZE = SystemProperties.getLong(ConsoleHtmlCache.class.getName() + ".minLogSize", 64L * 1024);
+
+    private static final String SUFFIX = ".html.gz";
+
+    /**
+     * Renderings in progress, so that concurrent viewers of the same log wait for one rendering rather than all doing it.
+     */
+    private static final Map<String, Object> RENDERING = new ConcurrentHashMap<>();
+
+    private ConsoleHtmlCache() {}
+
+    /**
+     * Serves {@link AnnotatedLargeText#doProgressiveHtml} from the cache.
+     *
+     * @return false if the cache does not apply, in which case nothing was written
+     */
+    static boolean serveProgressiveHtml(AnnotatedLargeText<?> text, @CheckForNull File log, Object context,
+                                        StaplerRequest req, StaplerResponse rsp) throws IOException {
+        long start;
+        try {
+            String s = req.getParameter("start");
+            start = s == null ? 0 : Long.parseLong(s);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        if (start < 0 || start >= text.length()) {
+            return false;
+        }
+        try (FileChannel ch = open(text, log, context, start, true)) {
+            if (ch == null) {
+                return false;
+            }
+            rsp.setContentType("text/html;charset=UTF-8");
+            rsp.addHeader("X-Text-Size", String.valueOf(text.length()));
+            rsp.addHeader("Vary", "Accept-Encoding");
+            String acceptEncoding = req.getHeader("Accept-Encoding");
+            if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+                rsp.setHeader("Content-Encoding", "gzip");
+                long size = ch.size();
+                rsp.setContentLengthLong(size);
+                WritableByteChannel out = Channels.newChannel(rsp.getOutputStream());
+                for (long pos = 0; pos < size; ) {
+                    pos += ch.transferTo(pos, size - pos, out);
+                }
+            } else {
+                try (InputStream in = new GZIPInputStream(Channels.newInputStream(ch))) {
+                    OutputStream out = rsp.getOutputStream();
+                    IOUtils.copy(in, out);
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Writes the HTML rendering of a completed log from the cache, as {@link AnnotatedLargeText#writeHtmlTo} would.
+     *
+     * @return false if the cache does not apply, in which case nothing was written
+     */
+    static boolean writeHtmlTo(AnnotatedLargeText<?> text, @CheckForNull File log, Object context, long start, Writer w) throws IOException {
+        try (FileChannel ch = open(text, log, context, start, false)) {
+            if (ch == null) {
+                return false;
+            }
+            try (Reader r = new InputStreamReader(new GZIPInputStream(Channels.newInputStream(ch)), StandardCharsets.UTF_8)) {
+                IOUtils.copy(r, w);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Opens the cached rendering, rendering it first if needed.
+     * The result stays readable even if it gets evicted meanwhile.
+     *
+     * @param progressive whether line ends are normalized as in progressive HTML
+     * @return null if the log cannot be cached
+     */
+    private static @CheckForNull FileChannel open(AnnotatedLargeText<?> text, @CheckForNull File log, Object context,
+                                                  long start, boolean progressive) throws IOException {
+        if (!ENABLED || log == null || !(context instanceof Run) || !text.isComplete()) {
+            return null;
+        }
+        long length = log.length();
+        if (length < MIN_LOG_SIZE || !log.isFile()) {
+            return null;
+        }
+        StaplerRequest req = Stapler.getCurrentRequest();
+        if (req != null && req.getHeader("X-ConsoleAnnotator") != null) {
+            // resuming with annotator state from an earlier response
+            return null;
+        }
+        String key = key((Run<?, ?>) context, log, start, progressive, req);
+        File dir = getDirectory();
+        File file = new File(dir, key + SUFFIX);
+        Object lock = RENDERING.computeIfAbsent(key, k -> new Object());
+        try {
+            synchronized (lock) {
+                if (file.isFile()) {
+                    // for the least recently used eviction
+                    file.setLastModified(System.currentTimeMillis());
+                } else {
+                    render(text, start, progressive, dir, file);
+                    evict(dir);
+                }
+                return FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            }
+        } finally {
+            RENDERING.remove(key, lock);
+        }
+    }
+
+    private static String key(Run<?, ?> run, File log, long start, boolean progressive, @CheckForNull StaplerRequest req) {
+        StringBuilder b = new StringBuilder();
+        b.append(run.getExternalizableId()).append('\n');
+        b.append(log.length()).append(' ').append(log.lastModified()).append(' ').append(start).append(' ').append(progressive).append('\n');
+        // annotators may render differently depending on who is looking, and how
+        b.append(Jenkins.getAuthentication2().getName()).append('\n');
+        if (req != null) {
+            // links to Jenkins pages depend on the context path
+            b.append(req.getContextPath()).append(' ').append(req.getLocale()).append('\n');
+        }
+        Jenkins j = Jenkins.getInstanceOrNull();
+        if (j != null) {
+            b.append(j.getRootUrl()).append('\n');
+        }
+        for (ConsoleAnnotatorFactory<?> f : ConsoleAnnotatorFactory.all()) {
+            b.append(f.getClass().getName()).append('\n');
+        }
+        if (j != null) {
+            b.append(pluginsKey(j.getPluginManager()));
+        }
+        return Util.getDigestOf(b.toString());
+    }
+
+    private static volatile PluginsKey pluginsKey;
+
+    /**
+     * Names and versions of the active plugins, listed again only when plugins are loaded.
+     * Plugins are otherwise only disabled, upgraded or removed by a restart.
+     */
+    private static String pluginsKey(PluginManager pm) {
+        List<PluginWrapper> plugins = pm.getPlugins();
+        PluginsKey k = pluginsKey;
+        if (k == null || k.pm != pm || k.count != plugins.size()) {
+            StringBuilder b = new StringBuilder();
+            for (PluginWrapper p : plugins) {
+                if (p.isActive()) {
+                    b.append(p.getShortName()).append(':').append(p.getVersion()).append('\n');
+                }
+            }
+            pluginsKey = k = new PluginsKey(pm, plugins.size(), b.toString());
+        }
+        return k.key;
+    }
+
+    private static final class PluginsKey {
+        final PluginManager pm;
+        final int count;
+        final String key;
+
+        PluginsKey(PluginManager pm, int count, String key) {
+            this.pm = pm;
+            this.count = count;
+            this.key = key;
+        }
+    }
+
+    private static void render(AnnotatedLargeText<?> text, long start, boolean progressive, File dir, File file) throws IOException {
+        Files.createDirectories(dir.toPath());
+        File tmp = File.createTempFile("rendering", ".tmp", dir);
+        try {
+            try (Writer w = new OutputStreamWriter(new GZIPOutputStream(Files.newOutputStream(tmp.toPath())), StandardCharsets.UTF_8)) {
+                Writer target = progressive ? new LineEndNormalizingWriter(w) : w;
+                long end = text.writeHtmlTo(start, target);
+                target.flush();
+                LOGGER.log(Level.FINE, "Rendered {0} from {1} to {2}", new Object[] {file, start, end});
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp.toPath());
+        }
+    }
+
+    /**
+     * Deletes the least recently used renderings until the cache fits in {@link #MAX_SIZE}.
+     */
+    private static synchronized void evict(File dir) {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(SUFFIX));
+        if (files == null) {
+            return;
+        }
+        long total = 0;
+        for (File f : files) {
+            total += f.length();
+        }
+        if (total <= MAX_SIZE) {
+            return;
+        }
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File f : files) {
+            if (total <= MAX_SIZE) {
+                break;
+            }
+            long size = f.length();
+            if (f.delete()) {
+                total -= size;
+            }
+        }
+    }
+
+    /**
+     * Deletes all the cached renderings.
+     */
+    public static void clear() {
+        File[] files = getDirectory().listFiles();
+        if (files != null) {
+            for (File f : files) {
+                if (!f.delete()) {
+                    LOGGER.log(Level.FINE, "Could not delete {0}", f);
+                }
+            }
+        }
+    }
+
+    static @NonNull File getDirectory() {
+        return new File(Jenkins.get().getRootDir(), "caches/console-html");
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(ConsoleHtmlCache.class.getName());
+}
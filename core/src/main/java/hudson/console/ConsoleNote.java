@@ -48,7 +48,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import com.jcraft.jzlib.GZIPInputStream;
 import com.jcraft.jzlib.GZIPOutputStream;
 import hudson.remoting.ClassFilter;
@@ -121,6 +123,10 @@ import org.kohsuke.accmod.restrictions.NoExternalUse;
  * or generating the encoded form of the note on the master side and sending it to the agent,
  * for example by saving that form as instance fields in a {@link ConsoleLogFilter} implementation.
  *
+ * <p>
+ * When {@link #BINARY} is set, the notes of core are instead written field by field, and read back without
+ * Java deserialization. Both forms are signed and can be mixed in the same log.
+ *
  * <h2>Behaviour, JavaScript, and CSS</h2>
  * <p>
  * {@link ConsoleNote} can have associated {@code script.js} and {@code style.css} (put them
@@ -139,6 +145,11 @@ import org.kohsuke.accmod.restrictions.NoExternalUse;
 public abstract class ConsoleNote<T> implements Serializable, Describable<ConsoleNote<?>>, ExtensionPoint {
 
     private static final HMACConfidentialKey MAC = new HMACConfidentialKey(ConsoleNote.class, "MAC");
+    /**
+     * Signs the notes encoded by {@link ConsoleNoteCodec}, kept apart from {@link #MAC} so that a signature
+     * for one format can never pass for the other.
+     */
+    private static final HMACConfidentialKey BINARY_MAC = new HMACConfidentialKey(ConsoleNote.class, "BINARY_MAC");
     /**
      * Allows historical build records with unsigned console notes to be displayed, at the expense of any security.
      * Disables checking of {@link #MAC} so do not set this flag unless you completely trust all users capable of affecting build output,
@@ -148,6 +159,37 @@ public abstract class ConsoleNote<T> implements Serializable, Describable<Consol
     @SuppressFBWarnings("MS_SHOULD_BE_FINAL")
     public static /* nonfinal for tests & script console */ boolean INSECURE = SystemProperties.getBoolean(ConsoleNote.class.getName() + ".INSECURE");
 
+    /**
+     * Whether notes read for display are kept, keyed by their encoded form, so that a note repeated
+     * all over a log is only deserialized once. Cached notes are shared by all the lines and requests they appear in,
+     * so only the notes of core known not to be modified by {@link #annotate} are cached:
+     * other notes always get a fresh instance per line.
+     */
+    @Restricted(NoExternalUse.class)
+    @SuppressFBWarnings("MS_SHOULD_BE_FINAL")
+    public static /* nonfinal for tests & script console */ boolean CACHE = SystemProperties.getBoolean(ConsoleNote.class.getName() + ".cache", true);
+
+    /**
+     * Direct-mapped cache of signed notes, indexed by the hash of their encoded form.
+     * Entries are immutable, so racy reads and writes are harmless.
+     */
+    private static final CachedNote[] CACHED = new CachedNote[1024];
+
+    /**
+     * Exact classes of the notes which keep no state in {@link #annotate}, so that one instance can serve all lines.
+     * Subclasses, such as those of plugins, are not included.
+     */
+    private static final Set<Class<?>> SHAREABLE = new HashSet<>(Arrays.asList(
+            HyperlinkNote.class, ModelHyperlinkNote.class, ExpandableDetailsNote.class));
+
+    /**
+     * Whether the notes of core, such as {@link HyperlinkNote}, are written field by field rather than serialized,
+     * which is much cheaper to write and to read back. Jenkins versions predating this format ignore such notes.
+     */
+    @Restricted(NoExternalUse.class)
+    @SuppressFBWarnings("MS_SHOULD_BE_FINAL")
+    public static /* nonfinal for tests & script console */ boolean BINARY = SystemProperties.getBoolean(ConsoleNote.class.getName() + ".binary", false);
+
     /**
      * When the line of a console output that this annotation is attached is read by someone,
      * a new {@link ConsoleNote} is de-serialized and this method is invoked to annotate that line.
@@ -196,6 +238,12 @@ public abstract class ConsoleNote<T> implements Serializable, Describable<Consol
     }
 
     private ByteArrayOutputStream encodeToBytes() throws IOException {
+        if (BINARY && JenkinsJVM.isJenkinsJVM()) {
+            byte[] body = ConsoleNoteCodec.encode(this);
+            if (body != null) {
+                return encodeBinary(body);
+            }
+        }
         ByteArrayOutputStream buf = new ByteArrayOutputStream();
         try (OutputStream gzos = new GZIPOutputStream(buf);
              ObjectOutputStream oos = JenkinsJVM.isJenkinsJVM() ? AnonymousClassWarnings.checkingObjectOutputStream(gzos) : new ObjectOutputStream(gzos)) {
@@ -218,6 +266,25 @@ public abstract class ConsoleNote<T> implements Serializable, Describable<Consol
         return buf2;
     }
 
+    /**
+     * Same layout as the serialized form, but the first int is 0, which reads as a corrupt note in older versions,
+     * followed by the signature, the size of the body and the body.
+     */
+    private static ByteArrayOutputStream encodeBinary(byte[] body) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream(PREAMBLE.length + POSTAMBLE.length + 4 * (body.length + 50) / 3);
+        buf.write(PREAMBLE);
+        try (DataOutputStream dos = new DataOutputStream(Base64.getEncoder().wrap(buf))) {
+            byte[] mac = BINARY_MAC.mac(body);
+            dos.writeInt(0);
+            dos.writeByte(mac.length);
+            dos.write(mac);
+            dos.writeInt(body.length);
+            dos.write(body);
+        }
+        buf.write(POSTAMBLE);
+        return buf;
+    }
+
     /**
      * Works like {@link #encodeTo(Writer)} but obtain the result as a string.
      */
@@ -242,6 +309,9 @@ public abstract class ConsoleNote<T> implements Serializable, Describable<Consol
 
             DataInputStream decoded = new DataInputStream(Base64.getDecoder().wrap(in));
             int macSz = - decoded.readInt();
+            if (macSz == 0) {
+                return readBinary(in, decoded);
+            }
             byte[] mac;
             int sz;
             if (macSz > 0) { // new format
@@ -285,11 +355,117 @@ public abstract class ConsoleNote<T> implements Serializable, Describable<Consol
         }
     }
 
+    /**
+     * Reads the rest of a note written by {@link #encodeBinary}.
+     */
+    private static ConsoleNote readBinary(DataInputStream in, DataInputStream decoded) throws IOException {
+        byte[] mac = new byte[decoded.readUnsignedByte()];
+        decoded.readFully(mac);
+        int sz = decoded.readInt();
+        if (sz < 0) {
+            throw new IOException("Corrupt stream");
+        }
+        byte[] body = new byte[sz];
+        decoded.readFully(body);
+
+        byte[] postamble = new byte[POSTAMBLE.length];
+        in.readFully(postamble);
+        if (!Arrays.equals(postamble,POSTAMBLE))
+            return null;    // not a valid postamble
+
+        if (!INSECURE && !BINARY_MAC.checkMac(body, mac)) {
+            throw new IOException("MAC mismatch");
+        }
+        return ConsoleNoteCodec.decode(body);
+    }
+
     @SuppressFBWarnings(value = "OBJECT_DESERIALIZATION", justification = "Deserialization is protected by logic.")
     private static ConsoleNote getConsoleNote(ObjectInputStream ois) throws IOException, ClassNotFoundException {
         return (ConsoleNote) ois.readObject();
     }
 
+    /**
+     * Finds the end of the encoded note starting at the given position.
+     *
+     * @param start the position of a preamble
+     * @return the position right after the following postamble, or -1
+     */
+    static int findPostamble(byte[] buf, int start, int end) {
+        int e = end - POSTAMBLE.length + 1;
+        OUTER:
+        for (int i = start + PREAMBLE.length; i < e; i++) {
+            if (buf[i] == POSTAMBLE[0]) {
+                for (int j = 1; j < POSTAMBLE.length; j++) {
+                    if (buf[i + j] != POSTAMBLE[j])
+                        continue OUTER;
+                }
+                return i + POSTAMBLE.length;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Looks up a note previously read from the same bytes.
+     *
+     * @return null if not cached
+     */
+    static ConsoleNote getCached(byte[] buf, int start, int end) {
+        if (!CACHE) {
+            return null;
+        }
+        int hash = hash(buf, start, end);
+        CachedNote c = CACHED[hash & (CACHED.length - 1)];
+        return c != null && c.matches(hash, buf, start, end) ? c.note : null;
+    }
+
+    /**
+     * Remembers a note successfully read from the given bytes.
+     */
+    static void cache(byte[] buf, int start, int end, ConsoleNote note) {
+        if (!CACHE || INSECURE) {
+            // unsigned notes must not outlive the flag that allowed them
+            return;
+        }
+        if (!SHAREABLE.contains(note.getClass())) {
+            return;
+        }
+        int hash = hash(buf, start, end);
+        CACHED[hash & (CACHED.length - 1)] = new CachedNote(hash, Arrays.copyOfRange(buf, start, end), note);
+    }
+
+    private static int hash(byte[] buf, int start, int end) {
+        int h = 1;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + buf[i];
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static final class CachedNote {
+        private final int hash;
+        private final byte[] encoded;
+        private final ConsoleNote note;
+
+        CachedNote(int hash, byte[] encoded, ConsoleNote note) {
+            this.hash = hash;
+            this.encoded = encoded;
+            this.note = note;
+        }
+
+        boolean matches(int hash, byte[] buf, int start, int end) {
+            if (this.hash != hash || encoded.length != end - start) {
+                return false;
+            }
+            for (int i = 0; i < encoded.length; i++) {
+                if (encoded[i] != buf[start + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
     /**
      * Skips the encoded console note.
      */
@@ -301,7 +477,11 @@ public abstract class ConsoleNote<T> implements Serializable, Describable<Consol
 
         DataInputStream decoded = new DataInputStream(Base64.getDecoder().wrap(in));
         int macSz = - decoded.readInt();
-        if (macSz > 0) { // new format
+        if (macSz == 0) { // binary format
+            IOUtils.skip(decoded, decoded.readUnsignedByte());
+            int sz = decoded.readInt();
+            IOUtils.skip(decoded, sz);
+        } else if (macSz > 0) { // new format
             IOUtils.skip(decoded, macSz);
             int sz = decoded.readInt();
             IOUtils.skip(decoded, sz);
@@ -0,0 +1,69 @@
+package hudson.console;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import org.apache.commons.io.output.ByteArrayOutputStream;
+
+/**
+ * Field by field encoding of the console notes of core, written by {@link ConsoleNote#encodeTo(java.io.OutputStream)}
+ * in place of their Java serialization when {@link ConsoleNote#BINARY} is set.
+ *
+ * <p>
+ * Each encoded note starts with the id of its class in a fixed table, so that it is understood
+ * in any part of any log, followed by its fields in {@link DataOutputStream} format.
+ * Ids are never reused: a class whose fields change gets a new id.
+ */
+final class ConsoleNoteCodec {
+    private static final int HYPERLINK = 1;
+    private static final int MODEL_HYPERLINK = 2;
+    private static final int EXPANDABLE_DETAILS = 3;
+
+    private ConsoleNoteCodec() {}
+
+    /**
+     * @return null if the note has to be serialized
+     */
+    static byte[] encode(ConsoleNote<?> note) throws IOException {
+        Class<?> c = note.getClass();
+        ByteArrayOutputStream buf = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(buf)) {
+            // exact classes only: subclasses may have more fields
+            if ((c == HyperlinkNote.class || c == ModelHyperlinkNote.class) && ((HyperlinkNote) note).getUrl() != null) {
+                HyperlinkNote n = (HyperlinkNote) note;
+                out.writeByte(c == HyperlinkNote.class ? HYPERLINK : MODEL_HYPERLINK);
+                out.writeUTF(n.getUrl());
+                out.writeInt(n.getLength());
+            } else if (c == ExpandableDetailsNote.class && ((ExpandableDetailsNote) note).getCaption() != null
+                    && ((ExpandableDetailsNote) note).getHtml() != null) {
+                ExpandableDetailsNote n = (ExpandableDetailsNote) note;
+                out.writeByte(EXPANDABLE_DETAILS);
+                out.writeUTF(n.getCaption());
+                out.writeUTF(n.getHtml());
+            } else {
+                return null;
+            }
+        } catch (UTFDataFormatException x) {
+            // over 64KB
+            return null;
+        }
+        return buf.toByteArray();
+    }
+
+    static ConsoleNote<?> decode(byte[] body) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        int id = in.readUnsignedByte();
+        switch (id) {
+        case HYPERLINK:
+            return new HyperlinkNote(in.readUTF(), in.readInt());
+        case MODEL_HYPERLINK:
+            return new ModelHyperlinkNote(in.readUTF(), in.readInt());
+        case EXPANDABLE_DETAILS:
+            return new ExpandableDetailsNote(in.readUTF(), in.readUTF());
+        default:
+            throw new IOException("Unknown console note type " + id);
+        }
+    }
+}
@@ -55,6 +55,14 @@ public class ExpandableDetailsNote extends ConsoleNote {
         return null;
     }
 
+    String getCaption() {
+        return caption;
+    }
+
+    String getHtml() {
+        return html;
+    }
+
     public static String encodeTo(String buttonCaption, String html) {
         try {
             return new ExpandableDetailsNote(buttonCaption, html).encode();
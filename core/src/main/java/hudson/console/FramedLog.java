@@ -0,0 +1,243 @@
+package hudson.console;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Util;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import jenkins.util.SystemProperties;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * A compressed log which can be read from any offset, written as {@code log.gz} by {@link #compress}.
+ *
+ * <p>
+ * The log is cut in frames of {@link #FRAME_SIZE} bytes, each compressed as its own gzip member.
+ * The result is still a valid gzip file, so anything reading {@code log.gz} as a whole keeps working,
+ * but a sidecar {@code log.gz.frames} tells where each frame starts, in the log and in the compressed file,
+ * so reading from an offset only decompresses from the start of its frame.
+ *
+ * <p>
+ * The sidecar starts with a magic number and the frame size, followed by the offsets of each frame
+ * as pairs of big-endian longs, the last pair holding the length of the log and of the compressed file.
+ *
+ * @see AnnotatedLargeText
+ * @since TODO
+ */
+@Restricted(NoExternalUse.class)
+public final class FramedLog {
+    /**
+     * Size of the frames of newly compressed logs.
+     */
+    public static /* non-final for Groovy */ int FRAME_SIZE = SystemProperties.getInteger(FramedLog.class.getName() + ".frameSize", 1024 * 1024);
+
+    private static final int MAGIC = 0x46524d53; // FRMS
+    private static final int HEADER_SIZE = 8;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File file;
+    /**
+     * Where each frame starts in the log, then the length of the log.
+     */
+    private final long[] rawOffsets;
+    /**
+     * Where each frame starts in the compressed file, then its length.
+     */
+    private final long[] offsets;
+
+    private FramedLog(File file, long[] rawOffsets, long[] offsets) {
+        this.file = file;
+        this.rawOffsets = rawOffsets;
+        this.offsets = offsets;
+    }
+
+    /**
+     * Gets the frame index of the given compressed log.
+     */
+    public static @NonNull File indexFileOf(@NonNull File gz) {
+        return new File(gz.getParentFile(), gz.getName() + ".frames");
+    }
+
+    /**
+     * Opens a compressed log for random access.
+     *
+     * @return null if the file is not a compressed log with a valid frame index
+     */
+    public static @CheckForNull FramedLog of(@NonNull File gz) {
+        if (!gz.getName().endsWith(".gz")) {
+            return null;
+        }
+        File index = indexFileOf(gz);
+        if (!index.isFile()) {
+            return null;
+        }
+        try {
+            ByteBuffer b = ByteBuffer.wrap(Files.readAllBytes(Util.fileToPath(index)));
+            if (b.remaining() < HEADER_SIZE + 16 || b.getInt() != MAGIC || (b.remaining() - 4) % 16 != 0) {
+                return null;
+            }
+            b.getInt(); // frame size, informative only
+            int n = b.remaining() / 16;
+            long[] rawOffsets = new long[n];
+            long[] offsets = new long[n];
+            for (int i = 0; i < n; i++) {
+                rawOffsets[i] = b.getLong();
+                offsets[i] = b.getLong();
+                if (i == 0 ? rawOffsets[0] != 0 || offsets[0] != 0 : rawOffsets[i] < rawOffsets[i - 1] || offsets[i] <= offsets[i - 1]) {
+                    return null;
+                }
+            }
+            if (offsets[n - 1] != gz.length()) {
+                return null;
+            }
+            return new FramedLog(gz, rawOffsets, offsets);
+        } catch (IOException x) {
+            LOGGER.log(Level.FINE, "Cannot read " + index, x);
+            return null;
+        }
+    }
+
+    /**
+     * Gets the length of the uncompressed log.
+     */
+    public long length() {
+        return rawOffsets[rawOffsets.length - 1];
+    }
+
+    int getFrameCount() {
+        return rawOffsets.length - 1;
+    }
+
+    long getFrameStart(int frame) {
+        return rawOffsets[frame];
+    }
+
+    /**
+     * Reads the log from the given offset to its end.
+     */
+    public @NonNull InputStream open(long offset) throws IOException {
+        if (offset >= length()) {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+        int frame = frameOf(offset);
+        FileChannel ch = FileChannel.open(Util.fileToPath(file), StandardOpenOption.READ);
+        InputStream in;
+        try {
+            ch.position(offsets[frame]);
+            // reads through the following members
+            in = new GZIPInputStream(new BufferedInputStream(Channels.newInputStream(ch), BUFFER_SIZE), BUFFER_SIZE);
+        } catch (IOException | RuntimeException x) {
+            ch.close();
+            throw x;
+        }
+        try {
+            IOUtils.skipFully(in, offset - rawOffsets[frame]);
+        } catch (IOException | RuntimeException x) {
+            in.close();
+            throw x;
+        }
+        return in;
+    }
+
+    /**
+     * Decompresses one frame.
+     */
+    byte[] readFrame(int frame) throws IOException {
+        byte[] data = new byte[(int) (rawOffsets[frame + 1] - rawOffsets[frame])];
+        try (InputStream in = open(rawOffsets[frame])) {
+            IOUtils.readFully(in, data);
+        }
+        return data;
+    }
+
+    private int frameOf(long offset) {
+        int lo = 0;
+        int hi = getFrameCount() - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (rawOffsets[mid] <= offset) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return Math.max(lo, 0);
+    }
+
+    /**
+     * Compresses a plain log into a framed {@code .gz} next to it, then deletes the plain log.
+     * The log must not be written to anymore.
+     *
+     * @return false if there was already a compressed log
+     */
+    public static boolean compress(@NonNull File log) throws IOException {
+        File gz = new File(log.getParentFile(), log.getName() + ".gz");
+        if (gz.exists()) {
+            return false;
+        }
+        File index = indexFileOf(gz);
+        File dir = log.getParentFile();
+        File tmp = File.createTempFile("log", ".gz.tmp", dir);
+        File tmpIndex = File.createTempFile("log", ".frames.tmp", dir);
+        try {
+            int frameSize = FRAME_SIZE > 0 ? FRAME_SIZE : 1024 * 1024;
+            try (InputStream in = Files.newInputStream(Util.fileToPath(log));
+                 CountingOutputStream out = new CountingOutputStream(Files.newOutputStream(tmp.toPath()));
+                 DataOutputStream idx = new DataOutputStream(Files.newOutputStream(tmpIndex.toPath()))) {
+                idx.writeInt(MAGIC);
+                idx.writeInt(frameSize);
+                byte[] buf = new byte[frameSize];
+                long raw = 0;
+                int n;
+                while ((n = IOUtils.read(in, buf)) > 0) {
+                    idx.writeLong(raw);
+                    idx.writeLong(out.getByteCount());
+                    try (OutputStream frame = new GZIPOutputStream(new CloseShieldOutputStream(out), BUFFER_SIZE)) {
+                        frame.write(buf, 0, n);
+                    }
+                    raw += n;
+                }
+                if (raw == 0) {
+                    // one empty member, as a file without any is not valid gzip
+                    idx.writeLong(0);
+                    idx.writeLong(0);
+                    new GZIPOutputStream(new CloseShieldOutputStream(out), BUFFER_SIZE).close();
+                }
+                out.flush();
+                idx.writeLong(raw);
+                idx.writeLong(out.getByteCount());
+            }
+            // the index goes first, so that a compressed log is never seen without it
+            Files.move(tmpIndex.toPath(), index.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.move(tmp.toPath(), gz.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp.toPath());
+            Files.deleteIfExists(tmpIndex.toPath());
+        }
+        Files.delete(Util.fileToPath(log));
+        // only meant for plain logs
+        Files.deleteIfExists(LineIndex.indexFileOf(log).toPath());
+        return true;
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(FramedLog.class.getName());
+}
@@ -57,6 +57,12 @@ public class HyperlinkNote extends ConsoleNote {
         this.length = length;
     }
 
+    /**
+     * Context path of the request some output is rendered for, outside of that request.
+     * @see LiveConsole
+     */
+    static final ThreadLocal<String> CONTEXT_PATH = new ThreadLocal<>();
+
     @Override
     public ConsoleAnnotator annotate(Object context, MarkupText text, int charPos) {
         String url = this.url;
@@ -65,6 +71,8 @@ public class HyperlinkNote extends ConsoleNote {
             if (req!=null) {
                 // if we are serving HTTP request, we want to use app relative URL
                 url = req.getContextPath()+url;
+            } else if (CONTEXT_PATH.get() != null) {
+                url = CONTEXT_PATH.get()+url;
             } else {
                 // otherwise presumably this is rendered for e-mails and other non-HTTP stuff
                 url = Jenkins.get().getRootUrl()+url.substring(1);
@@ -74,6 +82,14 @@ public class HyperlinkNote extends ConsoleNote {
         return null;
     }
 
+    String getUrl() {
+        return url;
+    }
+
+    int getLength() {
+        return length;
+    }
+
     protected String extraAttributes() {
         return "";
     }
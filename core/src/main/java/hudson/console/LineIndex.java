@@ -0,0 +1,284 @@
+package hudson.console;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Util;
+import hudson.util.AtomicFileWriter;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.util.SystemProperties;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Sparse index of the line offsets of a plain log file, kept next to it as {@code log.lines},
+ * so that a range of lines can be read without scanning the log from its start.
+ *
+ * <p>
+ * The index holds the offset of every {@link #STRIDE}th line: finding any line then takes
+ * an array lookup and a scan of less than {@link #STRIDE} lines.
+ * It is written while the build runs, through {@link #wrap}, and rebuilt on demand for older logs.
+ * Logs shorter than {@link #STRIDE} lines do not get an index file.
+ *
+ * <p>
+ * The file starts with a magic number and the stride, followed by the offsets as big-endian longs.
+ * It is only appended to, so it can be read while the build is still running.
+ *
+ * @see AnnotatedLargeText#writeLinesTo
+ * @since TODO
+ */
+@Restricted(NoExternalUse.class)
+public final class LineIndex {
+    /**
+     * Number of lines between two indexed offsets, for newly written indexes.
+     */
+    public static /* non-final for Groovy */ int STRIDE = SystemProperties.getInteger(LineIndex.class.getName() + ".stride", 4096);
+
+    /**
+     * Whether builds write an index along with their log.
+     */
+    public static /* non-final for Groovy */ boolean ENABLED = SystemProperties.getBoolean(LineIndex.class.getName() + ".enabled", true);
+
+    private static final int MAGIC = 0x4C494458; // LIDX
+    private static final int HEADER_SIZE = 8;
+    private static final int BLOCK_SIZE = 64 * 1024;
+
+    private final int stride;
+    /**
+     * {@code offsets[k]} is where line {@code k * stride} starts; {@code offsets[0]} is always 0.
+     */
+    private final long[] offsets;
+
+    private LineIndex(int stride, long[] offsets) {
+        this.stride = stride;
+        this.offsets = offsets;
+    }
+
+    /**
+     * Gets the index file of the given log.
+     */
+    public static @NonNull File indexFileOf(@NonNull File log) {
+        return new File(log.getParentFile(), log.getName() + ".lines");
+    }
+
+    /**
+     * Wraps the stream about to write a new log, so that its index is written along.
+     *
+     * @return the given stream if indexing is disabled, or if the log is not empty
+     */
+    public static @NonNull OutputStream wrap(@NonNull File log, @NonNull OutputStream out) {
+        if (!ENABLED || STRIDE <= 0 || log.length() > 0) {
+            return out;
+        }
+        File index = indexFileOf(log);
+        if (index.exists() && !index.delete()) {
+            return out;
+        }
+        return new IndexingOutputStream(out, index, STRIDE);
+    }
+
+    /**
+     * Loads the index of a plain log file, building it if it is missing or does not match the log.
+     *
+     * @param save whether to save a rebuilt index, which should only be done for logs that are complete
+     */
+    public static @NonNull LineIndex load(@NonNull File log, boolean save) throws IOException {
+        long length = log.length();
+        File file = indexFileOf(log);
+        if (file.isFile()) {
+            LineIndex index = read(file, length);
+            if (index != null) {
+                return index;
+            }
+            LOGGER.log(Level.FINE, "Rebuilding invalid {0}", file);
+        }
+        LineIndex index = build(log, STRIDE > 0 ? STRIDE : 4096);
+        if (save && index.offsets.length > 1) {
+            try {
+                index.save(file);
+            } catch (IOException x) {
+                LOGGER.log(Level.WARNING, "Failed to save " + file, x);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Finds where a line starts.
+     *
+     * @param ch the log, opened for reading
+     * @param line the 0-based line number
+     * @return the offset of the start of the line, or the size of the log if it has fewer lines
+     */
+    public long offsetOf(@NonNull FileChannel ch, long line) throws IOException {
+        int k = (int) Math.min(line / stride, offsets.length - 1);
+        long remaining = line - (long) k * stride;
+        long pos = offsets[k];
+        if (remaining == 0) {
+            return pos;
+        }
+        long size = ch.size();
+        ByteBuffer buf = ByteBuffer.allocate(BLOCK_SIZE);
+        byte[] a = buf.array();
+        while (pos < size) {
+            buf.clear();
+            int n = ch.read(buf, pos);
+            if (n < 0) {
+                break;
+            }
+            for (int i = 0; i < n; i++) {
+                if (a[i] == '\n' && --remaining == 0) {
+                    return pos + i + 1;
+                }
+            }
+            pos += n;
+        }
+        return size;
+    }
+
+    /**
+     * @return null if the file is not a valid index of a log of the given length
+     */
+    private static LineIndex read(File file, long logLength) throws IOException {
+        ByteBuffer b = ByteBuffer.wrap(Files.readAllBytes(Util.fileToPath(file)));
+        if (b.remaining() < HEADER_SIZE || b.getInt() != MAGIC) {
+            return null;
+        }
+        int stride = b.getInt();
+        if (stride <= 0) {
+            return null;
+        }
+        long[] offsets = new long[1 + b.remaining() / 8]; // ignoring an entry being written
+        for (int i = 1; i < offsets.length; i++) {
+            offsets[i] = b.getLong();
+            if (offsets[i] <= offsets[i - 1] || offsets[i] > logLength) {
+                return null;
+            }
+        }
+        return new LineIndex(stride, offsets);
+    }
+
+    private static LineIndex build(File log, int stride) throws IOException {
+        long[] offsets = new long[16];
+        int size = 1;
+        long lines = 0;
+        try (FileChannel ch = FileChannel.open(Util.fileToPath(log), StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate(BLOCK_SIZE);
+            byte[] a = buf.array();
+            long pos = 0;
+            while (true) {
+                buf.clear();
+                int n = ch.read(buf, pos);
+                if (n < 0) {
+                    break;
+                }
+                for (int i = 0; i < n; i++) {
+                    if (a[i] == '\n' && ++lines % stride == 0) {
+                        if (size == offsets.length) {
+                            offsets = Arrays.copyOf(offsets, size * 2);
+                        }
+                        offsets[size++] = pos + i + 1;
+                    }
+                }
+                pos += n;
+            }
+        }
+        return new LineIndex(stride, Arrays.copyOf(offsets, size));
+    }
+
+    private void save(File file) throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(HEADER_SIZE + 8 * (offsets.length - 1));
+        b.putInt(MAGIC).putInt(stride);
+        for (int i = 1; i < offsets.length; i++) {
+            b.putLong(offsets[i]);
+        }
+        b.flip();
+        AtomicFileWriter w = new AtomicFileWriter(file.toPath(), StandardCharsets.UTF_8);
+        try {
+            w.write(b);
+            w.commit();
+        } finally {
+            w.abort();
+        }
+    }
+
+    /**
+     * Appends to the index as lines are written to the log.
+     * Failing to write the index does not fail the build: the index just stops growing.
+     */
+    private static final class IndexingOutputStream extends FilterOutputStream {
+        private final File file;
+        private final int stride;
+        private DataOutputStream index;
+        private boolean failed;
+        private long pos;
+        private long lines;
+
+        IndexingOutputStream(OutputStream out, File file, int stride) {
+            super(out);
+            this.file = file;
+            this.stride = stride;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            pos++;
+            if (b == '\n' && ++lines % stride == 0) {
+                checkpoint(pos);
+            }
+        }
+
+        @Override
+        public void write(@NonNull byte[] b, int off, int len) throws IOException {
+            // the log is written first, so that the index never points past its end
+            out.write(b, off, len);
+            for (int i = off, end = off + len; i < end; i++) {
+                if (b[i] == '\n' && ++lines % stride == 0) {
+                    checkpoint(pos + (i - off) + 1);
+                }
+            }
+            pos += len;
+        }
+
+        private void checkpoint(long offset) {
+            if (failed) {
+                return;
+            }
+            try {
+                if (index == null) {
+                    index = new DataOutputStream(Files.newOutputStream(Util.fileToPath(file), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING));
+                    index.writeInt(MAGIC);
+                    index.writeInt(stride);
+                }
+                index.writeLong(offset);
+            } catch (IOException x) {
+                LOGGER.log(Level.WARNING, "Failed to write " + file, x);
+                failed = true;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                if (index != null) {
+                    index.close();
+                }
+            }
+        }
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(LineIndex.class.getName());
+}
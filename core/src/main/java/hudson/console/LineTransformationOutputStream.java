@@ -70,8 +70,24 @@ public abstract class LineTransformationOutputStream extends OutputStream {
     public void write(byte[] b, int off, int len) throws IOException {
         int end = off+len;
 
-        for( int i=off; i<end; i++ )
-            write(b[i]);
+        if (OVERRIDES_WRITE_INT.get(getClass())) {
+            // a subclass intercepting single bytes must still see every one of them
+            for (int i=off; i<end; i++)
+                write(b[i]);
+            return;
+        }
+
+        // copy whole lines at once rather than going through write(int) for each byte
+        int start = off;
+        for( int i=off; i<end; i++ ) {
+            if (b[i]==LF) {
+                buf.write(b,start,i+1-start);
+                eol();
+                start = i+1;
+            }
+        }
+        if (start<end)
+            buf.write(b,start,end-start);
     }
 
     @Override
@@ -111,6 +127,20 @@ public abstract class LineTransformationOutputStream extends OutputStream {
 
     private static final int LF = 0x0A;
 
+    /**
+     * Whether a subclass overrides {@link #write(int)}, in which case {@link #write(byte[], int, int)} goes through it.
+     */
+    private static final ClassValue<Boolean> OVERRIDES_WRITE_INT = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            try {
+                return type.getMethod("write", int.class).getDeclaringClass() != LineTransformationOutputStream.class;
+            } catch (NoSuchMethodException e) {
+                throw new AssertionError(e);
+            }
+        }
+    };
+
     /**
      * Convenience subclass for cases where you wish to process lines being sent to an underlying stream.
      * {@link #eol} will typically {@link OutputStream#write(byte[], int, int)} to {@link #out}.
@@ -0,0 +1,424 @@
+package hudson.console;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.model.Run;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringWriter;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+import jenkins.util.Timer;
+import jenkins.websocket.WebSocketSession;
+import jenkins.websocket.WebSockets;
+import net.sf.json.JSONObject;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.kohsuke.stapler.HttpResponse;
+import org.kohsuke.stapler.HttpResponses;
+import org.kohsuke.stapler.StaplerRequest;
+import org.springframework.security.core.Authentication;
+
+/**
+ * Pushes the output of running builds to WebSocket clients as it is written,
+ * in place of {@link AnnotatedLargeText#doProgressiveHtml} polling.
+ *
+ * <p>
+ * A single {@link Tailer} per running build reads what gets appended to its log, once,
+ * and hands it to every subscriber. Each subscriber renders it with its own {@link ConsoleAnnotator},
+ * as the user who connected, and sends it as text frames of JSON objects with the rendered {@code text}
+ * and the {@code size} of the log shown so far, the last one with {@code end} set.
+ * In plain mode, the output is sent without console notes as binary frames. The socket is closed at the end.
+ *
+ * <p>
+ * A subscriber still sending what it rendered before skips what is read meanwhile,
+ * and later catches up from the file, as one connecting after the build started does.
+ *
+ * @see AnnotatedLargeText#doWebSocket
+ * @since TODO
+ */
+@Restricted(NoExternalUse.class)
+public final class LiveConsole {
+    /**
+     * Whether the console page tails running builds over WebSocket when the server supports it.
+     */
+    public static /* non-final for Groovy */ boolean ENABLED = SystemProperties.getBoolean(LiveConsole.class.getName() + ".enabled", false);
+
+    /**
+     * Milliseconds between two checks for new output.
+     */
+    public static /* non-final for Groovy */ long INTERVAL = SystemProperties.getLong(LiveConsole.class.getName() + ".interval", 200L);
+
+    /**
+     * Most bytes read at once.
+     */
+    private static final int CHUNK = 1024 * 1024;
+
+    /**
+     * Tailers by log file. Guarded by itself.
+     */
+    private static final Map<File, Tailer> TAILERS = new HashMap<>();
+
+    private LiveConsole() {}
+
+    /**
+     * Whether the console page should use {@link AnnotatedLargeText#doWebSocket}.
+     */
+    public static boolean isEnabled() {
+        return ENABLED && WebSockets.isSupported();
+    }
+
+    /**
+     * Upgrades the current request to a WebSocket streaming the log of a build from some offset.
+     * Browsers send cookies with WebSocket handshakes from any site, so it is refused
+     * unless it comes from a page of this Jenkins, as its {@code Origin} header tells.
+     *
+     * @param annotator the state of the annotation at {@code start}, or null to send plain text
+     */
+    static HttpResponse upgrade(@NonNull StaplerRequest req, @NonNull Run<?, ?> run, @NonNull File log, @NonNull Charset charset, long start,
+                                @CheckForNull ConsoleAnnotator<Run<?, ?>> annotator) {
+        if (!isSameOrigin(req)) {
+            return HttpResponses.forbidden();
+        }
+        return WebSockets.upgrade(new Subscriber(run, log, charset, Math.max(start, 0), annotator, req.getContextPath(), Jenkins.getAuthentication2()));
+    }
+
+    /**
+     * Whether the {@code Origin} of a request is the configured root URL, or the scheme, host and port of the request itself.
+     */
+    static boolean isSameOrigin(@NonNull StaplerRequest req) {
+        String origin = req.getHeader("Origin");
+        if (origin == null) {
+            return false;
+        }
+        URI o;
+        try {
+            o = new URI(origin);
+        } catch (URISyntaxException e) {
+            return false;
+        }
+        if (o.getScheme() == null || o.getHost() == null) {
+            return false;
+        }
+        String rootUrl = Jenkins.get().getRootUrl();
+        if (rootUrl != null) {
+            try {
+                URI root = new URI(rootUrl);
+                if (sameOrigin(o, root.getScheme(), root.getHost(), root.getPort())) {
+                    return true;
+                }
+            } catch (URISyntaxException e) {
+                LOGGER.log(Level.FINE, "cannot parse root URL " + rootUrl, e);
+            }
+        }
+        return sameOrigin(o, req.getScheme(), req.getServerName(), req.getServerPort());
+    }
+
+    private static boolean sameOrigin(URI origin, String scheme, String host, int port) {
+        return origin.getScheme().equalsIgnoreCase(scheme) && origin.getHost().equalsIgnoreCase(host)
+                && portOf(origin.getScheme(), origin.getPort()) == portOf(scheme, port);
+    }
+
+    private static int portOf(String scheme, int port) {
+        if (port != -1) {
+            return port;
+        }
+        return "https".equalsIgnoreCase(scheme) ? 443 : 80;
+    }
+
+    private static void subscribe(Subscriber s) {
+        synchronized (TAILERS) {
+            Tailer t = TAILERS.get(s.log);
+            if (t == null) {
+                t = new Tailer(s.run, s.log);
+                TAILERS.put(s.log, t);
+                t.start();
+            }
+            s.tailer = t;
+            t.subscribers.add(s);
+        }
+    }
+
+    /**
+     * Reads what gets appended to the log of a running build.
+     */
+    private static final class Tailer implements Runnable {
+        private final Run<?, ?> run;
+        private final File log;
+        private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+        private RandomAccessFile file;
+        /**
+         * How much of the log was read.
+         */
+        private long offset;
+        /**
+         * Set once the whole log was read, when the remaining subscribers catch up and get closed.
+         */
+        private boolean ending;
+        private ScheduledFuture<?> task;
+
+        Tailer(Run<?, ?> run, File log) {
+            this.run = run;
+            this.log = log;
+            this.offset = log.length();
+        }
+
+        void start() {
+            task = Timer.get().scheduleWithFixedDelay(this, 0, INTERVAL, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void run() {
+            synchronized (TAILERS) {
+                if (subscribers.isEmpty()) {
+                    stop();
+                    return;
+                }
+            }
+            if (!ending) {
+                // checked first, so that whatever was written before completion is read below
+                boolean complete = !run.isLogUpdated();
+                try {
+                    if (file == null) {
+                        file = new RandomAccessFile(log, "r");
+                    }
+                    long length = file.length();
+                    if (length - offset > CHUNK) {
+                        length = offset + CHUNK;
+                        complete = false;
+                    }
+                    byte[] chunk = read(offset, length);
+                    for (Subscriber s : subscribers) {
+                        s.deliver(offset, chunk);
+                    }
+                    offset = length;
+                } catch (IOException x) {
+                    LOGGER.log(Level.FINE, "Failed to read " + log, x);
+                    complete = true;
+                }
+                if (complete) {
+                    synchronized (TAILERS) {
+                        // later subscribers get their own tailer
+                        TAILERS.remove(log, this);
+                    }
+                    ending = true;
+                }
+            } else {
+                for (Subscriber s : subscribers) {
+                    s.deliver(offset, new byte[0]);
+                }
+            }
+            if (ending) {
+                for (Subscriber s : subscribers) {
+                    if (s.isDone(offset)) {
+                        subscribers.remove(s);
+                        s.end();
+                    }
+                }
+            }
+        }
+
+        byte[] read(long from, long to) throws IOException {
+            if (file == null) {
+                throw new FileNotFoundException(log.getPath());
+            }
+            byte[] b = new byte[(int) (to - from)];
+            file.seek(from);
+            file.readFully(b);
+            return b;
+        }
+
+        /**
+         * Called with the lock held.
+         */
+        private void stop() {
+            task.cancel(false);
+            TAILERS.remove(log, this);
+            if (file != null) {
+                try {
+                    file.close();
+                } catch (IOException x) {
+                    LOGGER.log(Level.FINE, null, x);
+                }
+            }
+        }
+    }
+
+    /**
+     * One client, only called by the thread of its {@link Tailer} apart from {@link #opened} and {@link #closed}.
+     */
+    private static final class Subscriber extends WebSocketSession {
+        private final Run<?, ?> run;
+        private final File log;
+        private final String contextPath;
+        private final Authentication auth;
+        /**
+         * How much of the log was rendered.
+         */
+        private long position;
+        /**
+         * Where the last complete line rendered ends, as the rendering of an unfinished line is held back until it ends.
+         */
+        private long rendered;
+        private final boolean html;
+        private final StringWriter text = new StringWriter();
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final LineTransformationOutputStream out;
+        private Future<Void> sending;
+        private volatile Tailer tailer;
+
+        Subscriber(Run<?, ?> run, File log, Charset charset, long start, ConsoleAnnotator<Run<?, ?>> annotator, String contextPath, Authentication auth) {
+            this.run = run;
+            this.log = log;
+            this.position = start;
+            this.rendered = start;
+            this.contextPath = contextPath;
+            this.auth = auth;
+            this.html = annotator != null;
+            out = html ? new ConsoleAnnotationOutputStream<>(text, annotator, run, charset) : new PlainTextConsoleOutputStream(bytes);
+        }
+
+        @Override
+        protected void opened() {
+            subscribe(this);
+        }
+
+        @Override
+        protected void closed(int statusCode, String reason) {
+            Tailer t = tailer;
+            if (t != null) {
+                t.subscribers.remove(this);
+            }
+        }
+
+        @Override
+        protected void error(Throwable cause) {
+            LOGGER.log(Level.FINE, "Live console of " + run + " failed", cause);
+        }
+
+        @Override
+        protected void text(String message) {
+            // nothing expected from the client
+        }
+
+        private boolean isSending() {
+            return sending != null && !sending.isDone();
+        }
+
+        boolean isDone(long length) {
+            return position >= length && !isSending();
+        }
+
+        /**
+         * Renders and sends part of the log.
+         *
+         * @param from where the chunk starts in the log
+         */
+        void deliver(long from, byte[] chunk) {
+            if (isSending()) {
+                // falling behind
+                return;
+            }
+            if (position < from) {
+                // catching up from where the client is, a chunk at a time
+                long to = Math.min(from, position + CHUNK);
+                try {
+                    render(tailer.read(position, to), 0, position);
+                } catch (IOException x) {
+                    LOGGER.log(Level.FINE, "Failed to read " + log, x);
+                    tailer.subscribers.remove(this);
+                    close();
+                    return;
+                }
+                position = to;
+            }
+            long end = from + chunk.length;
+            if (position >= from && position < end) {
+                render(chunk, (int) (position - from), position);
+                position = end;
+            }
+            send(false);
+        }
+
+        /**
+         * @param at where {@code b[off]} is in the log
+         */
+        private void render(byte[] b, int off, long at) {
+            try (ACLContext ctx = ACL.as2(auth)) {
+                HyperlinkNote.CONTEXT_PATH.set(contextPath);
+                out.write(b, off, b.length - off);
+                for (int i = b.length - 1; i >= off; i--) {
+                    if (b[i] == '\n') {
+                        rendered = at + (i - off) + 1;
+                        break;
+                    }
+                }
+            } catch (IOException | RuntimeException x) {
+                // from an annotator
+                LOGGER.log(Level.FINE, "Failed to render the log of " + run, x);
+            } finally {
+                HyperlinkNote.CONTEXT_PATH.remove();
+            }
+        }
+
+        void end() {
+            try (ACLContext ctx = ACL.as2(auth)) {
+                HyperlinkNote.CONTEXT_PATH.set(contextPath);
+                out.forceEol();
+                rendered = position;
+            } catch (IOException | RuntimeException x) {
+                LOGGER.log(Level.FINE, "Failed to render the log of " + run, x);
+            } finally {
+                HyperlinkNote.CONTEXT_PATH.remove();
+            }
+            send(true);
+            // after what was sent
+            close();
+        }
+
+        private void send(boolean end) {
+            try {
+                if (html) {
+                    if (text.getBuffer().length() == 0 && !end) {
+                        return;
+                    }
+                    JSONObject o = new JSONObject();
+                    o.put("text", text.toString());
+                    o.put("size", rendered);
+                    if (end) {
+                        o.put("end", true);
+                    }
+                    text.getBuffer().setLength(0);
+                    sending = sendText(o.toString());
+                } else if (bytes.size() > 0) {
+                    sending = sendBinary(ByteBuffer.wrap(bytes.toByteArray()));
+                    bytes.reset();
+                }
+            } catch (RuntimeException x) {
+                // disconnected
+                LOGGER.log(Level.FINE, null, x);
+                tailer.subscribers.remove(this);
+            }
+        }
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(LiveConsole.class.getName());
+}
@@ -0,0 +1,261 @@
+package hudson.console;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.model.Run;
+import hudson.model.listeners.RunListener;
+import hudson.util.ClassLoaderSanityThreadFactory;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.util.SystemProperties;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Searches build logs for the lines containing some text, ignoring case and console notes.
+ *
+ * <p>
+ * Logs are read through {@link Run#getLogReader()} by a pool of {@link #THREADS} threads,
+ * several builds at a time, while matches are handed over in the order of the builds.
+ * When {@link #INDEX} is set, a {@link TrigramIndex} is built for each completed build,
+ * in the background as builds complete or while searching older ones,
+ * so that later searches skip the logs that cannot match.
+ *
+ * @see hudson.search.Search#doLogs
+ * @since TODO
+ */
+@Restricted(NoExternalUse.class)
+public final class LogSearch {
+    /**
+     * Whether to build and use a {@link TrigramIndex} for the logs of completed builds.
+     */
+    public static /* non-final for Groovy */ boolean INDEX = SystemProperties.getBoolean(LogSearch.class.getName() + ".index", false);
+
+    /**
+     * Number of logs read in parallel.
+     */
+    public static /* non-final for Groovy */ int THREADS = SystemProperties.getInteger(LogSearch.class.getName() + ".threads", Runtime.getRuntime().availableProcessors());
+
+    private static ExecutorService searchers;
+    private static ExecutorService indexer;
+
+    private LogSearch() {}
+
+    /**
+     * A line found by a search.
+     */
+    public static final class Match {
+        private final Run<?, ?> run;
+        private final long line;
+        private final String text;
+
+        Match(Run<?, ?> run, long line, String text) {
+            this.run = run;
+            this.line = line;
+            this.text = text;
+        }
+
+        public @NonNull Run<?, ?> getRun() {
+            return run;
+        }
+
+        /**
+         * Gets the 1-based number of the line.
+         */
+        public long getLine() {
+            return line;
+        }
+
+        /**
+         * Gets the text of the line, without console notes.
+         */
+        public @NonNull String getText() {
+            return text;
+        }
+    }
+
+    /**
+     * Receives the matches of a search.
+     */
+    @FunctionalInterface
+    public interface Callback {
+        void onMatch(@NonNull Match match) throws IOException;
+    }
+
+    /**
+     * Searches the logs of some builds.
+     *
+     * @param runs the builds to search, which the caller has checked may be read
+     * @param query the text to look for
+     * @param max the maximum number of matches
+     * @return the number of matches
+     */
+    public static int search(@NonNull Iterable<? extends Run<?, ?>> runs, @NonNull String query, int max, @NonNull Callback callback)
+            throws IOException, InterruptedException {
+        String folded = TrigramIndex.fold(query);
+        int[] trigrams = TrigramIndex.trigramsOf(folded);
+        ExecutorService executor = searchers();
+        int window = 2 * Math.max(THREADS, 1);
+        Deque<Future<List<Match>>> pending = new ArrayDeque<>();
+        Iterator<? extends Run<?, ?>> it = runs.iterator();
+        int found = 0;
+        try {
+            while (found < max) {
+                while (pending.size() < window && it.hasNext()) {
+                    Run<?, ?> run = it.next();
+                    pending.add(executor.submit(() -> scan(run, folded, trigrams, max)));
+                }
+                Future<List<Match>> next = pending.poll();
+                if (next == null) {
+                    break;
+                }
+                List<Match> matches;
+                try {
+                    matches = next.get();
+                } catch (ExecutionException x) {
+                    // one unreadable log does not spoil the search
+                    LOGGER.log(Level.FINE, "Failed to search a log", x.getCause());
+                    continue;
+                }
+                for (Match m : matches) {
+                    callback.onMatch(m);
+                    if (++found == max) {
+                        break;
+                    }
+                }
+            }
+        } finally {
+            for (Future<?> f : pending) {
+                f.cancel(true);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Builds the {@link TrigramIndex} of a completed build if needed.
+     */
+    public static void index(@NonNull Run<?, ?> run) throws IOException {
+        scan(run, null, null, 0);
+    }
+
+    /**
+     * Reads a log, collecting the matching lines and building its index if needed.
+     *
+     * @param folded the folded query, or null to only index
+     */
+    private static List<Match> scan(Run<?, ?> run, @CheckForNull String folded, @CheckForNull int[] trigrams, int max) throws IOException {
+        TrigramIndex.Builder builder = null;
+        long length = 0;
+        if (!run.isLogUpdated()) {
+            length = run.getLogText().length();
+            TrigramIndex index = TrigramIndex.load(indexFileOf(run), length);
+            if (index != null) {
+                if (folded == null || !index.mightContain(trigrams)) {
+                    return Collections.emptyList();
+                }
+            } else if (INDEX) {
+                builder = new TrigramIndex.Builder();
+            }
+        }
+        if (folded == null && builder == null) {
+            return Collections.emptyList();
+        }
+        List<Match> matches = new ArrayList<>();
+        try (BufferedReader r = new BufferedReader(run.getLogReader())) {
+            long n = 0;
+            String line;
+            while ((line = r.readLine()) != null) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedIOException();
+                }
+                n++;
+                String text = ConsoleNote.removeNotes(line);
+                String f = TrigramIndex.fold(text);
+                if (builder != null) {
+                    builder.addLine(f);
+                }
+                if (folded != null && matches.size() < max && f.contains(folded)) {
+                    matches.add(new Match(run, n, text));
+                } else if (builder == null && matches.size() >= max) {
+                    break;
+                }
+            }
+        }
+        if (builder != null) {
+            builder.setLength(length);
+            try {
+                builder.build().save(indexFileOf(run));
+            } catch (IOException x) {
+                LOGGER.log(Level.WARNING, "Failed to save the log index of " + run, x);
+            }
+        }
+        return matches;
+    }
+
+    static File indexFileOf(Run<?, ?> run) {
+        return new File(run.getRootDir(), "log.trigrams");
+    }
+
+    private static synchronized ExecutorService searchers() {
+        if (searchers == null) {
+            int threads = Math.max(THREADS, 1);
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<>(),
+                    new NamingThreadFactory(new ClassLoaderSanityThreadFactory(new DaemonThreadFactory()), "LogSearch"));
+            executor.allowCoreThreadTimeOut(true);
+            searchers = executor;
+        }
+        return searchers;
+    }
+
+    private static synchronized ExecutorService indexer() {
+        if (indexer == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<>(),
+                    new NamingThreadFactory(new ClassLoaderSanityThreadFactory(new DaemonThreadFactory()), "LogSearch indexer"));
+            executor.allowCoreThreadTimeOut(true);
+            indexer = executor;
+        }
+        return indexer;
+    }
+
+    /**
+     * Indexes the logs of builds as they complete.
+     */
+    @Extension
+    public static final class IndexerListener extends RunListener<Run<?, ?>> {
+        @Override
+        public void onFinalized(Run<?, ?> run) {
+            if (!INDEX) {
+                return;
+            }
+            indexer().submit(() -> {
+                try {
+                    index(run);
+                } catch (IOException x) {
+                    LOGGER.log(Level.FINE, "Failed to index the log of " + run, x);
+                }
+            });
+        }
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(LogSearch.class.getName());
+}
@@ -0,0 +1,270 @@
+package hudson.console;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Functions;
+import hudson.Util;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Reads the last lines of a build log without going through the whole file.
+ *
+ * <p>
+ * Plain logs are scanned backwards in blocks until enough line breaks have been seen,
+ * and only the lines that are returned are decoded.
+ * A {@link FramedLog} is scanned backwards one frame at a time. Other compressed {@code log.gz} files
+ * cannot be read backwards, so they are streamed once, keeping the last lines.
+ *
+ * <p>
+ * Lines are split on {@code \n} and carriage returns are dropped, so the charset must be ASCII-compatible,
+ * which is the case of the charsets used for build logs.
+ * If there are more lines than requested, the first returned line is replaced with a marker
+ * telling how much was left out. Console notes are kept; see {@link ConsoleNote#removeNotes(java.util.Collection)}.
+ *
+ * @see hudson.model.Run#getLog(int)
+ * @see AnnotatedLargeText#getLastLines(int)
+ * @since TODO
+ */
+public final class LogTail {
+    private static final int BLOCK_SIZE = 64 * 1024;
+
+    private LogTail() {}
+
+    /**
+     * Gets the last lines of a log file, which may be compressed if its name ends with {@code .gz}.
+     *
+     * @param maxLines the maximum number of lines to return, or a negative number to return all of them
+     */
+    public static @NonNull List<String> lastLines(@NonNull File file, @NonNull Charset charset, int maxLines) throws IOException {
+        if (maxLines == 0) {
+            return Collections.emptyList();
+        }
+        if (file.getName().endsWith(".gz")) {
+            FramedLog framed = FramedLog.of(file);
+            if (framed != null) {
+                return lastLines(framed, charset, maxLines);
+            }
+            try (InputStream in = new GZIPInputStream(Files.newInputStream(Util.fileToPath(file)), BLOCK_SIZE)) {
+                return lastLines(in, charset, maxLines);
+            }
+        }
+        try (FileChannel ch = FileChannel.open(Util.fileToPath(file), StandardOpenOption.READ)) {
+            long size = ch.size();
+            long start = maxLines > 0 ? findStart(ch, size, maxLines) : 0;
+            Collector c = new Collector(charset, maxLines, start);
+            ByteBuffer buf = ByteBuffer.allocate((int) Math.min(BLOCK_SIZE, Math.max(size - start, 1)));
+            for (long pos = start; pos < size; ) {
+                buf.clear();
+                buf.limit((int) Math.min(buf.capacity(), size - pos));
+                if (!readFully(ch, buf, pos)) {
+                    break; // truncated meanwhile
+                }
+                c.write(buf.array(), 0, buf.limit());
+                pos += buf.limit();
+            }
+            return c.getLines();
+        }
+    }
+
+    /**
+     * Gets the last lines of a stream, reading it to the end.
+     *
+     * @param maxLines the maximum number of lines to return, or a negative number to return all of them
+     */
+    public static @NonNull List<String> lastLines(@NonNull InputStream in, @NonNull Charset charset, int maxLines) throws IOException {
+        if (maxLines == 0) {
+            return Collections.emptyList();
+        }
+        Collector c = new Collector(charset, maxLines, 0);
+        byte[] buf = new byte[BLOCK_SIZE];
+        int n;
+        while ((n = in.read(buf)) >= 0) {
+            c.write(buf, 0, n);
+        }
+        return c.getLines();
+    }
+
+    private static List<String> lastLines(FramedLog log, Charset charset, int maxLines) throws IOException {
+        long start = maxLines > 0 ? findStart(log, maxLines) : 0;
+        Collector c = new Collector(charset, maxLines, start);
+        try (InputStream in = log.open(start)) {
+            IOUtils.copy(in, c);
+        }
+        return c.getLines();
+    }
+
+    /**
+     * Like {@link #findStart(FileChannel, long, int)}, decompressing one frame at a time from the end.
+     */
+    private static long findStart(FramedLog log, int maxLines) throws IOException {
+        long end = log.length() - 1;
+        int count = 0;
+        for (int frame = log.getFrameCount() - 1; frame >= 0; frame--) {
+            long from = log.getFrameStart(frame);
+            byte[] a = log.readFrame(frame);
+            for (int i = (int) Math.min(a.length, end - from) - 1; i >= 0; i--) {
+                if (a[i] == '\n' && ++count == maxLines) {
+                    return from + i + 1;
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Finds where the last {@code maxLines} lines start, ignoring a line break at the very end.
+     *
+     * @return 0 if there are not more lines than that
+     */
+    private static long findStart(FileChannel ch, long size, int maxLines) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(BLOCK_SIZE);
+        byte[] a = buf.array();
+        int count = 0;
+        for (long end = size - 1; end > 0; ) {
+            long from = Math.max(0, end - BLOCK_SIZE);
+            buf.clear();
+            buf.limit((int) (end - from));
+            if (!readFully(ch, buf, from)) {
+                return 0;
+            }
+            for (int i = buf.limit() - 1; i >= 0; i--) {
+                if (a[i] == '\n' && ++count == maxLines) {
+                    return from + i + 1;
+                }
+            }
+            end = from;
+        }
+        return 0;
+    }
+
+    private static boolean readFully(FileChannel ch, ByteBuffer buf, long pos) throws IOException {
+        while (buf.hasRemaining()) {
+            if (ch.read(buf, pos + buf.position()) < 0) {
+                return false;
+            }
+        }
+        buf.flip();
+        return true;
+    }
+
+    /**
+     * Splits what is written to it into lines, keeping the last ones.
+     */
+    static final class Collector extends OutputStream {
+        private final Charset charset;
+        private final int maxLines;
+        /**
+         * Ring of the lines kept so far, with the offset where each one starts.
+         */
+        private byte[][] lines;
+        private long[] starts;
+        private int head;
+        private int count;
+        private boolean dropped;
+        private final boolean skipped;
+        private long pos;
+        private long lineStart;
+        private byte[] line = new byte[256];
+        private int lineLength;
+        private int last = -1;
+
+        /**
+         * @param base the offset of the first byte written to this stream; more than 0 if earlier lines were skipped
+         */
+        Collector(Charset charset, int maxLines, long base) {
+            this.charset = charset;
+            this.maxLines = maxLines;
+            this.skipped = base > 0;
+            this.pos = this.lineStart = base;
+            int capacity = maxLines >= 0 ? Math.min(maxLines, 128) : 128;
+            this.lines = new byte[Math.max(capacity, 1)][];
+            this.starts = new long[lines.length];
+        }
+
+        @Override
+        public void write(int b) {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(@NonNull byte[] b, int off, int len) {
+            int end = off + len;
+            for (int i = off; i < end; i++) {
+                byte c = b[i];
+                if (c == '\n') {
+                    endLine(pos + (i - off) + 1);
+                } else if (c != '\r') {
+                    if (lineLength == line.length) {
+                        line = Arrays.copyOf(line, lineLength * 2);
+                    }
+                    line[lineLength++] = c;
+                }
+            }
+            if (len > 0) {
+                last = b[end - 1];
+                pos += len;
+            }
+        }
+
+        private void endLine(long nextStart) {
+            if (maxLines >= 0 && count == maxLines) {
+                head = (head + 1) % lines.length;
+                count--;
+                dropped = true;
+            } else if (count == lines.length) {
+                grow();
+            }
+            int i = (head + count) % lines.length;
+            lines[i] = Arrays.copyOf(line, lineLength);
+            starts[i] = lineStart;
+            count++;
+            lineLength = 0;
+            lineStart = nextStart;
+        }
+
+        private void grow() {
+            int capacity = maxLines >= 0 ? (int) Math.min(maxLines, 2L * lines.length) : 2 * lines.length;
+            byte[][] newLines = new byte[capacity][];
+            long[] newStarts = new long[capacity];
+            for (int i = 0; i < count; i++) {
+                newLines[i] = lines[(head + i) % lines.length];
+                newStarts[i] = starts[(head + i) % lines.length];
+            }
+            lines = newLines;
+            starts = newStarts;
+            head = 0;
+        }
+
+        /**
+         * Gets the lines written so far, the last one being complete.
+         */
+        List<String> getLines() {
+            if (last != '\n') {
+                // last line without a line break, or no content at all
+                endLine(pos);
+            }
+            List<String> result = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                result.add(new String(lines[(head + i) % lines.length], charset));
+            }
+            if ((dropped || skipped) && count > 0) {
+                // the first line stands for everything before, up to the line break preceding it
+                result.set(0, "[...truncated " + Functions.humanReadableByteSize(starts[head] - 2) + "...]");
+            }
+            return result;
+        }
+    }
+}
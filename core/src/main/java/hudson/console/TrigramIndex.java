@@ -0,0 +1,272 @@
+package hudson.console;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Util;
+import hudson.util.AtomicFileWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Set of the trigrams found in the lines of a log, kept next to it as {@code log.trigrams},
+ * so that {@link LogSearch} can skip logs which cannot contain what is searched.
+ *
+ * <p>
+ * Trigrams are taken within lines, after removing console notes and folding case with {@link #fold},
+ * and stored as sorted 32-bit hashes. A hash collision can only make a log be searched for nothing.
+ * Logs with too many distinct trigrams get an index matching everything.
+ *
+ * <p>
+ * The file starts with a magic number, the length of the log it was built from and the number of hashes,
+ * followed by the differences between consecutive hashes as variable-length integers.
+ *
+ * @since TODO
+ */
+@Restricted(NoExternalUse.class)
+public final class TrigramIndex {
+    private static final int MAGIC = 0x5452474d; // TRGM
+    private static final int MAX_TRIGRAMS = 1 << 20;
+
+    /**
+     * Sorted distinct hashes, or null to match everything.
+     */
+    private final @CheckForNull int[] hashes;
+    private final long length;
+
+    private TrigramIndex(int[] hashes, long length) {
+        this.hashes = hashes;
+        this.length = length;
+    }
+
+    /**
+     * Gets the length of the log the index was built from.
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Folds case one character at a time, so that a folded substring is always a substring of the folded text.
+     */
+    public static @NonNull String fold(@NonNull String s) {
+        char[] a = s.toCharArray();
+        for (int i = 0; i < a.length; i++) {
+            a[i] = Character.toLowerCase(a[i]);
+        }
+        return new String(a);
+    }
+
+    /**
+     * Gets the sorted distinct trigram hashes of some folded text.
+     */
+    public static @NonNull int[] trigramsOf(@NonNull String folded) {
+        Builder b = new Builder();
+        b.addLine(folded);
+        return b.hashes();
+    }
+
+    /**
+     * Whether the log may contain all the given trigrams.
+     */
+    public boolean mightContain(@NonNull int[] trigrams) {
+        if (hashes == null) {
+            return true;
+        }
+        for (int h : trigrams) {
+            if (Arrays.binarySearch(hashes, h) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(char a, char b, char c) {
+        int h = a;
+        h = h * 0x01000193 ^ b;
+        h = h * 0x01000193 ^ c;
+        return h * 0x9E3779B1;
+    }
+
+    /**
+     * Loads an index.
+     *
+     * @param length the current length of the log
+     * @return null if the index is missing, invalid, or was built from another length of the log
+     */
+    public static @CheckForNull TrigramIndex load(@NonNull File file, long length) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            ByteBuffer b = ByteBuffer.wrap(Files.readAllBytes(Util.fileToPath(file)));
+            if (b.getInt() != MAGIC || b.getLong() != length) {
+                return null;
+            }
+            int count = b.getInt();
+            if (count < 0) {
+                return new TrigramIndex(null, length);
+            }
+            if (count > MAX_TRIGRAMS) {
+                return null;
+            }
+            int[] hashes = new int[count];
+            long prev = Integer.MIN_VALUE;
+            for (int i = 0; i < count; i++) {
+                long h = prev + readVarLong(b);
+                if (h > Integer.MAX_VALUE || i > 0 && h <= prev) {
+                    return null;
+                }
+                hashes[i] = (int) h;
+                prev = h;
+            }
+            return new TrigramIndex(hashes, length);
+        } catch (IOException | BufferUnderflowException x) {
+            LOGGER.log(Level.FINE, "Cannot read " + file, x);
+            return null;
+        }
+    }
+
+    /**
+     * Saves the index, replacing any previous one.
+     */
+    public void save(@NonNull File file) throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(16 + (hashes == null ? 0 : 5 * hashes.length));
+        b.putInt(MAGIC).putLong(length);
+        if (hashes == null) {
+            b.putInt(-1);
+        } else {
+            b.putInt(hashes.length);
+            long prev = Integer.MIN_VALUE;
+            for (int h : hashes) {
+                writeVarLong(b, h - prev);
+                prev = h;
+            }
+        }
+        b.flip();
+        AtomicFileWriter w = new AtomicFileWriter(file.toPath(), StandardCharsets.UTF_8);
+        try {
+            w.write(b);
+            w.commit();
+        } finally {
+            w.abort();
+        }
+    }
+
+    private static void writeVarLong(ByteBuffer b, long v) {
+        while ((v & ~0x7FL) != 0) {
+            b.put((byte) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        b.put((byte) v);
+    }
+
+    private static long readVarLong(ByteBuffer b) throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte x = b.get();
+            v |= (long) (x & 0x7F) << shift;
+            if (x >= 0) {
+                return v;
+            }
+        }
+        throw new IOException("Corrupt index");
+    }
+
+    /**
+     * Collects the trigrams of the lines of a log, as they are read.
+     */
+    public static final class Builder {
+        private int[] table = new int[1024];
+        private int size;
+        private boolean hasZero;
+        private boolean overflow;
+        private long length;
+
+        /**
+         * Adds a line, without its line break and console notes, folded with {@link #fold}.
+         */
+        public void addLine(@NonNull String folded) {
+            if (overflow) {
+                return;
+            }
+            for (int i = 0; i + 2 < folded.length(); i++) {
+                add(hash(folded.charAt(i), folded.charAt(i + 1), folded.charAt(i + 2)));
+            }
+        }
+
+        /**
+         * Records how much of the log was read.
+         */
+        public void setLength(long length) {
+            this.length = length;
+        }
+
+        private void add(int h) {
+            if (h == 0) {
+                hasZero = true;
+                return;
+            }
+            int mask = table.length - 1;
+            for (int i = h & mask; ; i = (i + 1) & mask) {
+                if (table[i] == h) {
+                    return;
+                }
+                if (table[i] == 0) {
+                    table[i] = h;
+                    if (++size > MAX_TRIGRAMS) {
+                        overflow = true;
+                        table = null;
+                    } else if (size * 2 > table.length) {
+                        rehash();
+                    }
+                    return;
+                }
+            }
+        }
+
+        private void rehash() {
+            int[] old = table;
+            table = new int[old.length * 2];
+            int mask = table.length - 1;
+            for (int h : old) {
+                if (h != 0) {
+                    int i = h & mask;
+                    while (table[i] != 0) {
+                        i = (i + 1) & mask;
+                    }
+                    table[i] = h;
+                }
+            }
+        }
+
+        int[] hashes() {
+            int[] r = new int[size + (hasZero ? 1 : 0)];
+            int n = 0;
+            for (int h : table) {
+                if (h != 0) {
+                    r[n++] = h;
+                }
+            }
+            if (hasZero) {
+                r[n] = 0;
+            }
+            Arrays.sort(r);
+            return r;
+        }
+
+        public @NonNull TrigramIndex build() {
+            return new TrigramIndex(overflow ? null : hashes(), length);
+        }
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(TrigramIndex.class.getName());
+}
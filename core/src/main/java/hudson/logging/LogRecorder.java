@@ -33,6 +33,7 @@ import hudson.XmlFile;
 import hudson.model.*;
 import hudson.util.HttpResponses;
 import jenkins.util.MemoryReductionUtil;
+import jenkins.util.SystemProperties;
 import jenkins.model.Jenkins;
 import hudson.model.listeners.SaveableListener;
 import hudson.remoting.Channel;
@@ -53,6 +54,7 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.text.Collator;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.LogManager;
 import java.util.logging.LogRecord;
@@ -75,6 +77,35 @@ import org.kohsuke.stapler.verb.POST;
  * @see LogRecorderManager
  */
 public class LogRecorder extends AbstractModelObject implements Saveable {
+    /**
+     * Whether the records of each recorder are also written to {@code $JENKINS_HOME/log/<name>.log}, rotated,
+     * so that recorders can keep more history than their ring buffer at a bounded cost.
+     * @since TODO
+     */
+    @Restricted(NoExternalUse.class)
+    public static /* non-final for Groovy */ boolean SPILL = SystemProperties.getBoolean(LogRecorder.class.getName() + ".spill", false);
+
+    /**
+     * Size in bytes after which the file of a recorder is rotated.
+     * @since TODO
+     */
+    @Restricted(NoExternalUse.class)
+    public static /* non-final for Groovy */ long SPILL_SIZE = SystemProperties.getLong(LogRecorder.class.getName() + ".spillSize", 10L * 1024 * 1024);
+
+    /**
+     * Number of rotated files kept per recorder.
+     * @since TODO
+     */
+    @Restricted(NoExternalUse.class)
+    public static /* non-final for Groovy */ int SPILL_FILES = SystemProperties.getInteger(LogRecorder.class.getName() + ".spillFiles", 5);
+
+    /**
+     * Number of records waiting to be written after which more records are dropped from the files.
+     * @since TODO
+     */
+    @Restricted(NoExternalUse.class)
+    public static /* non-final for Groovy */ int SPILL_QUEUE_SIZE = SystemProperties.getInteger(LogRecorder.class.getName() + ".spillQueueSize", 10000);
+
     private volatile String name;
 
     public final CopyOnWriteList<Target> targets = new CopyOnWriteList<>();
@@ -161,6 +192,7 @@ public class LogRecorder extends AbstractModelObject implements Saveable {
                 if (match) {
                     // most specific logger matches, so publish
                     super.publish(record);
+                    spill(record);
                 }
                 // most specific logger does not match, so don't publish
                 // allows reducing log level for more specific loggers
@@ -169,6 +201,33 @@ public class LogRecorder extends AbstractModelObject implements Saveable {
         }
     };
 
+    private final transient AtomicReference<LogSpill> spill = new AtomicReference<>();
+    private transient volatile boolean deleted;
+
+    private void spill(LogRecord record) {
+        if (!SPILL) {
+            return;
+        }
+        LogSpill s = spill.get();
+        if (s == null) {
+            if (deleted || Jenkins.getInstanceOrNull() == null) {
+                return;
+            }
+            s = new LogSpill(getSpillFile());
+            if (!spill.compareAndSet(null, s)) {
+                s = spill.get();
+                if (s == null) {
+                    return;
+                }
+            }
+        }
+        s.offer(record);
+    }
+
+    private File getSpillFile() {
+        return new File(LogRecorderManager.configDir(), name + ".log");
+    }
+
     /**
      * Logger that this recorder monitors, and its log level.
      * Just a pair of (logger name,level) with convenience methods.
@@ -345,6 +404,11 @@ public class LogRecorder extends AbstractModelObject implements Saveable {
             getParent().logRecorders.remove(name);
             this.name = newName;
             getParent().logRecorders.put(name,this);
+            // records now go to a file with the new name
+            LogSpill s = spill.getAndSet(null);
+            if (s != null) {
+                s.close();
+            }
             redirect = "../" + Util.rawEncode(newName) + '/';
         }
 
@@ -393,6 +457,9 @@ public class LogRecorder extends AbstractModelObject implements Saveable {
 
         getConfigFile().delete();
         getParent().logRecorders.remove(name);
+        deleted = true;
+        LogSpill s = spill.getAndSet(null);
+        (s != null ? s : new LogSpill(getSpillFile())).deleteAll();
         // Disable logging for all our targets,
         // then reenable all other loggers in case any also log the same targets
         for (Target t : targets)
@@ -0,0 +1,154 @@
+package hudson.logging;
+
+import hudson.Functions;
+import hudson.util.ClassLoaderSanityThreadFactory;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import hudson.util.io.RewindableRotatingFileOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * Copies the records of a {@link LogRecorder} to rotated files, so that more history is kept
+ * than fits in its ring buffer.
+ *
+ * <p>
+ * Records are queued without locking and written by a single background thread shared by all recorders,
+ * starting a new file at each start of Jenkins and whenever {@link LogRecorder#SPILL_SIZE} is reached.
+ * Records arriving while {@link LogRecorder#SPILL_QUEUE_SIZE} of them are already waiting are dropped,
+ * so that a burst of logging costs bounded memory and never waits for the disk.
+ */
+final class LogSpill {
+    private final RewindableRotatingFileOutputStream out;
+    private final Queue<LogRecord> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger dropped = new AtomicInteger();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    /**
+     * Bytes written to the current file. Only used by the writer thread, as is {@link #failed}.
+     */
+    private long size;
+    private boolean failed;
+    private volatile boolean closed;
+
+    LogSpill(File file) {
+        out = new RewindableRotatingFileOutputStream(file, LogRecorder.SPILL_FILES);
+    }
+
+    void offer(LogRecord record) {
+        if (closed) {
+            return;
+        }
+        if (queued.incrementAndGet() > LogRecorder.SPILL_QUEUE_SIZE) {
+            queued.decrementAndGet();
+            dropped.incrementAndGet();
+            return;
+        }
+        queue.add(record);
+        if (draining.compareAndSet(false, true)) {
+            writer().execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        do {
+            try {
+                if (!closed) {
+                    writeQueued();
+                    out.flush();
+                }
+            } catch (IOException | RuntimeException x) {
+                failed(x);
+            } finally {
+                draining.set(false);
+            }
+            // something may have been queued after the last poll but before draining was reset
+        } while (!queue.isEmpty() && draining.compareAndSet(false, true));
+    }
+
+    private void writeQueued() throws IOException {
+        LogRecord record;
+        while ((record = queue.poll()) != null) {
+            queued.decrementAndGet();
+            write(Functions.printLogRecord(record));
+        }
+        int d = dropped.getAndSet(0);
+        if (d > 0) {
+            write(d + " log records were dropped" + System.lineSeparator());
+        }
+    }
+
+    private void failed(Exception x) {
+        if (!failed) {
+            // only once, as this may be recorded here again
+            failed = true;
+            LOGGER.log(Level.WARNING, "Failed to write log records", x);
+        }
+    }
+
+    private void write(String text) throws IOException {
+        if (size == 0) {
+            // keep the records of the previous session or file
+            out.rewind();
+        }
+        byte[] b = text.getBytes(StandardCharsets.UTF_8);
+        out.write(b);
+        size += b.length;
+        if (size >= LogRecorder.SPILL_SIZE) {
+            size = 0;
+        }
+    }
+
+    /**
+     * Stops copying records, closing the file once the pending ones are written.
+     */
+    void close() {
+        closed = true;
+        // after any drain, as there is a single writer thread
+        writer().execute(() -> {
+            try {
+                writeQueued();
+                out.close();
+            } catch (IOException | RuntimeException x) {
+                failed(x);
+            }
+        });
+    }
+
+    /**
+     * Deletes the file and all the rotated ones.
+     */
+    void deleteAll() {
+        close();
+        writer().execute(out::deleteAll);
+    }
+
+    private static ExecutorService writer() {
+        return Writer.INSTANCE;
+    }
+
+    private static final class Writer {
+        static final ExecutorService INSTANCE;
+
+        static {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<>(),
+                    new NamingThreadFactory(new ClassLoaderSanityThreadFactory(new DaemonThreadFactory()), "LogRecorder spill"));
+            executor.allowCoreThreadTimeOut(true);
+            INSTANCE = executor;
+        }
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(LogSpill.class.getName());
+}
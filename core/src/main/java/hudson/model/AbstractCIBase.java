@@ -28,6 +28,7 @@ package hudson.model;
 
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import hudson.model.labels.CompiledLabelExpression;
 import hudson.security.AccessControlled;
 import hudson.slaves.ComputerListener;
 import hudson.slaves.RetentionStrategy;
@@ -76,6 +77,22 @@ public abstract class AbstractCIBase extends Node implements ItemGroup<TopLevelI
         l.reset();
     }
 
+    /**
+     * Updates the cached nodes of the given label for the given added, removed, replaced or relabeled nodes.
+     * @since TODO
+     */
+    protected void resetLabel(Label l, Collection<? extends Node> changed) {
+        l.reset(changed);
+    }
+
+    /**
+     * Resets the given label and computes its nodes from a snapshot of the atoms of every node.
+     * @since TODO
+     */
+    protected void resetLabel(Label l, List<? extends Node> nodes, CompiledLabelExpression.Dictionary d, List<BitSet> atoms) {
+        l.reset(nodes, d, atoms);
+    }
+
     protected void setViewOwner(View v) {
         v.owner = this;
     }
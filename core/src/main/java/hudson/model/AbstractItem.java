@@ -55,6 +55,7 @@ import jenkins.model.Jenkins;
 import jenkins.model.queue.ItemDeletion;
 import jenkins.security.NotReallyRoleSensitiveCallable;
 import jenkins.util.xml.XMLUtils;
+import jenkins.util.io.WriteBehind;
 
 import org.apache.tools.ant.taskdefs.Copy;
 import org.apache.tools.ant.types.FileSet;
@@ -395,6 +396,7 @@ public abstract class AbstractItem extends Actionable implements Item, HttpDelet
                     // this may fail on Windows due to some other processes
                     // accessing a file.
                     // so retry few times before we fall back to copy.
+                    WriteBehind.flush(oldRoot);
                     for (int retry = 0; retry < 5; retry++) {
                         if (oldRoot.renameTo(newRoot)) {
                             renamed = true;
@@ -607,7 +609,7 @@ public abstract class AbstractItem extends Actionable implements Item, HttpDelet
      */
     public synchronized void save() throws IOException {
         if(BulkChange.contains(this))   return;
-        getConfigFile().write(this);
+        getConfigFile().writeBehind(this);
         SaveableListener.fireOnChange(this, getConfigFile());
     }
 
@@ -907,7 +907,8 @@ public /*transient*/ abstract class Computer extends Actionable implements Acces
     }
 
     private void addNewExecutorIfNecessary() {
-        if (Jenkins.getInstanceOrNull() == null) {
+        Jenkins j = Jenkins.getInstanceOrNull();
+        if (j == null) {
             return;
         }
         Set<Integer> availableNumbers  = new HashSet<>();
@@ -928,6 +929,10 @@ public /*transient*/ abstract class Computer extends Actionable implements Acces
             }
         }
 
+        Queue queue = j.getQueue();
+        if (queue != null) {
+            queue.onExecutorsChanged(this);
+        }
     }
 
     /**
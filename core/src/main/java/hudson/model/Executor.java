@@ -825,6 +825,7 @@ public class Executor extends Thread implements ModelObject {
         } finally {
             lock.writeLock().unlock();
         }
+        queue.onExecutorsChanged(owner);
     }
 
 
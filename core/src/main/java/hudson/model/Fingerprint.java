@@ -46,10 +46,13 @@ import hudson.util.XStream2;
 
 import jenkins.fingerprints.FileFingerprintStorage;
 import jenkins.fingerprints.FingerprintStorage;
+import jenkins.fingerprints.LivenessCache;
 import jenkins.model.FingerprintFacet;
 import jenkins.model.Jenkins;
 import jenkins.model.TransientFingerprintFacetFactory;
 import org.apache.commons.lang.StringUtils;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
 import org.kohsuke.stapler.export.Exported;
 import org.kohsuke.stapler.export.ExportedBean;
 
@@ -57,6 +60,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.AbstractCollection;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -65,6 +69,7 @@ import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.NoSuchElementException;
 import java.util.TreeMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -171,7 +176,7 @@ public class Fingerprint implements ModelObject, Saveable {
         }
 
         private boolean isAlive() {
-            return getRun()!=null;
+            return LivenessCache.isAlive(this);
         }
 
         /**
@@ -338,35 +343,65 @@ public class Fingerprint implements ModelObject, Saveable {
 
     /**
      * Set of {@link Range}s. Mutable.
+     * Modifications are synchronized, while reads go without locking through an immutable snapshot.
      */
     @ExportedBean(defaultVisibility=3)
     public static final class RangeSet {
-        // sorted
-        private final List<Range> ranges;
+        /**
+         * Start and end of each range, one after the other, sorted.
+         * Never modified but replaced, so that it can be read without locking.
+         */
+        private volatile int[] ranges;
+
+        /**
+         * False while {@link #ranges} holds ranges as {@linkplain #fromString parsed},
+         * which may be unsorted, overlapping or adjacent.
+         * Set after {@link #ranges}, so that a reader seeing true also sees sorted ranges.
+         */
+        private volatile boolean normalized;
+
+        private static final int[] EMPTY = new int[0];
 
         public RangeSet() {
-            this(new ArrayList<>());
+            this(EMPTY);
         }
 
-        private RangeSet(List<Range> data) {
-            this.ranges = data;
+        private RangeSet(int[] ranges) {
+            this.ranges = ranges;
+            this.normalized = isNormalized(ranges);
         }
 
         private RangeSet(Range initial) {
-            this();
-            ranges.add(initial);
+            this(new int[] {initial.start, initial.end});
         }
 
         /**
          * List all numbers in this range set, in the ascending order.
          */
         public Iterable<Integer> listNumbers() {
-            final List<Range> ranges = getRanges();
+            final int[] r = ranges;
             return new Iterable<Integer>() {
                 public Iterator<Integer> iterator() {
-                    return new Iterators.FlattenIterator<Integer,Range>(ranges) {
-                        protected Iterator<Integer> expand(Range range) {
-                            return Iterators.sequence(range.start,range.end).iterator();
+                    return new Iterator<Integer>() {
+                        int i = 0;
+                        int next = r.length > 0 ? r[0] : 0;
+
+                        public boolean hasNext() {
+                            return i < r.length;
+                        }
+
+                        public Integer next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            int n = next++;
+                            if (next == r[i + 1]) {
+                                i += 2;
+                                if (i < r.length) {
+                                    next = r[i];
+                                }
+                            }
+                            return n;
                         }
                     };
                 }
@@ -396,12 +431,29 @@ public class Fingerprint implements ModelObject, Saveable {
          * List all numbers in this range set in the descending order.
          */
         public Iterable<Integer> listNumbersReverse() {
-            final List<Range> ranges = getRanges();
+            final int[] r = ranges;
             return new Iterable<Integer>() {
                 public Iterator<Integer> iterator() {
-                    return new Iterators.FlattenIterator<Integer,Range>(Iterators.reverse(ranges)) {
-                        protected Iterator<Integer> expand(Range range) {
-                            return Iterators.reverseSequence(range.start,range.end).iterator();
+                    return new Iterator<Integer>() {
+                        int i = r.length - 2;
+                        int next = i >= 0 ? r[i + 1] - 1 : 0;
+
+                        public boolean hasNext() {
+                            return i >= 0;
+                        }
+
+                        public Integer next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            int n = next--;
+                            if (n == r[i]) {
+                                i -= 2;
+                                if (i >= 0) {
+                                    next = r[i + 1] - 1;
+                                }
+                            }
+                            return n;
                         }
                     };
                 }
@@ -412,8 +464,13 @@ public class Fingerprint implements ModelObject, Saveable {
          * Gets all the ranges.
          */
         @Exported
-        public synchronized List<Range> getRanges() {
-            return new ArrayList<>(ranges);
+        public List<Range> getRanges() {
+            int[] r = ranges;
+            List<Range> list = new ArrayList<>(r.length / 2);
+            for (int i = 0; i < r.length; i += 2) {
+                list.add(new Range(r[i], r[i + 1]));
+            }
+            return list;
         }
 
         /**
@@ -421,88 +478,72 @@ public class Fingerprint implements ModelObject, Saveable {
          * If the set already includes this number, this will be a no-op.
          */
         public synchronized void add(int n) {
-            for( int i=0; i<ranges.size(); i++ ) {
-                Range r = ranges.get(i);
-                if(r.includes(n))   return; // already included
-                if(r.end==n) {
-                    ranges.set(i,r.expandRight());
-                    checkCollapse(i);
-                    return;
-                }
-                if(r.start==n+1) {
-                    ranges.set(i,r.expandLeft());
-                    checkCollapse(i-1);
-                    return;
-                }
-                if(r.isBiggerThan(n)) {
-                    // needs to insert a single-value Range
-                    ranges.add(i,new Range(n,n+1));
-                    return;
-                }
+            int[] r = normalize();
+            int i = search(r, n);
+            if (i < r.length && r[i] <= n) {
+                return; // already included
             }
-
-            ranges.add(new Range(n,n+1));
-        }
-
-        public synchronized void addAll(int... n) {
-            for (int i : n)
-                add(i);
-        }
-
-
-        private void checkCollapse(int i) {
-            if(i<0 || i==ranges.size()-1)     return;
-            Range lhs = ranges.get(i);
-            Range rhs = ranges.get(i+1);
-            if(lhs.isAdjacentTo(rhs)) {
+            boolean left = i > 0 && r[i - 1] == n;
+            boolean right = i < r.length && r[i] == n + 1;
+            int[] v;
+            if (left && right) {
                 // collapsed
-                Range r = new Range(lhs.start,rhs.end);
-                ranges.set(i,r);
-                ranges.remove(i+1);
+                v = new int[r.length - 2];
+                System.arraycopy(r, 0, v, 0, i - 1);
+                System.arraycopy(r, i + 1, v, i - 1, r.length - i - 1);
+            } else if (left || right) {
+                v = r.clone();
+                v[left ? i - 1 : i] = left ? n + 1 : n;
+            } else {
+                // needs to insert a single-value Range
+                v = new int[r.length + 2];
+                System.arraycopy(r, 0, v, 0, i);
+                v[i] = n;
+                v[i + 1] = n + 1;
+                System.arraycopy(r, i, v, i + 2, r.length - i);
             }
+            ranges = v;
         }
 
-        public synchronized boolean includes(int i) {
-            for (Range r : ranges) {
-                if(r.includes(i))
-                    return true;
+        public synchronized void addAll(int... n) {
+            if (n.length < 2) {
+                for (int i : n)
+                    add(i);
+                return;
             }
-            return false;
-        }
-
-        public synchronized void add(RangeSet that) {
-            int lhs=0,rhs=0;
-            while(lhs<this.ranges.size() && rhs<that.ranges.size()) {
-                Range lr = this.ranges.get(lhs);
-                Range rr = that.ranges.get(rhs);
-
-                // no overlap
-                if(lr.end<rr.start) {
-                    lhs++;
-                    continue;
-                }
-                if(rr.end<lr.start) {
-                    ranges.add(lhs,rr);
-                    lhs++;
-                    rhs++;
+            int[] sorted = n.clone();
+            Arrays.sort(sorted);
+            int[] v = new int[sorted.length * 2];
+            int size = 0;
+            for (int i : sorted) {
+                if (size > 0 && v[size - 1] >= i) {
+                    if (v[size - 1] == i) {
+                        v[size - 1] = i + 1;
+                    }
                     continue;
                 }
+                v[size++] = i;
+                v[size++] = i + 1;
+            }
+            ranges = union(normalize(), Arrays.copyOf(v, size));
+        }
 
-                // overlap. merge two
-                Range m = lr.combine(rr);
-                rhs++;
-
-                // since ranges[lhs] is expanded, it might overlap with others in this.ranges
-                while(lhs+1<this.ranges.size() && !m.isIndependent(this.ranges.get(lhs+1))) {
-                    m = m.combine(this.ranges.get(lhs+1));
-                    this.ranges.remove(lhs+1);
+        public boolean includes(int i) {
+            if (!normalized) {
+                int[] r = ranges;
+                for (int j = 0; j < r.length; j += 2) {
+                    if (r[j] <= i && i < r[j + 1])
+                        return true;
                 }
-
-                this.ranges.set(lhs,m);
+                return false;
             }
+            int[] r = ranges;
+            int j = search(r, i);
+            return j < r.length && r[j] <= i;
+        }
 
-            // if anything is left in that.ranges, add them all
-            this.ranges.addAll(that.ranges.subList(rhs,that.ranges.size()));
+        public synchronized void add(RangeSet that) {
+            ranges = union(normalize(), that.snapshot());
         }
 
         /**
@@ -511,43 +552,35 @@ public class Fingerprint implements ModelObject, Saveable {
          * @return true if this range set was modified as a result.
          */
         public synchronized boolean retainAll(RangeSet that) {
-            List<Range> intersection = new ArrayList<>();
+            int[] a = normalize();
+            int[] b = that.snapshot();
+            int[] v = new int[a.length + b.length];
+            int size = 0;
 
             int lhs=0,rhs=0;
-            while(lhs<this.ranges.size() && rhs<that.ranges.size()) {
-                Range lr = this.ranges.get(lhs);
-                Range rr = that.ranges.get(rhs);
-
-                if(lr.end<=rr.start) {// lr has no overlap with that.ranges
-                    lhs++;
+            while(lhs<a.length && rhs<b.length) {
+                if(a[lhs+1]<=b[rhs]) {// lr has no overlap with that.ranges
+                    lhs+=2;
                     continue;
                 }
-                if(rr.end<=lr.start) {// rr has no overlap with this.ranges
-                    rhs++;
+                if(b[rhs+1]<=a[lhs]) {// rr has no overlap with this.ranges
+                    rhs+=2;
                     continue;
                 }
 
                 // overlap. figure out the intersection
-                Range v = lr.intersect(rr);
-                intersection.add(v);
+                v[size++] = Math.max(a[lhs], b[rhs]);
+                v[size++] = Math.min(a[lhs+1], b[rhs+1]);
 
                 // move on to the next pair
-                if (lr.end<rr.end) {
-                    lhs++;
+                if (a[lhs+1]<b[rhs+1]) {
+                    lhs+=2;
                 } else {
-                    rhs++;
+                    rhs+=2;
                 }
             }
 
-            boolean same = this.ranges.equals(intersection);
-
-            if (!same) {
-                this.ranges.clear();
-                this.ranges.addAll(intersection);
-                return true;
-            } else {
-                return false;
-            }
+            return update(a, v, size);
         }
 
         /**
@@ -556,76 +589,195 @@ public class Fingerprint implements ModelObject, Saveable {
          * @return true if this range set was modified as a result.
          */
         public synchronized boolean removeAll(RangeSet that) {
-            boolean modified = false;
-            List<Range> sub = new ArrayList<>();
+            int[] a = normalize();
+            int[] b = that.snapshot();
+            int[] v = new int[a.length + b.length];
+            int size = 0;
 
             int lhs=0,rhs=0;
-            while(lhs<this.ranges.size() && rhs<that.ranges.size()) {
-                Range lr = this.ranges.get(lhs);
-                Range rr = that.ranges.get(rhs);
-
-                if(lr.end<=rr.start) {// lr has no overlap with that.ranges. lr stays
-                    sub.add(lr);
-                    lhs++;
+            // what remains of the range at lhs
+            int start = a.length > 0 ? a[0] : 0;
+            while(lhs<a.length && rhs<b.length) {
+                int end = a[lhs+1];
+                if(end<=b[rhs]) {// lr has no overlap with that.ranges. lr stays
+                    v[size++] = start;
+                    v[size++] = end;
+                    lhs+=2;
+                    if (lhs<a.length) start = a[lhs];
                     continue;
                 }
-                if(rr.end<=lr.start) {// rr has no overlap with this.ranges
-                    rhs++;
+                if(b[rhs+1]<=start) {// rr has no overlap with this.ranges
+                    rhs+=2;
                     continue;
                 }
 
                 // some overlap between lr and rr
-                assert !lr.isDisjoint(rr);
-                modified = true;
-
-                if (rr.contains(lr)) {
-                    // lr completely removed by rr
-                    lhs++;
-                    continue;
-                }
-
-                // we want to look at A and B below, if they are non-null.
                 // |------------| lr
                 //     |-----|    rr
                 //   A         B
-                //
-                // note that lr and rr could be something like or the other way around
-                // |------------| lr
-                //         |------------| rr
-                //     A             (no B)
-
-                if (lr.start<rr.start) {// if A is non-empty, that will stay
-                    Range a = new Range(lr.start, rr.start);
-                    sub.add(a);
+                if (start<b[rhs]) {// if A is non-empty, that will stay
+                    v[size++] = start;
+                    v[size++] = b[rhs];
                 }
 
-                if (rr.end<lr.end) {// if B is non-empty
-                    // we still need to check that with that.ranges, so keep it in the place of lr.
-                    // how much of them will eventually stay is up to the remainder of that.ranges
-                    this.ranges.set(lhs,new Range(rr.end,lr.end));
-                    rhs++;
+                if (b[rhs+1]<end) {// if B is non-empty, it is up to the remainder of that.ranges
+                    start = b[rhs+1];
+                    rhs+=2;
                 } else {
                     // if B is empty, we are done considering lr
-                    lhs++;
+                    lhs+=2;
+                    if (lhs<a.length) start = a[lhs];
                 }
             }
 
-            if (!modified)  return false;   // no changes
-
             // whatever that remains in lhs will survive
-            sub.addAll(this.ranges.subList(lhs,this.ranges.size()));
+            if (lhs<a.length) {
+                v[size++] = start;
+                v[size++] = a[lhs+1];
+                lhs+=2;
+                System.arraycopy(a, lhs, v, size, a.length - lhs);
+                size += a.length - lhs;
+            }
+
+            return update(a, v, size);
+        }
+
+        /**
+         * Gets the ranges, sorted even if this set has not been modified since it was {@linkplain #fromString parsed}.
+         */
+        private int[] snapshot() {
+            return normalized ? ranges : sort(ranges);
+        }
 
-            this.ranges.clear();
-            this.ranges.addAll(sub);
+        /**
+         * Sorts the ranges if needed. Called when holding the lock.
+         */
+        private int[] normalize() {
+            int[] r = ranges;
+            if (!normalized) {
+                r = ranges = sort(r);
+                normalized = true;
+            }
+            return r;
+        }
+
+        /**
+         * Replaces the ranges by the first {@code size} values of {@code v}, unless they are the same.
+         */
+        private boolean update(int[] r, int[] v, int size) {
+            if (size == r.length) {
+                int i = 0;
+                while (i < size && r[i] == v[i]) {
+                    i++;
+                }
+                if (i == size) {
+                    return false;
+                }
+            }
+            ranges = Arrays.copyOf(v, size);
             return true;
         }
 
+        /**
+         * Finds the first range ending after {@code n}.
+         *
+         * @return the index of its start, or the length of {@code r} if there is none
+         */
+        private static int search(int[] r, int n) {
+            int lo = 0, hi = r.length / 2;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (r[2 * mid + 1] <= n) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return 2 * lo;
+        }
+
+        /**
+         * Merges two sorted sets of ranges, combining those which overlap or are adjacent.
+         */
+        private static int[] union(int[] a, int[] b) {
+            if (b.length == 0) {
+                return a;
+            }
+            if (a.length == 0) {
+                return b;
+            }
+            int[] v = new int[a.length + b.length];
+            int size = 0;
+            int lhs = 0, rhs = 0;
+            while (lhs < a.length || rhs < b.length) {
+                int start, end;
+                if (rhs == b.length || lhs < a.length && a[lhs] <= b[rhs]) {
+                    start = a[lhs];
+                    end = a[lhs + 1];
+                    lhs += 2;
+                } else {
+                    start = b[rhs];
+                    end = b[rhs + 1];
+                    rhs += 2;
+                }
+                if (size > 0 && v[size - 1] >= start) {
+                    v[size - 1] = Math.max(v[size - 1], end);
+                } else {
+                    v[size++] = start;
+                    v[size++] = end;
+                }
+            }
+            return size == v.length ? v : Arrays.copyOf(v, size);
+        }
+
+        /**
+         * Sorts ranges, combining those which overlap or are adjacent.
+         */
+        private static int[] sort(int[] r) {
+            int[][] pairs = new int[r.length / 2][];
+            for (int i = 0; i < pairs.length; i++) {
+                pairs[i] = new int[] {r[2 * i], r[2 * i + 1]};
+            }
+            Arrays.sort(pairs, Comparator.comparingInt(p -> p[0]));
+            int[] v = new int[r.length];
+            int size = 0;
+            for (int[] p : pairs) {
+                if (size > 0 && v[size - 1] >= p[0]) {
+                    v[size - 1] = Math.max(v[size - 1], p[1]);
+                } else {
+                    v[size++] = p[0];
+                    v[size++] = p[1];
+                }
+            }
+            return Arrays.copyOf(v, size);
+        }
+
+        private static boolean isNormalized(int[] r) {
+            for (int i = 2; i < r.length; i += 2) {
+                if (r[i - 1] >= r[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static int[] toArray(List<Range> ranges) {
+            int[] r = new int[ranges.size() * 2];
+            int i = 0;
+            for (Range range : ranges) {
+                r[i++] = range.start;
+                r[i++] = range.end;
+            }
+            return r;
+        }
+
         @Override
-        public synchronized String toString() {
+        public String toString() {
+            int[] r = ranges;
             StringBuilder buf = new StringBuilder();
-            for (Range r : ranges) {
+            for (int i = 0; i < r.length; i += 2) {
                 if(buf.length()>0)  buf.append(',');
-                buf.append(r);
+                buf.append('[').append(r[i]).append(',').append(r[i + 1]).append(')');
             }
             return buf.toString();
         }
@@ -635,17 +787,23 @@ public class Fingerprint implements ModelObject, Saveable {
             if (this == o) return true;
             if (o == null || getClass() != o.getClass()) return false;
 
-            return ranges.equals(((RangeSet) o).ranges);
+            return Arrays.equals(ranges, ((RangeSet) o).ranges);
 
         }
 
         @Override
         public int hashCode() {
-            return ranges.hashCode();
+            // as the List<Range> this used to be
+            int[] r = ranges;
+            int h = 1;
+            for (int i = 0; i < r.length; i += 2) {
+                h = 31 * h + 31 * r[i] + r[i + 1];
+            }
+            return h;
         }
 
-        public synchronized boolean isEmpty() {
-            return ranges.isEmpty();
+        public boolean isEmpty() {
+            return ranges.length == 0;
         }
 
         /**
@@ -653,8 +811,8 @@ public class Fingerprint implements ModelObject, Saveable {
          * <p>
          * If this range is empty, this method throws an exception.
          */
-        public synchronized int min() {
-            return ranges.get(0).start;
+        public int min() {
+            return ranges[0];
         }
 
         /**
@@ -662,8 +820,9 @@ public class Fingerprint implements ModelObject, Saveable {
          * <p>
          * If this range is empty, this method throws an exception.
          */
-        public synchronized int max() {
-            return ranges.get(ranges.size()-1).end;
+        public int max() {
+            int[] r = ranges;
+            return r[r.length - 1];
         }
 
         /**
@@ -673,10 +832,27 @@ public class Fingerprint implements ModelObject, Saveable {
          *
          * Note that {} is smaller than any n.
          */
-        public synchronized boolean isSmallerThan(int n) {
-            if(ranges.isEmpty())    return true;
+        public boolean isSmallerThan(int n) {
+            int[] r = ranges;
+            if(r.length == 0)    return true;
 
-            return ranges.get(ranges.size() - 1).isSmallerThan(n);
+            return r[r.length - 1] <= n;
+        }
+
+        /**
+         * Creates a {@link RangeSet} from ranges as returned by {@link #getRanges()}.
+         *
+         * @throws IllegalArgumentException if the ranges are empty, unsorted, overlapping or adjacent
+         */
+        @Restricted(NoExternalUse.class)
+        public static RangeSet fromRanges(List<Range> ranges) {
+            int[] r = toArray(ranges);
+            for (int i = 0; i < r.length; i += 2) {
+                if (r[i] >= r[i + 1] || i > 0 && r[i - 1] >= r[i]) {
+                    throw new IllegalArgumentException("Invalid ranges " + ranges);
+                }
+            }
+            return new RangeSet(r);
         }
 
         /**
@@ -684,6 +860,8 @@ public class Fingerprint implements ModelObject, Saveable {
          */
         public static RangeSet fromString(String list, boolean skipError) {
             RangeSet rs = new RangeSet();
+            int[] r = new int[8];
+            int size = 0;
 
             // Reject malformed ranges like "1---10", "1,,,,3" etc.
             if (list.contains("--") || list.contains(",,")) {
@@ -747,7 +925,9 @@ public class Fingerprint implements ModelObject, Saveable {
                                 // ignore inverse range like "10-5"
                                 continue;
                             }
-                            rs.ranges.add(new Range(left, right+1));
+                            if (size == r.length) r = Arrays.copyOf(r, size * 2);
+                            r[size++] = left;
+                            r[size++] = right+1;
                         } else {
                             if (!skipError) {
                                 throw new IllegalArgumentException(
@@ -758,7 +938,9 @@ public class Fingerprint implements ModelObject, Saveable {
                         }
                     } else {
                         int n = Integer.parseInt(s);
-                        rs.ranges.add(new Range(n,n+1));
+                        if (size == r.length) r = Arrays.copyOf(r, size * 2);
+                        r[size++] = n;
+                        r[size++] = n+1;
                     }
                 } catch (NumberFormatException e) {
                     if (!skipError)
@@ -767,7 +949,7 @@ public class Fingerprint implements ModelObject, Saveable {
                     // ignore malformed text
                 }
             }
-            return rs;
+            return size == 0 ? rs : new RangeSet(Arrays.copyOf(r, size));
         }
 
         /**
@@ -799,13 +981,14 @@ public class Fingerprint implements ModelObject, Saveable {
              * For e.g., if used in builds 1,2,3,5, it will be serialized to 1-3,5
              */
             public static String serialize(RangeSet src) {
-                StringBuilder buf = new StringBuilder(src.ranges.size()*10);
-                for (Range r : src.ranges) {
+                int[] r = src.ranges;
+                StringBuilder buf = new StringBuilder(r.length*5);
+                for (int i = 0; i < r.length; i += 2) {
                     if(buf.length()>0)  buf.append(',');
-                    if(r.isSingle())
-                        buf.append(r.start);
+                    if(r[i+1]-1==r[i])
+                        buf.append(r[i]);
                     else
-                        buf.append(r.start).append('-').append(r.end-1);
+                        buf.append(r[i]).append('-').append(r[i+1]-1);
                 }
                 return buf.toString();
             }
@@ -818,7 +1001,7 @@ public class Fingerprint implements ModelObject, Saveable {
                               <end>1479</end>
                             </range>
                      */
-                    return new RangeSet((List<Range>)(collectionConv.unmarshal(reader,context)));
+                    return new RangeSet(toArray((List<Range>)(collectionConv.unmarshal(reader,context))));
                 } else {
                     return RangeSet.fromString(reader.getValue(),true);
                 }
@@ -895,6 +1078,19 @@ public class Fingerprint implements ModelObject, Saveable {
         this.timestamp = new Date();
     }
 
+    /**
+     * Creates a fingerprint as read from a {@link FingerprintStorage}, without saving it.
+     */
+    @Restricted(NoExternalUse.class)
+    public Fingerprint(@CheckForNull BuildPtr original, @NonNull String fileName, @NonNull byte[] md5sum,
+                       @NonNull Date timestamp, @NonNull Hashtable<String,RangeSet> usages) {
+        this.original = original;
+        this.md5sum = md5sum;
+        this.fileName = fileName;
+        this.timestamp = timestamp;
+        this.usages = usages;
+    }
+
     /**
      * The first build in which this file showed up,
      * if the file looked like it's created there.
@@ -1068,15 +1264,10 @@ public class Fingerprint implements ModelObject, Saveable {
             return true;
 
         for (Entry<String,RangeSet> e : usages.entrySet()) {
-            Job j = Jenkins.get().getItemByFullName(e.getKey(),Job.class);
-            if(j==null)
+            int oldest = LivenessCache.buildsOf(e.getKey()).getFirstBuildNumber();
+            if(oldest<0)
                 continue;
 
-            Run firstBuild = j.getFirstBuild();
-            if(firstBuild==null)
-                continue;
-
-            int oldest = firstBuild.getNumber();
             if(!e.getValue().isSmallerThan(oldest))
                 return true;
         }
@@ -1095,15 +1286,8 @@ public class Fingerprint implements ModelObject, Saveable {
         boolean modified = false;
 
         for (Entry<String,RangeSet> e : new Hashtable<>(usages).entrySet()) {// copy because we mutate
-            Job j = Jenkins.get().getItemByFullName(e.getKey(),Job.class);
-            if(j==null) {// no such job any more. recycle the record
-                modified = true;
-                usages.remove(e.getKey());
-                continue;
-            }
-
-            Run firstBuild = j.getFirstBuild();
-            if(firstBuild==null) {// no builds. recycle the whole record
+            LivenessCache.Builds builds = LivenessCache.buildsOf(e.getKey());
+            if(builds.getFirstBuildNumber()<0) {// no such job any more, or no builds. recycle the record
                 modified = true;
                 usages.remove(e.getKey());
                 continue;
@@ -1114,19 +1298,15 @@ public class Fingerprint implements ModelObject, Saveable {
             // builds that are around without the keepLog flag on are normally clustered together (in terms of build #)
             // so our basic strategy is to discard everything up to the first ephemeral build, except those builds
             // that are marked as kept
-            RangeSet kept = new RangeSet();
-            Run r = firstBuild;
-            while (r!=null && r.isKeepLog()) {
-                kept.add(r.getNumber());
-                r = r.getNextBuild();
-            }
+            RangeSet kept = builds.getKept();
+            int r = builds.getFirstEphemeral();
 
-            if (r==null) {
+            if (r<0) {
                 // all the build records are permanently kept ones, so we'll just have to keep 'kept' out of whatever currently in 'cur'
                 modified |= cur.retainAll(kept);
             } else {
-                // otherwise we are ready to discard [0,r.number) except those marked as 'kept'
-                RangeSet discarding =  new RangeSet(new Range(-1,r.getNumber()));
+                // otherwise we are ready to discard [0,r) except those marked as 'kept'
+                RangeSet discarding =  new RangeSet(new Range(-1,r));
                 discarding.removeAll(kept);
                 modified |= cur.removeAll(discarding);
             }
@@ -88,10 +88,12 @@ import jenkins.model.JenkinsLocationConfiguration;
 import jenkins.model.ModelObjectWithChildren;
 import jenkins.model.ProjectNamingStrategy;
 import jenkins.model.RunIdMigrator;
+import jenkins.model.lazy.AbstractLazyLoadRunMap;
 import jenkins.model.lazy.LazyBuildMixIn;
 import jenkins.scm.RunWithSCM;
 import jenkins.security.HexStringConfidentialKey;
 import jenkins.triggers.SCMTriggerItem;
+import jenkins.util.io.WriteBehind;
 import net.sf.json.JSONException;
 import net.sf.json.JSONObject;
 import org.apache.commons.io.FileUtils;
@@ -651,6 +653,7 @@ public abstract class Job<JobT extends Job<JobT, RunT>, RunT extends Run<JobT, R
     @Override
     public void renameTo(String newName) throws IOException {
         File oldBuildDir = getBuildDir();
+        WriteBehind.flush(oldBuildDir);
         super.renameTo(newName);
         File newBuildDir = getBuildDir();
         if (oldBuildDir.isDirectory() && !newBuildDir.isDirectory()) {
@@ -666,6 +669,7 @@ public abstract class Job<JobT extends Job<JobT, RunT>, RunT extends Run<JobT, R
     @Override
     public void movedTo(DirectlyModifiableTopLevelItemGroup destination, AbstractItem newItem, File destDir) throws IOException {
         File oldBuildDir = getBuildDir();
+        WriteBehind.flush(oldBuildDir);
         super.movedTo(destination, newItem, destDir);
         File newBuildDir = getBuildDir();
         if (oldBuildDir.isDirectory()) {
@@ -725,8 +729,13 @@ public abstract class Job<JobT extends Job<JobT, RunT>, RunT extends Run<JobT, R
      */
     @Exported(name="allBuilds",visibility=-2)
     @WithBridgeMethods(List.class)
+    @SuppressWarnings("unchecked")
     public RunList<RunT> getBuilds() {
-        return RunList.fromRuns(_getRuns().values());
+        SortedMap<Integer, ? extends RunT> runs = _getRuns();
+        if (runs instanceof AbstractLazyLoadRunMap) {
+            return RunList.fromRunMap((AbstractLazyLoadRunMap<RunT>) runs);
+        }
+        return RunList.fromRuns(runs.values());
     }
 
     /**
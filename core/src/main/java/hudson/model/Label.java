@@ -27,6 +27,7 @@ import antlr.ANTLRException;
 import static hudson.Util.fixNull;
 
 import hudson.Util;
+import hudson.model.labels.CompiledLabelExpression;
 import hudson.model.labels.LabelAtom;
 import hudson.model.labels.LabelExpression;
 import hudson.model.labels.LabelExpression.And;
@@ -49,8 +50,10 @@ import hudson.util.QuotedStringTokenizer;
 import hudson.util.VariableResolver;
 import jenkins.model.Jenkins;
 import jenkins.model.ModelObjectWithChildren;
+import jenkins.util.SystemProperties;
 import org.kohsuke.accmod.Restricted;
 import org.kohsuke.accmod.restrictions.DoNotUse;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
 import org.kohsuke.stapler.export.Exported;
@@ -58,6 +61,8 @@ import org.kohsuke.stapler.export.ExportedBean;
 
 import java.io.Serializable;
 import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -65,6 +70,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
@@ -92,6 +98,8 @@ public abstract class Label extends Actionable implements Comparable<Label>, Mod
     private transient volatile Set<Node> nodes;
     private transient volatile Set<Cloud> clouds;
     private transient volatile int tiedJobsCount;
+    private transient volatile ExecutorCounts executorCounts;
+    private transient volatile CompiledLabelExpression compiled;
 
     @Exported
     @NonNull
@@ -182,6 +190,10 @@ public abstract class Label extends Actionable implements Comparable<Label>, Mod
      * {@link LabelAtom}s.
      */
     public final boolean matches(final Collection<LabelAtom> labels) {
+        if (COMPILED_MATCHING) {
+            CompiledLabelExpression.Dictionary d = CompiledLabelExpression.dictionary();
+            return compiled(d).matches(d.atomsOf(labels));
+        }
         return matches(new VariableResolver<Boolean>() {
             public Boolean resolve(String name) {
                 for (LabelAtom a : labels)
@@ -196,6 +208,14 @@ public abstract class Label extends Actionable implements Comparable<Label>, Mod
         return matches(n.getAssignedLabels());
     }
 
+    private CompiledLabelExpression compiled(CompiledLabelExpression.Dictionary d) {
+        CompiledLabelExpression c = compiled;
+        if (c == null || c.getDictionary() != d) {
+            compiled = c = d.compile(this);
+        }
+        return c;
+    }
+
     /**
      * Returns true if this label is a "self label",
      * which means the label is the name of a {@link Node}.
@@ -225,8 +245,20 @@ public abstract class Label extends Actionable implements Comparable<Label>, Mod
         Set<Node> nodes = this.nodes;
         if(nodes!=null) return nodes;
 
-        Set<Node> r = new HashSet<>();
         Jenkins h = Jenkins.get();
+        if (COMPILED_MATCHING) {
+            List<Node> all = new ArrayList<>();
+            all.add(h);
+            all.addAll(h.getNodes());
+            CompiledLabelExpression.Dictionary d = CompiledLabelExpression.dictionary();
+            List<BitSet> atoms = new ArrayList<>(all.size());
+            for (Node n : all) {
+                atoms.add(d.atomsOf(n.getAssignedLabels()));
+            }
+            return this.nodes = filter(all, d, atoms);
+        }
+
+        Set<Node> r = new HashSet<>();
         if(this.matches(h))
             r.add(h);
         for (Node n : h.getNodes()) {
@@ -236,6 +268,15 @@ public abstract class Label extends Actionable implements Comparable<Label>, Mod
         return this.nodes = Collections.unmodifiableSet(r);
     }
 
+    private Set<Node> filter(List<? extends Node> all, CompiledLabelExpression.Dictionary d, List<BitSet> atoms) {
+        Set<Node> r = new HashSet<>();
+        BitSet matching = compiled(d).filter(atoms);
+        for (int i = matching.nextSetBit(0); i >= 0; i = matching.nextSetBit(i + 1)) {
+            r.add(all.get(i));
+        }
+        return Collections.unmodifiableSet(r);
+    }
+
     @Restricted(DoNotUse.class) // Jelly
     public Set<Node> getSortedNodes() {
         Set<Node> r = new TreeSet<>(new NodeSorter());
@@ -299,13 +340,7 @@ public abstract class Label extends Actionable implements Comparable<Label>, Mod
      */
     @Exported
     public int getTotalExecutors() {
-        int r=0;
-        for (Node n : getNodes()) {
-            Computer c = n.toComputer();
-            if(c!=null && c.isOnline())
-                r += c.countExecutors();
-        }
-        return r;
+        return getExecutorCounts().total;
     }
 
     /**
@@ -313,13 +348,7 @@ public abstract class Label extends Actionable implements Comparable<Label>, Mod
      */
     @Exported
     public int getBusyExecutors() {
-        int r=0;
-        for (Node n : getNodes()) {
-            Computer c = n.toComputer();
-            if(c!=null && c.isOnline())
-                r += c.countBusy();
-        }
-        return r;
+        return getExecutorCounts().busy;
     }
 
     /**
@@ -327,13 +356,62 @@ public abstract class Label extends Actionable implements Comparable<Label>, Mod
      */
     @Exported
     public int getIdleExecutors() {
-        int r=0;
-        for (Node n : getNodes()) {
-            Computer c = n.toComputer();
-            if(c!=null && (c.isOnline() || c.isConnecting()) && c.isAcceptingTasks())
-                r += c.countIdle();
+        return getExecutorCounts().idle;
+    }
+
+    private ExecutorCounts getExecutorCounts() {
+        ExecutorCounts counts = this.executorCounts;
+        long epoch = EXECUTOR_STATE_EPOCH.get();
+        long now = System.currentTimeMillis();
+        if (counts == null || counts.epoch != epoch || now - counts.timestamp >= EXECUTOR_COUNTS_MAX_AGE) {
+            counts = this.executorCounts = new ExecutorCounts(getNodes(), epoch, now);
+        }
+        return counts;
+    }
+
+    /**
+     * Executor counts of the nodes of a label, computed in a single pass.
+     * Reused until some executor or computer changes state (see {@link #onExecutorStateChanged()}),
+     * or until it gets older than {@link #EXECUTOR_COUNTS_MAX_AGE}, since some of the state it depends on
+     * (such as {@link Computer#isAcceptingTasks()}) can change without notice.
+     */
+    private static final class ExecutorCounts {
+        private final long epoch;
+        private final long timestamp;
+        private final int total;
+        private final int busy;
+        private final int idle;
+
+        ExecutorCounts(Set<Node> nodes, long epoch, long timestamp) {
+            this.epoch = epoch;
+            this.timestamp = timestamp;
+            int total = 0, busy = 0, idle = 0;
+            for (Node n : nodes) {
+                Computer c = n.toComputer();
+                if (c == null) {
+                    continue;
+                }
+                boolean online = c.isOnline();
+                if (online) {
+                    total += c.countExecutors();
+                    busy += c.countBusy();
+                }
+                if ((online || c.isConnecting()) && c.isAcceptingTasks()) {
+                    idle += c.countIdle();
+                }
+            }
+            this.total = total;
+            this.busy = busy;
+            this.idle = idle;
         }
-        return r;
+    }
+
+    /**
+     * Invalidates the executor counts of all labels.
+     * Called when an executor is added, removed, or starts some work, and when a computer goes on-line or off-line.
+     */
+    /*package*/ static void onExecutorStateChanged() {
+        EXECUTOR_STATE_EPOCH.incrementAndGet();
     }
 
     /**
@@ -461,6 +539,53 @@ public abstract class Label extends Actionable implements Comparable<Label>, Mod
         nodes = null;
         clouds = null;
         tiedJobsCount = -1;
+        executorCounts = null;
+    }
+
+    /**
+     * Like {@link #reset()}, but computes {@link #getNodes()} right away from the atoms of every node,
+     * so that resetting all labels computes the atoms of each node only once.
+     *
+     * @param all every node, including {@link Jenkins} itself
+     * @param d the dictionary the atoms were computed with
+     * @param atoms {@link CompiledLabelExpression.Dictionary#atomsOf} the {@link Node#getAssignedLabels()} of each node
+     */
+    /*package*/ void reset(@NonNull List<? extends Node> all, @NonNull CompiledLabelExpression.Dictionary d, @NonNull List<BitSet> atoms) {
+        reset();
+        nodes = filter(all, d, atoms);
+    }
+
+    /**
+     * Updates the cached {@link #getNodes()} for the given nodes only, which may have been added, removed,
+     * replaced or relabeled, without re-evaluating this label against every other node.
+     */
+    /*package*/ void reset(@NonNull Collection<? extends Node> changed) {
+        executorCounts = null;
+        Set<Node> nodes = this.nodes;
+        if (nodes == null) {
+            return; // nothing cached yet
+        }
+        Jenkins j = Jenkins.get();
+        Set<Node> r = new HashSet<>(nodes);
+        // removals first: a replaced agent is equal to its replacement (see Slave#equals)
+        for (Node n : changed) {
+            if (!isLive(j, n)) {
+                r.remove(n);
+            }
+        }
+        for (Node n : changed) {
+            if (isLive(j, n)) {
+                r.remove(n); // do not keep a stale instance around
+                if (matches(n)) {
+                    r.add(n);
+                }
+            }
+        }
+        this.nodes = Collections.unmodifiableSet(r);
+    }
+
+    private static boolean isLive(Jenkins j, Node n) {
+        return n == j || j.getNode(n.getNodeName()) == n;
     }
 
     /**
@@ -678,4 +803,22 @@ public abstract class Label extends Actionable implements Comparable<Label>, Mod
             return null;
         }
     };
+
+    /**
+     * Incremented whenever an executor or a computer changes state, invalidating the cached executor counts.
+     */
+    private static final AtomicLong EXECUTOR_STATE_EPOCH = new AtomicLong();
+
+    /**
+     * How long, in milliseconds, the executor counts of a label may be reused while no executor or computer event
+     * has been seen. Set to 0 to always count.
+     */
+    @Restricted(NoExternalUse.class)
+    public static /* non-final for Groovy */ long EXECUTOR_COUNTS_MAX_AGE = SystemProperties.getLong(Label.class.getName() + ".executorCountsMaxAge", 1000L);
+
+    /**
+     * Whether to evaluate labels against nodes with {@link CompiledLabelExpression} rather than by walking the expression.
+     */
+    @Restricted(NoExternalUse.class)
+    public static /* non-final for Groovy */ boolean COMPILED_MATCHING = SystemProperties.getBoolean(Label.class.getName() + ".compiledMatching", true);
 }
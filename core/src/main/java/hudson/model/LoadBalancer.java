@@ -23,6 +23,8 @@
  */
 package hudson.model;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Maps;
 import hudson.Extension;
 import hudson.ExtensionPoint;
@@ -31,6 +33,7 @@ import hudson.model.queue.MappingWorksheet;
 import hudson.model.queue.MappingWorksheet.ExecutorChunk;
 import hudson.model.queue.MappingWorksheet.Mapping;
 import hudson.util.ConsistentHash;
+import jenkins.util.SystemProperties;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -73,40 +76,64 @@ public abstract class LoadBalancer implements ExtensionPoint {
      */
     public abstract Mapping map(Task task, MappingWorksheet worksheet);
 
+    /**
+     * Number of hash rings {@link #CONSISTENT_HASH} keeps around: roughly the number of distinct sets of executors
+     * that buildable items compete for, which is usually bounded by the number of labels in use.
+     * Declared before {@link #CONSISTENT_HASH}, which reads it during initialization.
+     */
+    private static final int RING_CACHE_SIZE = SystemProperties.getInteger(LoadBalancer.class.getName() + ".ringCacheSize", 1024);
+
     /**
      * Uses a consistent hash for scheduling.
      */
     public static final LoadBalancer CONSISTENT_HASH = new LoadBalancer() {
+        /**
+         * Hash rings built for earlier items, keyed by the weight of each applicable {@link ExecutorChunk} by name.
+         * Items with the same label usually see the same executors, so a ring can be reused across items and
+         * maintenance passes instead of being rebuilt every time.
+         */
+        private final Cache<Map<String, Integer>, ConsistentHash<String>> rings = CacheBuilder.newBuilder()
+                .maximumSize(RING_CACHE_SIZE)
+                .build();
+
         @Override
         public Mapping map(Task task, MappingWorksheet ws) {
             // build consistent hash for each work chunk
-            List<ConsistentHash<ExecutorChunk>> hashes = new ArrayList<>(ws.works.size());
+            List<ConsistentHash<String>> hashes = new ArrayList<>(ws.works.size());
+            List<Map<String, ExecutorChunk>> chunksByName = new ArrayList<>(ws.works.size());
             for (int i=0; i<ws.works.size(); i++) {
-                ConsistentHash<ExecutorChunk> hash = new ConsistentHash<>(ExecutorChunk::getName);
-
-                // Build a Map to pass in rather than repeatedly calling hash.add() because each call does lots of expensive work
                 List<ExecutorChunk> chunks = ws.works(i).applicableExecutorChunks();
-                Map<ExecutorChunk, Integer> toAdd = Maps.newHashMapWithExpectedSize(chunks.size());
+                Map<String, Integer> weights = Maps.newHashMapWithExpectedSize(chunks.size());
+                Map<String, ExecutorChunk> byName = Maps.newHashMapWithExpectedSize(chunks.size());
                 for (ExecutorChunk ec : chunks) {
-                    toAdd.put(ec, ec.size()*100);
+                    weights.put(ec.getName(), ec.size()*100);
+                    byName.put(ec.getName(), ec);
+                }
+
+                ConsistentHash<String> hash = rings.getIfPresent(weights);
+                if (hash == null) {
+                    hash = new ConsistentHash<>(name -> name);
+                    // Pass in a Map rather than repeatedly calling hash.add() because each call does lots of expensive work
+                    hash.addAll(weights);
+                    rings.put(weights, hash);
                 }
-                hash.addAll(toAdd);
 
                 hashes.add(hash);
+                chunksByName.add(byName);
             }
 
             // do a greedy assignment
             Mapping m = ws.new Mapping();
             assert m.size()==ws.works.size();   // just so that you the reader of the source code don't get confused with the for loop index
 
-            if (assignGreedily(m,task,hashes,0)) {
+            if (assignGreedily(m,task,hashes,chunksByName,0)) {
                 assert m.isCompletelyValid();
                 return m;
             } else
                 return null;
         }
 
-        private boolean assignGreedily(Mapping m, Task task, List<ConsistentHash<ExecutorChunk>> hashes, int i) {
+        private boolean assignGreedily(Mapping m, Task task, List<ConsistentHash<String>> hashes, List<Map<String, ExecutorChunk>> chunksByName, int i) {
             if (i==hashes.size())   return true;    // fully assigned
 
             String key;
@@ -119,11 +146,12 @@ public abstract class LoadBalancer implements ExtensionPoint {
             }
             key += i > 0 ? String.valueOf(i) : "";
 
-            for (ExecutorChunk ec : hashes.get(i).list(key)) {
+            for (String name : hashes.get(i).list(key)) {
+                ExecutorChunk ec = chunksByName.get(i).get(name);
                 // let's attempt this assignment
                 m.assign(i,ec);
 
-                if (m.isPartiallyValid() && assignGreedily(m,task,hashes,i+1))
+                if (m.isPartiallyValid() && assignGreedily(m,task,hashes,chunksByName,i+1))
                     return true;    // successful greedily allocation
 
                 // otherwise 'ec' wasn't a good fit for us. try next.
@@ -42,6 +42,7 @@ import static hudson.util.Iterators.reverse;
 import hudson.cli.declarative.CLIResolver;
 import hudson.model.labels.LabelAssignmentAction;
 import hudson.model.queue.Executables;
+import hudson.model.queue.ExecutorSlotIndex;
 import hudson.model.queue.QueueListener;
 import hudson.model.queue.QueueTaskFuture;
 import hudson.model.queue.ScheduleResult;
@@ -67,11 +68,14 @@ import hudson.security.ACL;
 import hudson.security.AccessControlled;
 
 import hudson.security.Permission;
+import hudson.slaves.ComputerListener;
+import hudson.slaves.OfflineCause;
 import hudson.util.Futures;
 import jenkins.security.QueueItemAuthenticatorProvider;
 import jenkins.security.stapler.StaplerAccessibleType;
 import jenkins.util.SystemProperties;
 import jenkins.util.Timer;
+import jenkins.util.io.WriteBehind;
 import hudson.triggers.SafeTimerTask;
 import java.util.concurrent.TimeUnit;
 import hudson.util.XStream2;
@@ -99,7 +103,9 @@ import java.util.Objects;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
@@ -212,6 +218,26 @@ public class Queue extends ResourceController implements Saveable {
 
     private transient volatile Snapshot snapshot = new Snapshot(waitingList, blockedProjects, buildables, pendings);
 
+    /**
+     * Parked executors of each {@link Computer}, as seen by the last maintenance pass.
+     * Only trusted for computers that are not in {@link #dirtyComputers}.
+     *
+     * @see #INCREMENTAL_MAINTENANCE
+     */
+    @GuardedBy("lock")
+    private final transient Map<Computer, List<Executor>> parkedExecutors = new HashMap<>();
+
+    /**
+     * {@link Computer}s whose executors were added, removed, or started since they were last examined.
+     */
+    private final transient Set<Computer> dirtyComputers = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Set when something happened that may change the {@link CauseOfBlockage} of an item that is already blocked,
+     * such as an executor finishing its work or a computer going on-line.
+     */
+    private final transient AtomicBoolean blockedProjectsDirty = new AtomicBoolean(true);
+
     /**
      * Items that left queue would stay here for a while to enable tracking via {@link Item#getId()}.
      *
@@ -331,7 +357,7 @@ public class Queue extends ResourceController implements Saveable {
     private final transient AtmostOneTaskExecutor<Void> maintainerThread = new AtmostOneTaskExecutor<>(new Callable<Void>() {
         @Override
         public Void call() throws Exception {
-            maintain();
+            maintain(INCREMENTAL_MAINTENANCE);
             return null;
         }
 
@@ -389,6 +415,8 @@ public class Queue extends ResourceController implements Saveable {
             pendings.clear();
 
             File queueFile = getXMLQueueFile();
+            // a save still pending from before a reload
+            WriteBehind.flush(queueFile);
             if (queueFile.exists()) {
                 Object unmarshaledObj = new XmlFile(XSTREAM, queueFile).read();
                 List items;
@@ -472,7 +500,8 @@ public class Queue extends ResourceController implements Saveable {
             }
 
             try {
-                queueFile.write(state);
+                // saved on every change of the queue, so coalesced when write-behind is enabled
+                queueFile.writeBehind(state, this);
             } catch (IOException e) {
                 LOGGER.log(e instanceof ClosedByInterruptException ? Level.FINE : Level.WARNING, "Failed to write out the queue file " + getXMLQueueFile(), e);
             }
@@ -1457,8 +1486,20 @@ public class Queue extends ResourceController implements Saveable {
      * Jenkins internally invokes this method by itself whenever there's a change that can affect
      * the scheduling (such as new node becoming online, # of executors change, a task completes execution, etc.),
      * and it also gets invoked periodically (see {@link Queue.MaintainTask}.)
+     *
+     * <p>
+     * This always performs a full pass, even if {@link #INCREMENTAL_MAINTENANCE} is enabled.
      */
     public void maintain() {
+        maintain(false);
+    }
+
+    /**
+     * @param incremental if true, only re-examine the computers that changed since the last pass, and only
+     *                    re-evaluate blocked items if something happened that could unblock them.
+     *                    Otherwise, re-examine every executor and every item.
+     */
+    private void maintain(boolean incremental) {
         Jenkins jenkins = Jenkins.getInstanceOrNull();
         if (jenkins == null) {
             return;
@@ -1466,14 +1507,21 @@ public class Queue extends ResourceController implements Saveable {
         lock.lock();
         try { try {
 
-            LOGGER.log(Level.FINE, "Queue maintenance started on {0} with {1}", new Object[] {this, snapshot});
+            LOGGER.log(Level.FINE, "Queue maintenance started on {0} with {1} (incremental={2})", new Object[] {this, snapshot, incremental});
 
             // The executors that are currently waiting for a job to run.
             Map<Executor, JobOffer> parked = new HashMap<>();
 
-            {// update parked (and identify any pending items whose executor has disappeared)
+            if (incremental && pendings.isEmpty()) {
+                // with no pending items there is nothing to lose, so only look at the computers that changed
+                updateParkedExecutors(jenkins, parked);
+            } else {// update parked (and identify any pending items whose executor has disappeared)
                 List<BuildableItem> lostPendings = new ArrayList<>(pendings);
+                parkedExecutors.clear();
                 for (Computer c : jenkins.getComputers()) {
+                    dirtyComputers.remove(c);
+                    List<Executor> parkedOnComputer = new ArrayList<>();
+                    parkedExecutors.put(c, parkedOnComputer);
                     for (Executor e : c.getAllExecutors()) {
                         if (e.isInterrupted()) {
                             // JENKINS-28840 we will deadlock if we try to touch this executor while interrupt flag set
@@ -1488,6 +1536,7 @@ public class Queue extends ResourceController implements Saveable {
                         if (e.isParking()) {
                             LOGGER.log(Level.FINEST, "{0} is parking and is waiting for a job to execute.", e.getDisplayName());
                             parked.put(e, new JobOffer(e));
+                            parkedOnComputer.add(e);
                         }
                         final WorkUnit workUnit = e.getCurrentWorkUnit();
                         if (workUnit != null) {
@@ -1510,7 +1559,10 @@ public class Queue extends ResourceController implements Saveable {
 
             final QueueSorter s = sorter;
 
-            {// blocked -> buildable
+            // in incremental mode, blocked items are only re-evaluated when something happened that could unblock them;
+            // the periodic full pass still re-evaluates them in case a QueueTaskDispatcher changed its mind silently
+            boolean reevaluateBlocked = blockedProjectsDirty.getAndSet(false) || !incremental;
+            if (reevaluateBlocked) {// blocked -> buildable
                 // copy as we'll mutate the list and we want to process in a potentially different order
                 List<BlockedItem> blockedItems = new ArrayList<>(blockedProjects.values());
                 // if facing a cycle of blocked tasks, ensure we process in the desired sort order
@@ -1585,7 +1637,10 @@ public class Queue extends ResourceController implements Saveable {
             
             // Ensure that identification of blocked tasks is using the live state: JENKINS-27708 & JENKINS-27871
             updateSnapshot();
-            
+
+            // only offer each item the executors on nodes of its label
+            ExecutorSlotIndex<JobOffer> offers = new ExecutorSlotIndex<>(parked.values());
+
             // allocate buildable jobs to executors
             for (BuildableItem p : new ArrayList<>(
                     buildables)) {// copy as we'll mutate the list in the loop
@@ -1613,9 +1668,10 @@ public class Queue extends ResourceController implements Saveable {
                     }
                 } else {
 
-                    List<JobOffer> candidates = new ArrayList<>(parked.size());
+                    List<JobOffer> offersForLabel = offers.get(p.getAssignedLabel());
+                    List<JobOffer> candidates = new ArrayList<>(offersForLabel.size());
                     Map<Node, CauseOfBlockage> reasonMap = new HashMap<>();
-                    for (JobOffer j : parked.values()) {
+                    for (JobOffer j : offersForLabel) {
                         Node offerNode = j.getNode();
                         CauseOfBlockage reason;
                         if (reasonMap.containsKey(offerNode)) {
@@ -1651,6 +1707,11 @@ public class Queue extends ResourceController implements Saveable {
                     WorkUnitContext wuc = new WorkUnitContext(p);
                     LOGGER.log(Level.FINEST, "Found a matching executor for {0}. Using it.", taskDisplayName);
                     m.execute(wuc);
+                    for (JobOffer j : candidates) {
+                        if (j.workUnit != null) {
+                            offers.remove(j);
+                        }
+                    }
 
                     p.leave(this);
                     if (!wuc.getWorkUnits().isEmpty()) {
@@ -1678,6 +1739,45 @@ public class Queue extends ResourceController implements Saveable {
         }
     }
 
+    /**
+     * Collects the parked executors, re-examining only the {@link #dirtyComputers} and reusing
+     * {@link #parkedExecutors} for every other computer.
+     */
+    @GuardedBy("lock")
+    private void updateParkedExecutors(@NonNull Jenkins jenkins, @NonNull Map<Executor, JobOffer> parked) {
+        // rebuild the map so that computers that are gone are forgotten
+        Map<Computer, List<Executor>> previous = new HashMap<>(parkedExecutors);
+        parkedExecutors.clear();
+        for (Computer c : jenkins.getComputers()) {
+            List<Executor> parkedOnComputer = previous.get(c);
+            if (parkedOnComputer == null || dirtyComputers.remove(c)) {
+                parkedOnComputer = new ArrayList<>();
+                for (Executor e : c.getAllExecutors()) {
+                    // an executor is only interrupted once started, see Executor#interrupt
+                    if (!e.isInterrupted() && e.isParking()) {
+                        parkedOnComputer.add(e);
+                    }
+                }
+            }
+            parkedExecutors.put(c, parkedOnComputer);
+            for (Executor e : parkedOnComputer) {
+                LOGGER.log(Level.FINEST, "{0} is parking and is waiting for a job to execute.", e.getDisplayName());
+                parked.put(e, new JobOffer(e));
+            }
+        }
+    }
+
+    /**
+     * Records that the executors of the given computer were added, removed or started,
+     * so that the next incremental {@link #maintain()} pass re-examines it,
+     * and so that labels count their executors again.
+     */
+    /*package*/ void onExecutorsChanged(@NonNull Computer c) {
+        dirtyComputers.add(c);
+        blockedProjectsDirty.set(true);
+        Label.onExecutorStateChanged();
+    }
+
     /**
      * Tries to make an item ready to build.
      * @param p a proposed buildable item
@@ -2824,6 +2924,17 @@ public class Queue extends ResourceController implements Saveable {
 
     private static final Logger LOGGER = Logger.getLogger(Queue.class.getName());
 
+    /**
+     * If true, maintenance passes triggered by {@link #scheduleMaintenance()} only re-examine the computers whose
+     * executors changed since the previous pass, and only re-evaluate blocked items after an event that could unblock
+     * them (a build leaving the queue, an executor finishing, a computer changing state).
+     * The periodic maintenance, as well as direct calls to {@link #maintain()}, still perform a full pass, so
+     * a {@link QueueTaskDispatcher} that changes its decision without any such event is picked up as before.
+     * Set to false to always perform the full pass.
+     */
+    @Restricted(NoExternalUse.class)
+    public static /* non-final for Groovy */ boolean INCREMENTAL_MAINTENANCE = SystemProperties.getBoolean(Queue.class.getName() + ".incrementalMaintenance");
+
     /**
      * This {@link XStream} instance is used to persist {@link Task}s.
      */
@@ -2921,6 +3032,78 @@ public class Queue extends ResourceController implements Saveable {
         }
     }
 
+    /**
+     * Marks blocked items for re-evaluation when queue or computer events could have unblocked them.
+     *
+     * @see #INCREMENTAL_MAINTENANCE
+     */
+    @Extension
+    @Restricted(NoExternalUse.class)
+    public static final class MaintenanceTracker extends QueueListener {
+        @Override
+        public void onLeaveBuildable(BuildableItem bi) {
+            markBlockedProjectsDirty();
+        }
+
+        @Override
+        public void onLeft(LeftItem li) {
+            markBlockedProjectsDirty();
+        }
+    }
+
+    /**
+     * Marks computers for re-examination when their state changes.
+     *
+     * @see #INCREMENTAL_MAINTENANCE
+     */
+    @Extension
+    @Restricted(NoExternalUse.class)
+    public static final class ComputerMaintenanceTracker extends ComputerListener {
+        @Override
+        public void onOnline(Computer c, TaskListener listener) {
+            markComputerDirty(c);
+        }
+
+        @Override
+        public void onOffline(@NonNull Computer c, @CheckForNull OfflineCause cause) {
+            markComputerDirty(c);
+        }
+
+        @Override
+        public void onTemporarilyOnline(Computer c) {
+            markComputerDirty(c);
+        }
+
+        @Override
+        public void onTemporarilyOffline(Computer c, OfflineCause cause) {
+            markComputerDirty(c);
+        }
+
+        @Override
+        public void onConfigurationChange() {
+            markBlockedProjectsDirty();
+        }
+
+        private static void markComputerDirty(Computer c) {
+            Queue q = getQueueOrNull();
+            if (q != null) {
+                q.onExecutorsChanged(c);
+            }
+        }
+    }
+
+    private static void markBlockedProjectsDirty() {
+        Queue q = getQueueOrNull();
+        if (q != null) {
+            q.blockedProjectsDirty.set(true);
+        }
+    }
+
+    private static @CheckForNull Queue getQueueOrNull() {
+        Jenkins j = Jenkins.getInstanceOrNull();
+        return j == null ? null : j.getQueue();
+    }
+
     /**
      * {@link ArrayList} of {@link Item} with more convenience methods.
      */
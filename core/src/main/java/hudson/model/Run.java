@@ -38,8 +38,11 @@ import hudson.ExtensionPoint;
 import hudson.FeedAdapter;
 import hudson.Functions;
 import hudson.console.AnnotatedLargeText;
+import hudson.console.AsyncLogOutputStream;
 import hudson.console.ConsoleLogFilter;
 import hudson.console.ConsoleNote;
+import hudson.console.LineIndex;
+import hudson.console.LogTail;
 import hudson.console.ModelHyperlinkNote;
 import hudson.console.PlainTextConsoleOutputStream;
 import java.nio.file.Files;
@@ -74,7 +77,6 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.PrintWriter;
-import java.io.RandomAccessFile;
 import java.io.Reader;
 import java.io.Serializable;
 import java.nio.charset.Charset;
@@ -117,10 +119,10 @@ import jenkins.model.lazy.LazyBuildMixIn;
 import jenkins.security.MasterToSlaveCallable;
 import jenkins.util.VirtualFile;
 import jenkins.util.io.OnMaster;
+import jenkins.util.io.WriteBehind;
 import net.sf.json.JSONObject;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.jelly.XMLOutput;
-import org.apache.commons.lang.ArrayUtils;
 import org.kohsuke.accmod.Restricted;
 import org.kohsuke.accmod.restrictions.NoExternalUse;
 import org.kohsuke.stapler.HttpResponse;
@@ -1550,7 +1552,7 @@ public abstract class Run <JobT extends Job<JobT,RunT>,RunT extends Run<JobT,Run
                 }
             }
         }
-        getLogText().writeHtmlTo(start, out.asWriter());
+        getLogText().writeCachedHtmlTo(start, out.asWriter());
     }
 
     /**
@@ -1667,6 +1669,7 @@ public abstract class Run <JobT extends Job<JobT,RunT>,RunT extends Run<JobT,Run
             if (tmp.exists()) {
                 Util.deleteRecursive(tmp);
             }
+            WriteBehind.flush(rootDir);
             try {
                 Files.move(
                         Util.fileToPath(rootDir),
@@ -1988,7 +1991,8 @@ public abstract class Run <JobT extends Job<JobT,RunT>,RunT extends Run<JobT,Run
         // gets reflected to the file immediately, which can then be
         // served to the browser immediately
         try {
-            return Files.newOutputStream(getLogFile().toPath(), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            File logFile = getLogFile();
+            return AsyncLogOutputStream.wrap(logFile, LineIndex.wrap(logFile, Files.newOutputStream(logFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
         } catch (InvalidPathException e) {
             throw new IOException(e);
         }
@@ -2073,7 +2077,7 @@ public abstract class Run <JobT extends Job<JobT,RunT>,RunT extends Run<JobT,Run
      */
     public synchronized void save() throws IOException {
         if(BulkChange.contains(this))   return;
-        getDataFile().write(this);
+        getDataFile().writeBehind(this);
         SaveableListener.fireOnChange(this, getDataFile());
     }
 
@@ -2103,7 +2107,13 @@ public abstract class Run <JobT extends Job<JobT,RunT>,RunT extends Run<JobT,Run
      */
     @Deprecated
     public @NonNull String getLog() throws IOException {
-        return Util.loadFile(getLogFile(),getCharset());
+        File logFile = getLogFile();
+        if (logFile.getName().endsWith(".gz") && logFile.isFile()) {
+            try (Reader r = getLogReader()) {
+                return IOUtils.toString(r);
+            }
+        }
+        return Util.loadFile(logFile,getCharset());
     }
 
     /**
@@ -2119,51 +2129,7 @@ public abstract class Run <JobT extends Job<JobT,RunT>,RunT extends Run<JobT,Run
         if (maxLines == 0) {
             return Collections.emptyList();
         }
-
-        int lines = 0;
-        long filePointer;
-        final List<String> lastLines = new ArrayList<>(Math.min(maxLines, 128));
-        final List<Byte> bytes = new ArrayList<>();
-
-        try (RandomAccessFile fileHandler = new RandomAccessFile(getLogFile(), "r")) {
-            long fileLength = fileHandler.length() - 1;
-
-            for (filePointer = fileLength; filePointer != -1 && maxLines != lines; filePointer--) {
-                fileHandler.seek(filePointer);
-                byte readByte = fileHandler.readByte();
-
-                if (readByte == 0x0A) {
-                    if (filePointer < fileLength) {
-                        lines = lines + 1;
-                        lastLines.add(convertBytesToString(bytes));
-                        bytes.clear();
-                    }
-                } else if (readByte != 0xD) {
-                    bytes.add(readByte);
-                }
-            }
-        }
-
-        if (lines != maxLines) {
-            lastLines.add(convertBytesToString(bytes));
-        }
-
-        Collections.reverse(lastLines);
-
-        // If the log has been truncated, include that information.
-        // Use set (replaces the first element) rather than add so that
-        // the list doesn't grow beyond the specified maximum number of lines.
-        if (lines == maxLines) {
-            lastLines.set(0, "[...truncated " + Functions.humanReadableByteSize(filePointer)+ "...]");
-        }
-
-        return ConsoleNote.removeNotes(lastLines);
-    }
-
-    private String convertBytesToString(List<Byte> bytes) {
-        Collections.reverse(bytes);
-        Byte[] byteArray = bytes.toArray(new Byte[0]);
-        return new String(ArrayUtils.toPrimitive(byteArray), getCharset());
+        return ConsoleNote.removeNotes(LogTail.lastLines(getLogFile(), getCharset(), maxLines));
     }
 
     public void doBuildStatus( StaplerRequest req, StaplerResponse rsp ) throws IOException {
@@ -23,11 +23,14 @@
  */
 package hudson.model;
 
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
 import java.io.File;
 import java.io.IOException;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.SortedMap;
@@ -35,9 +38,13 @@ import java.util.logging.Level;
 
 import static java.util.logging.Level.*;
 import java.util.logging.Logger;
+import hudson.model.listeners.RunListener;
 import jenkins.model.RunIdMigrator;
 import jenkins.model.lazy.AbstractLazyLoadRunMap;
 import static jenkins.model.lazy.AbstractLazyLoadRunMap.Direction.*;
+import jenkins.model.lazy.BuildIndex;
+import jenkins.model.lazy.BuildSummaries;
+import jenkins.model.lazy.BuildSummary;
 import jenkins.model.lazy.BuildReference;
 import jenkins.model.lazy.LazyBuildMixIn;
 import org.apache.commons.collections.comparators.ReverseComparator;
@@ -62,6 +69,8 @@ public final class RunMap<R extends Run<?,R>> extends AbstractLazyLoadRunMap<R>
 
     private Constructor<R> cons;
 
+    private final BuildSummaries summaries = new BuildSummaries(this);
+
     /** Normally overwritten by {@link LazyBuildMixIn#onLoad} or {@link LazyBuildMixIn#onCreatedFromScratch}, in turn created during {@link Job#onLoad}. */
     @Restricted(NoExternalUse.class)
     public RunIdMigrator runIdMigrator = new RunIdMigrator();
@@ -178,6 +187,22 @@ public final class RunMap<R extends Run<?,R>> extends AbstractLazyLoadRunMap<R>
         return r.getId();
     }
 
+    @Override
+    protected long getTimestampOf(R r) {
+        return r.getTimeInMillis();
+    }
+
+    @Override
+    protected long getDurationOf(R r) {
+        return r.isBuilding() ? BuildIndex.UNKNOWN : r.getDuration();
+    }
+
+    @Override
+    protected int getResultOf(R r) {
+        Result result = r.getResult();
+        return r.isBuilding() || result == null ? BuildIndex.RESULT_UNKNOWN : result.ordinal;
+    }
+
     /**
      * Add a <em>new</em> build to the map.
      * Do not use when loading existing builds (use {@link #put(Integer, Object)}).
@@ -254,6 +279,67 @@ public final class RunMap<R extends Run<?,R>> extends AbstractLazyLoadRunMap<R>
         initBaseDir(job.getBuildDir());
     }
 
+    /**
+     * Gets the {@link BuildSummary} of every completed build, newest first.
+     * This loads only the builds that have not been summarized yet.
+     * @since TODO
+     */
+    @Restricted(NoExternalUse.class)
+    public List<BuildSummary> getSummaries() {
+        return summaries.list();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * Includes what is known from the {@link BuildSummaries}.
+     */
+    @Override
+    public BuildIndex getBuildIndex() {
+        if (baseDirInitialized()) {
+            summaries.load();
+        }
+        return super.getBuildIndex();
+    }
+
+    /**
+     * Records the final result and duration of builds in the {@link BuildIndex} and the {@link BuildSummaries}.
+     */
+    @Extension
+    @Restricted(NoExternalUse.class)
+    public static final class BuildIndexUpdater extends RunListener<Run<?,?>> {
+        @Override
+        public void onCompleted(Run<?,?> r, @NonNull TaskListener listener) {
+            RunMap<?> runs = runMapOf(r);
+            if (runs != null) {
+                runs.summaries.record(r);
+            }
+        }
+
+        @Override
+        @SuppressWarnings({"rawtypes", "unchecked"})
+        public void onFinalized(Run<?,?> r) {
+            RunMap<?> runs = runMapOf(r);
+            if (runs != null) {
+                ((RunMap) runs).updateBuildIndex(r);
+            }
+        }
+
+        @Override
+        public void onDeleted(Run<?,?> r) {
+            RunMap<?> runs = runMapOf(r);
+            if (runs != null) {
+                runs.summaries.remove(r.getNumber());
+            }
+        }
+
+        private static RunMap<?> runMapOf(Run<?,?> r) {
+            SortedMap<Integer, ?> runs = r.getParent()._getRuns();
+            return runs instanceof RunMap ? (RunMap<?>) runs : null;
+        }
+    }
+
     private static final Logger LOGGER = Logger.getLogger(RunMap.class.getName());
 
     private static class ThisIsHowItsLoaded extends Exception {}
@@ -326,6 +326,11 @@ public abstract class Slave extends Node implements Serializable {
         this.label = Util.fixNull(labelString).trim();
         // Compute labels now.
         getAssignedLabels();
+        Jenkins j = Jenkins.getInstanceOrNull();
+        // a replacement being configured is trimmed by Nodes once it replaces the live node
+        if (j != null && j.getNode(name) == this) {
+            Queue.withLock(() -> j.trimLabels(this));
+        }
     }
 
     @Override
@@ -74,6 +74,7 @@ import jenkins.security.ImpersonatingUserDetailsService2;
 import jenkins.security.LastGrantedAuthoritiesProperty;
 import jenkins.security.UserDetailsCache;
 import jenkins.util.SystemProperties;
+import jenkins.util.io.WriteBehind;
 import net.sf.json.JSONObject;
 import org.apache.commons.lang.StringUtils;
 import org.jenkinsci.Symbol;
@@ -808,7 +809,7 @@ public class User extends AbstractModelObject implements AccessControlled, Descr
             return;
         }
         XmlFile xmlFile = new XmlFile(XSTREAM, constructUserConfigFile());
-        xmlFile.write(this);
+        xmlFile.writeBehind(this);
         SaveableListener.fireOnChange(this, xmlFile);
     }
 
@@ -836,6 +837,7 @@ public class User extends AbstractModelObject implements AccessControlled, Descr
 
     private void deleteExistingUserFolder(File existingUserFolder) throws IOException {
         if (existingUserFolder != null && existingUserFolder.exists()) {
+            WriteBehind.flush(existingUserFolder);
             Util.deleteRecursive(existingUserFolder);
         }
     }
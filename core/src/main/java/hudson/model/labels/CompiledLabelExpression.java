@@ -0,0 +1,323 @@
+package hudson.model.labels;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.model.Label;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * A {@link Label} compiled into a postfix program over {@link BitSet}s.
+ *
+ * <p>
+ * Every {@link LabelAtom} name gets a dense integer id from a {@link Dictionary}, so the set of atoms a node carries
+ * becomes a {@link BitSet} (see {@link Dictionary#atomsOf(Collection)}). The program can then test one such set with
+ * {@link #matches(BitSet)}, or test many sets at once with {@link #filter(List)}, which evaluates each operator once
+ * for all of them as word-wide bit operations instead of walking the expression tree once per node.
+ *
+ * <p>
+ * Ids are only meaningful within their dictionary, so programs and sets must come from the same one.
+ * {@link #resetDictionary()} replaces the current dictionary, so that ids of atoms no longer used anywhere are reclaimed.
+ *
+ * <p>
+ * Only the label classes defined in this package are compiled, as a plugin subclass may override
+ * {@link Label#matches(hudson.util.VariableResolver)}. Anything else falls back to the tree walk.
+ *
+ * @since TODO
+ */
+@Restricted(NoExternalUse.class)
+public final class CompiledLabelExpression {
+    private static volatile Dictionary current = new Dictionary();
+
+    private static final int NOT = -1;
+    private static final int AND = -2;
+    private static final int OR = -3;
+    private static final int IFF = -4;
+    private static final int IMPLIES = -5;
+
+    private final Dictionary dictionary;
+    private final Label label;
+    /**
+     * Postfix program: a non-negative entry pushes the atom in that slot of {@link #atoms}, a negative one is an operator.
+     * Null if {@link #label} could not be compiled.
+     */
+    private final int[] code;
+    /**
+     * Atom ids referenced by the program, indexed by slot.
+     */
+    private final int[] atoms;
+    private final int depth;
+
+    private CompiledLabelExpression(Dictionary dictionary, Label label, int[] code, int[] atoms, int depth) {
+        this.dictionary = dictionary;
+        this.label = label;
+        this.code = code;
+        this.atoms = atoms;
+        this.depth = depth;
+    }
+
+    /**
+     * Gets the dictionary new programs and sets of atoms should be built with.
+     */
+    public static @NonNull Dictionary dictionary() {
+        return current;
+    }
+
+    /**
+     * Starts a new, empty dictionary, typically right before recomputing every label against every node.
+     * Programs compiled with an older dictionary should be compiled again.
+     *
+     * @return the new dictionary
+     */
+    public static @NonNull Dictionary resetDictionary() {
+        Dictionary d = new Dictionary();
+        current = d;
+        return d;
+    }
+
+    /**
+     * Gets the dictionary this program was compiled with.
+     */
+    public @NonNull Dictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Evaluates the expression for an entity owning the given atoms.
+     *
+     * @param atoms ids as returned by {@link Dictionary#atomsOf(Collection)} of {@link #getDictionary()}
+     */
+    public boolean matches(@NonNull BitSet atoms) {
+        if (code == null) {
+            return label.matches(name -> {
+                Integer id = dictionary.ids.get(name);
+                return id != null && atoms.get(id);
+            });
+        }
+        boolean[] stack = new boolean[depth];
+        int sp = 0;
+        for (int op : code) {
+            switch (op) {
+            case NOT:
+                stack[sp - 1] = !stack[sp - 1];
+                break;
+            case AND:
+                sp--;
+                stack[sp - 1] = stack[sp - 1] & stack[sp];
+                break;
+            case OR:
+                sp--;
+                stack[sp - 1] = stack[sp - 1] | stack[sp];
+                break;
+            case IFF:
+                sp--;
+                stack[sp - 1] = stack[sp - 1] == stack[sp];
+                break;
+            case IMPLIES:
+                sp--;
+                stack[sp - 1] = !stack[sp - 1] | stack[sp];
+                break;
+            default:
+                stack[sp++] = atoms.get(this.atoms[op]);
+            }
+        }
+        return stack[0];
+    }
+
+    /**
+     * Evaluates the expression for many entities at once.
+     *
+     * @param rows the atoms of each entity, as returned by {@link Dictionary#atomsOf(Collection)} of {@link #getDictionary()}
+     * @return the indices of the rows that match
+     */
+    public @NonNull BitSet filter(@NonNull List<BitSet> rows) {
+        int n = rows.size();
+        BitSet r;
+        if (code == null) {
+            r = new BitSet(n);
+            for (int i = 0; i < n; i++) {
+                if (matches(rows.get(i))) {
+                    r.set(i);
+                }
+            }
+            return r;
+        }
+        // transpose: one column per atom slot, one bit per row
+        BitSet[] columns = new BitSet[atoms.length];
+        for (int s = 0; s < atoms.length; s++) {
+            columns[s] = new BitSet(n);
+        }
+        for (int i = 0; i < n; i++) {
+            BitSet row = rows.get(i);
+            for (int s = 0; s < atoms.length; s++) {
+                if (row.get(atoms[s])) {
+                    columns[s].set(i);
+                }
+            }
+        }
+        BitSet[] stack = new BitSet[depth];
+        int sp = 0;
+        for (int op : code) {
+            switch (op) {
+            case NOT:
+                stack[sp - 1].flip(0, n);
+                break;
+            case AND:
+                sp--;
+                stack[sp - 1].and(stack[sp]);
+                break;
+            case OR:
+                sp--;
+                stack[sp - 1].or(stack[sp]);
+                break;
+            case IFF:
+                sp--;
+                stack[sp - 1].xor(stack[sp]);
+                stack[sp - 1].flip(0, n);
+                break;
+            case IMPLIES:
+                sp--;
+                stack[sp - 1].flip(0, n);
+                stack[sp - 1].or(stack[sp]);
+                break;
+            default:
+                stack[sp++] = (BitSet) columns[op].clone();
+            }
+        }
+        return stack[0];
+    }
+
+    /**
+     * Dense ids of atom names, allocated as they are first seen.
+     */
+    public static final class Dictionary {
+        private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+        private final AtomicInteger nextId = new AtomicInteger();
+
+        Dictionary() {}
+
+        /**
+         * Gets the dense id of the atom of the given name, allocating one if needed.
+         */
+        public int idOf(@NonNull String atom) {
+            return ids.computeIfAbsent(atom, k -> nextId.getAndIncrement());
+        }
+
+        /**
+         * Converts a set of atoms, typically {@link hudson.model.Node#getAssignedLabels()}, into a set of atom ids.
+         */
+        public @NonNull BitSet atomsOf(@NonNull Collection<LabelAtom> labels) {
+            BitSet r = new BitSet();
+            for (LabelAtom a : labels) {
+                r.set(idOf(a.getName()));
+            }
+            return r;
+        }
+
+        public @NonNull CompiledLabelExpression compile(@NonNull Label label) {
+            Compiler c = new Compiler(this);
+            if (!c.emit(label)) {
+                return new CompiledLabelExpression(this, label, null, null, 0);
+            }
+            int[] code = new int[c.code.size()];
+            for (int i = 0; i < code.length; i++) {
+                code[i] = c.code.get(i);
+            }
+            int[] atoms = new int[c.slots.size()];
+            int i = 0;
+            for (int id : c.slots.keySet()) {
+                atoms[i++] = id;
+            }
+            return new CompiledLabelExpression(this, label, code, atoms, c.maxDepth);
+        }
+
+        /**
+         * Number of ids allocated so far.
+         */
+        public int size() {
+            return nextId.get();
+        }
+    }
+
+    /**
+     * Emits the postfix program, returning false if some node of the tree is not one of the known classes.
+     */
+    private static final class Compiler extends LabelVisitor<Boolean, Void> {
+        private final Dictionary dictionary;
+        private final List<Integer> code = new ArrayList<>();
+        /** atom id to slot */
+        private final Map<Integer, Integer> slots = new LinkedHashMap<>();
+        private int sp, maxDepth;
+
+        Compiler(Dictionary dictionary) {
+            this.dictionary = dictionary;
+        }
+
+        @Override
+        public Boolean onAtom(LabelAtom a, Void param) {
+            if (a.getClass() != LabelAtom.class) {
+                return false;
+            }
+            Integer slot = slots.computeIfAbsent(dictionary.idOf(a.getName()), k -> slots.size());
+            code.add(slot);
+            maxDepth = Math.max(maxDepth, ++sp);
+            return true;
+        }
+
+        @Override
+        public Boolean onParen(LabelExpression.Paren p, Void param) {
+            return p.getClass() == LabelExpression.Paren.class && emit(p.base);
+        }
+
+        @Override
+        public Boolean onNot(LabelExpression.Not p, Void param) {
+            if (p.getClass() != LabelExpression.Not.class || !emit(p.base)) {
+                return false;
+            }
+            code.add(NOT);
+            return true;
+        }
+
+        @Override
+        public Boolean onAnd(LabelExpression.And p, Void param) {
+            return binary(p, AND);
+        }
+
+        @Override
+        public Boolean onOr(LabelExpression.Or p, Void param) {
+            return binary(p, OR);
+        }
+
+        @Override
+        public Boolean onIff(LabelExpression.Iff p, Void param) {
+            return binary(p, IFF);
+        }
+
+        @Override
+        public Boolean onImplies(LabelExpression.Implies p, Void param) {
+            return binary(p, IMPLIES);
+        }
+
+        boolean emit(Label l) {
+            // a Label subclass from elsewhere may not call back at all
+            return Boolean.TRUE.equals(l.accept(this, null));
+        }
+
+        private boolean binary(LabelExpression.Binary p, int op) {
+            // And, Or, Iff and Implies are final
+            if (!emit(p.lhs) || !emit(p.rhs)) {
+                return false;
+            }
+            code.add(op);
+            sp--;
+            return true;
+        }
+    }
+}
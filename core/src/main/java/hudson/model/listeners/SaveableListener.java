@@ -53,6 +53,22 @@ public abstract class SaveableListener implements ExtensionPoint {
      */
     public void onChange(Saveable o, XmlFile file) {}
 
+    /**
+     * Called when the file of a {@link Saveable} object saved with {@link XmlFile#writeBehind} actually reaches the disk.
+     * {@link #onChange} was called when it was saved.
+     *
+     * @param o
+     *      The saveable object.
+     * @param file
+     *      The {@link XmlFile} for this saveable object.
+     * @param latencyNanos
+     *      Time elapsed from the first save since the file was last written, to the end of the write.
+     * @param queueDepth
+     *      Number of files still waiting to be written.
+     * @since TODO
+     */
+    public void onWriteBehind(Saveable o, XmlFile file, long latencyNanos, int queueDepth) {}
+
     /**
      * Registers this object as an active listener so that it can start getting
      * callbacks invoked.
@@ -87,6 +103,22 @@ public abstract class SaveableListener implements ExtensionPoint {
         }
     }
 
+    /**
+     * Fires the {@link #onWriteBehind} event.
+     * @since TODO
+     */
+    public static void fireOnWriteBehind(Saveable o, XmlFile file, long latencyNanos, int queueDepth) {
+        for (SaveableListener l : all()) {
+            try {
+                l.onWriteBehind(o, file, latencyNanos, queueDepth);
+            } catch (ThreadDeath t) {
+                throw t;
+            } catch (Throwable t) {
+                Logger.getLogger(SaveableListener.class.getName()).log(Level.WARNING, null, t);
+            }
+        }
+    }
+
     /**
      * Returns all the registered {@link SaveableListener} descriptors.
      */
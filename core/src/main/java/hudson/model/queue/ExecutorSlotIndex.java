@@ -0,0 +1,93 @@
+package hudson.model.queue;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.model.Label;
+import hudson.model.Node;
+import hudson.model.queue.MappingWorksheet.ExecutorSlot;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Index of {@link ExecutorSlot}s by the {@link Label}s that their {@link Node} can serve.
+ *
+ * <p>
+ * Matching every buildable item against every parked executor scales as items × executors.
+ * This index groups the slots by node and remembers, for each label it has been asked about, which slots match,
+ * so that after the first lookup of a label the cost is the number of matching slots rather than all slots.
+ * Slots handed a {@link WorkUnit} are {@linkplain #remove removed} so that later lookups no longer return them.
+ *
+ * <p>
+ * Slots whose node has been removed are not indexed at all, since they cannot take any work.
+ *
+ * @since TODO
+ */
+@Restricted(NoExternalUse.class)
+public final class ExecutorSlotIndex<T extends ExecutorSlot> {
+    private final Map<Node, List<T>> byNode = new LinkedHashMap<>();
+    private final Map<Label, List<T>> byLabel = new HashMap<>();
+    private final Set<T> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final List<T> all = new ArrayList<>();
+
+    public ExecutorSlotIndex(@NonNull Collection<? extends T> slots) {
+        for (T slot : slots) {
+            Node node = slot.getExecutor().getOwner().getNode();
+            if (node == null) {
+                continue;
+            }
+            byNode.computeIfAbsent(node, k -> new ArrayList<>()).add(slot);
+            all.add(slot);
+        }
+    }
+
+    /**
+     * Gets the slots whose node belongs to the given label.
+     *
+     * @param label the label, or null to get every slot
+     * @return the matching slots that have not been {@linkplain #remove removed}; the caller must not modify it
+     */
+    public @NonNull List<T> get(@CheckForNull Label label) {
+        List<T> slots = label == null ? all : byLabel.computeIfAbsent(label, this::match);
+        if (!removed.isEmpty()) {
+            slots.removeIf(removed::contains);
+        }
+        return Collections.unmodifiableList(slots);
+    }
+
+    /**
+     * Removes a slot that is no longer available, typically because it was given some work.
+     */
+    public void remove(@NonNull T slot) {
+        removed.add(slot);
+    }
+
+    private List<T> match(Label label) {
+        List<T> r = new ArrayList<>();
+        Set<Node> nodes = label.getNodes();
+        if (nodes.size() < byNode.size()) {
+            // walk whichever side is smaller
+            for (Node n : nodes) {
+                List<T> l = byNode.get(n);
+                if (l != null) {
+                    r.addAll(l);
+                }
+            }
+        } else {
+            for (Map.Entry<Node, List<T>> e : byNode.entrySet()) {
+                if (nodes.contains(e.getKey())) {
+                    r.addAll(e.getValue());
+                }
+            }
+        }
+        return r;
+    }
+}
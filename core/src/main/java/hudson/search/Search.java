@@ -24,17 +24,26 @@
  */
 package hudson.search;
 
+import static javax.servlet.http.HttpServletResponse.SC_BAD_REQUEST;
 import static javax.servlet.http.HttpServletResponse.SC_NOT_FOUND;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import hudson.Util;
+import hudson.console.LogSearch;
+import hudson.model.ItemGroup;
+import hudson.model.Items;
+import hudson.model.Job;
+import hudson.model.Run;
 import hudson.util.EditDistance;
+import hudson.util.Iterators;
 
 import java.io.IOException;
+import java.io.PrintWriter;
 import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.logging.Level;
@@ -45,6 +54,7 @@ import javax.servlet.ServletException;
 
 import jenkins.util.MemoryReductionUtil;
 import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
 import org.kohsuke.accmod.Restricted;
 import org.kohsuke.accmod.restrictions.NoExternalUse;
 import org.kohsuke.stapler.Ancestor;
@@ -69,6 +79,18 @@ import org.kohsuke.stapler.export.Flavor;
  */
 public class Search implements StaplerProxy {
 
+    /**
+     * Most builds per job {@link #doLogs} searches, whatever the {@code builds} parameter asks for.
+     */
+    @Restricted(NoExternalUse.class)
+    public static /* non-final for Groovy */ int MAX_LOG_SEARCH_BUILDS = SystemProperties.getInteger(Search.class.getName() + ".maxLogSearchBuilds", 1000);
+
+    /**
+     * Most matching lines {@link #doLogs} returns, whatever the {@code max} parameter asks for.
+     */
+    @Restricted(NoExternalUse.class)
+    public static /* non-final for Groovy */ int MAX_LOG_SEARCH_MATCHES = SystemProperties.getInteger(Search.class.getName() + ".maxLogSearchMatches", 10000);
+
     public void doIndex(StaplerRequest req, StaplerResponse rsp) throws IOException, ServletException {
         List<Ancestor> l = req.getAncestors();
         for( int i=l.size()-1; i>=0; i-- ) {
@@ -97,6 +119,96 @@ public class Search implements StaplerProxy {
         req.getView(this,"search-failed.jelly").forward(req,rsp);
     }
 
+    /**
+     * Searches the logs of the builds of the closest job, or of all the jobs within the closest folder,
+     * for the lines containing the {@code q} parameter, ignoring case.
+     * Each line is streamed as {@code <build console URL>:<line number>:<text>} as soon as it is found,
+     * or as a JSON array of objects with {@code build}, {@code url}, {@code line} and {@code text} if {@code format=json}.
+     *
+     * <p>
+     * {@code builds} limits the number of builds searched per job, 100 by default,
+     * and {@code max} the number of matching lines, 1000 by default.
+     * Both must be positive, and are capped by {@link #MAX_LOG_SEARCH_BUILDS} and {@link #MAX_LOG_SEARCH_MATCHES}.
+     *
+     * @see LogSearch
+     * @since TODO
+     */
+    public void doLogs(StaplerRequest req, StaplerResponse rsp, @QueryParameter String q, @QueryParameter String format) throws IOException, ServletException {
+        if (q == null || q.isEmpty()) {
+            rsp.sendError(SC_BAD_REQUEST, "Missing q parameter");
+            return;
+        }
+        int builds;
+        int max;
+        try {
+            builds = req.hasParameter("builds") ? Integer.parseInt(req.getParameter("builds")) : 100;
+            max = req.hasParameter("max") ? Integer.parseInt(req.getParameter("max")) : 1000;
+        } catch (NumberFormatException x) {
+            rsp.sendError(SC_BAD_REQUEST, x.getMessage());
+            return;
+        }
+        if (builds <= 0 || max <= 0) {
+            rsp.sendError(SC_BAD_REQUEST, "builds and max must be positive");
+            return;
+        }
+        builds = Math.min(builds, MAX_LOG_SEARCH_BUILDS);
+        max = Math.min(max, MAX_LOG_SEARCH_MATCHES);
+        int limit = builds;
+        Iterable<? extends Job<?, ?>> jobs = findClosestJobs(req);
+        Iterable<Run<?, ?>> runs = () -> new Iterators.FlattenIterator<Run<?, ?>, Job<?, ?>>(jobs) {
+            @Override
+            protected Iterator<Run<?, ?>> expand(Job<?, ?> job) {
+                return Iterators.cast(job.getBuilds().limit(limit).iterator());
+            }
+        };
+        String prefix = req.getContextPath() + '/';
+        try {
+            if ("json".equals(format)) {
+                rsp.setContentType(Flavor.JSON.contentType);
+                DataWriter w = Flavor.JSON.createDataWriter(null, rsp);
+                w.startArray();
+                LogSearch.search(runs, q, max, m -> {
+                    w.startObject();
+                    w.name("build");
+                    w.value(m.getRun().getFullDisplayName());
+                    w.name("url");
+                    w.value(prefix + m.getRun().getUrl() + "console");
+                    w.name("line");
+                    w.valuePrimitive(m.getLine());
+                    w.name("text");
+                    w.value(m.getText());
+                    w.endObject();
+                });
+                w.endArray();
+            } else {
+                rsp.setContentType("text/plain;charset=UTF-8");
+                PrintWriter w = rsp.getWriter();
+                LogSearch.search(runs, q, max, m -> {
+                    w.println(prefix + m.getRun().getUrl() + "console:" + m.getLine() + ':' + m.getText());
+                    w.flush();
+                });
+            }
+        } catch (InterruptedException x) {
+            Thread.currentThread().interrupt();
+            throw new IOException(x);
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Iterable<? extends Job<?, ?>> findClosestJobs(StaplerRequest req) {
+        List<Ancestor> l = req.getAncestors();
+        for (int i = l.size() - 1; i >= 0; i--) {
+            Object o = l.get(i).getObject();
+            if (o instanceof Job) {
+                return Collections.singleton((Job<?, ?>) o);
+            }
+            if (o instanceof ItemGroup) {
+                return (Iterable) Items.allItems((ItemGroup) o, Job.class);
+            }
+        }
+        return (Iterable) Jenkins.get().allItems(Job.class);
+    }
+
     /**
      * Used by OpenSearch auto-completion. Returns JSON array of the form:
      *
@@ -31,6 +31,7 @@ import hudson.Functions;
 import jenkins.MasterToSlaveFileCallable;
 import hudson.Launcher;
 import jenkins.util.SystemProperties;
+import jenkins.util.io.FileDigests;
 import hudson.Util;
 import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
@@ -73,6 +74,8 @@ import java.util.Map.Entry;
 import java.util.Random;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import jenkins.model.RunAction2;
@@ -291,20 +294,33 @@ public class Fingerprinter extends Recorder implements Serializable, DependencyD
             src.setCaseSensitive(caseSensitive);
 
             DirectoryScanner ds = src.getDirectoryScanner();
-            for( String f : ds.getIncludedFiles() ) {
-                File file = new File(baseDir,f);
-
-                // consider the file to be produced by this build only if the timestamp
-                // is newer than when the build has started.
-                // 2000ms is an error margin since since VFAT only retains timestamp at 2sec precision
-                boolean produced = buildTimestamp <= file.lastModified()+2000;
-
-                try {
-                    results.add(new Record(produced,f,file.getName(),new FilePath(file).digest()));
-                } catch (IOException e) {
-                    throw new IOException(Messages.Fingerprinter_DigestFailed(file),e);
-                } catch (InterruptedException e) {
-                    throw new IOException(Messages.Fingerprinter_Aborted(),e);
+            String[] files = ds.getIncludedFiles();
+            // digested in parallel, recorded in order
+            List<Future<String>> digests = new ArrayList<>(files.length);
+            for (String f : files) {
+                digests.add(FileDigests.submit(new File(baseDir, f)));
+            }
+            try {
+                for (int i = 0; i < files.length; i++) {
+                    String f = files[i];
+                    File file = new File(baseDir,f);
+
+                    // consider the file to be produced by this build only if the timestamp
+                    // is newer than when the build has started.
+                    // 2000ms is an error margin since since VFAT only retains timestamp at 2sec precision
+                    boolean produced = buildTimestamp <= file.lastModified()+2000;
+
+                    try {
+                        results.add(new Record(produced,f,file.getName(),digests.get(i).get()));
+                    } catch (ExecutionException e) {
+                        throw new IOException(Messages.Fingerprinter_DigestFailed(file),e.getCause());
+                    } catch (InterruptedException e) {
+                        throw new IOException(Messages.Fingerprinter_Aborted(),e);
+                    }
+                }
+            } finally {
+                for (Future<String> digest : digests) {
+                    digest.cancel(false);
                 }
             }
 
@@ -31,6 +31,7 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Writer;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.AtomicMoveNotSupportedException;
@@ -41,6 +42,8 @@ import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
 
 /**
  * Buffered {@link FileWriter} that supports atomic operations.
@@ -64,7 +67,7 @@ public class AtomicFileWriter extends Writer {
         }
     }
 
-    private final Writer core;
+    private final FileChannelWriter core;
     private final Path tmpPath;
     private final Path destPath;
 
@@ -167,6 +170,15 @@ public class AtomicFileWriter extends Writer {
         core.write(cbuf,off,len);
     }
 
+    /**
+     * Writes bytes that are already encoded with the charset this writer was created with.
+     * @since TODO
+     */
+    @Restricted(NoExternalUse.class)
+    public void write(@NonNull ByteBuffer bytes) throws IOException {
+        core.write(bytes);
+    }
+
     public void flush() throws IOException {
         core.flush();
     }
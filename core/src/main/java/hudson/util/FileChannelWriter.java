@@ -73,6 +73,15 @@ public class FileChannelWriter extends Writer {
         channel.write(byteBuffer);
     }
 
+    /**
+     * Writes bytes that are already encoded with the charset of this writer.
+     */
+    void write(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+
     @Override
     public void flush() throws IOException {
         if (forceOnFlush) {
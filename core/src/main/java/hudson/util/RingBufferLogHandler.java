@@ -25,21 +25,44 @@ package hudson.util;
 
 import java.util.AbstractList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.logging.Handler;
 import java.util.logging.LogRecord;
 
 /**
  * Log {@link Handler} that stores the log records into a ring buffer.
  *
+ * <p>
+ * {@link #publish(LogRecord)} does not lock, so that threads logging at the same time do not wait for each other:
+ * each record claims the next slot of the ring, overwriting the oldest record once the ring is full.
+ * The view only shows the records from the oldest one kept up to the first one still being written by another thread.
+ *
  * @author Kohsuke Kawaguchi
  */
 public class RingBufferLogHandler extends Handler {
 
     private static final int DEFAULT_RING_BUFFER_SIZE = Integer.getInteger(RingBufferLogHandler.class.getName() + ".defaultSize", 256);
 
-    private int start = 0;
-    private final LogRecord[] records;
-    private volatile int size = 0;
+    private final AtomicReferenceArray<LogRecord> records;
+    /**
+     * For each slot, one plus the number of the record last written there.
+     */
+    private final AtomicLongArray written;
+    /**
+     * Number of records ever published, including those still being written.
+     */
+    private final AtomicLong claimed = new AtomicLong();
+    /**
+     * Value of {@link #claimed} at the last {@link #clear}.
+     */
+    private volatile long cleared;
+    /**
+     * Last result of {@link #head}, up to which records were all written, so that the next call need not scan them again.
+     * A record may be replaced since, which {@link #getView} notices when reading it.
+     */
+    private volatile long writtenUpTo;
 
     /**
      * This constructor is deprecated. It can't access system properties with {@link jenkins.util.SystemProperties}
@@ -51,7 +74,8 @@ public class RingBufferLogHandler extends Handler {
     }
 
     public RingBufferLogHandler(int ringSize) {
-        records = new LogRecord[ringSize];
+        records = new AtomicReferenceArray<>(ringSize);
+        written = new AtomicLongArray(ringSize);
     }
 
     /**
@@ -63,19 +87,41 @@ public class RingBufferLogHandler extends Handler {
         return DEFAULT_RING_BUFFER_SIZE;
     }
 
-    public synchronized void publish(LogRecord record) {
-        int len = records.length;
-        records[(start+size)%len]=record;
-        if(size==len) {
-            start = (start+1)%len;
-        } else {
-            size++;
-        }
+    public void publish(LogRecord record) {
+        long n = claimed.getAndIncrement();
+        int slot = slot(n);
+        // so that readers of the record previously there notice it is being replaced
+        written.set(slot, 0);
+        records.set(slot, record);
+        written.set(slot, n + 1);
     }
 
-    public synchronized void clear() {
-        size = 0;
-        start = 0;
+    public void clear() {
+        cleared = claimed.get();
+    }
+
+    private int slot(long n) {
+        return (int) (n % records.length());
+    }
+
+    /**
+     * Gets the number of the first record not completely written yet,
+     * so that all the records from the oldest one kept up to it are written.
+     */
+    private long head() {
+        while (true) {
+            long c = claimed.get();
+            long n = Math.max(Math.max(cleared, c - records.length()), writtenUpTo);
+            while (n < c && written.get(slot(n)) == n + 1) {
+                n++;
+            }
+            if (n < c && written.get(slot(n)) > n + 1) {
+                // the oldest records were replaced meanwhile; start again from the new oldest one
+                continue;
+            }
+            writtenUpTo = n;
+            return n;
+        }
     }
 
     /**
@@ -87,14 +133,24 @@ public class RingBufferLogHandler extends Handler {
     public List<LogRecord> getView() {
         return new AbstractList<LogRecord>() {
             public LogRecord get(int index) {
-                // flip the order
-                synchronized (RingBufferLogHandler.this) {
-                    return records[(start+(size-(index+1)))%records.length];
+                while (true) {
+                    long head = head();
+                    // flip the order
+                    long n = head - (index + 1);
+                    if (index < 0 || n < cleared || n < head - records.length()) {
+                        throw new IndexOutOfBoundsException(String.valueOf(index));
+                    }
+                    int slot = slot(n);
+                    LogRecord r = records.get(slot);
+                    if (written.get(slot) == n + 1) {
+                        return r;
+                    }
+                    // replaced while being read; the record at this index is now a newer one
                 }
             }
 
             public int size() {
-                return size;
+                return (int) Math.min(head() - cleared, records.length());
             }
         };
     }
@@ -40,7 +40,11 @@ import com.thoughtworks.xstream.io.HierarchicalStreamWriter;
 import com.thoughtworks.xstream.mapper.Mapper;
 import hudson.diagnosis.OldDataMonitor;
 import hudson.model.Saveable;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -49,6 +53,8 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import static java.util.logging.Level.FINE;
@@ -63,6 +69,8 @@ import jenkins.model.Jenkins;
 import jenkins.util.SystemProperties;
 import jenkins.util.xstream.CriticalXStreamException;
 import org.acegisecurity.Authentication;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
 
 /**
  * Custom {@link ReflectionConverter} that handle errors more gracefully.
@@ -81,6 +89,18 @@ public class RobustReflectionConverter implements Converter {
     private static /* non-final for Groovy */ boolean RECORD_FAILURES_FOR_ALL_AUTHENTICATIONS = SystemProperties.getBoolean(RobustReflectionConverter.class.getName() + ".recordFailuresForAllAuthentications", false);
     private static /* non-final for Groovy */ boolean RECORD_FAILURES_FOR_ADMINS = SystemProperties.getBoolean(RobustReflectionConverter.class.getName() + ".recordFailuresForAdmins", false);
 
+    /**
+     * Whether to resolve each element of a class to its field once, and reuse that {@link UnmarshallingPlan},
+     * rather than going through the mapper and the reflection provider for every element.
+     */
+    @Restricted(NoExternalUse.class)
+    public static /* non-final for Groovy */ boolean UNMARSHALLING_PLANS = SystemProperties.getBoolean(RobustReflectionConverter.class.getName() + ".unmarshallingPlans", true);
+
+    /**
+     * Incremented whenever the mapping of elements to fields may have changed, which makes all the plans stale.
+     */
+    private static final AtomicInteger PLAN_EPOCH = new AtomicInteger();
+
     protected final ReflectionProvider reflectionProvider;
     protected final Mapper mapper;
     protected transient SerializationMembers serializationMethodInvoker;
@@ -94,6 +114,7 @@ public class RobustReflectionConverter implements Converter {
     private final ReadWriteLock criticalFieldsLock = new ReentrantReadWriteLock();
     @GuardedBy("criticalFieldsLock")
     private final Map<String, Set<String>> criticalFields = new HashMap<>();
+    private final Map<Class<?>, UnmarshallingPlan> plans = new ConcurrentHashMap<>();
 
     public RobustReflectionConverter(Mapper mapper, ReflectionProvider reflectionProvider) {
         this(mapper, reflectionProvider, new XStream2().new PluginClassOwnership());
@@ -121,6 +142,16 @@ public class RobustReflectionConverter implements Converter {
             // Unlock
             criticalFieldsLock.writeLock().unlock();
         }
+        invalidatePlans();
+    }
+
+    /**
+     * Discards the {@link UnmarshallingPlan}s of all the converters,
+     * for example because an alias or a converter was registered, or a plugin was loaded.
+     */
+    @Restricted(NoExternalUse.class)
+    public static void invalidatePlans() {
+        PLAN_EPOCH.incrementAndGet();
     }
     
     private boolean hasCriticalField(Class<?> clazz, String field) {
@@ -321,6 +352,14 @@ public class RobustReflectionConverter implements Converter {
 
             boolean critical = false;
             try {
+                UnmarshallingPlan.Member member = UNMARSHALLING_PLANS ? planFor(result.getClass()).member(reader) : null;
+                if (member != null) {
+                    critical = member.critical;
+                    unmarshalMember(member, result, reader, context, seenFields);
+                    reader.moveUp();
+                    continue;
+                }
+
                 String fieldName = mapper.realMember(result.getClass(), reader.getNodeName());
                 for (Class<?> concrete = result.getClass(); concrete != null; concrete = concrete.getSuperclass()) {
                     // Not quite right since a subclass could shadow a field, but probably suffices:
@@ -400,6 +439,154 @@ public class RobustReflectionConverter implements Converter {
         return result;
     }
 
+    private UnmarshallingPlan planFor(Class<?> type) {
+        int epoch = PLAN_EPOCH.get();
+        UnmarshallingPlan plan = plans.get(type);
+        if (plan == null || plan.epoch != epoch) {
+            plan = new UnmarshallingPlan(type, epoch);
+            plans.put(type, plan);
+        }
+        return plan;
+    }
+
+    /**
+     * Same as the general case of {@link #doUnmarshal}, for an element known to be a plain field.
+     */
+    private void unmarshalMember(UnmarshallingPlan.Member member, Object result, HierarchicalStreamReader reader, UnmarshallingContext context, SeenFields seenFields) {
+        Field field = member.field;
+        Class type = member.defaultType;
+        String classAttribute = reader.getAttribute(member.plan.classAttribute);
+        if (classAttribute != null) {
+            Class specifiedType = mapper.realClass(classAttribute);
+            if (field.getType().isAssignableFrom(specifiedType)) {
+                type = specifiedType;
+            }
+        }
+        Object value = unmarshalField(context, result, type, field);
+        if (!field.getType().isPrimitive()) {
+            type = field.getType();
+        }
+        if (value != null && !type.isAssignableFrom(value.getClass())) {
+            LOGGER.warning("Cannot convert type " + value.getClass().getName() + " to type " + type.getName());
+            return;
+        }
+        if (member.setter != null) {
+            try {
+                member.setter.invokeExact(result, value);
+            } catch (ClassCastException e) {
+                throw new ObjectAccessException("Could not set field " + field, e);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new ObjectAccessException("Could not set field " + field, e);
+            }
+        } else {
+            reflectionProvider.writeField(result, member.fieldName, value, null);
+        }
+        seenFields.add(null, member.fieldName);
+    }
+
+    /**
+     * What {@link #doUnmarshal} needs to know about the elements of one class,
+     * resolved once per class instead of once per element.
+     */
+    private final class UnmarshallingPlan {
+        private final Class<?> type;
+        private final int epoch;
+        private final String definedInAttribute;
+        private final String classAttribute;
+        /**
+         * Elements resolved to a field so far, by element name.
+         * Other elements are rare, and as their names come from the XML, they are not remembered.
+         */
+        private final Map<String, Member> members = new ConcurrentHashMap<>();
+
+        UnmarshallingPlan(Class<?> type, int epoch) {
+            this.type = type;
+            this.epoch = epoch;
+            definedInAttribute = mapper.aliasForAttribute("defined-in");
+            classAttribute = mapper.aliasForAttribute("class");
+        }
+
+        /**
+         * Gets the field the current element of the reader should be unmarshalled into.
+         *
+         * @return null if the element needs the general case, for example because it belongs to an implicit collection,
+         *      or names a field shadowed by a subclass
+         */
+        Member member(HierarchicalStreamReader reader) {
+            if (reader.getAttribute(definedInAttribute) != null) {
+                return null;
+            }
+            String nodeName = reader.getNodeName();
+            Member member = members.get(nodeName);
+            if (member == null) {
+                member = resolve(nodeName);
+                if (member != null) {
+                    members.put(nodeName, member);
+                }
+            }
+            return member;
+        }
+
+        private Member resolve(String nodeName) {
+            if (mapper.getImplicitCollectionDefForFieldName(type, nodeName) != null) {
+                return null;
+            }
+            String fieldName = mapper.realMember(type, nodeName);
+            Field field = reflectionProvider.getFieldOrNull(type, fieldName);
+            if (field == null) {
+                return null;
+            }
+            boolean critical = false;
+            for (Class<?> concrete = type; concrete != null; concrete = concrete.getSuperclass()) {
+                if (hasCriticalField(concrete, fieldName)) {
+                    critical = true;
+                    break;
+                }
+            }
+            return new Member(this, fieldName, field, mapper.defaultImplementationOf(field.getType()), critical);
+        }
+
+        final class Member {
+            final UnmarshallingPlan plan;
+            final String fieldName;
+            final Field field;
+            final Class defaultType;
+            final boolean critical;
+            /**
+             * Writes the field, or null to go through the reflection provider, for example for final fields.
+             */
+            final MethodHandle setter;
+
+            Member(UnmarshallingPlan plan, String fieldName, Field field, Class defaultType, boolean critical) {
+                this.plan = plan;
+                this.fieldName = fieldName;
+                this.field = field;
+                this.defaultType = defaultType;
+                this.critical = critical;
+                this.setter = setterOf(field);
+            }
+        }
+    }
+
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private static MethodHandle setterOf(Field field) {
+        int modifiers = field.getModifiers();
+        if (Modifier.isFinal(modifiers) || Modifier.isStatic(modifiers)) {
+            return null;
+        }
+        try {
+            field.setAccessible(true);
+            return MethodHandles.lookup().unreflectSetter(field).asType(SETTER_TYPE);
+        } catch (IllegalAccessException | RuntimeException e) {
+            // for example InaccessibleObjectException from a named module
+            LOGGER.log(FINE, "Falling back to the reflection provider for " + field, e);
+            return null;
+        }
+    }
+
     /**
      * Returns whether the current user authentication is allowed to have errors loading data reported.
      *
@@ -24,6 +24,7 @@
 package hudson.util;
 
 import java.util.function.Predicate;
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Iterators;
 import edu.umd.cs.findbugs.annotations.Nullable;
@@ -35,6 +36,10 @@ import hudson.model.Run;
 import hudson.model.TopLevelItem;
 import hudson.model.View;
 import hudson.util.Iterators.CountingPredicate;
+import jenkins.model.lazy.AbstractLazyLoadRunMap;
+import jenkins.model.lazy.BuildIndex;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
 
 import java.util.*;
 
@@ -47,6 +52,12 @@ public class RunList<R extends Run> extends AbstractList<R> {
 
     private Iterable<R> base;
 
+    /**
+     * The build map {@link #base} iterates over, as long as no filter has been applied yet.
+     */
+    private AbstractLazyLoadRunMap<R> runMap;
+    private Iterable<R> runMapBase;
+
     private R first;
     private Integer size;
 
@@ -202,6 +213,19 @@ public class RunList<R extends Run> extends AbstractList<R> {
         return new RunList<R>((Iterable)runs);
     }
 
+    /**
+     * Creates a {@link RunList} of all the builds of a map, newest first,
+     * which can use the {@link AbstractLazyLoadRunMap#getBuildIndex()} to avoid loading builds.
+     * @since TODO
+     */
+    @Restricted(NoExternalUse.class)
+    public static <R extends Run> RunList<R> fromRunMap(AbstractLazyLoadRunMap<R> runs) {
+        RunList<R> r = new RunList<>(runs.values());
+        r.runMap = runs;
+        r.runMapBase = r.base;
+        return r;
+    }
+
     /**
      * Returns elements that satisfy the given predicate.
      * <em>Warning:</em> this method mutates the original list and then returns it.
@@ -280,6 +304,10 @@ public class RunList<R extends Run> extends AbstractList<R> {
      * <em>Warning:</em> this method mutates the original list and then returns it.
      */
     public RunList<R> failureOnly() {
+        if (isIndexed()) {
+            return filterIndexed((index, i) -> index.getResult(i) == Result.SUCCESS.ordinal ? SKIP : LOAD,
+                    r -> r.getResult() != Result.SUCCESS ? MATCH : SKIP);
+        }
         return filter((Predicate<R>) r -> r.getResult() != Result.SUCCESS);
     }
 
@@ -289,6 +317,10 @@ public class RunList<R extends Run> extends AbstractList<R> {
      * @since 1.517
      */
     public RunList<R> overThresholdOnly(final Result threshold) {
+        if (isIndexed()) {
+            return filterIndexed((index, i) -> index.getResult(i) > threshold.ordinal ? SKIP : LOAD,
+                    r -> r.getResult() != null && r.getResult().isBetterOrEqualTo(threshold) ? MATCH : SKIP);
+        }
         return filter((Predicate<R>) r -> r.getResult() != null && r.getResult().isBetterOrEqualTo(threshold));
     }
 
@@ -324,6 +356,12 @@ public class RunList<R extends Run> extends AbstractList<R> {
      * <em>Warning:</em> this method mutates the original list and then returns it.
      */
     public RunList<R> byTimestamp(final long start, final long end) {
+        if (isIndexed()) {
+            return filterIndexed((index, i) -> {
+                long timestamp = index.getTimestamp(i);
+                return timestamp == BuildIndex.UNKNOWN ? LOAD : timestamp < start ? STOP : timestamp >= end ? SKIP : MATCH;
+            }, r -> r.getTimeInMillis() < start ? STOP : r.getTimeInMillis() >= end ? SKIP : MATCH);
+        }
         return
         limit(new CountingPredicate<R>() {
             public boolean apply(int index, R r) {
@@ -332,6 +370,72 @@ public class RunList<R extends Run> extends AbstractList<R> {
         }).filter((Predicate<R>) r -> r.getTimeInMillis() < end);
     }
 
+    private static final int MATCH = 0, SKIP = 1, STOP = 2, LOAD = 3;
+
+    private interface IndexTest {
+        /**
+         * @return {@link #MATCH}, {@link #SKIP}, {@link #STOP}, or {@link #LOAD} if the build must be loaded to decide
+         */
+        int test(BuildIndex index, int i);
+    }
+
+    private interface RunTest<R> {
+        /**
+         * @return {@link #MATCH}, {@link #SKIP} or {@link #STOP}
+         */
+        int test(R r);
+    }
+
+    /**
+     * Whether this still lists all the builds of {@link #runMap}, so that its {@link BuildIndex} can be used.
+     */
+    private boolean isIndexed() {
+        return runMap != null && base == runMapBase;
+    }
+
+    /**
+     * Like {@link #filter(Predicate)} and {@link #limit(CountingPredicate)} combined, but decides from the
+     * {@link BuildIndex} where possible, so that builds it rules out are never loaded.
+     */
+    private RunList<R> filterIndexed(final IndexTest byIndex, final RunTest<R> byRun) {
+        final AbstractLazyLoadRunMap<R> runs = runMap;
+        size = null;
+        first = null;
+        base = () -> new AbstractIterator<R>() {
+            private final BuildIndex index = runs.getBuildIndex();
+            private int i = index.size();
+
+            @Override
+            protected R computeNext() {
+                while (--i >= 0) {
+                    int decision = byIndex.test(index, i);
+                    R r = null;
+                    if (decision == LOAD) {
+                        r = runs.getByNumber(index.getNumber(i));
+                        if (r == null) {
+                            continue;
+                        }
+                        decision = byRun.test(r);
+                    }
+                    if (decision == STOP) {
+                        break;
+                    }
+                    if (decision == SKIP) {
+                        continue;
+                    }
+                    if (r == null) {
+                        r = runs.getByNumber(index.getNumber(i));
+                    }
+                    if (r != null) {
+                        return r;
+                    }
+                }
+                return endOfData();
+            }
+        };
+        return this;
+    }
+
     /**
      * Reduce the size of the list by only leaving relatively new ones.
      * This also removes on-going builds, as RSS cannot be used to publish information
@@ -0,0 +1,213 @@
+package hudson.util;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * {@link Writer} that encodes to UTF-8 straight into a growable byte array,
+ * so that a document can be compared with what is on disk before it is written.
+ *
+ * <p>
+ * Instances are meant to be reused by the same thread, through {@link #acquire()} and {@link #release()},
+ * so that saving a configuration does not allocate a new buffer every time.
+ * Unpaired surrogates are encoded as {@code ?}, like {@link java.nio.charset.StandardCharsets#UTF_8} does.
+ *
+ * @since TODO
+ */
+@Restricted(NoExternalUse.class)
+public final class Utf8Buffer extends Writer {
+    private static final ThreadLocal<Utf8Buffer> CACHE = new ThreadLocal<>();
+    /**
+     * Used to read back files in {@link #contentEquals}.
+     */
+    private static final ThreadLocal<ByteBuffer> CHUNK = ThreadLocal.withInitial(() -> ByteBuffer.allocate(8192));
+    /**
+     * Larger buffers are not kept around after use, so that saving one huge file does not pin memory for good.
+     */
+    private static final int MAX_RETAINED = 1024 * 1024;
+
+    private byte[] bytes = new byte[8192];
+    private int size;
+    /**
+     * High surrogate waiting for its low surrogate, which may come in the next call, or 0.
+     */
+    private char pending;
+
+    /**
+     * Gets an empty buffer, reusing the one of the current thread if it is not in use.
+     */
+    public static @NonNull Utf8Buffer acquire() {
+        Utf8Buffer b = CACHE.get();
+        if (b == null) {
+            return new Utf8Buffer();
+        }
+        CACHE.set(null);
+        b.reset();
+        return b;
+    }
+
+    /**
+     * Hands this buffer back to the current thread, once its content is no longer needed.
+     */
+    public void release() {
+        if (bytes.length <= MAX_RETAINED) {
+            CACHE.set(this);
+        }
+    }
+
+    public void reset() {
+        size = 0;
+        pending = 0;
+    }
+
+    /**
+     * Number of bytes written so far.
+     */
+    public int size() {
+        flushPending();
+        return size;
+    }
+
+    /**
+     * Gets the bytes written so far, without copying.
+     * The buffer must not be written to while the result is in use.
+     */
+    public @NonNull ByteBuffer toByteBuffer() {
+        flushPending();
+        return ByteBuffer.wrap(bytes, 0, size);
+    }
+
+    /**
+     * Checks whether a file has exactly the bytes written so far.
+     *
+     * @return false if the file differs, does not exist, or cannot be read
+     */
+    public boolean contentEquals(@NonNull Path file) {
+        return contentEquals(toByteBuffer(), file);
+    }
+
+    /**
+     * Checks whether a file has exactly the remaining bytes of the given buffer, which must be backed by an array.
+     *
+     * @return false if the file differs, does not exist, or cannot be read
+     */
+    public static boolean contentEquals(@NonNull ByteBuffer content, @NonNull Path file) {
+        byte[] bytes = content.array();
+        int start = content.arrayOffset() + content.position();
+        int size = content.remaining();
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (ch.size() != size) {
+                return false;
+            }
+            ByteBuffer chunk = CHUNK.get();
+            int pos = 0;
+            while (pos < size) {
+                chunk.clear();
+                int n = ch.read(chunk);
+                if (n < 0 || pos + n > size) {
+                    return false; // the file changed under us
+                }
+                byte[] a = chunk.array();
+                for (int i = 0; i < n; i++) {
+                    if (a[i] != bytes[start + pos + i]) {
+                        return false;
+                    }
+                }
+                pos += n;
+            }
+            return true;
+        } catch (IOException e) {
+            // including NoSuchFileException; either way the file needs to be written
+            return false;
+        }
+    }
+
+    @Override
+    public void write(int c) {
+        ensureCapacity(4);
+        put((char) c);
+    }
+
+    @Override
+    public void write(@NonNull char[] cbuf, int off, int len) {
+        ensureCapacity(len * 3L + 1);
+        for (int i = off, end = off + len; i < end; i++) {
+            put(cbuf[i]);
+        }
+    }
+
+    @Override
+    public void write(@NonNull String str, int off, int len) {
+        ensureCapacity(len * 3L + 1);
+        for (int i = off, end = off + len; i < end; i++) {
+            put(str.charAt(i));
+        }
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private void put(char c) {
+        if (pending != 0) {
+            if (Character.isLowSurrogate(c)) {
+                int cp = Character.toCodePoint(pending, c);
+                pending = 0;
+                bytes[size++] = (byte) (0xF0 | (cp >> 18));
+                bytes[size++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                bytes[size++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                bytes[size++] = (byte) (0x80 | (cp & 0x3F));
+                return;
+            }
+            pending = 0;
+            bytes[size++] = '?';
+        }
+        if (c < 0x80) {
+            bytes[size++] = (byte) c;
+        } else if (c < 0x800) {
+            bytes[size++] = (byte) (0xC0 | (c >> 6));
+            bytes[size++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isHighSurrogate(c)) {
+            pending = c;
+        } else if (Character.isLowSurrogate(c)) {
+            bytes[size++] = '?';
+        } else {
+            bytes[size++] = (byte) (0xE0 | (c >> 12));
+            bytes[size++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            bytes[size++] = (byte) (0x80 | (c & 0x3F));
+        }
+    }
+
+    private void flushPending() {
+        if (pending != 0) {
+            pending = 0;
+            ensureCapacity(1);
+            bytes[size++] = '?';
+        }
+    }
+
+    /**
+     * Makes room for the given number of bytes, plus a pending surrogate pair.
+     */
+    private void ensureCapacity(long extra) {
+        long needed = size + extra + 4;
+        if (needed > bytes.length) {
+            if (needed > Integer.MAX_VALUE - 8) {
+                throw new OutOfMemoryError("document too large");
+            }
+            bytes = Arrays.copyOf(bytes, (int) Math.max(needed, Math.min(2L * bytes.length, Integer.MAX_VALUE - 8)));
+        }
+    }
+}
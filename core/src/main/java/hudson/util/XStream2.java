@@ -324,6 +324,46 @@ public class XStream2 extends XStream {
      */
     public void setMapper(Mapper m) {
         mapperInjectionPoint.setDelegate(m);
+        RobustReflectionConverter.invalidatePlans();
+    }
+
+    // The following change how elements map to fields, which RobustReflectionConverter caches.
+    // Other overloads delegate to these.
+
+    @Override
+    public void aliasField(String alias, Class definedIn, String fieldName) {
+        super.aliasField(alias, definedIn, fieldName);
+        RobustReflectionConverter.invalidatePlans();
+    }
+
+    @Override
+    public void aliasAttribute(String alias, String attributeName) {
+        super.aliasAttribute(alias, attributeName);
+        RobustReflectionConverter.invalidatePlans();
+    }
+
+    @Override
+    public void aliasAttribute(Class definedIn, String attributeName, String alias) {
+        super.aliasAttribute(definedIn, attributeName, alias);
+        RobustReflectionConverter.invalidatePlans();
+    }
+
+    @Override
+    public void addDefaultImplementation(Class defaultImplementation, Class ofType) {
+        super.addDefaultImplementation(defaultImplementation, ofType);
+        RobustReflectionConverter.invalidatePlans();
+    }
+
+    @Override
+    public void addImplicitMap(Class ownerType, String fieldName, String itemName, Class itemType, String keyFieldName) {
+        super.addImplicitMap(ownerType, fieldName, itemName, itemType, keyFieldName);
+        RobustReflectionConverter.invalidatePlans();
+    }
+
+    @Override
+    public void processAnnotations(Class[] types) {
+        super.processAnnotations(types);
+        RobustReflectionConverter.invalidatePlans();
     }
 
     static final class MapperInjectionPoint extends MapperDelegate {
@@ -20,9 +20,9 @@ import java.util.List;
 import java.util.ServiceLoader;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -41,8 +41,10 @@ public class InitReactorRunner {
 
         ExecutorService es;
         if (Jenkins.PARALLEL_LOAD)
-            es = new ThreadPoolExecutor(
-                TWICE_CPU_NUM, TWICE_CPU_NUM, 5L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new DaemonThreadFactory());
+            // tasks that become runnable are submitted by the worker that completed their prerequisites,
+            // so a work-stealing pool keeps them local and lets idle workers take over the rest.
+            // asyncMode, as tasks are never joined and should run in the order they are submitted.
+            es = new ForkJoinPool(TWICE_CPU_NUM, new WorkerThreadFactory(), null, true);
         else
             es = Executors.newSingleThreadExecutor(new NamingThreadFactory(new DaemonThreadFactory(), "InitReactorRunner"));
         try {
@@ -53,6 +55,24 @@ public class InitReactorRunner {
 
     }
 
+    /**
+     * Creates workers as {@link NamingThreadFactory} and {@link DaemonThreadFactory} would for a plain pool:
+     * named after this runner, and with the context class loader of the thread starting the reactor,
+     * rather than the system class loader {@link ForkJoinPool#defaultForkJoinWorkerThreadFactory} may leave them with.
+     */
+    private static final class WorkerThreadFactory implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+        private final AtomicInteger threadNum = new AtomicInteger();
+        private final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+
+        @Override
+        public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+            ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            t.setName("InitReactorRunner [#" + threadNum.incrementAndGet() + "]");
+            t.setContextClassLoader(contextClassLoader);
+            return t;
+        }
+    }
+
     /**
      * Aggregates all the listeners into one and returns it.
      *
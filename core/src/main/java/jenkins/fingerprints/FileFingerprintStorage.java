@@ -31,16 +31,23 @@ import hudson.XmlFile;
 import hudson.model.Fingerprint;
 import hudson.model.TaskListener;
 import hudson.model.listeners.SaveableListener;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
 import hudson.util.AtomicFileWriter;
+import hudson.util.ClassLoaderSanityThreadFactory;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
 
 import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import jenkins.model.FingerprintFacet;
 import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
 import org.jenkinsci.Symbol;
 import org.kohsuke.accmod.Restricted;
 import org.kohsuke.accmod.restrictions.NoExternalUse;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.springframework.security.core.Authentication;
 import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.BufferedWriter;
@@ -48,8 +55,26 @@ import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.Deque;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
@@ -67,7 +92,21 @@ public class FileFingerprintStorage extends FingerprintStorage {
     private static final Logger logger = Logger.getLogger(FileFingerprintStorage.class.getName());
     private static final DateConverter DATE_CONVERTER = new DateConverter();
     public static final String FINGERPRINTS_DIR_NAME = "fingerprints";
-    private static final Pattern FINGERPRINT_FILE_PATTERN = Pattern.compile("[0-9a-f]{28}\\.xml");
+    static final Pattern FINGERPRINT_FILE_PATTERN = Pattern.compile("[0-9a-f]{28}\\.xml");
+    private static final Pattern CHECKPOINT_PATTERN = Pattern.compile("[0-9a-f]{2}/[0-9a-f]{2}");
+    private static final long CHECKPOINT_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * Number of threads cleaning up fingerprints.
+     */
+    public static /* non-final for Groovy */ int CLEANUP_THREADS = SystemProperties.getInteger(FileFingerprintStorage.class.getName() + ".cleanupThreads", Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+
+    /**
+     * Most fingerprints read per second by cleanup, or 0 for no limit.
+     */
+    public static /* non-final for Groovy */ int CLEANUP_RATE = SystemProperties.getInteger(FileFingerprintStorage.class.getName() + ".cleanupRate", 0);
+
+    private static ExecutorService cleaners;
 
     @DataBoundConstructor
     public FileFingerprintStorage () {}
@@ -234,31 +273,193 @@ public class FileFingerprintStorage extends FingerprintStorage {
 
     /**
      * Perform Fingerprint cleanup.
+     *
+     * <p>
+     * Directories of the second level are cleaned up in parallel by {@link #CLEANUP_THREADS} threads,
+     * reading at most {@link #CLEANUP_RATE} fingerprints per second, with a {@link LivenessCache} for the whole pass.
+     * The last directory done, in their order, is regularly recorded, so that an interrupted pass resumes after it.
      */
     @Override
     public void iterateAndCleanupFingerprints(TaskListener taskListener) {
-        int numFiles = 0;
-
-        File root = new File(getRootDir(), FINGERPRINTS_DIR_NAME);
-        File[] files1 = root.listFiles(f -> f.isDirectory() && f.getName().length()==2);
-        if(files1!=null) {
-            for (File file1 : files1) {
-                File[] files2 = file1.listFiles(f -> f.isDirectory() && f.getName().length()==2);
-                for(File file2 : files2) {
-                    File[] files3 = file2.listFiles(f -> f.isFile() && FINGERPRINT_FILE_PATTERN.matcher(f.getName()).matches());
-                    for(File file3 : files3) {
-                        if(cleanFingerprint(file3, taskListener))
-                            numFiles++;
+        AtomicInteger numFiles = new AtomicInteger();
+
+        Path root = new File(getRootDir(), FINGERPRINTS_DIR_NAME).toPath();
+        File checkpointFile = new File(getRootDir(), FINGERPRINTS_DIR_NAME + ".cleanup");
+        String resumeAfter = readCheckpoint(checkpointFile);
+        if (resumeAfter != null) {
+            taskListener.getLogger().println("Resuming cleanup after " + resumeAfter);
+        }
+        LivenessCache cache = new LivenessCache();
+        RateLimiter limiter = new RateLimiter(CLEANUP_RATE);
+        ExecutorService executor = cleaners();
+        // as for example FingerprintCleanupThread runs as SYSTEM, to tell builds which still exist from those no longer visible
+        Authentication auth = Jenkins.getAuthentication2();
+        int window = 2 * Math.max(CLEANUP_THREADS, 1);
+        Deque<Map.Entry<String, Future<?>>> pending = new ArrayDeque<>();
+        String done = resumeAfter;
+        long checkpointed = System.currentTimeMillis();
+        boolean complete = false;
+        try {
+            for (String name1 : listDirectories(root)) {
+                for (String name2 : listDirectories(root.resolve(name1))) {
+                    String dir = name1 + '/' + name2;
+                    if (resumeAfter != null && dir.compareTo(resumeAfter) <= 0) {
+                        continue;
+                    }
+                    while (pending.size() >= window) {
+                        done = awaitFirst(pending, taskListener);
+                        if (System.currentTimeMillis() - checkpointed > CHECKPOINT_INTERVAL) {
+                            writeCheckpoint(checkpointFile, done);
+                            checkpointed = System.currentTimeMillis();
+                        }
                     }
-                    deleteIfEmpty(file2);
+                    Path path = root.resolve(name1).resolve(name2);
+                    pending.add(new AbstractMap.SimpleEntry<>(dir, executor.submit(() -> {
+                        try (ACLContext ctx = ACL.as2(auth)) {
+                            cleanDirectory(path, taskListener, cache, limiter, numFiles);
+                        }
+                        return null;
+                    })));
                 }
-                deleteIfEmpty(file1);
+            }
+            while (!pending.isEmpty()) {
+                done = awaitFirst(pending, taskListener);
+            }
+            for (String name1 : listDirectories(root)) {
+                deleteIfEmpty(root.resolve(name1).toFile());
+            }
+            complete = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            taskListener.getLogger().println("Cleanup interrupted");
+        } catch (IOException e) {
+            Functions.printStackTrace(e, taskListener.error("Failed to list " + root));
+        } finally {
+            for (Map.Entry<String, Future<?>> e : pending) {
+                e.getValue().cancel(true);
+            }
+            if (complete) {
+                checkpointFile.delete();
+            } else if (done != null) {
+                writeCheckpoint(checkpointFile, done);
             }
         }
 
         taskListener.getLogger().println("Cleaned up "+numFiles+" records");
     }
-    
+
+    /**
+     * Waits for the oldest pending directory to be cleaned up.
+     *
+     * @return its name
+     */
+    private static String awaitFirst(Deque<Map.Entry<String, Future<?>>> pending, TaskListener listener) throws InterruptedException {
+        Map.Entry<String, Future<?>> first = pending.remove();
+        try {
+            first.getValue().get();
+        } catch (ExecutionException e) {
+            Functions.printStackTrace(e.getCause(), listener.error("Failed to process " + first.getKey()));
+        }
+        return first.getKey();
+    }
+
+    private void cleanDirectory(Path dir, TaskListener listener, LivenessCache cache, RateLimiter limiter, AtomicInteger numFiles)
+            throws IOException, InterruptedException {
+        try (LivenessCache.Scope scope = cache.use();
+             DirectoryStream<Path> files = Files.newDirectoryStream(dir, f -> FINGERPRINT_FILE_PATTERN.matcher(f.getFileName().toString()).matches())) {
+            for (Path file : files) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                limiter.acquire();
+                if (cleanFingerprint(file.toFile(), listener))
+                    numFiles.incrementAndGet();
+            }
+        } catch (NoSuchFileException e) {
+            // removed meanwhile
+            return;
+        }
+        deleteIfEmpty(dir.toFile());
+    }
+
+    /**
+     * Lists the directories of a level of the tree in order.
+     */
+    private static List<String> listDirectories(Path dir) throws IOException {
+        List<String> names = new ArrayList<>();
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(dir, f -> f.getFileName().toString().length() == 2 && Files.isDirectory(f))) {
+            for (Path child : children) {
+                names.add(child.getFileName().toString());
+            }
+        } catch (NoSuchFileException e) {
+            return names;
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    private static @CheckForNull String readCheckpoint(File file) {
+        try {
+            String dir = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).trim();
+            return CHECKPOINT_PATTERN.matcher(dir).matches() ? dir : null;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to read " + file, e);
+            return null;
+        }
+    }
+
+    private static void writeCheckpoint(File file, String dir) {
+        try {
+            Files.write(file.toPath(), dir.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to write " + file, e);
+        }
+    }
+
+    private static synchronized ExecutorService cleaners() {
+        if (cleaners == null) {
+            int threads = Math.max(CLEANUP_THREADS, 1);
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<>(),
+                    new NamingThreadFactory(new ClassLoaderSanityThreadFactory(new DaemonThreadFactory()), "FingerprintCleanup"));
+            executor.allowCoreThreadTimeOut(true);
+            cleaners = executor;
+        }
+        return cleaners;
+    }
+
+    /**
+     * Spaces out calls evenly.
+     */
+    private static final class RateLimiter {
+        /**
+         * Nanoseconds between two calls, or 0 for no limit.
+         */
+        private final long interval;
+        private long next = System.nanoTime();
+
+        RateLimiter(int perSecond) {
+            interval = perSecond > 0 ? TimeUnit.SECONDS.toNanos(1) / perSecond : 0;
+        }
+
+        void acquire() throws InterruptedException {
+            if (interval == 0) {
+                return;
+            }
+            long wait;
+            synchronized (this) {
+                long now = System.nanoTime();
+                long at = next - now > 0 ? next : now;
+                next = at + interval;
+                wait = at - now;
+            }
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+        }
+    }
+
     private boolean cleanFingerprint(File fingerprintFile, TaskListener listener) {
         try {
             Fingerprint fp = loadFingerprint(fingerprintFile);
@@ -320,7 +521,7 @@ public class FileFingerprintStorage extends FingerprintStorage {
     /**
      * Deletes a directory if it's empty.
      */
-    private void deleteIfEmpty(File dir) {
+    private static void deleteIfEmpty(File dir) {
         String[] r = dir.list();
         if(r==null)     return; // can happen in a rare occasion
         if(r.length==0)
@@ -0,0 +1,641 @@
+package jenkins.fingerprints;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.util.ClassLoaderSanityThreadFactory;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Append-only file of values keyed by MD5 checksums, backing {@link LogStructuredFingerprintStorage}.
+ *
+ * <p>
+ * The file starts with a magic number and a version, followed by records made of the length of the value,
+ * a type, the 16 byte key, the value, and a CRC32 of the type, key and value.
+ * A record replaces any earlier one with the same key, and a removal is a record without value.
+ * An incomplete or corrupt record at the end, as left by a crash, is cut off when the file is opened.
+ *
+ * <p>
+ * The offsets of the latest records are kept in an open addressing hash table of {@code long}s,
+ * each also holding 28 bits of its key, so that the index costs 8 bytes per slot, at most two thirds of them used.
+ * Full keys are compared with the file. Once superseded records make up most of the file,
+ * it is compacted in the background: live records are copied to a new file while writes go on,
+ * then the records written meanwhile are copied as well and the new file replaces the old one.
+ */
+final class FingerprintLog implements Closeable {
+    static final int KEY_LENGTH = 16;
+    /**
+     * Largest value accepted, so that a corrupt length cannot make us allocate gigabytes.
+     */
+    static final int MAX_VALUE = 16 * 1024 * 1024;
+
+    private static final int MAGIC = 0x4a46504c; // JFPL
+    private static final int VERSION = 1;
+    private static final int HEADER = 8;
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    /**
+     * Bytes of a record besides its value: length, type, key and checksum.
+     */
+    private static final int OVERHEAD = 4 + 1 + KEY_LENGTH + 4;
+    private static final int OFFSET_BITS = 36;
+    private static final long MAX_OFFSET = (1L << OFFSET_BITS) - 1;
+
+    private final File file;
+    /**
+     * Held while the file is read sequentially, so that it is not replaced meanwhile.
+     */
+    private final Object maintenance = new Object();
+    private RandomAccessFile raf;
+    private Index index;
+    private long end;
+    /**
+     * Bytes taken by superseded records.
+     */
+    private long garbage;
+    /**
+     * Size below which the file is not compacted again, after a failure.
+     */
+    private long compactAfter;
+    private boolean compactionScheduled;
+
+    FingerprintLog(@NonNull File file) throws IOException {
+        this.file = file;
+        raf = new RandomAccessFile(file, "rw");
+        boolean opened = false;
+        try {
+            index = new Index();
+            if (raf.length() == 0) {
+                raf.writeInt(MAGIC);
+                raf.writeInt(VERSION);
+                end = HEADER;
+            } else {
+                load();
+            }
+            opened = true;
+        } finally {
+            if (!opened) {
+                raf.close();
+            }
+        }
+    }
+
+    @NonNull File getFile() {
+        return file;
+    }
+
+    private void load() throws IOException {
+        raf.seek(0);
+        if (raf.length() < HEADER || raf.readInt() != MAGIC || raf.readInt() != VERSION) {
+            throw new IOException(file + " is not a fingerprint log");
+        }
+        long length = raf.length();
+        try (Reader r = new Reader(file, HEADER, length)) {
+            while (r.next()) {
+                garbage += apply(index, raf, r.type, r.key, r.offset, r.size());
+            }
+            end = r.position;
+        }
+        if (end < length) {
+            LOGGER.log(Level.WARNING, "Discarding {0} bytes of incomplete or corrupt records at the end of {1}", new Object[] {length - end, file});
+            raf.setLength(end);
+        }
+    }
+
+    /**
+     * Updates an index for a record.
+     *
+     * @return the size of the records it supersedes
+     */
+    private static long apply(Index index, RandomAccessFile in, byte type, byte[] key, long offset, int size) throws IOException {
+        if (type == PUT) {
+            long prev = index.put(key, offset, in);
+            return prev >= 0 ? sizeAt(in, prev) : 0;
+        } else {
+            long prev = index.remove(key, in);
+            return size + (prev >= 0 ? sizeAt(in, prev) : 0);
+        }
+    }
+
+    /**
+     * Gets the latest value of a key.
+     *
+     * @return null if there is none
+     */
+    synchronized @CheckForNull byte[] get(@NonNull byte[] key) throws IOException {
+        ensureOpen();
+        long offset = index.find(key, raf);
+        if (offset < 0) {
+            return null;
+        }
+        raf.seek(offset);
+        byte[] value = new byte[raf.readInt()];
+        raf.seek(offset + 4 + 1 + KEY_LENGTH);
+        raf.readFully(value);
+        return value;
+    }
+
+    synchronized void put(@NonNull byte[] key, @NonNull byte[] value) throws IOException {
+        put(key, value, LogStructuredFingerprintStorage.SYNC);
+    }
+
+    /**
+     * Like {@link #put(byte[], byte[])}, but only forces the record to disk if asked to,
+     * so that many can be written before calling {@link #force} once.
+     */
+    synchronized void put(@NonNull byte[] key, @NonNull byte[] value, boolean sync) throws IOException {
+        ensureOpen();
+        long offset = append(PUT, key, value, sync);
+        long prev = index.put(key, offset, raf);
+        if (prev >= 0) {
+            garbage += sizeAt(raf, prev);
+        }
+        compactIfNeeded();
+    }
+
+    /**
+     * Removes a key.
+     *
+     * @return whether it had a value
+     */
+    synchronized boolean remove(@NonNull byte[] key) throws IOException {
+        ensureOpen();
+        long prev = index.find(key, raf);
+        if (prev < 0) {
+            return false;
+        }
+        append(REMOVE, key, new byte[0], LogStructuredFingerprintStorage.SYNC);
+        index.remove(key, raf);
+        garbage += sizeAt(raf, prev) + OVERHEAD;
+        compactIfNeeded();
+        return true;
+    }
+
+    /**
+     * Gets the number of keys with a value.
+     */
+    synchronized int size() {
+        return index.size;
+    }
+
+    /**
+     * Gets the size of the file.
+     */
+    synchronized long length() {
+        return end;
+    }
+
+    /**
+     * Calls back with the live keys and values, in the order they were written.
+     * The callback may modify the log.
+     */
+    void forEach(@NonNull BiConsumer<byte[], byte[]> action) throws IOException {
+        synchronized (maintenance) {
+            long to;
+            synchronized (this) {
+                ensureOpen();
+                to = end;
+            }
+            try (Reader r = new Reader(file, HEADER, to)) {
+                while (r.next()) {
+                    if (r.type == PUT && isLatest(r.key, r.offset)) {
+                        action.accept(r.key.clone(), r.value);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Forces all the records written so far to disk.
+     */
+    synchronized void force() throws IOException {
+        ensureOpen();
+        raf.getFD().sync();
+    }
+
+    private synchronized boolean isLatest(byte[] key, long offset) throws IOException {
+        ensureOpen();
+        return index.find(key, raf) == offset;
+    }
+
+    private long append(byte type, byte[] key, byte[] value, boolean sync) throws IOException {
+        if (key.length != KEY_LENGTH) {
+            throw new IllegalArgumentException("Keys must be " + KEY_LENGTH + " bytes long");
+        }
+        if (value.length > MAX_VALUE) {
+            throw new IOException("Value of " + value.length + " bytes is too large for " + file);
+        }
+        long offset = end;
+        if (offset + OVERHEAD + value.length > MAX_OFFSET) {
+            throw new IOException(file + " is full");
+        }
+        byte[] record = record(type, key, value);
+        // over any incomplete record left by a failure
+        raf.seek(offset);
+        raf.write(record);
+        if (sync) {
+            raf.getFD().sync();
+        }
+        end = offset + record.length;
+        return offset;
+    }
+
+    private static byte[] record(byte type, byte[] key, byte[] value) {
+        return ByteBuffer.allocate(OVERHEAD + value.length)
+                .putInt(value.length).put(type).put(key).put(value).putInt(checksum(type, key, value))
+                .array();
+    }
+
+    private static int checksum(byte type, byte[] key, byte[] value) {
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(key);
+        crc.update(value);
+        return (int) crc.getValue();
+    }
+
+    private static int sizeAt(RandomAccessFile in, long offset) throws IOException {
+        in.seek(offset);
+        return in.readInt() + OVERHEAD;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (raf == null) {
+            throw new IOException(file + " is closed");
+        }
+    }
+
+    /**
+     * Compacts the file in the background if superseded records make up most of it.
+     */
+    synchronized void compactIfNeeded() {
+        if (raf == null || compactionScheduled || end < LogStructuredFingerprintStorage.COMPACTION_MIN_SIZE || end < compactAfter || garbage * 2 < end) {
+            return;
+        }
+        compactionScheduled = true;
+        compactor().execute(() -> {
+            try {
+                compact();
+            } catch (IOException | RuntimeException x) {
+                LOGGER.log(Level.WARNING, "Failed to compact " + file, x);
+                synchronized (this) {
+                    compactAfter = end + LogStructuredFingerprintStorage.COMPACTION_MIN_SIZE;
+                }
+            } finally {
+                synchronized (this) {
+                    compactionScheduled = false;
+                }
+            }
+        });
+    }
+
+    /**
+     * Rewrites the file with only the latest records of the keys with a value.
+     */
+    void compact() throws IOException {
+        synchronized (maintenance) {
+            long[] live;
+            long from;
+            synchronized (this) {
+                ensureOpen();
+                live = index.offsets();
+                from = end;
+            }
+            Arrays.sort(live);
+            File tmp = new File(file.getPath() + ".compact");
+            try {
+                Compaction c = new Compaction(tmp);
+                try {
+                    c.copy(live);
+                    synchronized (this) {
+                        ensureOpen();
+                        c.replay(from, end);
+                        c.target.getFD().sync();
+                        c.target.close();
+                        raf.close();
+                        raf = null;
+                        try {
+                            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                        } finally {
+                            // the new file, or the old one if it could not be replaced
+                            raf = new RandomAccessFile(file, "rw");
+                        }
+                        LOGGER.log(Level.FINE, "Compacted {0} from {1} to {2} bytes", new Object[] {file, end, c.end});
+                        index = c.index;
+                        end = c.end;
+                        garbage = c.garbage;
+                    }
+                } finally {
+                    c.target.close();
+                }
+            } finally {
+                Files.deleteIfExists(tmp.toPath());
+            }
+        }
+    }
+
+    /**
+     * New file being written by {@link #compact}.
+     */
+    private final class Compaction {
+        final RandomAccessFile target;
+        final Index index = new Index();
+        long end = HEADER;
+        long garbage;
+
+        Compaction(File tmp) throws IOException {
+            target = new RandomAccessFile(tmp, "rw");
+            target.setLength(0);
+            target.writeInt(MAGIC);
+            target.writeInt(VERSION);
+        }
+
+        /**
+         * Copies the records of distinct keys, without the lock, as they are never overwritten.
+         */
+        void copy(long[] offsets) throws IOException {
+            try (RandomAccessFile source = new RandomAccessFile(file, "r")) {
+                for (long offset : offsets) {
+                    source.seek(offset);
+                    byte[] record = new byte[source.readInt() + OVERHEAD];
+                    source.seek(offset);
+                    source.readFully(record);
+                    index.insert(Arrays.copyOfRange(record, 5, 5 + KEY_LENGTH), end);
+                    write(record);
+                }
+            }
+        }
+
+        /**
+         * Copies the records written since the copy started, with the lock held.
+         */
+        void replay(long from, long to) throws IOException {
+            try (Reader r = new Reader(file, from, to)) {
+                while (r.next()) {
+                    long offset = end;
+                    write(record(r.type, r.key, r.value));
+                    garbage += apply(index, target, r.type, r.key, offset, r.size());
+                }
+                if (r.position < to) {
+                    throw new IOException("Corrupt record at " + r.position + " in " + file);
+                }
+            }
+        }
+
+        private void write(byte[] record) throws IOException {
+            target.seek(end);
+            target.write(record);
+            end += record.length;
+        }
+    }
+
+    /**
+     * Reads records one after the other.
+     */
+    private static final class Reader implements Closeable {
+        private final DataInputStream in;
+        private final long limit;
+        /**
+         * Where the next record starts.
+         */
+        long position;
+        long offset;
+        byte type;
+        final byte[] key = new byte[KEY_LENGTH];
+        byte[] value;
+
+        Reader(File file, long from, long to) throws IOException {
+            InputStream is = Files.newInputStream(file.toPath());
+            try {
+                IOUtils.skipFully(is, from);
+            } catch (IOException x) {
+                is.close();
+                throw x;
+            }
+            in = new DataInputStream(new BufferedInputStream(is, 64 * 1024));
+            position = from;
+            limit = to;
+        }
+
+        /**
+         * Reads the next record.
+         *
+         * @return false at the end, or when the next record is incomplete or corrupt
+         */
+        boolean next() throws IOException {
+            if (limit - position < OVERHEAD) {
+                return false;
+            }
+            int length = in.readInt();
+            if (length < 0 || length > MAX_VALUE || length > limit - position - OVERHEAD) {
+                return false;
+            }
+            byte t = in.readByte();
+            in.readFully(key);
+            byte[] v = new byte[length];
+            in.readFully(v);
+            if (in.readInt() != checksum(t, key, v) || t != PUT && t != REMOVE || t == REMOVE && length != 0) {
+                return false;
+            }
+            type = t;
+            value = v;
+            offset = position;
+            position += OVERHEAD + length;
+            return true;
+        }
+
+        int size() {
+            return OVERHEAD + value.length;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * Open addressing hash table with linear probing, from keys to the offsets of their latest records.
+     *
+     * <p>
+     * A slot holds an offset in its low {@link #OFFSET_BITS} bits and the first {@link #TAG_BITS} bits of the key
+     * above them, or 0 when empty. As keys are uniformly distributed, the home slot of an entry is derived from
+     * these bits alone, so that entries are moved when growing or removing without reading their keys.
+     */
+    private static final class Index {
+        private static final int TAG_BITS = 64 - OFFSET_BITS;
+
+        private long[] slots = new long[1024];
+        int size;
+
+        private static long tag(byte[] key) {
+            long t = 0;
+            for (int i = 0; i < 4; i++) {
+                t = t << 8 | (key[i] & 0xFF);
+            }
+            return t >>> (32 - TAG_BITS);
+        }
+
+        private int home(long slot) {
+            return (int) (((slot >>> OFFSET_BITS) * slots.length) >>> TAG_BITS);
+        }
+
+        /**
+         * @return the offset of the latest record of the key, or -1
+         */
+        long find(byte[] key, RandomAccessFile in) throws IOException {
+            int i = slotOf(key, in);
+            return i < 0 ? -1 : slots[i] & MAX_OFFSET;
+        }
+
+        /**
+         * @return the slot of the key, or the complement of the empty slot where it would go
+         */
+        private int slotOf(byte[] key, RandomAccessFile in) throws IOException {
+            long tag = tag(key);
+            int mask = slots.length - 1;
+            for (int i = home(tag << OFFSET_BITS); ; i = (i + 1) & mask) {
+                long s = slots[i];
+                if (s == 0) {
+                    return ~i;
+                }
+                if (s >>> OFFSET_BITS == tag && matches(in, s & MAX_OFFSET, key)) {
+                    return i;
+                }
+            }
+        }
+
+        private static boolean matches(RandomAccessFile in, long offset, byte[] key) throws IOException {
+            byte[] k = new byte[KEY_LENGTH];
+            in.seek(offset + 5);
+            in.readFully(k);
+            return Arrays.equals(k, key);
+        }
+
+        /**
+         * @return the offset of the previous record of the key, or -1
+         */
+        long put(byte[] key, long offset, RandomAccessFile in) throws IOException {
+            long slot = tag(key) << OFFSET_BITS | offset;
+            int i = slotOf(key, in);
+            if (i >= 0) {
+                long prev = slots[i] & MAX_OFFSET;
+                slots[i] = slot;
+                return prev;
+            }
+            slots[~i] = slot;
+            added();
+            return -1;
+        }
+
+        /**
+         * Adds a key known to be missing.
+         */
+        void insert(byte[] key, long offset) {
+            insertSlot(tag(key) << OFFSET_BITS | offset);
+            added();
+        }
+
+        private void insertSlot(long slot) {
+            int mask = slots.length - 1;
+            int i = home(slot);
+            while (slots[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            slots[i] = slot;
+        }
+
+        private void added() {
+            if (++size * 3L > slots.length * 2L) {
+                long[] old = slots;
+                slots = new long[old.length * 2];
+                for (long s : old) {
+                    if (s != 0) {
+                        insertSlot(s);
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return the offset of the removed record, or -1
+         */
+        long remove(byte[] key, RandomAccessFile in) throws IOException {
+            int i = slotOf(key, in);
+            if (i < 0) {
+                return -1;
+            }
+            long prev = slots[i] & MAX_OFFSET;
+            // shift back the entries which would no longer be found past the hole
+            int mask = slots.length - 1;
+            for (int j = (i + 1) & mask; slots[j] != 0; j = (j + 1) & mask) {
+                int k = home(slots[j]);
+                if (i <= j ? i < k && k <= j : i < k || k <= j) {
+                    continue;
+                }
+                slots[i] = slots[j];
+                i = j;
+            }
+            slots[i] = 0;
+            size--;
+            return prev;
+        }
+
+        long[] offsets() {
+            long[] r = new long[size];
+            int n = 0;
+            for (long s : slots) {
+                if (s != 0) {
+                    r[n++] = s & MAX_OFFSET;
+                }
+            }
+            return r;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (raf != null) {
+            raf.close();
+            raf = null;
+        }
+    }
+
+    private static ExecutorService compactor() {
+        return Compactor.INSTANCE;
+    }
+
+    private static final class Compactor {
+        static final ExecutorService INSTANCE;
+
+        static {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<>(),
+                    new NamingThreadFactory(new ClassLoaderSanityThreadFactory(new DaemonThreadFactory()), "Fingerprint log compaction"));
+            executor.allowCoreThreadTimeOut(true);
+            INSTANCE = executor;
+        }
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(FingerprintLog.class.getName());
+}
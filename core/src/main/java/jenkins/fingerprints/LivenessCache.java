@@ -0,0 +1,146 @@
+package jenkins.fingerprints;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.model.Fingerprint;
+import hudson.model.Job;
+import hudson.model.Run;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import jenkins.model.Jenkins;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Remembers the jobs and builds looked up by {@link Fingerprint#isAlive()} and {@link Fingerprint#trim()}
+ * during a pass of {@link FingerprintStorage#iterateAndCleanupFingerprints}, as many fingerprints point to the same ones.
+ *
+ * <p>
+ * A cache is used on the threads which {@linkplain #use() open} it, by lookups going through the static methods.
+ * Without any, these look up afresh each time.
+ *
+ * @since TODO
+ */
+@Restricted(NoExternalUse.class)
+public final class LivenessCache {
+    private static final ThreadLocal<LivenessCache> CURRENT = new ThreadLocal<>();
+
+    private final Map<String, Builds> jobs = new ConcurrentHashMap<>();
+    private final Map<String, Boolean> builds = new ConcurrentHashMap<>();
+
+    /**
+     * Makes lookups on the current thread go through this cache, until the scope is closed.
+     */
+    public @NonNull Scope use() {
+        LivenessCache previous = CURRENT.get();
+        CURRENT.set(this);
+        return () -> CURRENT.set(previous);
+    }
+
+    /**
+     * Restores the cache used before, if any, when closed.
+     */
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    /**
+     * Gets the builds of a job.
+     */
+    public static @NonNull Builds buildsOf(@NonNull String jobFullName) {
+        LivenessCache cache = CURRENT.get();
+        if (cache == null) {
+            return new Builds(jobFullName);
+        }
+        Builds b = cache.jobs.get(jobFullName);
+        if (b == null) {
+            // looked up without holding a lock of the map
+            b = new Builds(jobFullName);
+            Builds other = cache.jobs.putIfAbsent(jobFullName, b);
+            if (other != null) {
+                b = other;
+            }
+        }
+        return b;
+    }
+
+    /**
+     * Whether the build a pointer points to still exists.
+     */
+    public static boolean isAlive(@NonNull Fingerprint.BuildPtr ptr) {
+        LivenessCache cache = CURRENT.get();
+        if (cache == null) {
+            return ptr.getRun() != null;
+        }
+        String key = ptr.getName() + '#' + ptr.getNumber();
+        Boolean alive = cache.builds.get(key);
+        if (alive == null) {
+            alive = ptr.getRun() != null;
+            cache.builds.putIfAbsent(key, alive);
+        }
+        return alive;
+    }
+
+    /**
+     * What cleanup needs to know about the builds of a job.
+     */
+    public static final class Builds {
+        private final @CheckForNull Run<?, ?> firstBuild;
+        private KeptBuilds kept;
+
+        Builds(String jobFullName) {
+            Job<?, ?> job = Jenkins.get().getItemByFullName(jobFullName, Job.class);
+            firstBuild = job == null ? null : job.getFirstBuild();
+        }
+
+        /**
+         * Gets the number of the oldest build.
+         *
+         * @return -1 if the job no longer exists or has no builds
+         */
+        public int getFirstBuildNumber() {
+            return firstBuild == null ? -1 : firstBuild.getNumber();
+        }
+
+        /**
+         * Gets the oldest builds, up to the first one not {@linkplain Run#isKeepLog() kept forever}.
+         * Not to be modified.
+         */
+        public @NonNull Fingerprint.RangeSet getKept() {
+            return kept().set;
+        }
+
+        /**
+         * Gets the number of the oldest build not {@linkplain Run#isKeepLog() kept forever}.
+         *
+         * @return -1 if all the builds are kept
+         */
+        public int getFirstEphemeral() {
+            return kept().firstEphemeral;
+        }
+
+        private synchronized KeptBuilds kept() {
+            if (kept == null) {
+                Fingerprint.RangeSet set = new Fingerprint.RangeSet();
+                Run<?, ?> r = firstBuild;
+                while (r != null && r.isKeepLog()) {
+                    set.add(r.getNumber());
+                    r = r.getNextBuild();
+                }
+                kept = new KeptBuilds(set, r == null ? -1 : r.getNumber());
+            }
+            return kept;
+        }
+    }
+
+    private static final class KeptBuilds {
+        final Fingerprint.RangeSet set;
+        final int firstEphemeral;
+
+        KeptBuilds(Fingerprint.RangeSet set, int firstEphemeral) {
+            this.set = set;
+            this.firstEphemeral = firstEphemeral;
+        }
+    }
+}
@@ -0,0 +1,369 @@
+package jenkins.fingerprints;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.Functions;
+import hudson.Util;
+import hudson.init.Terminator;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.Fingerprint;
+import hudson.model.TaskListener;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UTFDataFormatException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.FingerprintFacet;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+import org.jenkinsci.Symbol;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.kohsuke.stapler.DataBoundConstructor;
+
+/**
+ * Fingerprint storage keeping all fingerprints in a single append-only file, {@link #FILE_NAME},
+ * instead of one XML file each.
+ *
+ * <p>
+ * Fingerprints without persisted facets are written in a compact binary form,
+ * others as XML. The file and its index are described in {@link FingerprintLog}.
+ * Fingerprints left in {@link FileFingerprintStorage} are moved here as they are loaded,
+ * and all of them by {@link Migration} once this storage is selected.
+ *
+ * @since TODO
+ */
+@Symbol("logStructuredFingerprintStorage")
+@Restricted(NoExternalUse.class)
+@Extension(ordinal=-50)
+public class LogStructuredFingerprintStorage extends FingerprintStorage {
+
+    public static final String FILE_NAME = "fingerprints.db";
+
+    /**
+     * Whether each write is forced to the disk, as {@link hudson.util.AtomicFileWriter} does for {@link FileFingerprintStorage}.
+     */
+    public static /* non-final for Groovy */ boolean SYNC = SystemProperties.getBoolean(LogStructuredFingerprintStorage.class.getName() + ".sync", true);
+
+    /**
+     * Size in bytes under which the file is not compacted.
+     */
+    public static /* non-final for Groovy */ long COMPACTION_MIN_SIZE = SystemProperties.getLong(LogStructuredFingerprintStorage.class.getName() + ".compactionMinSize", 16L * 1024 * 1024);
+
+    private static final byte BINARY = 1;
+    private static final byte XML = 2;
+
+    /**
+     * Shared by all instances, as one is created each time the configuration is submitted.
+     */
+    private static FingerprintLog log;
+
+    @DataBoundConstructor
+    public LogStructuredFingerprintStorage() {}
+
+    private static synchronized FingerprintLog log() throws IOException {
+        File file = new File(Jenkins.get().getRootDir(), FILE_NAME);
+        if (log == null || !log.getFile().equals(file)) {
+            if (log != null) {
+                log.close();
+            }
+            log = new FingerprintLog(file);
+        }
+        return log;
+    }
+
+    @Terminator
+    public static synchronized void shutdown() throws IOException {
+        if (log != null) {
+            log.close();
+            log = null;
+        }
+    }
+
+    @Override
+    public void save(Fingerprint fp) throws IOException {
+        byte[] value;
+        synchronized (fp) {
+            value = encode(fp);
+        }
+        log().put(Util.fromHexString(fp.getHashString()), value);
+    }
+
+    @Override
+    public @CheckForNull Fingerprint load(String id) throws IOException {
+        byte[] key = keyOf(id);
+        if (key == null) {
+            return null;
+        }
+        byte[] value = log().get(key);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return decode(key, value);
+        } catch (IOException | RuntimeException x) {
+            // as FileFingerprintStorage does with malformed XML
+            LOGGER.log(Level.WARNING, "Discarding malformed fingerprint " + id, x);
+            log().remove(key);
+            return null;
+        }
+    }
+
+    @Override
+    public void delete(String id) throws IOException {
+        byte[] key = keyOf(id);
+        if (key != null) {
+            log().remove(key);
+        }
+    }
+
+    @Override
+    public boolean isReady() {
+        return new File(Jenkins.get().getRootDir(), FILE_NAME).exists();
+    }
+
+    @Override
+    public void iterateAndCleanupFingerprints(TaskListener taskListener) {
+        int[] numCleaned = {0};
+        try (LivenessCache.Scope scope = new LivenessCache().use()) {
+            log().forEach((key, value) -> {
+                Fingerprint fp;
+                try {
+                    fp = decode(key, value);
+                } catch (IOException | RuntimeException x) {
+                    Functions.printStackTrace(x, taskListener.error("Failed to load " + Util.toHexString(key)));
+                    return;
+                }
+                if (cleanFingerprint(fp, taskListener)) {
+                    numCleaned[0]++;
+                }
+            });
+            log().compactIfNeeded();
+        } catch (IOException e) {
+            Functions.printStackTrace(e, taskListener.error("Failed to clean up fingerprints"));
+        }
+        taskListener.getLogger().println("Cleaned up " + numCleaned[0] + " records");
+    }
+
+    /**
+     * Moves all the fingerprints of {@link FileFingerprintStorage} here, unless newer ones already are.
+     *
+     * @return the number of fingerprints moved
+     */
+    public int migrate(@NonNull TaskListener listener) throws IOException {
+        FingerprintLog log = log();
+        int moved = 0;
+        File root = new File(Jenkins.get().getRootDir(), FileFingerprintStorage.FINGERPRINTS_DIR_NAME);
+        File[] files1 = root.listFiles(f -> f.isDirectory() && f.getName().length() == 2);
+        if (files1 != null) {
+            for (File file1 : files1) {
+                File[] files2 = file1.listFiles(f -> f.isDirectory() && f.getName().length() == 2);
+                if (files2 == null) {
+                    continue;
+                }
+                for (File file2 : files2) {
+                    File[] files3 = file2.listFiles(f -> f.isFile() && FileFingerprintStorage.FINGERPRINT_FILE_PATTERN.matcher(f.getName()).matches());
+                    if (files3 == null) {
+                        continue;
+                    }
+                    // written without syncing each one, then forced to disk once before their files are deleted
+                    List<File> migrated = new ArrayList<>();
+                    for (File file3 : files3) {
+                        String name = file3.getName();
+                        String id = file1.getName() + file2.getName() + name.substring(0, name.length() - ".xml".length());
+                        try {
+                            byte[] key = Util.fromHexString(id);
+                            if (log.get(key) == null) {
+                                Fingerprint fp = FileFingerprintStorage.load(file3);
+                                if (fp != null) {
+                                    log.put(key, encode(fp), false);
+                                    moved++;
+                                }
+                            }
+                            migrated.add(file3);
+                        } catch (IOException | RuntimeException x) {
+                            Functions.printStackTrace(x, listener.error("Failed to migrate " + file3));
+                        }
+                    }
+                    if (!migrated.isEmpty()) {
+                        try {
+                            log.force();
+                            for (File file3 : migrated) {
+                                if (file3.exists() && !file3.delete()) {
+                                    listener.error("Failed to delete " + file3);
+                                }
+                            }
+                        } catch (IOException x) {
+                            Functions.printStackTrace(x, listener.error("Failed to migrate " + file2));
+                        }
+                    }
+                    deleteIfEmpty(file2);
+                }
+                deleteIfEmpty(file1);
+            }
+        }
+        // so that the file storage is no longer looked up
+        deleteIfEmpty(root);
+        listener.getLogger().println("Migrated " + moved + " fingerprints");
+        return moved;
+    }
+
+    private static void deleteIfEmpty(File dir) {
+        String[] r = dir.list();
+        if (r != null && r.length == 0) {
+            dir.delete();
+        }
+    }
+
+    private static @CheckForNull byte[] keyOf(String id) {
+        try {
+            byte[] key = Util.fromHexString(id);
+            return key.length == FingerprintLog.KEY_LENGTH ? key : null;
+        } catch (NumberFormatException x) {
+            return null;
+        }
+    }
+
+    static byte[] encode(Fingerprint fp) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream(256);
+        if (fp.getPersistedFacets().isEmpty()) {
+            try (DataOutputStream out = new DataOutputStream(buf)) {
+                Fingerprint.BuildPtr original;
+                try (ACLContext ctx = ACL.as2(ACL.SYSTEM2)) {
+                    // unfiltered
+                    original = fp.getOriginal();
+                }
+                out.writeByte(BINARY);
+                out.writeLong(fp.getTimestamp().getTime());
+                out.writeBoolean(original != null);
+                if (original != null) {
+                    out.writeUTF(original.getName());
+                    out.writeInt(original.getNumber());
+                }
+                out.writeUTF(fp.getFileName());
+                List<Map.Entry<String, Fingerprint.RangeSet>> usages = new ArrayList<>();
+                Hashtable<String, Fingerprint.RangeSet> table = fp.getUsages();
+                if (table != null) {
+                    synchronized (table) {
+                        usages.addAll(table.entrySet());
+                    }
+                }
+                out.writeInt(usages.size());
+                for (Map.Entry<String, Fingerprint.RangeSet> e : usages) {
+                    out.writeUTF(e.getKey());
+                    List<Fingerprint.Range> ranges = e.getValue().getRanges();
+                    out.writeInt(ranges.size());
+                    for (Fingerprint.Range r : ranges) {
+                        out.writeInt(r.getStart());
+                        out.writeInt(r.getEnd());
+                    }
+                }
+                return buf.toByteArray();
+            } catch (UTFDataFormatException x) {
+                // names over 64KB
+                buf.reset();
+            }
+        }
+        buf.write(XML);
+        try (Writer w = new OutputStreamWriter(buf, StandardCharsets.UTF_8)) {
+            Fingerprint.getXStream().toXML(fp, w);
+        }
+        return buf.toByteArray();
+    }
+
+    static Fingerprint decode(byte[] key, byte[] value) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(value));
+        byte format = in.readByte();
+        Fingerprint fp;
+        if (format == BINARY) {
+            Date timestamp = new Date(in.readLong());
+            Fingerprint.BuildPtr original = in.readBoolean() ? new Fingerprint.BuildPtr(in.readUTF(), in.readInt()) : null;
+            String fileName = in.readUTF();
+            int count = in.readInt();
+            Hashtable<String, Fingerprint.RangeSet> usages = new Hashtable<>();
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                int size = in.readInt();
+                if (size < 0 || size > in.available() / 8) {
+                    throw new IOException("Corrupt usage of " + name);
+                }
+                List<Fingerprint.Range> ranges = new ArrayList<>(size);
+                for (int j = 0; j < size; j++) {
+                    ranges.add(new Fingerprint.Range(in.readInt(), in.readInt()));
+                }
+                usages.put(name, Fingerprint.RangeSet.fromRanges(ranges));
+            }
+            fp = new Fingerprint(original, fileName, key.clone(), timestamp, usages);
+        } else if (format == XML) {
+            Object loaded = Fingerprint.getXStream().fromXML(new InputStreamReader(in, StandardCharsets.UTF_8));
+            if (!(loaded instanceof Fingerprint)) {
+                throw new IOException("Unexpected Fingerprint type. Expected " + Fingerprint.class + " or subclass but got "
+                        + (loaded != null ? loaded.getClass() : "null"));
+            }
+            fp = (Fingerprint) loaded;
+        } else {
+            throw new IOException("Unknown fingerprint format " + format);
+        }
+        for (FingerprintFacet facet : fp.getPersistedFacets()) {
+            facet._setOwner(fp);
+        }
+        return fp;
+    }
+
+    /**
+     * Moves the fingerprints of {@link FileFingerprintStorage} to {@link LogStructuredFingerprintStorage} once it is selected.
+     * Its log is kept with those of other periodic tasks.
+     */
+    @Extension
+    public static final class Migration extends AsyncPeriodicWork {
+        public Migration() {
+            super("Fingerprint migration");
+        }
+
+        @Override
+        public long getRecurrencePeriod() {
+            return HOUR;
+        }
+
+        @Override
+        public long getInitialDelay() {
+            return MIN;
+        }
+
+        @Override
+        protected void execute(TaskListener listener) throws IOException {
+            FingerprintStorage storage = FingerprintStorage.get();
+            if (storage instanceof LogStructuredFingerprintStorage && FingerprintStorage.getFileFingerprintStorage().isReady()) {
+                ((LogStructuredFingerprintStorage) storage).migrate(listener);
+            }
+        }
+    }
+
+    @Extension
+    public static class DescriptorImpl extends FingerprintStorageDescriptor {
+
+        @Override
+        public String getDisplayName() {
+            return Messages.LogStructuredFingerprintStorage_DisplayName();
+        }
+
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(LogStructuredFingerprintStorage.class.getName());
+}
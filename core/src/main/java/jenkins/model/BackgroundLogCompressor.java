@@ -0,0 +1,87 @@
+package jenkins.model;
+
+import hudson.Extension;
+import hudson.Functions;
+import hudson.console.FramedLog;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.Job;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import java.io.File;
+import java.io.IOException;
+import jenkins.util.SystemProperties;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Background task compressing the logs of completed builds into {@link FramedLog}s, when enabled.
+ *
+ * @since TODO
+ */
+@Restricted(NoExternalUse.class)
+@Extension
+public class BackgroundLogCompressor extends AsyncPeriodicWork {
+    /**
+     * Whether the logs of completed builds get compressed.
+     */
+    public static /* non-final for Groovy */ boolean ENABLED = SystemProperties.getBoolean(BackgroundLogCompressor.class.getName() + ".enabled", false);
+
+    /**
+     * How many hours a log is left alone after it was last written.
+     */
+    public static /* non-final for Groovy */ long MIN_AGE_HOURS = SystemProperties.getLong(BackgroundLogCompressor.class.getName() + ".minAgeHours", 24L);
+
+    public BackgroundLogCompressor() {
+        super("Periodic background log compressor"); // TODO i18n
+    }
+
+    @Override
+    protected void execute(TaskListener listener) throws IOException, InterruptedException {
+        if (!ENABLED) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - MIN_AGE_HOURS * HOUR;
+        for (Job job : Jenkins.get().allItems(Job.class)) {
+            processJob(listener, job, cutoff);
+        }
+    }
+
+    static void processJob(TaskListener listener, Job<?, ?> job, long cutoff) throws InterruptedException {
+        File[] dirs = job.getBuildDir().listFiles();
+        if (dirs == null) {
+            return;
+        }
+        for (File dir : dirs) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            File log = new File(dir, "log");
+            // looking at the file first, so as not to load every build
+            if (!log.isFile() || log.lastModified() > cutoff) {
+                continue;
+            }
+            int number;
+            try {
+                number = Integer.parseInt(dir.getName());
+            } catch (NumberFormatException x) {
+                continue;
+            }
+            Run<?, ?> run = job.getBuildByNumber(number);
+            if (run == null || run.isLogUpdated()) {
+                continue;
+            }
+            try {
+                if (FramedLog.compress(log)) {
+                    listener.getLogger().println("Compressed the log of " + run.getFullDisplayName());
+                }
+            } catch (IOException x) {
+                Functions.printStackTrace(x, listener.error("Failed to compress " + log));
+            }
+        }
+    }
+
+    @Override
+    public long getRecurrencePeriod() {
+        return HOUR;
+    }
+}
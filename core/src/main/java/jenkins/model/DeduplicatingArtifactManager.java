@@ -0,0 +1,380 @@
+package jenkins.model;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.Functions;
+import hudson.Launcher;
+import hudson.Util;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.BuildListener;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.MasterToSlaveFileCallable;
+import jenkins.util.io.FileDigests;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Artifact manager storing artifacts as {@link StandardArtifactManager} does, in the build directory,
+ * but as hard links to blobs in {@link #BLOBS_DIR}, named by their SHA-256 digest,
+ * so that identical artifacts of many builds take the space of one.
+ *
+ * <p>
+ * Before transferring artifacts, their digests are computed on the agent. An agent claiming some digest
+ * must not get the artifacts of other jobs stored with it linked into its build, so for each blob already stored
+ * the controller sends a random nonce, and links the blob without any transfer only if the agent replies with
+ * the SHA-256 digest of the nonce followed by the contents of the blob, which it can only compute by having them.
+ * Other artifacts are transferred as usual, then digested on the controller and moved to the store,
+ * or replaced by a link to the blob already stored with the same contents.
+ *
+ * <p>
+ * The number of links to a blob counts the builds using it; {@link Cleanup} deletes blobs no longer linked from any build.
+ * As links share their contents, archived artifacts must never be modified in place, only replaced.
+ *
+ * @see DeduplicatingArtifactManagerFactory
+ * @since TODO
+ */
+@Restricted(NoExternalUse.class)
+public class DeduplicatingArtifactManager extends StandardArtifactManager {
+
+    private static final Logger LOG = Logger.getLogger(DeduplicatingArtifactManager.class.getName());
+
+    /**
+     * Directory of {@code $JENKINS_HOME} holding the blobs, as {@code ab/abcdef…}.
+     */
+    public static final String BLOBS_DIR = "artifactBlobs";
+
+    private static final String ALGORITHM = "SHA-256";
+
+    private static final int NONCE_LENGTH = 32;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    public DeduplicatingArtifactManager(Run<?,?> build) {
+        super(build);
+    }
+
+    /**
+     * Whether blobs can be stored and counted, which needs hard links and their count, as Unix provides.
+     */
+    public static boolean isSupported() {
+        return FileSystems.getDefault().supportedFileAttributeViews().contains("unix");
+    }
+
+    @Override public void archive(FilePath workspace, Launcher launcher, BuildListener listener, final Map<String,String> artifacts) throws IOException, InterruptedException {
+        File dir = getArtifactsDir();
+        Map<String,String> digests = workspace.act(new Digests(new ArrayList<>(artifacts.values())));
+        Map<String,File> candidates = new LinkedHashMap<>();
+        for (Map.Entry<String,String> artifact : artifacts.entrySet()) {
+            String digest = digests.get(artifact.getValue());
+            File blob = digest == null ? null : blobOf(digest);
+            if (blob != null && blob.isFile()) {
+                candidates.put(artifact.getValue(), blob);
+            }
+        }
+        Map<String,File> proven = possessed(workspace, candidates);
+        Map<String,String> transfers = new LinkedHashMap<>();
+        for (Map.Entry<String,String> artifact : artifacts.entrySet()) {
+            File blob = proven.get(artifact.getValue());
+            if (blob == null || !replaceWithLink(blob.toPath(), new File(dir, artifact.getKey()).toPath())) {
+                transfers.put(artifact.getKey(), artifact.getValue());
+            }
+        }
+        LOG.log(Level.FINE, "linking {0} and transferring {1} artifacts of {2}", new Object[] {artifacts.size() - transfers.size(), transfers.size(), build});
+        if (transfers.isEmpty()) {
+            return;
+        }
+        for (String path : transfers.keySet()) {
+            // so that the transfer does not write into a blob linked from an earlier archiving of this build
+            Path f = new File(dir, path).toPath();
+            if (!Files.isDirectory(f, LinkOption.NOFOLLOW_LINKS)) {
+                Files.deleteIfExists(f);
+            }
+        }
+        super.archive(workspace, launcher, listener, transfers);
+        store(dir, transfers.keySet());
+    }
+
+    /**
+     * Checks that the workspace has the contents of the blobs it claims to have.
+     *
+     * @param candidates blobs by path in the workspace, as the agent reported their digests
+     * @return those whose contents the agent proved to have
+     */
+    static Map<String,File> possessed(FilePath workspace, Map<String,File> candidates) throws IOException, InterruptedException {
+        if (candidates.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String,byte[]> nonces = new HashMap<>();
+        for (String path : candidates.keySet()) {
+            byte[] nonce = new byte[NONCE_LENGTH];
+            RANDOM.nextBytes(nonce);
+            nonces.put(path, nonce);
+        }
+        Future<Map<String,String>> replies = workspace.actAsync(new Proofs(nonces));
+        Map<String,String> expected = new HashMap<>();
+        for (Map.Entry<String,File> candidate : candidates.entrySet()) {
+            try {
+                expected.put(candidate.getKey(), proof(candidate.getValue(), nonces.get(candidate.getKey())));
+            } catch (IOException x) {
+                // deleted meanwhile, transferred
+                LOG.log(Level.FINE, "failed to read " + candidate.getValue(), x);
+            }
+        }
+        Map<String,String> proofs;
+        try {
+            proofs = replies.get();
+        } catch (ExecutionException x) {
+            throw new IOException(x.getCause());
+        }
+        Map<String,File> proven = new HashMap<>();
+        for (Map.Entry<String,String> e : expected.entrySet()) {
+            String proof = proofs.get(e.getKey());
+            if (proof != null && MessageDigest.isEqual(proof.getBytes(StandardCharsets.US_ASCII), e.getValue().getBytes(StandardCharsets.US_ASCII))) {
+                proven.put(e.getKey(), candidates.get(e.getKey()));
+            }
+        }
+        return proven;
+    }
+
+    /**
+     * Computes the SHA-256 digest of a nonce followed by the contents of a file.
+     */
+    static String proof(File f, byte[] nonce) throws IOException {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException x) {
+            throw new IOException(ALGORITHM + " not installed", x);
+        }
+        md.update(nonce);
+        try (InputStream in = Files.newInputStream(f.toPath())) {
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = in.read(buf)) >= 0) {
+                md.update(buf, 0, n);
+            }
+        }
+        return Util.toHexString(md.digest());
+    }
+
+    /**
+     * Moves transferred artifacts to the store, or replaces them by links to blobs stored meanwhile.
+     */
+    private static void store(File dir, Iterable<String> paths) throws InterruptedException {
+        Map<Path, Future<String>> digests = new LinkedHashMap<>();
+        for (String path : paths) {
+            Path f = new File(dir, path).toPath();
+            if (Files.isRegularFile(f, LinkOption.NOFOLLOW_LINKS)) {
+                digests.put(f, FileDigests.submit(f.toFile(), ALGORITHM));
+            }
+        }
+        for (Map.Entry<Path, Future<String>> e : digests.entrySet()) {
+            Path f = e.getKey();
+            try {
+                File blob = blobOf(e.getValue().get());
+                if (blob == null) {
+                    continue;
+                }
+                Files.createDirectories(blob.toPath().getParent());
+                try {
+                    Files.createLink(blob.toPath(), f);
+                } catch (FileAlreadyExistsException x) {
+                    replaceWithLink(blob.toPath(), f);
+                }
+            } catch (ExecutionException | IOException | UnsupportedOperationException x) {
+                // left as a plain copy
+                LOG.log(Level.FINE, "failed to store " + f, x);
+            }
+        }
+    }
+
+    /**
+     * Atomically replaces or creates a file as a link to a blob.
+     *
+     * @return false if the blob could not be linked, for example as it was just deleted
+     */
+    private static boolean replaceWithLink(Path blob, Path f) {
+        Path tmp = f.resolveSibling("." + f.getFileName() + "." + UUID.randomUUID() + ".tmp");
+        try {
+            Files.createDirectories(f.getParent());
+            Files.createLink(tmp, blob);
+            Files.move(tmp, f, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException | UnsupportedOperationException x) {
+            LOG.log(Level.FINE, "failed to link " + f + " to " + blob, x);
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException x2) {
+                x.addSuppressed(x2);
+            }
+            return false;
+        }
+    }
+
+    private static @CheckForNull File blobOf(@NonNull String digest) {
+        if (!digest.matches("[0-9a-f]{64}")) {
+            return null;
+        }
+        return new File(new File(new File(Jenkins.get().getRootDir(), BLOBS_DIR), digest.substring(0, 2)), digest);
+    }
+
+    @SuppressWarnings("deprecation")
+    private File getArtifactsDir() {
+        return build.getArtifactsDir();
+    }
+
+    /**
+     * Computes the digests of regular files in the workspace, by path.
+     * Files which cannot be read are left out, to fail as usual when transferred.
+     */
+    private static final class Digests extends MasterToSlaveFileCallable<Map<String,String>> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<String> paths;
+
+        Digests(List<String> paths) {
+            this.paths = paths;
+        }
+
+        @Override
+        public Map<String,String> invoke(File ws, VirtualChannel channel) throws IOException, InterruptedException {
+            Map<String, Future<String>> futures = new LinkedHashMap<>();
+            for (String path : paths) {
+                File f = new File(ws, path);
+                // symbolic links are transferred as such
+                if (Files.isRegularFile(f.toPath(), LinkOption.NOFOLLOW_LINKS)) {
+                    futures.put(path, FileDigests.submit(f, ALGORITHM));
+                }
+            }
+            Map<String,String> digests = new HashMap<>();
+            for (Map.Entry<String, Future<String>> e : futures.entrySet()) {
+                try {
+                    digests.put(e.getKey(), e.getValue().get());
+                } catch (ExecutionException x) {
+                    // transferred
+                }
+            }
+            return digests;
+        }
+    }
+
+    /**
+     * Computes the {@link #proof} of files in the workspace for the nonces sent by the controller, by path.
+     * Files which cannot be read are left out, to be transferred.
+     */
+    private static final class Proofs extends MasterToSlaveFileCallable<Map<String,String>> {
+        private static final long serialVersionUID = 1L;
+
+        private final Map<String,byte[]> nonces;
+
+        Proofs(Map<String,byte[]> nonces) {
+            this.nonces = nonces;
+        }
+
+        @Override
+        public Map<String,String> invoke(File ws, VirtualChannel channel) throws IOException, InterruptedException {
+            Map<String,String> proofs = new HashMap<>();
+            for (Map.Entry<String,byte[]> e : nonces.entrySet()) {
+                File f = new File(ws, e.getKey());
+                if (Files.isRegularFile(f.toPath(), LinkOption.NOFOLLOW_LINKS)) {
+                    try {
+                        proofs.put(e.getKey(), proof(f, e.getValue()));
+                    } catch (IOException x) {
+                        // transferred
+                    }
+                }
+            }
+            return proofs;
+        }
+    }
+
+    /**
+     * Deletes the blobs no longer linked from any build.
+     */
+    @Extension
+    public static final class Cleanup extends AsyncPeriodicWork {
+        public Cleanup() {
+            super("Artifact blob cleanup");
+        }
+
+        @Override
+        public long getRecurrencePeriod() {
+            return DAY;
+        }
+
+        @Override
+        protected void execute(TaskListener listener) throws IOException, InterruptedException {
+            File root = new File(Jenkins.get().getRootDir(), BLOBS_DIR);
+            if (root.isDirectory() && isSupported()) {
+                listener.getLogger().println("Deleted " + clean(root.toPath(), listener) + " artifact blobs");
+            }
+        }
+
+        /**
+         * Archiving links to an existing blob by making a new link to it, which fails if it was deleted meanwhile,
+         * leaving the artifact to be transferred or as a plain copy, so this may delete blobs while artifacts are archived.
+         */
+        static int clean(Path root, TaskListener listener) throws IOException, InterruptedException {
+            int deleted = 0;
+            try (DirectoryStream<Path> dirs = Files.newDirectoryStream(root)) {
+                for (Path dir : dirs) {
+                    if (!Files.isDirectory(dir, LinkOption.NOFOLLOW_LINKS)) {
+                        continue;
+                    }
+                    try (DirectoryStream<Path> blobs = Files.newDirectoryStream(dir)) {
+                        for (Path blob : blobs) {
+                            if (Thread.interrupted()) {
+                                throw new InterruptedException();
+                            }
+                            try {
+                                if ((Integer) Files.getAttribute(blob, "unix:nlink", LinkOption.NOFOLLOW_LINKS) <= 1) {
+                                    Files.delete(blob);
+                                    deleted++;
+                                }
+                            } catch (IOException x) {
+                                Functions.printStackTrace(x, listener.error("Failed to clean up " + blob));
+                            }
+                        }
+                    }
+                    try (DirectoryStream<Path> blobs = Files.newDirectoryStream(dir)) {
+                        if (!blobs.iterator().hasNext()) {
+                            Files.delete(dir);
+                        }
+                    } catch (IOException x) {
+                        // filled again meanwhile
+                    }
+                }
+            }
+            return deleted;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package jenkins.model;
+
+import hudson.Extension;
+import hudson.model.Run;
+import org.jenkinsci.Symbol;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.kohsuke.stapler.DataBoundConstructor;
+
+/**
+ * Stores artifacts with {@link DeduplicatingArtifactManager} where the file system of the controller supports it,
+ * leaving them to {@link StandardArtifactManager} elsewhere.
+ *
+ * @since TODO
+ */
+@Restricted(NoExternalUse.class)
+public class DeduplicatingArtifactManagerFactory extends ArtifactManagerFactory {
+
+    @DataBoundConstructor
+    public DeduplicatingArtifactManagerFactory() {}
+
+    @Override
+    public ArtifactManager managerFor(Run<?,?> build) {
+        return DeduplicatingArtifactManager.isSupported() ? new DeduplicatingArtifactManager(build) : null;
+    }
+
+    @Extension @Symbol("deduplicated")
+    public static final class DescriptorImpl extends ArtifactManagerFactoryDescriptor {
+        @Override
+        public String getDisplayName() {
+            return Messages.DeduplicatingArtifactManagerFactory_DisplayName();
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package jenkins.model;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.init.InitReactorListener;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import jenkins.util.SystemProperties;
+import org.jvnet.hudson.reactor.Task;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * How long it took to load each top-level item from disk, during the last startup or reload of {@link Jenkins}.
+ *
+ * <p>
+ * {@link InitReactorListener}s can look up the timing of an item loading task from
+ * {@link org.jvnet.hudson.reactor.ReactorListener#onTaskCompleted(Task)} with {@link #forTask(Task)},
+ * or inspect all of them once {@link hudson.init.InitMilestone#JOB_LOADED} is attained.
+ *
+ * @see Jenkins#getItemLoadStatistics()
+ * @since TODO
+ */
+public final class ItemLoadStatistics {
+    /**
+     * Number of items listed in the startup report of the slowest items to load. 0 to disable the report.
+     */
+    @Restricted(NoExternalUse.class)
+    public static /* non-final for Groovy */ int REPORT_SIZE = SystemProperties.getInteger(ItemLoadStatistics.class.getName() + ".reportSize", 10);
+
+    /**
+     * Timing of one item, keyed by the display name of its task.
+     */
+    private final Map<String, Timing> byTask = new ConcurrentHashMap<>();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private volatile long started;
+    private volatile long finished;
+
+    ItemLoadStatistics() {
+    }
+
+    /**
+     * Called before the first item is loaded.
+     */
+    void start() {
+        started = System.nanoTime();
+    }
+
+    /**
+     * Records that the item in the given directory was loaded by the task of the given name.
+     */
+    void record(@NonNull String taskName, @NonNull String name, @NonNull File configFile, long nanos) {
+        byTask.put(taskName, new Timing(name, configFile.length(), nanos));
+        totalNanos.addAndGet(nanos);
+    }
+
+    /**
+     * Called when all the items have been loaded.
+     */
+    void finish() {
+        finished = System.nanoTime();
+    }
+
+    /**
+     * Gets the timing of an item loading task.
+     *
+     * @return null if the task did not load an item, or has not completed yet
+     */
+    public @CheckForNull Timing forTask(@NonNull Task task) {
+        return byTask.get(task.getDisplayName());
+    }
+
+    /**
+     * Gets the timings of all the items loaded so far, in no particular order.
+     */
+    public @NonNull List<Timing> getTimings() {
+        return new ArrayList<>(byTask.values());
+    }
+
+    /**
+     * Gets the items that took the longest to load, slowest first.
+     */
+    public @NonNull List<Timing> getSlowest(int n) {
+        List<Timing> all = getTimings();
+        all.sort(Comparator.comparingLong(Timing::getNanos).reversed());
+        return Collections.unmodifiableList(all.subList(0, Math.min(n, all.size())));
+    }
+
+    /**
+     * Sum of the time spent loading each item, which exceeds the elapsed time when loading in parallel.
+     */
+    public long getTotalNanos() {
+        return totalNanos.get();
+    }
+
+    /**
+     * Time elapsed from the start of the first item loading to the end of the last one, or 0 if they are not done yet.
+     */
+    public long getElapsedNanos() {
+        long f = finished;
+        return f == 0 || started == 0 ? 0 : f - started;
+    }
+
+    /**
+     * Formats the report of the {@link #REPORT_SIZE} slowest items.
+     *
+     * @return null if there is nothing to report
+     */
+    @CheckForNull String report() {
+        if (REPORT_SIZE <= 0 || byTask.isEmpty()) {
+            return null;
+        }
+        StringBuilder b = new StringBuilder();
+        b.append("Loaded ").append(byTask.size()).append(" items in ").append(TimeUnit.NANOSECONDS.toMillis(getElapsedNanos()))
+                .append("ms (").append(TimeUnit.NANOSECONDS.toMillis(getTotalNanos())).append("ms of loading time); slowest:");
+        for (Timing t : getSlowest(REPORT_SIZE)) {
+            b.append("\n  ").append(t);
+        }
+        return b.toString();
+    }
+
+    /**
+     * How long a single item took to load.
+     */
+    public static final class Timing {
+        private final String name;
+        private final long configSize;
+        private final long nanos;
+
+        Timing(String name, long configSize, long nanos) {
+            this.name = name;
+            this.configSize = configSize;
+            this.nanos = nanos;
+        }
+
+        /**
+         * Name of the top-level item.
+         */
+        public @NonNull String getName() {
+            return name;
+        }
+
+        /**
+         * Size of its {@code config.xml} in bytes.
+         */
+        public long getConfigSize() {
+            return configSize;
+        }
+
+        /**
+         * Time spent reading the configuration and in {@link hudson.model.Item#onLoad}, including any children it loads.
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        @Override
+        public String toString() {
+            return name + ": " + TimeUnit.NANOSECONDS.toMillis(nanos) + "ms, config.xml is " + configSize + " bytes";
+        }
+    }
+}
@@ -111,6 +111,7 @@ import hudson.model.User;
 import hudson.model.View;
 import hudson.model.ViewGroupMixIn;
 import hudson.model.WorkspaceCleanupThread;
+import hudson.model.labels.CompiledLabelExpression;
 import hudson.model.labels.LabelAtom;
 import hudson.model.listeners.ItemListener;
 import hudson.model.listeners.SCMListener;
@@ -261,6 +262,7 @@ import java.nio.charset.Charset;
 import java.security.SecureRandom;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -446,6 +448,11 @@ public class Jenkins extends AbstractCIBase implements DirectlyModifiableTopLeve
      */
     /*package*/ final transient Map<String,TopLevelItem> items = new CopyOnWriteMap.Tree<>(CaseInsensitiveComparator.INSTANCE);
 
+    /**
+     * How long the items took to load, during the last startup or reload.
+     */
+    private transient volatile ItemLoadStatistics itemLoadStatistics;
+
     /**
      * The sole instance.
      */
@@ -1800,6 +1807,16 @@ public class Jenkins extends AbstractCIBase implements DirectlyModifiableTopLeve
         return viewableItems;
     }
 
+    /**
+     * Gets how long each top-level item took to load from disk, during the last startup or {@link #reload()}.
+     *
+     * @return null before the items are first loaded
+     * @since TODO
+     */
+    public @CheckForNull ItemLoadStatistics getItemLoadStatistics() {
+        return itemLoadStatistics;
+    }
+
     /**
      * Returns the read-only view of all the {@link TopLevelItem}s keyed by their names.
      * <p>
@@ -2196,9 +2213,50 @@ public class Jenkins extends AbstractCIBase implements DirectlyModifiableTopLeve
      * but we also call this periodically to self-heal any data out-of-sync issue.
      */
     /*package*/ void trimLabels() {
+        List<Node> nodes = null;
+        CompiledLabelExpression.Dictionary d = null;
+        List<BitSet> atoms = null;
+        if (Label.COMPILED_MATCHING) {
+            // compute the atoms of each node once rather than once per label,
+            // with fresh ids so that atoms no longer on any node do not keep theirs
+            nodes = new ArrayList<>();
+            nodes.add(this);
+            nodes.addAll(getNodes());
+            d = CompiledLabelExpression.resetDictionary();
+            atoms = new ArrayList<>(nodes.size());
+            for (Node n : nodes) {
+                atoms.add(d.atomsOf(n.getAssignedLabels()));
+            }
+        }
+        for (Iterator<Label> itr = labels.values().iterator(); itr.hasNext();) {
+            Label l = itr.next();
+            if (atoms != null) {
+                resetLabel(l, nodes, d, atoms);
+            } else {
+                resetLabel(l);
+            }
+            if(l.isEmpty())
+                itr.remove();
+        }
+    }
+
+    /**
+     * Like {@link #trimLabels()}, but only re-evaluates label membership for the given nodes,
+     * which were just added, removed, replaced or relabeled.
+     * Other cached label membership is kept, so this costs one label evaluation per label and node
+     * rather than one per label and every node in the system.
+     */
+    @Restricted(NoExternalUse.class)
+    public void trimLabels(Node... nodes) {
+        List<Node> changed = new ArrayList<>(nodes.length);
+        for (Node n : nodes) {
+            if (n != null) {
+                changed.add(n);
+            }
+        }
         for (Iterator<Label> itr = labels.values().iterator(); itr.hasNext();) {
             Label l = itr.next();
-            resetLabel(l);
+            resetLabel(l, changed);
             if(l.isEmpty())
                 itr.remove();
         }
@@ -3135,6 +3193,7 @@ public class Jenkins extends AbstractCIBase implements DirectlyModifiableTopLeve
     public void setLabelString(String label) throws IOException {
         this.label = label;
         save();
+        Queue.withLock(() -> trimLabels(this));
     }
 
     @Override
@@ -3253,7 +3312,9 @@ public class Jenkins extends AbstractCIBase implements DirectlyModifiableTopLeve
         }
         File[] subdirs = projectsDir.listFiles();
 
-        final Set<String> loadedNames = Collections.synchronizedSet(new HashSet<>());
+        final Set<String> loadedNames = ConcurrentHashMap.newKeySet();
+        final ItemLoadStatistics statistics = new ItemLoadStatistics();
+        itemLoadStatistics = statistics;
 
         TaskGraphBuilder g = new TaskGraphBuilder();
         Handle loadJenkins = g.requires(EXTENSIONS_AUGMENTED).attains(SYSTEM_CONFIG_LOADED).add("Loading global config", new Executable() {
@@ -3268,18 +3329,23 @@ public class Jenkins extends AbstractCIBase implements DirectlyModifiableTopLeve
                 }
 
                 clouds.setOwner(Jenkins.this);
+                statistics.start();
             }
         });
 
         List<Handle> loadJobs = new ArrayList<>();
         for (final File subdir : subdirs) {
-            loadJobs.add(g.requires(loadJenkins).attains(JOB_LOADED).notFatal().add("Loading item " + subdir.getName(), new Executable() {
+            final String taskName = "Loading item " + subdir.getName();
+            loadJobs.add(g.requires(loadJenkins).attains(JOB_LOADED).notFatal().add(taskName, new Executable() {
                 public void run(Reactor session) throws Exception {
-                    if(!Items.getConfigFile(subdir).exists()) {
+                    XmlFile configFile = Items.getConfigFile(subdir);
+                    if(!configFile.exists()) {
                         //Does not have job config file, so it is not a jenkins job hence skip it
                         return;
                     }
+                    long start = System.nanoTime();
                     TopLevelItem item = (TopLevelItem) Items.load(Jenkins.this, subdir);
+                    statistics.record(taskName, item.getName(), configFile.getFile(), System.nanoTime() - start);
                     items.put(item.getName(), item);
                     loadedNames.add(item.getName());
                 }
@@ -3298,6 +3364,12 @@ public class Jenkins extends AbstractCIBase implements DirectlyModifiableTopLeve
                     if (!loadedNames.contains(name))
                         items.remove(name);
                 }
+
+                statistics.finish();
+                String report = statistics.report();
+                if (report != null) {
+                    LOGGER.info(report);
+                }
             }
         });
 
@@ -36,6 +36,7 @@ import hudson.slaves.OfflineCause;
 import java.util.concurrent.Callable;
 
 import jenkins.util.SystemProperties;
+import jenkins.util.io.WriteBehind;
 import org.kohsuke.accmod.Restricted;
 import org.kohsuke.accmod.restrictions.NoExternalUse;
 
@@ -149,7 +150,7 @@ public class Nodes implements Saveable {
                 public void run() {
                     old.set(nodes.put(node.getNodeName(), node));
                     jenkins.updateComputerList();
-                    jenkins.trimLabels();
+                    jenkins.trimLabels(node, old.get());
                 }
             });
             // TODO there is a theoretical race whereby the node instance is updated/removed after lock release
@@ -163,7 +164,7 @@ public class Nodes implements Saveable {
                     public void run() {
                         nodes.compute(node.getNodeName(), (ignoredNodeName, ignoredNode) -> oldNode);
                         jenkins.updateComputerList();
-                        jenkins.trimLabels();
+                        jenkins.trimLabels(node, oldNode);
                     }
                 });
                 throw e;
@@ -185,11 +186,11 @@ public class Nodes implements Saveable {
     private void persistNode(final @NonNull Node node)  throws IOException {
         // no need for a full save() so we just do the minimum
         if (node instanceof EphemeralNode) {
-            Util.deleteRecursive(new File(getNodesDir(), node.getNodeName()));
+            deleteNodeDir(node.getNodeName());
         } else {
             XmlFile xmlFile = new XmlFile(Jenkins.XSTREAM,
                     new File(new File(getNodesDir(), node.getNodeName()), "config.xml"));
-            xmlFile.write(node);
+            xmlFile.writeBehind(node, this);
             SaveableListener.fireOnChange(this, xmlFile);
         }
         jenkins.getQueue().scheduleMaintenance();
@@ -211,7 +212,7 @@ public class Nodes implements Saveable {
                 @Override
                 public Boolean call() throws Exception {
                     if (node == nodes.get(node.getNodeName())) {
-                        jenkins.trimLabels();
+                        jenkins.trimLabels(node);
                         return true;
                     }
                     return false;
@@ -251,12 +252,12 @@ public class Nodes implements Saveable {
                     Nodes.this.nodes.remove(oldOne.getNodeName());
                     Nodes.this.nodes.put(newOne.getNodeName(), newOne);
                     jenkins.updateComputerList();
-                    jenkins.trimLabels();
+                    jenkins.trimLabels(oldOne, newOne);
                 }
             });
             updateNode(newOne);
             if (!newOne.getNodeName().equals(oldOne.getNodeName())) {
-                Util.deleteRecursive(new File(getNodesDir(), oldOne.getNodeName()));
+                deleteNodeDir(oldOne.getNodeName());
             }
             NodeListener.fireOnUpdated(oldOne, newOne);
 
@@ -285,12 +286,12 @@ public class Nodes implements Saveable {
                     }
                     if (node == nodes.remove(node.getNodeName())) {
                         jenkins.updateComputerList();
-                        jenkins.trimLabels();
+                        jenkins.trimLabels(node);
                     }
                 }
             });
             // no need for a full save() so we just do the minimum
-            Util.deleteRecursive(new File(getNodesDir(), node.getNodeName()));
+            deleteNodeDir(node.getNodeName());
 
             NodeListener.fireOnDeleted(node);
         }
@@ -309,7 +310,7 @@ public class Nodes implements Saveable {
             }
             existing.add(n.getNodeName());
             XmlFile xmlFile = new XmlFile(Jenkins.XSTREAM, new File(new File(nodesDir, n.getNodeName()), "config.xml"));
-            xmlFile.write(n);
+            xmlFile.writeBehind(n, this);
             SaveableListener.fireOnChange(this, xmlFile);
         }
         for (File forDeletion : nodesDir.listFiles(new FileFilter() {
@@ -318,10 +319,21 @@ public class Nodes implements Saveable {
                 return pathname.isDirectory() && !existing.contains(pathname.getName());
             }
         })) {
+            WriteBehind.flush(forDeletion);
             Util.deleteRecursive(forDeletion);
         }
     }
 
+    /**
+     * Deletes the directory of a node, after any save of it still pending in {@link WriteBehind},
+     * which would otherwise be written to the directory while it is deleted.
+     */
+    private void deleteNodeDir(String name) throws IOException {
+        File dir = new File(getNodesDir(), name);
+        WriteBehind.flush(dir);
+        Util.deleteRecursive(dir);
+    }
+
     /**
      * Returns the named node.
      *
@@ -31,7 +31,6 @@ import java.io.IOException;
 import java.util.AbstractMap;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.ListIterator;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
@@ -134,6 +133,11 @@ public abstract class AbstractLazyLoadRunMap<R> extends AbstractMap<Integer,R> i
     // copy on write
     private volatile SortedIntList numberOnDisk = new SortedIntList(0);
 
+    /**
+     * Metadata of the builds in {@link #numberOnDisk}, recreated whenever that changes.
+     */
+    private volatile BuildIndex buildIndex = BuildIndex.EMPTY;
+
     /**
      * Base directory for data.
      * In effect this is treated as a final field, but can't mark it final
@@ -202,6 +206,7 @@ public abstract class AbstractLazyLoadRunMap<R> extends AbstractMap<Integer,R> i
         }
         list.sort();
         numberOnDisk = list;
+        buildIndex = BuildIndex.of(list, buildIndex);
     }
 
     public Comparator<? super Integer> comparator() {
@@ -323,32 +328,26 @@ public abstract class AbstractLazyLoadRunMap<R> extends AbstractMap<Integer,R> i
         switch (d) {
         case EXACT:
             return getByNumber(n);
-        case ASC:
-            for (int m : numberOnDisk) {
-                if (m < n) {
-                    // TODO could be made more efficient with numberOnDisk.find
-                    continue;
-                }
-                R r = getByNumber(m);
+        case ASC: {
+            SortedIntList numbers = numberOnDisk;
+            for (int i = numbers.ceil(n); numbers.isInRange(i); i++) {
+                R r = getByNumber(numbers.get(i));
                 if (r != null) {
                     return r;
                 }
             }
             return null;
-        case DESC:
-            // TODO again could be made more efficient
-            ListIterator<Integer> iterator = numberOnDisk.listIterator(numberOnDisk.size());
-            while(iterator.hasPrevious()) {
-                int m = iterator.previous();
-                if (m > n) {
-                    continue;
-                }
-                R r = getByNumber(m);
+        }
+        case DESC: {
+            SortedIntList numbers = numberOnDisk;
+            for (int i = numbers.floor(n); numbers.isInRange(i); i--) {
+                R r = getByNumber(numbers.get(i));
                 if (r != null) {
                     return r;
                 }
             }
             return null;
+        }
         default:
             throw new AssertionError();
         }
@@ -386,7 +385,7 @@ public abstract class AbstractLazyLoadRunMap<R> extends AbstractMap<Integer,R> i
      * @return the highest recorded build number, or 0 if there are none
      */
     @Restricted(NoExternalUse.class)
-    public synchronized int maxNumberOnDisk() {
+    public int maxNumberOnDisk() {
         return numberOnDisk.max();
     }
 
@@ -418,7 +417,9 @@ public abstract class AbstractLazyLoadRunMap<R> extends AbstractMap<Integer,R> i
             a.add(n);
             a.sort();
             numberOnDisk = a;
+            buildIndex = BuildIndex.of(a, buildIndex);
         }
+        indexBuild(r);
 
         entrySet.clearCache();
 
@@ -435,10 +436,44 @@ public abstract class AbstractLazyLoadRunMap<R> extends AbstractMap<Integer,R> i
         for (R r : rhs.values()) {
             BuildReference<R> ref = createReference(r);
             copy.byNumber.put(getNumberOf(r),ref);
+            indexBuild(r);
         }
         index = copy;
     }
 
+    /**
+     * Gets the metadata of the builds on disk that has been seen so far, without locking.
+     * The returned instance is not affected by later additions or removals of builds.
+     * @since TODO
+     */
+    @Restricted(NoExternalUse.class)
+    public BuildIndex getBuildIndex() {
+        return buildIndex;
+    }
+
+    /**
+     * Records the metadata of a build that changed, typically because it completed.
+     * @since TODO
+     */
+    @Restricted(NoExternalUse.class)
+    public synchronized void updateBuildIndex(R r) {
+        indexBuild(r);
+    }
+
+    /**
+     * Records the metadata of a build that is known without loading it, such as from a {@link BuildSummary}.
+     * @since TODO
+     */
+    @Restricted(NoExternalUse.class)
+    public synchronized void updateBuildIndex(int number, long timestamp, long duration, int result) {
+        buildIndex.set(number, timestamp, duration, result);
+    }
+
+    private void indexBuild(R r) {
+        assert Thread.holdsLock(this);
+        buildIndex.set(getNumberOf(r), getTimestampOf(r), getDurationOf(r), getResultOf(r));
+    }
+
     /**
      * Loads all the build records to fully populate the map.
      * Calling this method results in eager loading everything,
@@ -508,6 +543,7 @@ public abstract class AbstractLazyLoadRunMap<R> extends AbstractMap<Integer,R> i
             assert old == null || old.get() == null : "tried to overwrite " + old + " with " + ref;
 
             if (editInPlace==null)  index = copy;
+            indexBuild(r);
 
             return r;
         } catch (IOException e) {
@@ -521,6 +557,30 @@ public abstract class AbstractLazyLoadRunMap<R> extends AbstractMap<Integer,R> i
      */
     protected abstract int getNumberOf(R r);
 
+    /**
+     * Subtype to provide {@link Run#getTimeInMillis()} for the {@link BuildIndex}.
+     */
+    @Restricted(NoExternalUse.class)
+    protected long getTimestampOf(R r) {
+        return BuildIndex.UNKNOWN;
+    }
+
+    /**
+     * Subtype to provide {@link Run#getDuration()} of a completed build for the {@link BuildIndex}.
+     */
+    @Restricted(NoExternalUse.class)
+    protected long getDurationOf(R r) {
+        return BuildIndex.UNKNOWN;
+    }
+
+    /**
+     * Subtype to provide the {@link hudson.model.Result#ordinal} of a completed build for the {@link BuildIndex}.
+     */
+    @Restricted(NoExternalUse.class)
+    protected int getResultOf(R r) {
+        return BuildIndex.RESULT_UNKNOWN;
+    }
+
     /**
      * Subtype to provide {@link Run#getId()} so that this class doesn't have to depend on it.
      */
@@ -554,6 +614,7 @@ public abstract class AbstractLazyLoadRunMap<R> extends AbstractMap<Integer,R> i
         SortedIntList a = new SortedIntList(numberOnDisk);
         a.removeValue(n);
         numberOnDisk = a;
+        buildIndex = BuildIndex.of(a, buildIndex);
         this.index = copy;
 
         entrySet.clearCache();
@@ -569,6 +630,7 @@ public abstract class AbstractLazyLoadRunMap<R> extends AbstractMap<Integer,R> i
         for (R r : builds.values()) {
             BuildReference<R> ref = createReference(r);
             index.byNumber.put(getNumberOf(r),ref);
+            indexBuild(r);
         }
 
         this.index = index;
@@ -0,0 +1,142 @@
+package jenkins.model.lazy;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Compact index of the builds of an {@link AbstractLazyLoadRunMap}, kept in primitive arrays.
+ *
+ * <p>
+ * For every build number on disk, in the ascending order, this remembers the timestamp, duration and result
+ * of the build, as soon as the build has been seen in memory once.
+ * This lets callers answer questions like "which builds started in this time range?"
+ * without loading the {@code Run} objects from disk, and without one object per build.
+ *
+ * <p>
+ * The set of build numbers of an instance never changes; adding or removing a build creates a new instance.
+ * The metadata is filled in place as builds get loaded, so a reader may see {@link #UNKNOWN} for a build
+ * whose metadata is being recorded concurrently, and must then fall back to loading the build.
+ * Instances are only modified while holding the lock of the owning map, so readers need no locking.
+ *
+ * @since TODO
+ */
+@Restricted(NoExternalUse.class)
+public final class BuildIndex {
+    /**
+     * Value of {@link #getTimestamp(int)} and {@link #getDuration(int)} when it is not known yet.
+     */
+    public static final long UNKNOWN = Long.MIN_VALUE;
+    /**
+     * Value of {@link #getResult(int)} when it is not known yet, or when the build is still running.
+     */
+    public static final int RESULT_UNKNOWN = -1;
+
+    static final BuildIndex EMPTY = new BuildIndex(new int[0]);
+
+    private final int[] numbers;
+    private final AtomicLongArray timestamps;
+    private final AtomicLongArray durations;
+    private final AtomicIntegerArray results;
+
+    private BuildIndex(int[] numbers) {
+        this.numbers = numbers;
+        int n = numbers.length;
+        timestamps = new AtomicLongArray(n);
+        durations = new AtomicLongArray(n);
+        results = new AtomicIntegerArray(n);
+        for (int i = 0; i < n; i++) {
+            timestamps.lazySet(i, UNKNOWN);
+            durations.lazySet(i, UNKNOWN);
+            results.lazySet(i, RESULT_UNKNOWN);
+        }
+    }
+
+    /**
+     * Creates an index of the given build numbers, keeping whatever metadata the previous index had about them.
+     */
+    static BuildIndex of(SortedIntList numbers, BuildIndex previous) {
+        int[] data = new int[numbers.size()];
+        numbers.copyInto(data);
+        BuildIndex r = new BuildIndex(data);
+        // both are sorted, so walk them side by side
+        for (int i = 0, j = 0; i < data.length && j < previous.numbers.length; ) {
+            if (data[i] < previous.numbers[j]) {
+                i++;
+            } else if (data[i] > previous.numbers[j]) {
+                j++;
+            } else {
+                r.timestamps.lazySet(i, previous.timestamps.get(j));
+                r.durations.lazySet(i, previous.durations.get(j));
+                r.results.lazySet(i, previous.results.get(j));
+                i++;
+                j++;
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Records the metadata of a build, if its number is in this index.
+     */
+    void set(int number, long timestamp, long duration, int result) {
+        int i = indexOf(number);
+        if (i >= 0) {
+            timestamps.set(i, timestamp);
+            durations.set(i, duration);
+            results.set(i, result);
+        }
+    }
+
+    public int size() {
+        return numbers.length;
+    }
+
+    public int getNumber(int i) {
+        return numbers[i];
+    }
+
+    /**
+     * @return the {@code Run#getTimeInMillis()} of the i-th build, or {@link #UNKNOWN}
+     */
+    public long getTimestamp(int i) {
+        return timestamps.get(i);
+    }
+
+    /**
+     * @return the {@code Run#getDuration()} of the i-th build, or {@link #UNKNOWN} if not known or still running
+     */
+    public long getDuration(int i) {
+        return durations.get(i);
+    }
+
+    /**
+     * @return the {@code Result#ordinal} of the i-th build, or {@link #RESULT_UNKNOWN}
+     */
+    public int getResult(int i) {
+        return results.get(i);
+    }
+
+    /**
+     * @return the position of the given build number, or -(insertionPoint+1) if there is no such build
+     */
+    public int indexOf(int number) {
+        return Arrays.binarySearch(numbers, number);
+    }
+
+    /**
+     * @return the position of the greatest build number less than or equal to the given one, or -1
+     */
+    public int floor(int number) {
+        return Boundary.FLOOR.apply(indexOf(number));
+    }
+
+    /**
+     * @return the position of the smallest build number greater than or equal to the given one, or {@link #size()}
+     */
+    public int ceil(int number) {
+        return Boundary.CEIL.apply(indexOf(number));
+    }
+}
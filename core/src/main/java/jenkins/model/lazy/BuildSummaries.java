@@ -0,0 +1,197 @@
+package jenkins.model.lazy;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.model.Run;
+import hudson.util.AtomicFileWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Persistent {@link BuildSummary} of each completed build of a job, so that history pages
+ * do not need to unmarshal every {@code build.xml}.
+ *
+ * <p>
+ * Stored in the {@code summaries} file of the builds directory, next to {@code permalinks}.
+ * The file is append-only: a line per completed build (see {@link BuildSummary#toLine()}),
+ * and {@code -N} when build #N is deleted. It is compacted when it is read and mostly consists of dead lines.
+ * Builds that have no summary, for example because the file is missing or was written by an older version,
+ * are loaded and summarized the first time they are {@linkplain #list() listed}, so the file is rebuilt lazily.
+ *
+ * <p>
+ * Loading the file also fills the {@link BuildIndex} of the map, so that queries served by the index
+ * do not need to load builds either.
+ *
+ * @since TODO
+ */
+@Restricted(NoExternalUse.class)
+public final class BuildSummaries {
+    private final AbstractLazyLoadRunMap<? extends Run<?,?>> runs;
+    /**
+     * Known summaries, or null until the file has been read.
+     */
+    private Map<Integer, BuildSummary> byNumber;
+    /**
+     * Number of lines in the file.
+     */
+    private int lines;
+
+    public BuildSummaries(@NonNull AbstractLazyLoadRunMap<? extends Run<?,?>> runs) {
+        this.runs = runs;
+    }
+
+    private File getFile() {
+        return new File(runs.dir, "summaries");
+    }
+
+    /**
+     * Reads the file, if not done yet.
+     */
+    public synchronized void load() {
+        if (byNumber != null) {
+            return;
+        }
+        byNumber = new TreeMap<>();
+        lines = 0;
+        File storage = getFile();
+        if (storage.isFile()) {
+            try (Stream<String> stream = Files.lines(storage.toPath(), StandardCharsets.UTF_8)) {
+                stream.forEach(line -> {
+                    lines++;
+                    try {
+                        if (line.startsWith("-")) {
+                            byNumber.remove(Integer.parseInt(line.substring(1)));
+                        } else {
+                            BuildSummary s = BuildSummary.parse(line);
+                            byNumber.put(s.getNumber(), s);
+                        }
+                    } catch (IllegalArgumentException x) {
+                        LOGGER.log(Level.FINE, "skipping malformed line in " + storage, x);
+                    }
+                });
+            } catch (IOException | UncheckedIOException x) {
+                LOGGER.log(Level.WARNING, "failed to read " + storage, x);
+            }
+            if (lines > 2 * byNumber.size() + 16) {
+                compact();
+            }
+        }
+        for (BuildSummary s : byNumber.values()) {
+            runs.updateBuildIndex(s.getNumber(), s.getTimestamp(), s.getDuration(), s.getResult().ordinal);
+        }
+    }
+
+    /**
+     * Records the summary of a build that just completed.
+     */
+    public synchronized void record(@NonNull Run<?,?> run) {
+        load();
+        BuildSummary s = BuildSummary.of(run);
+        byNumber.put(s.getNumber(), s);
+        append(s.toLine());
+    }
+
+    /**
+     * Forgets the summary of a build that was deleted.
+     */
+    public synchronized void remove(int number) {
+        load();
+        if (byNumber.remove(number) != null) {
+            append("-" + number);
+        }
+    }
+
+    /**
+     * Gets the summaries of all the completed builds on disk, newest first.
+     * Builds that have no summary yet are loaded and summarized.
+     */
+    public @NonNull List<BuildSummary> list() {
+        load();
+        BuildIndex index = runs.getBuildIndex();
+        List<BuildSummary> r = new ArrayList<>(index.size());
+        List<BuildSummary> missing = new ArrayList<>();
+        for (int i = index.size() - 1; i >= 0; i--) {
+            int n = index.getNumber(i);
+            BuildSummary s;
+            synchronized (this) {
+                s = byNumber.get(n);
+            }
+            if (s == null) {
+                // load outside of our lock, as that takes the lock of the map
+                Run<?,?> run = runs.getByNumber(n);
+                if (run == null || run.isBuilding()) {
+                    continue;
+                }
+                s = BuildSummary.of(run);
+                missing.add(s);
+            }
+            r.add(s);
+        }
+        if (!missing.isEmpty()) {
+            synchronized (this) {
+                List<String> lines = new ArrayList<>(missing.size());
+                for (BuildSummary s : missing) {
+                    byNumber.put(s.getNumber(), s);
+                    lines.add(s.toLine());
+                }
+                append(lines);
+            }
+        }
+        return r;
+    }
+
+    private void append(String line) {
+        append(Collections.singletonList(line));
+    }
+
+    private void append(List<String> lines) {
+        assert Thread.holdsLock(this);
+        File storage = getFile();
+        try (Writer w = Files.newBufferedWriter(storage.toPath(), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (String line : lines) {
+                w.write(line);
+                w.write('\n');
+            }
+            this.lines += lines.size();
+        } catch (IOException x) {
+            LOGGER.log(Level.WARNING, "failed to update " + storage, x);
+        }
+    }
+
+    private void compact() {
+        assert Thread.holdsLock(this);
+        File storage = getFile();
+        LOGGER.fine(() -> "compacting " + storage + " from " + lines + " lines to " + byNumber.size());
+        try (AtomicFileWriter w = new AtomicFileWriter(storage)) {
+            try {
+                for (BuildSummary s : byNumber.values()) {
+                    w.write(s.toLine());
+                    w.write('\n');
+                }
+                w.commit();
+                lines = byNumber.size();
+            } finally {
+                w.abort();
+            }
+        } catch (IOException x) {
+            LOGGER.log(Level.WARNING, "failed to compact " + storage, x);
+        }
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(BuildSummaries.class.getName());
+}
@@ -0,0 +1,165 @@
+package jenkins.model.lazy;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Util;
+import hudson.model.AbstractBuild;
+import hudson.model.BallColor;
+import hudson.model.Result;
+import hudson.model.Run;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * What most history pages need to know about a completed {@link Run}, without loading it.
+ *
+ * @see BuildSummaries
+ * @since TODO
+ */
+@Restricted(NoExternalUse.class)
+public final class BuildSummary {
+    private final int number;
+    private final long timestamp;
+    private final long duration;
+    private final Result result;
+    private final String displayName;
+    private final String builtOn;
+
+    BuildSummary(int number, long timestamp, long duration, @NonNull Result result, @NonNull String displayName, @CheckForNull String builtOn) {
+        this.number = number;
+        this.timestamp = timestamp;
+        this.duration = duration;
+        this.result = result;
+        this.displayName = displayName;
+        this.builtOn = builtOn;
+    }
+
+    /**
+     * Summarizes a completed build.
+     */
+    public static @NonNull BuildSummary of(@NonNull Run<?,?> run) {
+        Result result = run.getResult();
+        String builtOn = null;
+        if (run instanceof AbstractBuild) {
+            builtOn = Util.fixNull(((AbstractBuild<?,?>) run).getBuiltOnStr());
+        }
+        return new BuildSummary(run.getNumber(), run.getTimeInMillis(), run.getDuration(),
+                result == null ? Result.NOT_BUILT : result, run.getDisplayName(), builtOn);
+    }
+
+    public int getNumber() {
+        return number;
+    }
+
+    /**
+     * @see Run#getTimeInMillis()
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @see Run#getDuration()
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    /**
+     * @see Run#getDurationString()
+     */
+    public @NonNull String getDurationString() {
+        return Util.getTimeSpanString(duration);
+    }
+
+    public @NonNull Result getResult() {
+        return result;
+    }
+
+    /**
+     * @see Run#getIconColor()
+     */
+    public @NonNull BallColor getIconColor() {
+        return result.color;
+    }
+
+    /**
+     * @see Run#getDisplayName()
+     */
+    public @NonNull String getDisplayName() {
+        return displayName;
+    }
+
+    /**
+     * @return {@link AbstractBuild#getBuiltOnStr()}, with "" for the master,
+     *      or null if the build is not an {@link AbstractBuild}
+     */
+    public @CheckForNull String getBuiltOnStr() {
+        return builtOn;
+    }
+
+    /**
+     * Formats this as one line of {@link BuildSummaries} storage.
+     * Fields are separated by tabs, with the display name last.
+     */
+    String toLine() {
+        return number + "\t" + timestamp + "\t" + duration + "\t" + result + "\t"
+                + (builtOn == null ? "" : "=" + escape(builtOn)) + "\t" + escape(displayName);
+    }
+
+    /**
+     * Parses the output of {@link #toLine()}.
+     *
+     * @throws IllegalArgumentException if the line is malformed
+     */
+    static @NonNull BuildSummary parse(@NonNull String line) {
+        String[] fields = line.split("\t", 6);
+        if (fields.length != 6) {
+            throw new IllegalArgumentException("malformed build summary: " + line);
+        }
+        String builtOn = fields[4].isEmpty() ? null : unescape(fields[4].substring(1));
+        return new BuildSummary(Integer.parseInt(fields[0]), Long.parseLong(fields[1]), Long.parseLong(fields[2]),
+                Result.fromString(fields[3]), unescape(fields[5]), builtOn);
+    }
+
+    private static String escape(String s) {
+        StringBuilder b = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+            case '\\': b.append("\\\\"); break;
+            case '\t': b.append("\\t"); break;
+            case '\n': b.append("\\n"); break;
+            case '\r': b.append("\\r"); break;
+            default:   b.append(c);
+            }
+        }
+        return b.toString();
+    }
+
+    private static String unescape(String s) {
+        if (s.indexOf('\\') < 0) {
+            return s;
+        }
+        StringBuilder b = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\\' && i + 1 < s.length()) {
+                c = s.charAt(++i);
+                switch (c) {
+                case 't': c = '\t'; break;
+                case 'n': c = '\n'; break;
+                case 'r': c = '\r'; break;
+                default:  break;
+                }
+            }
+            b.append(c);
+        }
+        return b.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "BuildSummary[" + toLine() + "]";
+    }
+}
@@ -0,0 +1,206 @@
+package jenkins.util.io;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import hudson.Util;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import jenkins.util.SystemProperties;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Computes the digests of files, such as their MD5 digest as {@link Util#getDigestOf(File)} does,
+ * where the files are, so typically on agents.
+ *
+ * <p>
+ * Files are read through a {@link FileChannel} with a buffer sized for them.
+ * Many files can be {@linkplain #submit digested} at once by a pool of {@link #THREADS} threads.
+ * With {@link #CACHE_SIZE} set, digests are remembered by algorithm, path, size, modification time and file key
+ * (the inode where there is one), so that files which did not change since they were last digested,
+ * like dependencies fingerprinted by each build, are not read again.
+ *
+ * @since TODO
+ */
+@Restricted(NoExternalUse.class)
+public final class FileDigests {
+
+    /**
+     * Number of files digested at once by {@link #submit}.
+     */
+    public static /* non-final for Groovy */ int THREADS = SystemProperties.getInteger(FileDigests.class.getName() + ".threads",
+            Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors())));
+
+    /**
+     * Number of digests remembered, 0 to disable the cache.
+     * Off by default, as a file rewritten with the same size within the precision of its modification time
+     * would keep its previous digest.
+     */
+    public static /* non-final for Groovy */ int CACHE_SIZE = SystemProperties.getInteger(FileDigests.class.getName() + ".cacheSize", 0);
+
+    /**
+     * Files modified this recently, in milliseconds, are not cached, as they could change again
+     * without their modification time changing.
+     */
+    private static final long RACY_MILLIS = 2000;
+
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private static final Map<Key, String> CACHE = new LinkedHashMap<Key, String>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, String> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private FileDigests() {}
+
+    /**
+     * Computes the MD5 digest of a file.
+     *
+     * @return a 32-character string
+     */
+    public static @NonNull String md5(@NonNull File file) throws IOException {
+        return digest(file, "MD5");
+    }
+
+    /**
+     * Computes the digest of a file.
+     *
+     * @param algorithm as known to {@link MessageDigest#getInstance(String)}
+     * @return the digest in hex
+     */
+    public static @NonNull String digest(@NonNull File file, @NonNull String algorithm) throws IOException {
+        Path path = Util.fileToPath(file);
+        if (CACHE_SIZE <= 0) {
+            return compute(path, algorithm, -1);
+        }
+        long start = System.currentTimeMillis();
+        Key before = Key.of(path, algorithm);
+        String digest = cached(before);
+        if (digest != null) {
+            return digest;
+        }
+        digest = compute(path, algorithm, before.size);
+        // unless it changed meanwhile or might still change unnoticed
+        if (before.equals(Key.of(path, algorithm)) && before.modified < TimeUnit.MILLISECONDS.toNanos(start - RACY_MILLIS)) {
+            synchronized (CACHE) {
+                CACHE.put(before, digest);
+            }
+        }
+        return digest;
+    }
+
+    /**
+     * Computes the digest of a file in the pool shared by all callers.
+     *
+     * @return the digest as {@link #md5} computes it, or its failure as the cause of an {@link java.util.concurrent.ExecutionException}
+     */
+    public static @NonNull Future<String> submit(@NonNull File file) {
+        return submit(file, "MD5");
+    }
+
+    /**
+     * Computes the digest of a file in the pool shared by all callers.
+     *
+     * @return the digest as {@link #digest} computes it, or its failure as the cause of an {@link java.util.concurrent.ExecutionException}
+     */
+    public static @NonNull Future<String> submit(@NonNull File file, @NonNull String algorithm) {
+        return pool().submit(() -> digest(file, algorithm));
+    }
+
+    private static @CheckForNull String cached(Key key) {
+        synchronized (CACHE) {
+            return CACHE.get(key);
+        }
+    }
+
+    @SuppressFBWarnings(value = "WEAK_MESSAGE_DIGEST_MD5", justification = "as in Util.getDigestOf, not for security")
+    private static String compute(Path path, String algorithm, long size) throws IOException {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(algorithm + " not installed", e);
+        }
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (size < 0) {
+                size = ch.size();
+            }
+            // not mapped, as mapped files cannot be deleted on Windows until the mapping is garbage collected,
+            // and MessageDigest would copy from a mapped buffer into an array anyway
+            ByteBuffer buf = ByteBuffer.allocate((int) Math.max(1, Math.min(size + 1, BUFFER_SIZE)));
+            while (ch.read(buf) >= 0) {
+                md.update(buf.array(), 0, buf.position());
+                buf.clear();
+            }
+        }
+        return Util.toHexString(md.digest());
+    }
+
+    private static ForkJoinPool pool;
+
+    private static synchronized ForkJoinPool pool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(THREADS, p -> {
+                ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+                t.setName("File digest " + t.getPoolIndex());
+                return t;
+            }, null, true);
+        }
+        return pool;
+    }
+
+    /**
+     * What tells a file from a later version of itself.
+     */
+    private static final class Key {
+        final String algorithm;
+        final String path;
+        final long size;
+        final long modified; // nanoseconds, as precise as the file system
+        final @CheckForNull Object fileKey;
+
+        Key(String algorithm, String path, long size, long modified, @CheckForNull Object fileKey) {
+            this.algorithm = algorithm;
+            this.path = path;
+            this.size = size;
+            this.modified = modified;
+            this.fileKey = fileKey;
+        }
+
+        static Key of(Path path, String algorithm) throws IOException {
+            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            return new Key(algorithm, path.toAbsolutePath().toString(), attrs.size(), attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS), attrs.fileKey());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key that = (Key) o;
+            return size == that.size && modified == that.modified && path.equals(that.path) && algorithm.equals(that.algorithm) && Objects.equals(fileKey, that.fileKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return path.hashCode() * 31 + Long.hashCode(modified);
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package jenkins.util.io;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.XmlFile;
+import hudson.init.Terminator;
+import hudson.model.Saveable;
+import hudson.model.listeners.SaveableListener;
+import hudson.util.ClassLoaderSanityThreadFactory;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Opt-in write-behind persistence for {@link XmlFile#writeBehind}.
+ *
+ * <p>
+ * The object is marshalled right away on the calling thread, but the bytes are handed over to a small pool of
+ * background threads which write them after {@link #DELAY} milliseconds. If the same file is saved again in the
+ * meantime, only the latest content is written, so a burst of saves of the same {@link Saveable}
+ * costs a single write and {@code fsync}.
+ *
+ * <p>
+ * Reading a file through {@link XmlFile} first writes its pending content, so callers always see their own saves.
+ * Code that moves or copies configuration directories behind the back of {@link XmlFile} should call
+ * {@link #flush(File)} first. A pending write is dropped if the directory of its file was deleted in the meantime.
+ * Everything is flushed when Jenkins shuts down, after which writes are synchronous again.
+ *
+ * @see SaveableListener#onWriteBehind
+ * @since TODO
+ */
+@Restricted(NoExternalUse.class)
+public final class WriteBehind {
+    /**
+     * Whether {@link XmlFile#writeBehind} defers writes at all.
+     */
+    public static /* non-final for Groovy */ boolean ENABLED = SystemProperties.getBoolean(WriteBehind.class.getName() + ".enabled", false);
+
+    /**
+     * How long in milliseconds a save waits for more saves of the same file before being written.
+     */
+    public static /* non-final for Groovy */ long DELAY = SystemProperties.getLong(WriteBehind.class.getName() + ".delay", 1000L);
+
+    private static final int THREADS = SystemProperties.getInteger(WriteBehind.class.getName() + ".threads", 2);
+
+    private static final Map<File, Pending> PENDING = new ConcurrentHashMap<>();
+
+    private static volatile boolean closed;
+
+    private static ScheduledExecutorService executor;
+
+    private WriteBehind() {}
+
+    /**
+     * Whether writes are currently deferred.
+     */
+    public static boolean isActive() {
+        return ENABLED && !closed;
+    }
+
+    /**
+     * Number of files waiting to be written.
+     */
+    public static int getQueueDepth() {
+        return PENDING.size();
+    }
+
+    /**
+     * Schedules the content of a file to be written.
+     *
+     * @param owner the object that was marshalled, reported to {@link SaveableListener#onWriteBehind} if it is {@link Saveable}
+     * @return false if writes are not deferred anymore, in which case the caller must write the file itself
+     */
+    public static boolean enqueue(@NonNull XmlFile file, @CheckForNull Object owner, @NonNull byte[] content) {
+        if (!isActive()) {
+            return false;
+        }
+        File key = key(file.getFile());
+        while (true) {
+            Pending p = PENDING.get(key);
+            if (p == null) {
+                p = new Pending(key, file, owner instanceof Saveable ? (Saveable) owner : null, content);
+                if (PENDING.putIfAbsent(key, p) == null) {
+                    executor().schedule(p::write, DELAY, TimeUnit.MILLISECONDS);
+                    return true;
+                }
+            } else if (p.update(content)) {
+                return true;
+            } else {
+                // just written; make room for a new entry
+                PENDING.remove(key, p);
+            }
+        }
+    }
+
+    /**
+     * Writes the pending content of the given file, or of all the files under the given directory,
+     * waiting for writes already in progress.
+     */
+    public static void flush(@NonNull File fileOrDirectory) {
+        if (PENDING.isEmpty()) {
+            return;
+        }
+        File key = key(fileOrDirectory);
+        Pending p = PENDING.get(key);
+        if (p != null) {
+            p.write();
+            return;
+        }
+        for (Pending q : PENDING.values()) {
+            if (q.key.toPath().startsWith(key.toPath())) {
+                q.write();
+            }
+        }
+    }
+
+    /**
+     * Writes all the pending content.
+     */
+    public static void flush() {
+        for (Pending p : PENDING.values()) {
+            p.write();
+        }
+    }
+
+    /**
+     * Forgets the pending content of a file, because it is about to be overwritten or deleted.
+     * Waits for a write already in progress.
+     */
+    public static void discard(@NonNull File file) {
+        if (PENDING.isEmpty()) {
+            return;
+        }
+        Pending p = PENDING.get(key(file));
+        if (p != null) {
+            p.discard();
+        }
+    }
+
+    /**
+     * Durability barrier when Jenkins stops: everything saved so far reaches the disk,
+     * and later saves are written synchronously.
+     */
+    @Terminator
+    public static void shutdown() {
+        closed = true;
+        flush();
+        synchronized (WriteBehind.class) {
+            if (executor != null) {
+                executor.shutdown();
+            }
+        }
+    }
+
+    private static synchronized ScheduledExecutorService executor() {
+        if (executor == null || executor.isShutdown()) {
+            executor = new ScheduledThreadPoolExecutor(THREADS,
+                    new NamingThreadFactory(new ClassLoaderSanityThreadFactory(new DaemonThreadFactory()), "WriteBehind"));
+        }
+        return executor;
+    }
+
+    private static File key(File f) {
+        return f.getAbsoluteFile();
+    }
+
+    private static final class Pending {
+        private final File key;
+        private final XmlFile file;
+        private final @CheckForNull Saveable owner;
+        private final long since = System.nanoTime();
+        private byte[] content;
+        private boolean done;
+
+        Pending(File key, XmlFile file, Saveable owner, byte[] content) {
+            this.key = key;
+            this.file = file;
+            this.owner = owner;
+            this.content = content;
+        }
+
+        synchronized boolean update(byte[] content) {
+            if (done) {
+                return false;
+            }
+            this.content = content;
+            return true;
+        }
+
+        synchronized void discard() {
+            done = true;
+            PENDING.remove(key, this);
+        }
+
+        void write() {
+            synchronized (this) {
+                if (done) {
+                    return;
+                }
+                done = true;
+                try {
+                    File dir = key.getParentFile();
+                    if (dir != null && !dir.isDirectory()) {
+                        LOGGER.log(Level.FINE, "{0} was deleted, not writing {1}", new Object[] {dir, key});
+                        return;
+                    }
+                    file.writeRaw(ByteBuffer.wrap(content));
+                } catch (IOException | RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Failed to write " + key, e);
+                    return;
+                } finally {
+                    PENDING.remove(key, this);
+                }
+            }
+            if (owner != null && Jenkins.getInstanceOrNull() != null) {
+                SaveableListener.fireOnWriteBehind(owner, file, System.nanoTime() - since, PENDING.size());
+            }
+        }
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(WriteBehind.class.getName());
+}
@@ -26,9 +26,15 @@ package jenkins.widgets;
 
 import hudson.model.AbstractBuild;
 import hudson.model.BallColor;
+import hudson.model.Job;
 import hudson.model.Node;
 import hudson.model.Run;
+import hudson.model.RunMap;
+import java.util.ArrayList;
+import java.util.List;
 import jenkins.model.Jenkins;
+import jenkins.model.lazy.BuildSummary;
+import jenkins.model.lazy.LazyBuildMixIn;
 import net.sf.json.JSONObject;
 import org.kohsuke.accmod.Restricted;
 import org.kohsuke.accmod.restrictions.DoNotUse;
@@ -36,6 +42,56 @@ import org.kohsuke.accmod.restrictions.DoNotUse;
 @Restricted(DoNotUse.class) // only for buildTimeTrend.jelly
 public class BuildTimeTrend extends RunListProgressiveRendering {
 
+    private RunMap<?> runs;
+
+    /**
+     * Uses the {@link BuildSummary} of completed builds where possible, rather than {@link #setBuilds}.
+     * Jelly cannot call a constructor with arguments.
+     */
+    public void setJob(Job<?,?> job) {
+        if (job instanceof LazyBuildMixIn.LazyLoadingJob) {
+            runs = ((LazyBuildMixIn.LazyLoadingJob<?,?>) job).getLazyBuildMixIn()._getRuns();
+        } else {
+            setBuilds(job.getBuilds());
+        }
+    }
+
+    @Override protected void compute() throws Exception {
+        if (runs == null) {
+            super.compute();
+            return;
+        }
+        List<BuildSummary> summaries = runs.getSummaries();
+        // builds in progress have no summary, but are always in memory
+        List<Run<?,?>> building = new ArrayList<>();
+        for (Run<?,?> r : runs.getLoadedBuilds().values()) {
+            if (r != null && r.isBuilding()) {
+                building.add(r);
+            }
+        }
+        int b = 0;
+        for (BuildSummary s : summaries) {
+            for (; b < building.size() && building.get(b).getNumber() > s.getNumber(); b++) {
+                addBuild(building.get(b));
+            }
+            if (canceled()) {
+                return;
+            }
+            JSONObject element = new JSONObject();
+            calculate(s, element);
+            add(element);
+        }
+        for (; b < building.size(); b++) {
+            addBuild(building.get(b));
+        }
+    }
+
+    private void addBuild(Run<?,?> build) {
+        JSONObject element = new JSONObject();
+        calculate(build, element);
+        add(element);
+    }
+
     @Override protected void calculate(Run<?,?> build, JSONObject element) {
         BallColor iconColor = build.getIconColor();
         element.put("iconColorOrdinal", iconColor.ordinal());
@@ -47,18 +103,36 @@ public class BuildTimeTrend extends RunListProgressiveRendering {
         element.put("durationString", build.getDurationString());
         if (build instanceof AbstractBuild) {
             AbstractBuild<?,?> b = (AbstractBuild) build;
-            Node n = b.getBuiltOn();
-            if (n == null) {
-                String ns = b.getBuiltOnStr();
-                if (ns != null && !ns.isEmpty()) {
-                    element.put("builtOnStr", ns);
-                }
-            } else if (n != Jenkins.get()) {
-                element.put("builtOn", n.getNodeName());
-                element.put("builtOnStr", n.getDisplayName());
-            } else {
-                element.put("builtOnStr", hudson.model.Messages.Hudson_Computer_DisplayName());
+            calculateBuiltOn(b.getBuiltOn(), b.getBuiltOnStr(), element);
+        }
+    }
+
+    private void calculate(BuildSummary build, JSONObject element) {
+        BallColor iconColor = build.getIconColor();
+        element.put("iconColorOrdinal", iconColor.ordinal());
+        element.put("iconColorDescription", iconColor.getDescription());
+        element.put("buildStatusUrl", iconColor.getImage());
+        element.put("number", build.getNumber());
+        element.put("displayName", build.getDisplayName());
+        element.put("duration", build.getDuration());
+        element.put("durationString", build.getDurationString());
+        String ns = build.getBuiltOnStr();
+        if (ns != null) {
+            // same as AbstractBuild.getBuiltOn()
+            calculateBuiltOn(ns.isEmpty() ? Jenkins.get() : Jenkins.get().getNode(ns), ns, element);
+        }
+    }
+
+    private static void calculateBuiltOn(Node n, String ns, JSONObject element) {
+        if (n == null) {
+            if (ns != null && !ns.isEmpty()) {
+                element.put("builtOnStr", ns);
             }
+        } else if (n != Jenkins.get()) {
+            element.put("builtOn", n.getNodeName());
+            element.put("builtOnStr", n.getDisplayName());
+        } else {
+            element.put("builtOnStr", hudson.model.Messages.Hudson_Computer_DisplayName());
         }
     }
 
@@ -56,19 +56,27 @@ public abstract class RunListProgressiveRendering extends ProgressiveRendering {
     }
 
     @Override protected void compute() throws Exception {
-        double decay = 1;
         for (Run<?,?> build : builds) {
             if (canceled()) {
                 return;
             }
             JSONObject element = new JSONObject();
             calculate(build, element);
-            synchronized (this) {
-                results.add(element);
-            }
-            decay *= (1 - 1 / MAX_LIKELY_RUNS);
-            progress(1 - decay);
+            add(element);
+        }
+    }
+
+    private double decay = 1;
+
+    /**
+     * Adds one computed element, updating the progress.
+     */
+    protected void add(JSONObject element) {
+        synchronized (this) {
+            results.add(element);
         }
+        decay *= (1 - 1 / MAX_LIKELY_RUNS);
+        progress(1 - decay);
     }
 
     @Override protected synchronized JSON data() {
@@ -8,15 +8,21 @@ import java.net.URL;
 
 import jenkins.model.Jenkins;
 import org.junit.Ignore;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.xml.sax.SAXParseException;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
 
 public class XmlFileTest {
 
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
     @Test
     public void canReadXml1_0Test() throws IOException {
         URL configUrl = getClass().getResource("/hudson/config_1_0.xml");
@@ -70,4 +76,27 @@ public class XmlFileTest {
             assertThat(n.getLabelString(), is("LESS_TERMCAP_mb=\u001B[01;31m"));
         }
     }
+
+    @Test
+    public void writeSkipsUnchangedContent() throws IOException {
+        File f = tmp.newFile("config.xml");
+        XmlFile xmlFile = new XmlFile(new XStream2(), f);
+        Bean b = new Bean();
+        b.name = "caf\u00e9";
+        xmlFile.write(b);
+        assertThat(((Bean) xmlFile.read()).name, is("caf\u00e9"));
+
+        assertTrue(f.setLastModified(1000L));
+        xmlFile.write(b);
+        assertThat(f.lastModified(), is(1000L));
+
+        b.name = "tea";
+        xmlFile.write(b);
+        assertThat(((Bean) xmlFile.read()).name, is("tea"));
+        assertThat(f.lastModified() == 1000L, is(false));
+    }
+
+    public static class Bean {
+        String name;
+    }
 }
@@ -0,0 +1,103 @@
+package hudson.console;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AsyncLogOutputStreamTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private int bufferSize;
+
+    @Before
+    public void setUp() {
+        AsyncLogOutputStream.ENABLED = true;
+        bufferSize = AsyncLogOutputStream.BUFFER_SIZE;
+    }
+
+    @After
+    public void tearDown() {
+        AsyncLogOutputStream.ENABLED = false;
+        AsyncLogOutputStream.BUFFER_SIZE = bufferSize;
+    }
+
+    @Test
+    public void completeOnClose() throws Exception {
+        AsyncLogOutputStream.BUFFER_SIZE = 100;
+        List<File> logs = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            File log = tmp.newFile();
+            logs.add(log);
+            threads.add(new Thread(() -> {
+                try (OutputStream out = AsyncLogOutputStream.wrap(log, Files.newOutputStream(log.toPath()))) {
+                    for (int line = 0; line < 1000; line++) {
+                        out.write(("line " + line + "\n").getBytes(StandardCharsets.UTF_8));
+                        if (line % 10 == 0) {
+                            out.write('!');
+                            out.flush();
+                        }
+                    }
+                    out.write(new byte[1000]);
+                } catch (IOException x) {
+                    throw new AssertionError(x);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread t : threads) {
+            t.join();
+        }
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        for (int line = 0; line < 1000; line++) {
+            expected.write(("line " + line + "\n").getBytes(StandardCharsets.UTF_8));
+            if (line % 10 == 0) {
+                expected.write('!');
+            }
+        }
+        expected.write(new byte[1000]);
+        for (File log : logs) {
+            assertArrayEquals(expected.toByteArray(), Files.readAllBytes(log.toPath()));
+        }
+    }
+
+    @Test
+    public void failures() throws Exception {
+        File log = tmp.newFile();
+        OutputStream broken = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("disk full");
+            }
+        };
+        OutputStream out = AsyncLogOutputStream.wrap(log, broken);
+        assertNotSame(broken, out);
+        out.write(1);
+        IOException x = assertThrows(IOException.class, out::close);
+        assertEquals("disk full", x.getCause().getMessage());
+    }
+
+    @Test
+    public void disabled() throws Exception {
+        AsyncLogOutputStream.ENABLED = false;
+        OutputStream out = new ByteArrayOutputStream();
+        assertEquals(out, AsyncLogOutputStream.wrap(tmp.newFile(), out));
+    }
+}
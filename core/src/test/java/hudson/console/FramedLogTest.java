@@ -0,0 +1,145 @@
+package hudson.console;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FramedLogTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private int frameSize;
+
+    @Before
+    public void setUp() {
+        frameSize = FramedLog.FRAME_SIZE;
+        FramedLog.FRAME_SIZE = 1000;
+    }
+
+    @After
+    public void tearDown() {
+        FramedLog.FRAME_SIZE = frameSize;
+    }
+
+    @Test
+    public void randomAccess() throws Exception {
+        byte[] content = content(20_000);
+        File gz = compress(content);
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(gz.toPath()))) {
+            assertArrayEquals("still a valid gzip file", content, IOUtils.toByteArray(in));
+        }
+        FramedLog log = FramedLog.of(gz);
+        assertNotNull(log);
+        assertEquals(content.length, log.length());
+        for (int offset : new int[] {0, 1, 999, 1000, 1001, 12_345, content.length - 1, content.length, content.length + 10}) {
+            try (InputStream in = log.open(offset)) {
+                byte[] expected = Arrays.copyOfRange(content, Math.min(offset, content.length), content.length);
+                assertArrayEquals("from " + offset, expected, IOUtils.toByteArray(in));
+            }
+        }
+    }
+
+    @Test
+    public void sameTailAsPlainLog() throws Exception {
+        byte[] content = content(20_000);
+        File plain = tmp.newFile();
+        Files.write(plain.toPath(), content);
+        File gz = compress(content);
+        for (int maxLines : new int[] {1, 2, 10, 100, 100_000, -1}) {
+            assertEquals(LogTail.lastLines(plain, StandardCharsets.UTF_8, maxLines), LogTail.lastLines(gz, StandardCharsets.UTF_8, maxLines));
+        }
+    }
+
+    @Test
+    public void annotatedLargeText() throws Exception {
+        byte[] content = content(5_000);
+        File gz = compress(content);
+        AnnotatedLargeText<Void> text = new AnnotatedLargeText<>(gz, StandardCharsets.UTF_8, true, null);
+        assertEquals(content.length, text.length());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(content.length, text.writeLogTo(1234, out));
+        assertArrayEquals(Arrays.copyOfRange(content, 1234, content.length), out.toByteArray());
+        assertEquals(new String(content, StandardCharsets.UTF_8), IOUtils.toString(text.readAll()));
+    }
+
+    @Test
+    public void plainAnnotatedLargeText() throws Exception {
+        byte[] content = content(5_000);
+        File plain = tmp.newFile();
+        Files.write(plain.toPath(), content);
+        AnnotatedLargeText<Void> text = new AnnotatedLargeText<>(plain, StandardCharsets.UTF_8, true, null);
+        assertEquals(content.length, text.length());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(content.length, text.writeLogTo(1234, out));
+        assertArrayEquals(Arrays.copyOfRange(content, 1234, content.length), out.toByteArray());
+        out.reset();
+        assertEquals(content.length, text.writeRawLogTo(0, out));
+        assertArrayEquals(content, out.toByteArray());
+    }
+
+    @Test
+    public void invalidIndex() throws Exception {
+        File gz = compress(content(5_000));
+        Files.write(FramedLog.indexFileOf(gz).toPath(), new byte[] {1, 2, 3});
+        assertNull(FramedLog.of(gz));
+        assertNull(FramedLog.of(tmp.newFile("log")));
+    }
+
+    @Test
+    public void emptyLog() throws Exception {
+        File gz = compress(new byte[0]);
+        FramedLog log = FramedLog.of(gz);
+        assertNotNull(log);
+        assertEquals(0, log.length());
+        try (InputStream in = log.open(0)) {
+            assertEquals(-1, in.read());
+        }
+        // as Run#getLogInputStream reads it
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(gz.toPath()))) {
+            assertEquals(-1, in.read());
+        }
+    }
+
+    private File compress(byte[] content) throws Exception {
+        File dir = tmp.newFolder();
+        File log = new File(dir, "log");
+        Files.write(log.toPath(), content);
+        assertTrue(FramedLog.compress(log));
+        assertFalse(log.exists());
+        File gz = new File(dir, "log.gz");
+        assertTrue(gz.isFile());
+        return gz;
+    }
+
+    private static byte[] content(int size) {
+        Random r = new Random(size);
+        StringBuilder b = new StringBuilder();
+        while (b.length() < size) {
+            int n = r.nextInt(10) == 0 ? r.nextInt(3000) : r.nextInt(80);
+            for (int i = 0; i < n; i++) {
+                b.append((char) ('a' + r.nextInt(26)));
+            }
+            b.append('\n');
+        }
+        return b.substring(0, size).getBytes(StandardCharsets.UTF_8);
+    }
+}
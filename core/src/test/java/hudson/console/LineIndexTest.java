@@ -0,0 +1,117 @@
+package hudson.console;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.kohsuke.stapler.framework.io.ByteBuffer;
+
+public class LineIndexTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private int stride;
+
+    @Before
+    public void setUp() {
+        stride = LineIndex.STRIDE;
+        LineIndex.STRIDE = 3;
+    }
+
+    @After
+    public void tearDown() {
+        LineIndex.STRIDE = stride;
+    }
+
+    @Test
+    public void writtenAlongTheLog() throws Exception {
+        File log = tmp.newFile("log");
+        String content = content(20);
+        try (OutputStream out = LineIndex.wrap(log, Files.newOutputStream(log.toPath()))) {
+            byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+            out.write(bytes, 0, 10);
+            out.write(bytes[10]);
+            out.write(bytes, 11, bytes.length - 11);
+        }
+        File index = LineIndex.indexFileOf(log);
+        assertTrue(index.isFile());
+        assertEquals(8 + 6 * 8, index.length());
+        assertOffsets(log, content);
+    }
+
+    @Test
+    public void rebuiltOnDemand() throws Exception {
+        File log = tmp.newFile("log");
+        String content = content(10) + "no newline";
+        Files.write(log.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        File index = LineIndex.indexFileOf(log);
+        LineIndex.load(log, false);
+        assertFalse(index.exists());
+        assertOffsets(log, content);
+        assertTrue(index.isFile());
+
+        Files.write(index.toPath(), new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9});
+        assertOffsets(log, content);
+        assertEquals(8 + 3 * 8, index.length());
+    }
+
+    @Test
+    public void lineRanges() throws Exception {
+        File log = tmp.newFile("log");
+        String content = content(10);
+        Files.write(log.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        ByteBuffer memory = new ByteBuffer();
+        memory.write(content.getBytes(StandardCharsets.UTF_8));
+        for (AnnotatedLargeText<?> text : new AnnotatedLargeText<?>[] {
+                new AnnotatedLargeText<>(log, StandardCharsets.UTF_8, true, null),
+                new AnnotatedLargeText<>(memory, StandardCharsets.UTF_8, true, null)}) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            long end = text.writeLinesTo(4, 7, out);
+            assertEquals("line4\nline5\nline6\n", out.toString("UTF-8"));
+            assertEquals(content.indexOf("line7"), end);
+
+            out.reset();
+            end = text.writeLinesTo(8, 100, out);
+            assertEquals("line8\nline9\n", out.toString("UTF-8"));
+            assertEquals(content.length(), end);
+
+            out.reset();
+            end = text.writeLinesTo(3, 3, out);
+            assertEquals("", out.toString("UTF-8"));
+            assertEquals(content.indexOf("line3"), end);
+        }
+    }
+
+    private static String content(int lines) {
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            b.append("line").append(i).append('\n');
+        }
+        return b.toString();
+    }
+
+    private static void assertOffsets(File log, String content) throws Exception {
+        LineIndex index = LineIndex.load(log, true);
+        try (FileChannel ch = FileChannel.open(log.toPath(), StandardOpenOption.READ)) {
+            int expected = 0;
+            for (int line = 0; line < 25; line++) {
+                assertEquals("line " + line, expected, index.offsetOf(ch, line));
+                int next = content.indexOf('\n', expected);
+                expected = next < 0 ? content.length() : next + 1;
+            }
+        }
+    }
+}
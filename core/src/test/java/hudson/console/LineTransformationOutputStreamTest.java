@@ -0,0 +1,42 @@
+package hudson.console;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class LineTransformationOutputStreamTest {
+
+    @Test
+    public void bulkWriteSplitsLines() throws IOException {
+        Lines s = new Lines();
+        s.write("one\ntw".getBytes(StandardCharsets.UTF_8));
+        s.write("o\nthree".getBytes(StandardCharsets.UTF_8));
+        s.close();
+        assertEquals("[one\n, two\n, three]", s.lines.toString());
+    }
+
+    @Test
+    public void bulkWriteGoesThroughOverriddenWriteInt() throws IOException {
+        Lines s = new Lines() {
+            @Override
+            public void write(int b) throws IOException {
+                super.write(Character.toUpperCase(b));
+            }
+        };
+        s.write("one\ntwo\n".getBytes(StandardCharsets.UTF_8));
+        assertEquals("[ONE\n, TWO\n]", s.lines.toString());
+    }
+
+    private static class Lines extends LineTransformationOutputStream {
+        final List<String> lines = new ArrayList<>();
+
+        @Override
+        protected void eol(byte[] b, int len) {
+            lines.add(new String(b, 0, len, StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package hudson.console;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.Assert.assertEquals;
+
+import hudson.Functions;
+import java.io.File;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.kohsuke.stapler.framework.io.ByteBuffer;
+
+public class LogTailTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void shortLogs() throws Exception {
+        assertThat(tail("", 5), contains(""));
+        assertThat(tail("\n", 5), contains(""));
+        assertThat(tail("a\r\nb\n\nc", 5), contains("a", "b", "", "c"));
+        assertThat(tail("a\nb\n", 2), contains("a", "b"));
+        assertThat(tail("a\nb\n", 0), empty());
+        assertThat(tail("a\nb\nc\n", 2), contains("[...truncated 0 B...]", "c"));
+        assertThat(tail("h\u00e9\u00e9\nb\n", -1), contains("h\u00e9\u00e9", "b"));
+    }
+
+    @Test
+    public void sameAsStreamingAcrossBlocks() throws Exception {
+        Random r = new Random(42);
+        StringBuilder b = new StringBuilder();
+        while (b.length() < 300_000) {
+            int n = r.nextInt(10) == 0 ? r.nextInt(70_000) : r.nextInt(100);
+            for (int i = 0; i < n; i++) {
+                b.append((char) ('a' + r.nextInt(26)));
+            }
+            b.append('\n');
+        }
+        String content = b.toString();
+        for (int maxLines : new int[] {1, 2, 10, 100, 10_000}) {
+            List<String> expected = naiveTail(content, maxLines);
+            assertEquals(expected, tail(content, maxLines));
+            assertEquals(expected, tail(content.substring(0, content.length() - 1), maxLines));
+            File gz = tmp.newFile();
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(new File(gz.getPath() + ".gz").toPath()))) {
+                out.write(content.getBytes(StandardCharsets.UTF_8));
+            }
+            assertEquals(expected, LogTail.lastLines(new File(gz.getPath() + ".gz"), StandardCharsets.UTF_8, maxLines));
+        }
+    }
+
+    @Test
+    public void annotatedLargeTextInMemory() throws Exception {
+        ByteBuffer buf = new ByteBuffer();
+        for (int i = 0; i < 20; i++) {
+            buf.write(("line" + i + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+        List<String> lines = new AnnotatedLargeText<>(buf, StandardCharsets.UTF_8, true, null).getLastLines(3);
+        assertThat(lines, contains("[...truncated 107 B...]", "line18", "line19"));
+    }
+
+    private List<String> tail(String content, int maxLines) throws Exception {
+        File f = tmp.newFile();
+        Files.write(f.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return LogTail.lastLines(f, StandardCharsets.UTF_8, maxLines);
+    }
+
+    /**
+     * What {@code Run.getLog(int)} used to do, with the same truncation message.
+     */
+    private static List<String> naiveTail(String content, int maxLines) {
+        List<String> lines = new ArrayList<>(Arrays.asList(content.split("\n", -1)));
+        if (content.endsWith("\n")) {
+            lines.remove(lines.size() - 1);
+        }
+        if (lines.size() <= maxLines) {
+            return lines;
+        }
+        List<String> result = new ArrayList<>(lines.subList(lines.size() - maxLines, lines.size()));
+        int start = content.length();
+        for (int i = lines.size() - 1; i >= lines.size() - maxLines; i--) {
+            start -= lines.get(i).length() + 1;
+        }
+        if (!content.endsWith("\n")) {
+            start++;
+        }
+        // start is now where the first kept line begins
+        result.set(0, "[...truncated " + Functions.humanReadableByteSize(start - 2) + "...]");
+        return result;
+    }
+}
@@ -0,0 +1,54 @@
+package hudson.console;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TrigramIndexTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void roundTrip() throws Exception {
+        TrigramIndex.Builder b = new TrigramIndex.Builder();
+        b.addLine(TrigramIndex.fold("Started by user Admin"));
+        b.addLine(TrigramIndex.fold("BUILD SUCCESS"));
+        b.setLength(1234);
+        File f = tmp.newFile();
+        b.build().save(f);
+
+        assertNull("stale", TrigramIndex.load(f, 1235));
+        TrigramIndex index = TrigramIndex.load(f, 1234);
+        assertNotNull(index);
+        assertEquals(1234, index.getLength());
+        assertTrue(index.mightContain(TrigramIndex.trigramsOf(TrigramIndex.fold("user ADMIN"))));
+        assertTrue(index.mightContain(TrigramIndex.trigramsOf(TrigramIndex.fold("success"))));
+        assertTrue("too short to filter", index.mightContain(TrigramIndex.trigramsOf("xy")));
+        assertFalse(index.mightContain(TrigramIndex.trigramsOf(TrigramIndex.fold("FAILURE"))));
+        assertFalse("trigrams do not span lines", index.mightContain(TrigramIndex.trigramsOf(TrigramIndex.fold("adminbuild"))));
+    }
+
+    @Test
+    public void invalid() throws Exception {
+        File f = tmp.newFile();
+        assertNull(TrigramIndex.load(new File(tmp.getRoot(), "missing"), 0));
+        assertNull(TrigramIndex.load(f, 0));
+        Files.write(f.toPath(), new byte[] {0x54, 0x52, 0x47, 0x4d, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 5, 1});
+        assertNull(TrigramIndex.load(f, 0));
+    }
+
+    @Test
+    public void fold() {
+        assertEquals("déjà vu", TrigramIndex.fold("DÉJÀ Vu"));
+        assertEquals("strasse", TrigramIndex.fold("STRASSE"));
+    }
+}
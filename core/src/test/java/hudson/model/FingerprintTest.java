@@ -219,6 +219,29 @@ public class FingerprintTest {
         assertFalse(x.removeAll(y));
     }
 
+    @Test
+    public void addAllUnsorted() {
+        RangeSet x = new RangeSet();
+        x.addAll(7,3,5,3,4,20,6);
+        assertEquals("[3,8),[20,21)",x.toString());
+        assertEquals(x.hashCode(),x.getRanges().hashCode());
+    }
+
+    @Test
+    public void modifyUnsortedParsed() {
+        RangeSet x = RangeSet.fromString("5,1-2,3",true);
+        assertEquals("[5,6),[1,3),[3,4)",x.toString());
+        assertTrue(x.includes(3));
+        assertFalse(x.includes(4));
+
+        x.add(8);
+        assertEquals("[1,4),[5,6),[8,9)",x.toString());
+
+        RangeSet y = RangeSet.fromString("9,4",true);
+        x.add(y);
+        assertEquals("[1,6),[8,10)",x.toString());
+    }
+
     @Test public void deserialize() throws Exception {
         assertEquals("Fingerprint["
                 + "original=stapler/org.kohsuke.stapler:stapler-jelly #123,"
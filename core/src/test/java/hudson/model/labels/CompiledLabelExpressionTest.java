@@ -0,0 +1,108 @@
+package hudson.model.labels;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import hudson.model.Label;
+import hudson.util.VariableResolver;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Test;
+
+public class CompiledLabelExpressionTest {
+
+    private final LabelAtom[] atoms = new LabelAtom[8];
+    private final CompiledLabelExpression.Dictionary dictionary = new CompiledLabelExpression.Dictionary();
+
+    public CompiledLabelExpressionTest() {
+        for (int i = 0; i < atoms.length; i++) {
+            atoms[i] = new LabelAtom("atom" + i);
+        }
+    }
+
+    @Test
+    public void agreesWithTreeWalk() {
+        Random r = new Random(42);
+        List<Set<LabelAtom>> owners = new ArrayList<>();
+        List<BitSet> rows = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Set<LabelAtom> s = new HashSet<>();
+            for (LabelAtom a : atoms) {
+                if (r.nextBoolean()) {
+                    s.add(a);
+                }
+            }
+            owners.add(s);
+            rows.add(dictionary.atomsOf(s));
+        }
+        for (int i = 0; i < 200; i++) {
+            Label l = randomExpression(r, 4);
+            CompiledLabelExpression c = dictionary.compile(l);
+            BitSet matching = c.filter(rows);
+            for (int j = 0; j < owners.size(); j++) {
+                Set<LabelAtom> s = owners.get(j);
+                boolean expected = l.matches(name -> s.stream().anyMatch(a -> a.getName().equals(name)));
+                assertEquals(l.getExpression(), expected, c.matches(rows.get(j)));
+                assertEquals(l.getExpression(), expected, matching.get(j));
+            }
+        }
+    }
+
+    @Test
+    public void unknownLabelsFallBack() {
+        Label custom = new LabelExpression.Not(atoms[0]) {
+            @Override
+            public boolean matches(VariableResolver<Boolean> resolver) {
+                return true;
+            }
+        };
+        CompiledLabelExpression c = dictionary.compile(custom.and(atoms[1]));
+        BitSet both = dictionary.atomsOf(new HashSet<>(Arrays.asList(atoms[0], atoms[1])));
+        assertTrue(c.matches(both));
+        assertTrue(c.filter(Collections.singletonList(both)).get(0));
+    }
+
+    @Test
+    public void resetDictionaryReclaimsIds() {
+        CompiledLabelExpression.Dictionary old = CompiledLabelExpression.dictionary();
+        for (int i = 0; i < 100; i++) {
+            old.idOf("gone" + i);
+        }
+        CompiledLabelExpression.Dictionary d = CompiledLabelExpression.resetDictionary();
+        assertSame(d, CompiledLabelExpression.dictionary());
+        assertEquals(0, d.size());
+        BitSet row = d.atomsOf(Collections.singleton(atoms[0]));
+        assertEquals(1, d.size());
+        CompiledLabelExpression c = d.compile(atoms[0].or(atoms[1]));
+        assertSame(d, c.getDictionary());
+        assertTrue(c.matches(row));
+    }
+
+    private Label randomExpression(Random r, int depth) {
+        if (depth == 0 || r.nextInt(4) == 0) {
+            return atoms[r.nextInt(atoms.length)];
+        }
+        Label lhs = randomExpression(r, depth - 1);
+        switch (r.nextInt(6)) {
+        case 0:
+            return lhs.not();
+        case 1:
+            return lhs.paren();
+        case 2:
+            return lhs.and(randomExpression(r, depth - 1));
+        case 3:
+            return lhs.or(randomExpression(r, depth - 1));
+        case 4:
+            return lhs.iff(randomExpression(r, depth - 1));
+        default:
+            return lhs.implies(randomExpression(r, depth - 1));
+        }
+    }
+}
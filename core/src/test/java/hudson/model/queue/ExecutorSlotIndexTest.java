@@ -0,0 +1,78 @@
+package hudson.model.queue;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import hudson.model.Computer;
+import hudson.model.Executor;
+import hudson.model.Label;
+import hudson.model.Node;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import org.junit.Test;
+
+public class ExecutorSlotIndexTest {
+
+    @Test
+    public void lookupByLabel() {
+        Node linux = mock(Node.class);
+        Node windows = mock(Node.class);
+        Slot l1 = new Slot(linux), l2 = new Slot(linux), w1 = new Slot(windows), removed = new Slot(null);
+        ExecutorSlotIndex<Slot> index = new ExecutorSlotIndex<>(Arrays.asList(l1, w1, l2, removed));
+
+        assertThat(index.get(null), containsInAnyOrder(l1, l2, w1));
+        assertThat(index.get(label(linux)), containsInAnyOrder(l1, l2));
+        assertThat(index.get(label(linux, windows)), containsInAnyOrder(l1, l2, w1));
+        assertThat(index.get(label()), empty());
+    }
+
+    @Test
+    public void removedSlotsAreNotOffered() {
+        Node linux = mock(Node.class);
+        Slot l1 = new Slot(linux), l2 = new Slot(linux);
+        ExecutorSlotIndex<Slot> index = new ExecutorSlotIndex<>(Arrays.asList(l1, l2));
+        Label label = label(linux);
+
+        assertThat(index.get(label), containsInAnyOrder(l1, l2));
+        index.remove(l1);
+        assertThat(index.get(label), containsInAnyOrder(l2));
+        assertThat(index.get(null), containsInAnyOrder(l2));
+        index.remove(l2);
+        assertThat(index.get(label), empty());
+    }
+
+    private static Label label(Node... nodes) {
+        Label label = mock(Label.class);
+        when(label.getNodes()).thenReturn(nodes.length == 0 ? Collections.emptySet() : new HashSet<>(Arrays.asList(nodes)));
+        return label;
+    }
+
+    private static final class Slot extends MappingWorksheet.ExecutorSlot {
+        private final Executor executor;
+
+        Slot(Node node) {
+            Computer c = mock(Computer.class);
+            when(c.getNode()).thenReturn(node);
+            executor = mock(Executor.class);
+            when(executor.getOwner()).thenReturn(c);
+        }
+
+        @Override
+        public Executor getExecutor() {
+            return executor;
+        }
+
+        @Override
+        public boolean isAvailable() {
+            return true;
+        }
+
+        @Override
+        protected void set(WorkUnit p) {
+        }
+    }
+}
@@ -106,6 +106,22 @@ public class RobustReflectionConverterTest {
         assertEquals(Billy.class, s.lover.getClass());
     }
 
+    @Test
+    public void unmarshallingPlans() {
+        XStream2 xs = new XStream2();
+        xs.alias("moonwalk", Moonwalk.class);
+        String xml = "<moonwalk><number>7</number><boot/><lover class='" + Billy.class.getName() + "'/><bogus/></moonwalk>";
+        for (int i = 0; i < 2; i++) { // second time with the cached plan
+            Moonwalk s = (Moonwalk) xs.fromXML(xml);
+            assertEquals(7, s.number);
+            assertEquals(Boot.class, s.boot.getClass());
+            assertEquals(Billy.class, s.lover.getClass());
+        }
+        // the plan must see aliases registered after it was computed
+        xs.aliasField("steps", Steppe.class, "number");
+        assertEquals(8, ((Moonwalk) xs.fromXML("<moonwalk><steps>8</steps></moonwalk>")).number);
+    }
+
     @Retention(RetentionPolicy.RUNTIME) @interface Owner {String value();}
     public static class Projekt {
         Bild[] bildz;
@@ -0,0 +1,63 @@
+package hudson.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class Utf8BufferTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void encodesLikeTheJdk() {
+        Random r = new Random(42);
+        char[] alphabet = {'a', '<', '\n', '\u00e9', '\u20ac', '\ud83d', '\ude00', '\uffff', '\u0000'};
+        for (int round = 0; round < 1000; round++) {
+            StringBuilder b = new StringBuilder();
+            for (int i = r.nextInt(50); i > 0; i--) {
+                b.append(alphabet[r.nextInt(alphabet.length)]);
+            }
+            String s = b.toString();
+            Utf8Buffer buf = new Utf8Buffer();
+            // split at an arbitrary point, possibly between the two halves of a surrogate pair
+            int split = r.nextInt(s.length() + 1);
+            buf.write(s, 0, split);
+            buf.write(s.toCharArray(), split, s.length() - split);
+            assertArrayEquals(s, s.getBytes(StandardCharsets.UTF_8), toArray(buf.toByteBuffer()));
+        }
+    }
+
+    @Test
+    public void contentEquals() throws Exception {
+        File f = tmp.newFile();
+        Utf8Buffer buf = Utf8Buffer.acquire();
+        buf.write("<x>\u20ac</x>");
+        assertFalse(buf.contentEquals(f.toPath()));
+        Files.write(f.toPath(), "<x>\u20ac</x>".getBytes(StandardCharsets.UTF_8));
+        assertTrue(buf.contentEquals(f.toPath()));
+        Files.write(f.toPath(), "<x>\u20ac</y>".getBytes(StandardCharsets.UTF_8));
+        assertFalse(buf.contentEquals(f.toPath()));
+        assertFalse(buf.contentEquals(new File(tmp.getRoot(), "missing").toPath()));
+        buf.release();
+        assertSame(buf, Utf8Buffer.acquire());
+        assertEquals(0, buf.size());
+    }
+
+    private static byte[] toArray(ByteBuffer b) {
+        byte[] r = new byte[b.remaining()];
+        b.get(r);
+        return r;
+    }
+}
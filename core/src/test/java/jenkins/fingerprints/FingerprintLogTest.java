@@ -0,0 +1,173 @@
+package jenkins.fingerprints;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FingerprintLogTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private boolean sync;
+    private long compactionMinSize;
+
+    @Before
+    public void setUp() {
+        sync = LogStructuredFingerprintStorage.SYNC;
+        compactionMinSize = LogStructuredFingerprintStorage.COMPACTION_MIN_SIZE;
+        LogStructuredFingerprintStorage.SYNC = false;
+        // only compacted explicitly
+        LogStructuredFingerprintStorage.COMPACTION_MIN_SIZE = Long.MAX_VALUE;
+    }
+
+    @After
+    public void tearDown() {
+        LogStructuredFingerprintStorage.SYNC = sync;
+        LogStructuredFingerprintStorage.COMPACTION_MIN_SIZE = compactionMinSize;
+    }
+
+    @Test
+    public void putGetRemove() throws Exception {
+        File f = new File(tmp.getRoot(), "fingerprints.db");
+        byte[] a = key(1);
+        byte[] b = key(2);
+        try (FingerprintLog log = new FingerprintLog(f)) {
+            assertNull(log.get(a));
+            log.put(a, value("a1"));
+            log.put(b, value("b1"));
+            log.put(a, value("a2"));
+            assertArrayEquals(value("a2"), log.get(a));
+            assertTrue(log.remove(b));
+            assertFalse(log.remove(b));
+            assertNull(log.get(b));
+            assertEquals(1, log.size());
+        }
+        try (FingerprintLog log = new FingerprintLog(f)) {
+            assertArrayEquals("kept across restarts", value("a2"), log.get(a));
+            assertNull(log.get(b));
+            assertEquals(1, log.size());
+        }
+    }
+
+    @Test
+    public void incompleteRecordIsCutOff() throws Exception {
+        File f = new File(tmp.getRoot(), "fingerprints.db");
+        long complete;
+        try (FingerprintLog log = new FingerprintLog(f)) {
+            log.put(key(1), value("one"));
+            complete = log.length();
+            log.put(key(2), value("two"));
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+        try (FingerprintLog log = new FingerprintLog(f)) {
+            assertEquals(complete, log.length());
+            assertArrayEquals(value("one"), log.get(key(1)));
+            assertNull(log.get(key(2)));
+            log.put(key(3), value("three"));
+        }
+        try (FingerprintLog log = new FingerprintLog(f)) {
+            assertArrayEquals(value("three"), log.get(key(3)));
+        }
+    }
+
+    @Test
+    public void keysSharingTheirIndexedBits() throws Exception {
+        File f = new File(tmp.getRoot(), "fingerprints.db");
+        try (FingerprintLog log = new FingerprintLog(f)) {
+            List<byte[]> keys = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                byte[] k = new byte[FingerprintLog.KEY_LENGTH];
+                k[15] = (byte) i;
+                keys.add(k);
+                log.put(k, value("v" + i));
+            }
+            for (int i = 0; i < 50; i += 3) {
+                assertTrue(log.remove(keys.get(i)));
+            }
+            for (int i = 0; i < 50; i++) {
+                if (i % 3 == 0) {
+                    assertNull(log.get(keys.get(i)));
+                } else {
+                    assertArrayEquals(value("v" + i), log.get(keys.get(i)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void randomOperations() throws Exception {
+        File f = new File(tmp.getRoot(), "fingerprints.db");
+        Random r = new Random(42);
+        Map<Integer, byte[]> expected = new HashMap<>();
+        FingerprintLog log = new FingerprintLog(f);
+        try {
+            for (int round = 0; round < 5; round++) {
+                for (int i = 0; i < 5000; i++) {
+                    int k = r.nextInt(3000);
+                    if (r.nextInt(4) == 0) {
+                        assertEquals(expected.remove(k) != null, log.remove(key(k)));
+                    } else {
+                        byte[] v = value(k + "/" + r.nextInt());
+                        expected.put(k, v);
+                        log.put(key(k), v);
+                    }
+                }
+                if (round % 2 == 0) {
+                    long before = log.length();
+                    log.compact();
+                    assertTrue(log.length() < before);
+                } else {
+                    log.close();
+                    log = new FingerprintLog(f);
+                }
+                assertEquals(expected.size(), log.size());
+                for (int k = 0; k < 3000; k++) {
+                    byte[] v = expected.get(k);
+                    if (v == null) {
+                        assertNull(log.get(key(k)));
+                    } else {
+                        assertArrayEquals(v, log.get(key(k)));
+                    }
+                }
+            }
+            Map<String, byte[]> seen = new HashMap<>();
+            log.forEach((k, v) -> assertNull("once", seen.put(new String(k, StandardCharsets.ISO_8859_1), v)));
+            assertEquals(expected.size(), seen.size());
+            for (Map.Entry<Integer, byte[]> e : expected.entrySet()) {
+                assertArrayEquals(e.getValue(), seen.get(new String(key(e.getKey()), StandardCharsets.ISO_8859_1)));
+            }
+        } finally {
+            log.close();
+        }
+    }
+
+    private static byte[] key(int n) {
+        byte[] k = new byte[FingerprintLog.KEY_LENGTH];
+        Random r = new Random(n);
+        r.nextBytes(k);
+        return k;
+    }
+
+    private static byte[] value(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -414,4 +414,28 @@ public class AbstractLazyLoadRunMapTest {
         assertSame(second, first);
     }
 
+    @Test
+    public void buildIndex() {
+        BuildIndex index = a.getBuildIndex();
+        assertEquals(3, index.size());
+        assertEquals(1, index.indexOf(3));
+        assertEquals(BuildIndex.UNKNOWN, index.getTimestamp(1));
+        assertEquals(0, index.floor(2));
+        assertEquals(1, index.ceil(2));
+
+        a.getByNumber(3);
+        assertEquals(3000L, index.getTimestamp(1));
+        assertEquals(BuildIndex.UNKNOWN, index.getTimestamp(0));
+        assertEquals(BuildIndex.UNKNOWN, index.getDuration(1));
+
+        // survives reloading the list of builds, but not the removal of the build
+        a.purgeCache();
+        assertEquals(3000L, a.getBuildIndex().getTimestamp(1));
+        a.removeValue(a.getByNumber(3));
+        index = a.getBuildIndex();
+        assertEquals(2, index.size());
+        assertTrue(index.indexOf(3) < 0);
+        assertEquals(5, index.getNumber(1));
+    }
+
 }
@@ -0,0 +1,31 @@
+package jenkins.model.lazy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import hudson.model.Result;
+import org.junit.Test;
+
+public class BuildSummaryTest {
+
+    @Test
+    public void roundTrip() {
+        BuildSummary s = BuildSummary.parse(new BuildSummary(42, 1000L, 20L, Result.UNSTABLE, "odd\tname\\with\nbreaks", "agent 1").toLine());
+        assertEquals(42, s.getNumber());
+        assertEquals(1000L, s.getTimestamp());
+        assertEquals(20L, s.getDuration());
+        assertEquals(Result.UNSTABLE, s.getResult());
+        assertEquals("odd\tname\\with\nbreaks", s.getDisplayName());
+        assertEquals("agent 1", s.getBuiltOnStr());
+
+        s = BuildSummary.parse(new BuildSummary(1, 0L, 0L, Result.SUCCESS, "#1", "").toLine());
+        assertEquals("", s.getBuiltOnStr());
+        s = BuildSummary.parse(new BuildSummary(1, 0L, 0L, Result.SUCCESS, "#1", null).toLine());
+        assertNull(s.getBuiltOnStr());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void malformed() {
+        BuildSummary.parse("1\t2\t3");
+    }
+}
@@ -42,6 +42,11 @@ public class FakeMap extends AbstractLazyLoadRunMap<Build> {
         return build.n;
     }
 
+    @Override
+    protected long getTimestampOf(Build build) {
+        return build.n * 1000L;
+    }
+
     @Override
     protected Build retrieve(File dir) throws IOException {
         String n = FileUtils.readFileToString(new File(dir, "n"), Charset.defaultCharset()).trim();
@@ -0,0 +1,63 @@
+package jenkins.util.io;
+
+import static org.junit.Assert.assertEquals;
+
+import hudson.Util;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FileDigestsTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private int cacheSize;
+
+    @Before
+    public void setUp() {
+        cacheSize = FileDigests.CACHE_SIZE;
+    }
+
+    @After
+    public void tearDown() {
+        FileDigests.CACHE_SIZE = cacheSize;
+    }
+
+    @Test
+    public void sameAsGetDigestOf() throws Exception {
+        Random r = new Random(42);
+        for (int size : new int[] {0, 1, 4096, 1024 * 1024 - 1, 1024 * 1024, 3 * 1024 * 1024 + 17}) {
+            byte[] data = new byte[size];
+            r.nextBytes(data);
+            File f = tmp.newFile();
+            Files.write(f.toPath(), data);
+            assertEquals("size " + size, Util.getDigestOf(f), FileDigests.md5(f));
+            assertEquals("size " + size, Util.getDigestOf(f), FileDigests.submit(f).get());
+        }
+    }
+
+    @Test
+    public void cacheNoticesChanges() throws Exception {
+        FileDigests.CACHE_SIZE = 10;
+        File f = tmp.newFile();
+        Files.write(f.toPath(), new byte[] {1, 2, 3});
+        long old = System.currentTimeMillis() - 60_000;
+        f.setLastModified(old);
+        String first = FileDigests.md5(f);
+        assertEquals(first, FileDigests.md5(f));
+
+        Files.write(f.toPath(), new byte[] {4, 5, 6});
+        f.setLastModified(old + 1000);
+        assertEquals(Util.getDigestOf(f), FileDigests.md5(f));
+
+        Files.write(f.toPath(), new byte[] {7, 8, 9, 10});
+        f.setLastModified(old);
+        assertEquals(Util.getDigestOf(f), FileDigests.md5(f));
+    }
+}
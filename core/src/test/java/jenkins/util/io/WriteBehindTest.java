@@ -0,0 +1,86 @@
+package jenkins.util.io;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import hudson.XmlFile;
+import hudson.util.XStream2;
+import java.io.File;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class WriteBehindTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private boolean enabled;
+    private long delay;
+
+    @Before
+    public void setUp() {
+        enabled = WriteBehind.ENABLED;
+        delay = WriteBehind.DELAY;
+        WriteBehind.ENABLED = true;
+        WriteBehind.DELAY = 60_000L; // only written when flushed
+    }
+
+    @After
+    public void tearDown() {
+        WriteBehind.flush();
+        WriteBehind.ENABLED = enabled;
+        WriteBehind.DELAY = delay;
+    }
+
+    @Test
+    public void coalescesAndFlushesOnRead() throws Exception {
+        File f = new File(tmp.getRoot(), "config.xml");
+        XmlFile xmlFile = new XmlFile(new XStream2(), f);
+        Bean b = new Bean();
+        b.name = "first";
+        xmlFile.writeBehind(b);
+        b.name = "second";
+        xmlFile.writeBehind(b);
+        b.name = "modified after saving";
+        assertThat(f.exists(), is(false));
+        assertThat(WriteBehind.getQueueDepth(), is(1));
+
+        assertThat(((Bean) xmlFile.read()).name, is("second"));
+        assertThat(WriteBehind.getQueueDepth(), is(0));
+    }
+
+    @Test
+    public void synchronousWriteWins() throws Exception {
+        XmlFile xmlFile = new XmlFile(new XStream2(), new File(tmp.getRoot(), "config.xml"));
+        Bean b = new Bean();
+        b.name = "deferred";
+        xmlFile.writeBehind(b);
+        b.name = "written";
+        xmlFile.write(b);
+        WriteBehind.flush();
+        assertThat(((Bean) xmlFile.read()).name, is("written"));
+    }
+
+    @Test
+    public void deleteDiscards() throws Exception {
+        File dir = tmp.newFolder("job");
+        File f = new File(dir, "config.xml");
+        XmlFile xmlFile = new XmlFile(new XStream2(), f);
+        xmlFile.writeBehind(new Bean());
+        xmlFile.delete();
+        WriteBehind.flush();
+        assertThat(f.exists(), is(false));
+
+        xmlFile.writeBehind(new Bean());
+        assertThat(dir.delete(), is(true));
+        WriteBehind.flush(dir);
+        assertThat("not recreated", dir.exists(), is(false));
+    }
+
+    public static class Bean {
+        String name;
+    }
+}
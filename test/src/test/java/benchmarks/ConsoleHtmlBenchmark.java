@@ -0,0 +1,56 @@
+package benchmarks;
+
+import hudson.console.AnnotatedLargeText;
+import hudson.console.ConsoleNote;
+import hudson.console.HyperlinkNote;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import jenkins.benchmark.jmh.JmhBenchmarkState;
+import org.apache.commons.io.output.NullWriter;
+import org.kohsuke.stapler.framework.io.ByteBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * Renders a synthetic build log, where a fifth of the lines carry a hyperlink, as the HTML console does,
+ * with and without {@link ConsoleNote#CACHE}, and with notes serialized or in {@link ConsoleNote#BINARY} form.
+ */
+@JmhBenchmark
+public class ConsoleHtmlBenchmark {
+    public static class MyState extends JmhBenchmarkState {
+        @Param({"true", "false"})
+        public boolean cache;
+
+        @Param({"false", "true"})
+        public boolean binary;
+
+        final ByteBuffer log = new ByteBuffer();
+
+        @Override
+        public void setup() throws Exception {
+            ConsoleNote.CACHE = cache;
+            ConsoleNote.BINARY = binary;
+            PrintStream ps = new PrintStream(log, true, "UTF-8");
+            for (int i = 0; i < 50_000; i++) {
+                if (i % 5 == 0) {
+                    int job = i % 20;
+                    ps.println("Triggering " + HyperlinkNote.encodeTo("/job/downstream" + job + "/", "downstream" + job) + " #" + i);
+                } else {
+                    ps.println("[INFO] Compiling module " + i + " with <flags> & options");
+                }
+            }
+        }
+
+        @Override
+        public void tearDown() {
+            ConsoleNote.CACHE = true;
+            ConsoleNote.BINARY = false;
+        }
+    }
+
+    @Benchmark
+    public long html(MyState state) throws Exception {
+        return new AnnotatedLargeText<Void>(state.log, StandardCharsets.UTF_8, true, null).writeHtmlTo(0, NullWriter.NULL_WRITER);
+    }
+}
@@ -0,0 +1,90 @@
+package benchmarks;
+
+import hudson.model.Label;
+import hudson.model.labels.CompiledLabelExpression;
+import hudson.model.labels.LabelAtom;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares walking a large label expression once per node with {@link CompiledLabelExpression}.
+ */
+@JmhBenchmark
+public class LabelExpressionBenchmark {
+    @State(Scope.Benchmark)
+    public static class MyState {
+        @Param({"16", "128"})
+        public int atoms;
+
+        public final int nodes = 1000;
+
+        Label expression;
+        CompiledLabelExpression compiled;
+        final List<Set<LabelAtom>> labels = new ArrayList<>();
+        final List<BitSet> rows = new ArrayList<>();
+
+        @Setup
+        public void setup() {
+            Random r = new Random(42);
+            CompiledLabelExpression.Dictionary dictionary = CompiledLabelExpression.dictionary();
+            LabelAtom[] pool = new LabelAtom[atoms];
+            for (int i = 0; i < atoms; i++) {
+                pool[i] = new LabelAtom("label" + i);
+            }
+            // a disjunction of conjunctions, like "(linux && jdk11 && !docker) || (windows && ...) || ..."
+            Label e = null;
+            for (int i = 0; i + 2 < atoms; i += 3) {
+                Label term = pool[i].and(pool[i + 1]).and(pool[i + 2].not()).paren();
+                e = e == null ? term : e.or(term);
+            }
+            expression = e;
+            compiled = dictionary.compile(e);
+            for (int n = 0; n < nodes; n++) {
+                Set<LabelAtom> s = new HashSet<>();
+                for (int i = 0; i < 8; i++) {
+                    s.add(pool[r.nextInt(atoms)]);
+                }
+                labels.add(s);
+                rows.add(dictionary.atomsOf(s));
+            }
+        }
+    }
+
+    @Benchmark
+    public void treeWalk(MyState state, Blackhole blackhole) {
+        for (Set<LabelAtom> s : state.labels) {
+            // what Label#matches(Collection) did before compilation
+            blackhole.consume(state.expression.matches(name -> {
+                for (LabelAtom a : s) {
+                    if (a.getName().equals(name)) {
+                        return true;
+                    }
+                }
+                return false;
+            }));
+        }
+    }
+
+    @Benchmark
+    public void compiledPerNode(MyState state, Blackhole blackhole) {
+        for (BitSet row : state.rows) {
+            blackhole.consume(state.compiled.matches(row));
+        }
+    }
+
+    @Benchmark
+    public void compiledBulk(MyState state, Blackhole blackhole) {
+        blackhole.consume(state.compiled.filter(state.rows));
+    }
+}
@@ -0,0 +1,91 @@
+package benchmarks;
+
+import hudson.model.Fingerprint;
+import java.util.Random;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Records, queries and combines the usages of a fingerprint in {@link Fingerprint.RangeSet}s
+ * of builds spread over a job history with gaps, as left by other branches and discarded builds.
+ */
+@JmhBenchmark
+public class RangeSetBenchmark {
+    @State(Scope.Benchmark)
+    public static class MyState {
+        @Param({"100", "10000"})
+        public int builds;
+
+        int[] numbers;
+        Fingerprint.RangeSet used;
+        Fingerprint.RangeSet kept;
+        String serialized;
+
+        @Setup
+        public void setup() {
+            Random r = new Random(42);
+            numbers = new int[builds];
+            int n = 1;
+            for (int i = 0; i < builds; i++) {
+                n += r.nextInt(4) == 0 ? 2 + r.nextInt(10) : 1;
+                numbers[i] = n;
+            }
+            used = new Fingerprint.RangeSet();
+            used.addAll(numbers);
+            kept = new Fingerprint.RangeSet();
+            for (int i = 0; i < n; i += 1 + r.nextInt(20)) {
+                kept.add(i);
+            }
+            serialized = Fingerprint.RangeSet.ConverterImpl.serialize(used);
+        }
+    }
+
+    @Benchmark
+    public Fingerprint.RangeSet addInOrder(MyState state) {
+        // as builds complete
+        Fingerprint.RangeSet s = new Fingerprint.RangeSet();
+        for (int n : state.numbers) {
+            s.add(n);
+        }
+        return s;
+    }
+
+    @Benchmark
+    public void includes(MyState state, Blackhole blackhole) {
+        for (int n = 0; n < state.numbers.length; n++) {
+            blackhole.consume(state.used.includes(n));
+        }
+    }
+
+    @Benchmark
+    public Fingerprint.RangeSet retainAll(MyState state) {
+        // as done by Fingerprint#trim
+        Fingerprint.RangeSet s = new Fingerprint.RangeSet();
+        s.add(state.used);
+        s.retainAll(state.kept);
+        return s;
+    }
+
+    @Benchmark
+    public Fingerprint.RangeSet removeAll(MyState state) {
+        Fingerprint.RangeSet s = new Fingerprint.RangeSet();
+        s.add(state.used);
+        s.removeAll(state.kept);
+        return s;
+    }
+
+    @Benchmark
+    public String serialize(MyState state) {
+        return Fingerprint.RangeSet.ConverterImpl.serialize(state.used);
+    }
+
+    @Benchmark
+    public Fingerprint.RangeSet parse(MyState state) {
+        return Fingerprint.RangeSet.fromString(state.serialized, true);
+    }
+}
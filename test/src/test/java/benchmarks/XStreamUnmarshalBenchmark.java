@@ -0,0 +1,86 @@
+package benchmarks;
+
+import hudson.model.BooleanParameterDefinition;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.Items;
+import hudson.model.ParametersDefinitionProperty;
+import hudson.model.Run;
+import hudson.model.StringParameterDefinition;
+import hudson.tasks.ArtifactArchiver;
+import hudson.tasks.LogRotator;
+import hudson.tasks.Shell;
+import hudson.triggers.TimerTrigger;
+import hudson.util.RobustReflectionConverter;
+import hudson.util.XStream2;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import jenkins.benchmark.jmh.JmhBenchmarkState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Reads a corpus of {@code config.xml} and {@code build.xml} files written by Jenkins,
+ * with and without {@link RobustReflectionConverter#UNMARSHALLING_PLANS}.
+ */
+@JmhBenchmark
+public class XStreamUnmarshalBenchmark {
+    public static class MyState extends JmhBenchmarkState {
+        @Param({"true", "false"})
+        public boolean plans;
+
+        final List<byte[]> configs = new ArrayList<>();
+        final List<byte[]> builds = new ArrayList<>();
+
+        @Override
+        public void setup() throws Exception {
+            RobustReflectionConverter.UNMARSHALLING_PLANS = plans;
+            for (int i = 0; i < 10; i++) {
+                FreeStyleProject p = getJenkins().createProject(FreeStyleProject.class, "p" + i);
+                p.setDescription("Project " + i);
+                p.setBuildDiscarder(new LogRotator(-1, 20, -1, -1));
+                p.addProperty(new ParametersDefinitionProperty(
+                        new StringParameterDefinition("BRANCH", "master", "Branch to build"),
+                        new BooleanParameterDefinition("CLEAN", true, "Clean build")));
+                for (int j = 0; j < i % 4 + 1; j++) {
+                    p.getBuildersList().add(new Shell("echo step " + j));
+                }
+                p.getPublishersList().add(new ArtifactArchiver("*.txt"));
+                p.addTrigger(new TimerTrigger("H H * * *"));
+                p.save();
+                FreeStyleBuild b = p.scheduleBuild2(0).get();
+                configs.add(Files.readAllBytes(p.getConfigFile().getFile().toPath()));
+                builds.add(Files.readAllBytes(new File(b.getRootDir(), "build.xml").toPath()));
+            }
+        }
+
+        @Override
+        public void tearDown() {
+            RobustReflectionConverter.UNMARSHALLING_PLANS = true;
+        }
+    }
+
+    @Benchmark
+    public void configs(MyState state, Blackhole blackhole) throws Exception {
+        for (byte[] xml : state.configs) {
+            blackhole.consume(read(Items.XSTREAM2, xml));
+        }
+    }
+
+    @Benchmark
+    public void builds(MyState state, Blackhole blackhole) throws Exception {
+        for (byte[] xml : state.builds) {
+            blackhole.consume(read(Run.XSTREAM2, xml));
+        }
+    }
+
+    private static Object read(XStream2 xs, byte[] xml) throws Exception {
+        // what XmlFile#read does, without the file
+        return xs.unmarshal(XStream2.getDefaultDriver().createReader(new ByteArrayInputStream(xml)));
+    }
+}
@@ -26,17 +26,23 @@ package hudson.console;
 
 import hudson.MarkupText;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.io.StringWriter;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.logging.Level;
 import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
 import org.junit.ClassRule;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.jvnet.hudson.test.For;
 import org.jvnet.hudson.test.Issue;
 import org.jvnet.hudson.test.JenkinsRule;
@@ -49,6 +55,9 @@ public class AnnotatedLargeTextTest {
     @ClassRule
     public static JenkinsRule r = new JenkinsRule();
 
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
     @Rule
     public LoggerRule logging = new LoggerRule().record(ConsoleAnnotationOutputStream.class, Level.FINE).capture(100);
 
@@ -68,6 +77,85 @@ public class AnnotatedLargeTextTest {
         assertEquals("Some text.\nGo back to <a href='/root'>your home</a>.\nMore text.\n", w.toString());
     }
 
+    @Test
+    public void plainFile() throws Exception {
+        File log = tmp.newFile();
+        try (PrintStream ps = new PrintStream(Files.newOutputStream(log.toPath()), true, "UTF-8")) {
+            ps.print("Some text.\n");
+            ps.print("Go back to " + TestNote.encodeTo("/root", "your home") + ".\n");
+            ps.print("More text.\n");
+        }
+        AnnotatedLargeText<Void> text = new AnnotatedLargeText<>(log, StandardCharsets.UTF_8, true, null);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        assertEquals(log.length(), text.writeLogTo(0, baos));
+        assertEquals("Some text.\nGo back to your home.\nMore text.\n", baos.toString());
+        StringWriter w = new StringWriter();
+        assertEquals(log.length(), text.writeHtmlTo(0, w));
+        assertEquals("Some text.\nGo back to <a href='/root'>your home</a>.\nMore text.\n", w.toString());
+    }
+
+    @Test
+    public void repeatedNotes() throws Exception {
+        ByteBuffer buf = new ByteBuffer();
+        PrintStream ps = new PrintStream(buf, true);
+        String note = TestNote.encodeTo("/root", "your home");
+        for (int i = 0; i < 3; i++) {
+            ps.print("Go back to " + note + ".\n");
+        }
+        AnnotatedLargeText<Void> text = new AnnotatedLargeText<>(buf, StandardCharsets.UTF_8, true, null);
+        StringWriter w = new StringWriter();
+        text.writeHtmlTo(0, w);
+        String line = "Go back to <a href='/root'>your home</a>.\n";
+        assertEquals(line + line + line, w.toString());
+        byte[] encoded = note.substring(0, note.length() - "your home".length()).getBytes(StandardCharsets.UTF_8);
+        assertNull("notes of plugins may keep state, so each line gets its own", ConsoleNote.getCached(encoded, 0, encoded.length));
+
+        buf = new ByteBuffer();
+        ps = new PrintStream(buf, true);
+        note = HyperlinkNote.encodeTo("/root", "your home");
+        for (int i = 0; i < 3; i++) {
+            ps.print("Go back to " + note + ".\n");
+        }
+        text = new AnnotatedLargeText<>(buf, StandardCharsets.UTF_8, true, null);
+        text.writeHtmlTo(0, new StringWriter());
+        encoded = note.substring(0, note.length() - "your home".length()).getBytes(StandardCharsets.UTF_8);
+        assertNotNull(ConsoleNote.getCached(encoded, 0, encoded.length));
+    }
+
+    @Test
+    public void binaryNotes() throws Exception {
+        String serialized = log();
+        ConsoleNote.BINARY = true;
+        String binary;
+        try {
+            binary = log();
+        } finally {
+            ConsoleNote.BINARY = false;
+        }
+        assertThat(binary.length(), lessThan(serialized.length()));
+        assertEquals(html(serialized), html(binary));
+        assertThat(html(binary), containsString("class='model-link'>job</a>"));
+
+        // any change to the note breaks its signature
+        int i = binary.indexOf(ConsoleNote.PREAMBLE_STR) + ConsoleNote.PREAMBLE_STR.length() + 20;
+        String tampered = binary.substring(0, i) + (binary.charAt(i) == 'A' ? 'B' : 'A') + binary.substring(i + 1);
+        assertThat(html(tampered), startsWith("Go back to your home.\n"));
+    }
+
+    private static String log() {
+        return "Go back to " + HyperlinkNote.encodeTo("/root", "your home") + ".\n"
+                + "Then to the " + ModelHyperlinkNote.encodeTo("/job/x/", "job") + ".\n"
+                + ExpandableDetailsNote.encodeTo("Details", "<b>More</b>") + "Done\n";
+    }
+
+    private static String html(String log) throws IOException {
+        ByteBuffer buf = new ByteBuffer();
+        buf.write(log.getBytes(StandardCharsets.UTF_8));
+        StringWriter w = new StringWriter();
+        new AnnotatedLargeText<Void>(buf, StandardCharsets.UTF_8, true, null).writeHtmlTo(0, w);
+        return w.toString();
+    }
+
     @Issue("SECURITY-382")
     @Test
     public void oldDeserialization() throws Exception {
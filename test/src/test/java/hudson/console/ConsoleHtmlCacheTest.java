@@ -0,0 +1,97 @@
+package hudson.console;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import hudson.Launcher;
+import hudson.model.AbstractBuild;
+import hudson.model.BuildListener;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import java.io.File;
+import java.io.StringWriter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.TestBuilder;
+
+public class ConsoleHtmlCacheTest {
+
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    private long minLogSize;
+
+    @Before
+    public void setUp() {
+        ConsoleHtmlCache.ENABLED = true;
+        minLogSize = ConsoleHtmlCache.MIN_LOG_SIZE;
+        ConsoleHtmlCache.MIN_LOG_SIZE = 0;
+    }
+
+    @After
+    public void tearDown() {
+        ConsoleHtmlCache.ENABLED = false;
+        ConsoleHtmlCache.MIN_LOG_SIZE = minLogSize;
+    }
+
+    @Test
+    public void renderedOnce() throws Exception {
+        FreeStyleProject p = r.createFreeStyleProject();
+        p.getBuildersList().add(new TestBuilder() {
+            @Override
+            public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener) {
+                for (int i = 0; i < 100; i++) {
+                    listener.getLogger().println("<compiling> & line " + i);
+                }
+                return true;
+            }
+        });
+        FreeStyleBuild b = r.buildAndAssertSuccess(p);
+
+        StringWriter expected = new StringWriter();
+        b.getLogText().writeHtmlTo(0, expected);
+        for (int i = 0; i < 2; i++) {
+            StringWriter w = new StringWriter();
+            b.getLogText().writeCachedHtmlTo(0, w);
+            assertEquals(expected.toString(), w.toString());
+        }
+        File[] cached = ConsoleHtmlCache.getDirectory().listFiles();
+        assertNotNull(cached);
+        assertEquals(1, cached.length);
+
+        JenkinsRule.WebClient wc = r.createWebClient();
+        String url = b.getUrl() + "logText/progressiveHtml";
+        ConsoleHtmlCache.ENABLED = false;
+        String html = wc.goTo(url, null).getWebResponse().getContentAsString();
+        ConsoleHtmlCache.ENABLED = true;
+        for (int i = 0; i < 2; i++) {
+            assertEquals(html, wc.goTo(url, null).getWebResponse().getContentAsString());
+        }
+        assertEquals(2, ConsoleHtmlCache.getDirectory().listFiles().length);
+
+        ConsoleHtmlCache.clear();
+        assertEquals(0, ConsoleHtmlCache.getDirectory().listFiles().length);
+    }
+
+    @Test
+    public void renderedPerViewer() throws Exception {
+        r.jenkins.setSecurityRealm(r.createDummySecurityRealm());
+        FreeStyleProject p = r.createFreeStyleProject();
+        p.getBuildersList().add(new TestBuilder() {
+            @Override
+            public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener) {
+                listener.getLogger().println("<compiling>");
+                return true;
+            }
+        });
+        FreeStyleBuild b = r.buildAndAssertSuccess(p);
+        String url = b.getUrl() + "logText/progressiveHtml";
+        for (String user : new String[] {"alice", "bob", "alice"}) {
+            r.createWebClient().login(user).goTo(url, null);
+        }
+        assertEquals(2, ConsoleHtmlCache.getDirectory().listFiles().length);
+    }
+}
@@ -0,0 +1,78 @@
+package hudson.console;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertEquals;
+
+import com.gargoylesoftware.htmlunit.Page;
+import com.gargoylesoftware.htmlunit.WebRequest;
+import hudson.Launcher;
+import hudson.model.AbstractBuild;
+import hudson.model.BuildListener;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import java.net.URL;
+import java.util.concurrent.CountDownLatch;
+import jenkins.websocket.WebSockets;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.TestBuilder;
+
+public class LiveConsoleTest {
+
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    @After
+    public void tearDown() {
+        LiveConsole.ENABLED = false;
+    }
+
+    @Test
+    public void consolePage() throws Exception {
+        Assume.assumeTrue(WebSockets.isSupported());
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        FreeStyleProject p = r.createFreeStyleProject();
+        p.getBuildersList().add(new TestBuilder() {
+            @Override
+            public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener) throws InterruptedException {
+                listener.getLogger().println("running");
+                started.countDown();
+                done.await();
+                return true;
+            }
+        });
+        FreeStyleBuild b = p.scheduleBuild2(0).waitForStart();
+        started.await();
+        JenkinsRule.WebClient wc = r.createWebClient().withThrowExceptionOnFailingStatusCode(false).withJavaScriptEnabled(false);
+        try {
+            assertThat(wc.goTo(b.getUrl() + "console").getWebResponse().getContentAsString(), not(containsString("logText/webSocket")));
+            assertEquals(404, wc.goTo(b.getUrl() + "logText/webSocket", null).getWebResponse().getStatusCode());
+
+            LiveConsole.ENABLED = true;
+            assertThat(wc.goTo(b.getUrl() + "console").getWebResponse().getContentAsString(), containsString("logText/webSocket"));
+            String url = r.getURL() + b.getUrl() + "logText/webSocket?start=0";
+            assertEquals("no Origin", 403, wc.getPage(withOrigin(url, null)).getWebResponse().getStatusCode());
+            assertEquals("foreign Origin", 403, wc.getPage(withOrigin(url, "https://evil.example.com")).getWebResponse().getStatusCode());
+            String origin = r.getURL().getProtocol() + "://" + r.getURL().getHost() + ":" + r.getURL().getPort();
+            Page page = wc.getPage(withOrigin(url, origin));
+            assertEquals("only WebSocket connections", 400, page.getWebResponse().getStatusCode());
+        } finally {
+            done.countDown();
+        }
+        r.assertBuildStatusSuccess(r.waitForCompletion(b));
+    }
+
+    private static WebRequest withOrigin(String url, String origin) throws Exception {
+        WebRequest req = new WebRequest(new URL(url));
+        if (origin != null) {
+            req.setAdditionalHeader("Origin", origin);
+        }
+        return req;
+    }
+}
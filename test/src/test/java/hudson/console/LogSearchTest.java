@@ -0,0 +1,113 @@
+package hudson.console;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import hudson.Launcher;
+import hudson.model.AbstractBuild;
+import hudson.model.BuildListener;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.search.Search;
+import java.util.ArrayList;
+import java.util.List;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.MockFolder;
+import org.jvnet.hudson.test.TestBuilder;
+
+public class LogSearchTest {
+
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    @After
+    public void tearDown() {
+        LogSearch.INDEX = false;
+    }
+
+    @Test
+    public void searchJob() throws Exception {
+        FreeStyleProject p = r.createFreeStyleProject("p");
+        FreeStyleBuild b1 = r.buildAndAssertSuccess(printing(p, "nothing to see"));
+        FreeStyleBuild b2 = r.buildAndAssertSuccess(printing(p, "Found the " + HyperlinkNote.encodeTo("/x", "Needle") + " here"));
+
+        String text = r.createWebClient().goTo(p.getUrl() + "search/logs?q=neEDLE", "text/plain").getWebResponse().getContentAsString();
+        assertThat(text, containsString(b2.getUrl() + "console:"));
+        assertThat(text, containsString(":Found the Needle here"));
+        assertThat(text, not(containsString(b1.getUrl())));
+
+        JSONArray json = JSONArray.fromObject(r.createWebClient().goTo(p.getUrl() + "search/logs?q=needle&format=json", "application/json")
+                .getWebResponse().getContentAsString());
+        assertEquals(1, json.size());
+        JSONObject m = json.getJSONObject(0);
+        assertEquals(b2.getFullDisplayName(), m.getString("build"));
+        assertEquals("Found the Needle here", m.getString("text"));
+    }
+
+    @Test
+    public void searchFolder() throws Exception {
+        MockFolder d = r.createFolder("d");
+        FreeStyleProject inside = printing(d.createProject(FreeStyleProject.class, "inside"), "needle");
+        FreeStyleProject outside = printing(r.createFreeStyleProject("outside"), "needle");
+        r.buildAndAssertSuccess(inside);
+        r.buildAndAssertSuccess(outside);
+
+        String text = r.createWebClient().goTo(d.getUrl() + "search/logs?q=needle", "text/plain").getWebResponse().getContentAsString();
+        assertThat(text, containsString(inside.getUrl()));
+        assertThat(text, not(containsString(outside.getUrl())));
+    }
+
+    @Test
+    public void limits() throws Exception {
+        FreeStyleProject p = printing(r.createFreeStyleProject("p"), "needle");
+        r.buildAndAssertSuccess(p);
+        r.buildAndAssertSuccess(p);
+        JenkinsRule.WebClient wc = r.createWebClient();
+        wc.setThrowExceptionOnFailingStatusCode(false);
+        assertEquals(400, wc.goTo(p.getUrl() + "search/logs?q=needle&builds=0", null).getWebResponse().getStatusCode());
+        assertEquals(400, wc.goTo(p.getUrl() + "search/logs?q=needle&max=-1", null).getWebResponse().getStatusCode());
+        int maxMatches = Search.MAX_LOG_SEARCH_MATCHES;
+        Search.MAX_LOG_SEARCH_MATCHES = 1;
+        try {
+            String text = wc.goTo(p.getUrl() + "search/logs?q=needle&max=" + Integer.MAX_VALUE, "text/plain").getWebResponse().getContentAsString();
+            assertEquals(1, text.split("\n").length);
+        } finally {
+            Search.MAX_LOG_SEARCH_MATCHES = maxMatches;
+        }
+    }
+
+    @Test
+    public void index() throws Exception {
+        LogSearch.INDEX = true;
+        FreeStyleProject p = printing(r.createFreeStyleProject(), "needle");
+        FreeStyleBuild b = r.buildAndAssertSuccess(p);
+        LogSearch.index(b);
+        assertTrue(LogSearch.indexFileOf(b).isFile());
+        assertNotNull(TrigramIndex.load(LogSearch.indexFileOf(b), b.getLogText().length()));
+
+        List<LogSearch.Match> matches = new ArrayList<>();
+        assertEquals(1, LogSearch.search(p.getBuilds(), "NEEDLE", 10, matches::add));
+        assertEquals(b, matches.get(0).getRun());
+        assertEquals(0, LogSearch.search(p.getBuilds(), "haystack", 10, matches::add));
+    }
+
+    private static FreeStyleProject printing(FreeStyleProject p, String line) {
+        p.getBuildersList().add(new TestBuilder() {
+            @Override
+            public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener) {
+                listener.getLogger().println(line);
+                return true;
+            }
+        });
+        return p;
+    }
+}
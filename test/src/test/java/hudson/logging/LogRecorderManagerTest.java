@@ -29,6 +29,8 @@ import com.gargoylesoftware.htmlunit.html.HtmlPage;
 import com.gargoylesoftware.htmlunit.html.HtmlForm;
 import hudson.model.Computer;
 import hudson.remoting.VirtualChannel;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 import java.util.logging.Logger;
@@ -39,6 +41,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import org.apache.commons.io.FileUtils;
 import org.junit.Rule;
 import org.junit.Test;
 import org.jvnet.hudson.test.Issue;
@@ -120,6 +123,27 @@ public class LogRecorderManagerTest {
         assertFalse(text, text.contains("LambdaLog @FINER"));
     }
 
+    @Test public void spill() throws Exception {
+        LogRecorder.SPILL = true;
+        try {
+            LogRecorderManager mgr = j.jenkins.getLog();
+            LogRecorder r = new LogRecorder("spilled");
+            mgr.logRecorders.put("spilled", r);
+            LogRecorder.Target t = new LogRecorder.Target("ns5", Level.FINE);
+            r.targets.add(t);
+            r.save();
+            t.enable();
+            t.getLogger().fine("spilled message");
+            File file = new File(j.jenkins.getRootDir(), "log/spilled.log");
+            // written in the background
+            while (!file.isFile() || !FileUtils.readFileToString(file, StandardCharsets.UTF_8).contains("spilled message")) {
+                Thread.sleep(100);
+            }
+        } finally {
+            LogRecorder.SPILL = false;
+        }
+    }
+
     private static final class Log extends MasterToSlaveCallable<Boolean,Error> {
         private final Level level;
         private final String logger;
@@ -37,14 +37,19 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.Map;
 
+import hudson.security.ACL;
+import hudson.security.ACLContext;
 import jenkins.model.FingerprintFacet;
+import jenkins.model.Jenkins;
 import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.MockAuthorizationStrategy;
 
 import static org.hamcrest.Matchers.nullValue;
 import static org.hamcrest.io.FileMatchers.aReadableFile;
@@ -54,6 +59,7 @@ import static org.hamcrest.core.StringContains.containsString;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.hamcrest.MatcherAssert.assertThat;
 
@@ -88,6 +94,45 @@ public class FingerprintCleanupThreadTest {
         assertFalse("Should have deleted obsolete file.", fpFile.toFile().exists());
     }
 
+    @Test
+    public void testResumesAfterCheckpoint() throws IOException {
+        createFolderStructure();
+        Path ddDir = tempDirectory.resolve(FileFingerprintStorage.FINGERPRINTS_DIR_NAME).resolve("cc").resolve("dd");
+        Files.createDirectories(ddDir);
+        Path otherFile = ddDir.resolve("0123456789012345678901234567.xml");
+        Files.createFile(otherFile);
+        Path checkpoint = tempDirectory.resolve(FileFingerprintStorage.FINGERPRINTS_DIR_NAME + ".cleanup");
+        Files.write(checkpoint, "aa/bb".getBytes(StandardCharsets.UTF_8));
+        TestTaskListener testTaskListener = new TestTaskListener();
+        configureLocalTestStorage(new TestFingerprint(false));
+        FingerprintCleanupThread cleanupThread = new FingerprintCleanupThread();
+        cleanupThread.execute(testTaskListener);
+        String logOutput = testTaskListener.outputStream.toString();
+        assertThat(logOutput, containsString("Resuming cleanup after aa/bb"));
+        assertTrue("Should have skipped the directory before the checkpoint.", fpFile.toFile().exists());
+        assertFalse("Should have deleted obsolete file.", otherFile.toFile().exists());
+        assertFalse("Should have completed the pass.", checkpoint.toFile().exists());
+    }
+
+    @Test
+    public void keepsFingerprintsOfJobsHiddenFromAnonymous() throws Exception {
+        jenkinsRule.jenkins.setSecurityRealm(jenkinsRule.createDummySecurityRealm());
+        jenkinsRule.jenkins.setAuthorizationStrategy(new MockAuthorizationStrategy().grant(Jenkins.ADMINISTER).everywhere().to("admin"));
+        FreeStyleProject p = jenkinsRule.createFreeStyleProject();
+        FreeStyleBuild b = jenkinsRule.buildAndAssertSuccess(p);
+        String id = Util.getDigestOf("hidden");
+        Fingerprint fp = new Fingerprint((Run) null, "hidden.jar", Util.fromHexString(id));
+        fp.addFor(b);
+        TestTaskListener testTaskListener = new TestTaskListener();
+        try (ACLContext ctx = ACL.as2(ACL.SYSTEM2)) {
+            // as AsyncPeriodicWork runs it
+            new FingerprintCleanupThread().execute(testTaskListener);
+        }
+        Fingerprint loaded = Fingerprint.load(id);
+        assertNotNull("Should have kept the fingerprint of a live build.", loaded);
+        assertTrue(loaded.getRangeSet(p).includes(b.getNumber()));
+    }
+
     @Test
     public void testGetRecurrencePeriod() throws IOException {
         FingerprintCleanupThread cleanupThread = new FingerprintCleanupThread();
@@ -631,6 +631,28 @@ public class QueueTest {
         }
     }
 
+    @Test public void incrementalMaintenance() throws Exception {
+        boolean old = Queue.INCREMENTAL_MAINTENANCE;
+        Queue.INCREMENTAL_MAINTENANCE = true;
+        try {
+            r.jenkins.setNumExecutors(0);
+            List<QueueTaskFuture<FreeStyleBuild>> builds = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                FreeStyleProject p = r.createFreeStyleProject();
+                p.getBuildersList().add(new SleepBuilder(100));
+                builds.add(p.scheduleBuild2(0));
+            }
+            // nothing can run until an agent shows up; its executors must be picked up without a full pass
+            DumbSlave s = r.createOnlineSlave();
+            for (QueueTaskFuture<FreeStyleBuild> b : builds) {
+                assertEquals(s.getNodeName(), r.assertBuildStatusSuccess(b).getBuiltOnStr());
+            }
+            assertTrue(r.jenkins.getQueue().isEmpty());
+        } finally {
+            Queue.INCREMENTAL_MAINTENANCE = old;
+        }
+    }
+
     @Test public void waitForStart() throws Exception {
         final OneShotEvent ev = new OneShotEvent();
         FreeStyleProject p = r.createFreeStyleProject();
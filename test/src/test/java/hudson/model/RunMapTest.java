@@ -1,6 +1,12 @@
 package hudson.model;
 
 import hudson.model.queue.QueueTaskFuture;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import jenkins.model.lazy.BuildSummary;
 import javax.xml.transform.Source;
 import javax.xml.transform.stream.StreamSource;
 import static org.junit.Assert.assertEquals;
@@ -12,6 +18,7 @@ import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import org.junit.Rule;
 import org.junit.Test;
+import org.jvnet.hudson.test.FailureBuilder;
 import org.jvnet.hudson.test.Issue;
 import org.jvnet.hudson.test.JenkinsRule;
 import org.jvnet.hudson.test.SleepBuilder;
@@ -129,4 +136,40 @@ public class RunMapTest {
         assertEquals(0, runs.size());
     }
 
+    @Test public void summaries() throws Exception {
+        FreeStyleProject p = r.createFreeStyleProject();
+        r.buildAndAssertSuccess(p);
+        p.getBuildersList().add(new FailureBuilder());
+        FreeStyleBuild b2 = r.assertBuildStatus(Result.FAILURE, p.scheduleBuild2(0));
+        r.assertBuildStatus(Result.FAILURE, p.scheduleBuild2(0));
+
+        List<BuildSummary> summaries = p._getRuns().getSummaries();
+        assertEquals(3, summaries.size());
+        assertEquals(3, summaries.get(0).getNumber());
+        assertEquals(Result.FAILURE, summaries.get(0).getResult());
+        assertEquals(1, summaries.get(2).getNumber());
+        assertEquals(Result.SUCCESS, summaries.get(2).getResult());
+        assertEquals("#1", summaries.get(2).getDisplayName());
+        assertEquals("", summaries.get(2).getBuiltOnStr());
+
+        // deleted builds are forgotten
+        b2.delete();
+        assertEquals(2, p._getRuns().getSummaries().size());
+
+        // the file is rebuilt when missing
+        File file = new File(p.getBuildDir(), "summaries");
+        assertTrue(file.isFile());
+        Files.delete(file.toPath());
+        p.updateByXml((Source) new StreamSource(p.getConfigFile().getFile()));
+        summaries = p._getRuns().getSummaries();
+        assertEquals(2, summaries.size());
+        assertEquals(3, summaries.get(0).getNumber());
+        assertTrue(file.isFile());
+
+        // once summarized, results are known without loading builds
+        p.updateByXml((Source) new StreamSource(p.getConfigFile().getFile()));
+        assertEquals(Collections.singletonList(3), p.getBuilds().failureOnly().stream().map(Run::getNumber).collect(Collectors.toList()));
+        assertFalse(p._getRuns().getLoadedBuilds().containsKey(1));
+    }
+
 }
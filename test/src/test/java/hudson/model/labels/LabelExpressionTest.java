@@ -150,6 +150,63 @@ public class LabelExpressionTest {
         assertSame("bar", s.getLabelString());
     }
 
+    /**
+     * Label membership is updated for just the nodes that change, without waiting for a full trim.
+     */
+    @Test
+    public void nodeMembershipFollowsNodeChanges() throws Exception {
+        // labels without nodes get trimmed, so always look the label up again
+        String linux = "linux&&!arm";
+        assertTrue(j.jenkins.getLabel(linux).getNodes().isEmpty());
+
+        DumbSlave s = j.createSlave("a", "linux", null);
+        assertEquals(Collections.singleton(s), j.jenkins.getLabel(linux).getNodes());
+
+        s.setLabelString("linux arm");
+        assertTrue(j.jenkins.getLabel(linux).getNodes().isEmpty());
+
+        s.setLabelString("linux");
+        DumbSlave other = j.createSlave("b", "linux", null);
+        assertEquals(2, j.jenkins.getLabel(linux).getNodes().size());
+
+        j.jenkins.removeNode(other);
+        assertEquals(Collections.singleton(s), j.jenkins.getLabel(linux).getNodes());
+    }
+
+    /**
+     * Executor counts are cached, but follow executors starting and finishing work.
+     */
+    @Test
+    public void executorCountsFollowExecutorState() throws Exception {
+        DumbSlave s = j.createOnlineSlave(j.jenkins.getLabel("counted"));
+        Label l = j.jenkins.getLabel("counted");
+        assertEquals(1, l.getTotalExecutors());
+        assertEquals(1, l.getIdleExecutors());
+        assertEquals(0, l.getBusyExecutors());
+
+        FreeStyleProject p = j.createFreeStyleProject();
+        p.setAssignedLabel(l);
+        SequenceLock seq = new SequenceLock();
+        p.getBuildersList().add(new TestBuilder() {
+            @Override
+            public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener) throws InterruptedException, IOException {
+                seq.phase(0);
+                seq.phase(2);
+                return true;
+            }
+        });
+        Future<FreeStyleBuild> f = p.scheduleBuild2(0);
+        seq.phase(1);
+        assertEquals(0, l.getIdleExecutors());
+        assertEquals(1, l.getBusyExecutors());
+        seq.done();
+        j.assertBuildStatusSuccess(f);
+        j.waitUntilNoActivity();
+        assertEquals(1, l.getIdleExecutors());
+        assertEquals(0, l.getBusyExecutors());
+        assertEquals(s.getNodeName(), f.get().getBuiltOnStr());
+    }
+
     /**
      * Tests the expression parser.
      */
@@ -23,6 +23,14 @@
  */
 package hudson.util;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
 import org.junit.Test;
 import org.jvnet.hudson.test.Issue;
 
@@ -38,4 +46,74 @@ public class RingBufferLogHandlerTest {
             handler.publish(null);
         }
     }
+
+    @Test
+    public void newestFirst() {
+        RingBufferLogHandler handler = new RingBufferLogHandler(3);
+        List<LogRecord> view = handler.getView();
+        assertEquals(0, view.size());
+        LogRecord[] records = new LogRecord[5];
+        for (int i = 0; i < records.length; i++) {
+            records[i] = new LogRecord(Level.INFO, "#" + i);
+            handler.publish(records[i]);
+        }
+        assertEquals(3, view.size());
+        assertEquals(records[4], view.get(0));
+        assertEquals(records[2], view.get(2));
+        handler.clear();
+        assertEquals(0, view.size());
+        handler.publish(records[0]);
+        assertEquals(1, view.size());
+        assertEquals(records[0], view.get(0));
+    }
+
+    @Test
+    public void concurrentPublishers() throws Exception {
+        RingBufferLogHandler handler = new RingBufferLogHandler(100);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    handler.publish(new LogRecord(Level.INFO, Thread.currentThread().getName()));
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        while (threads.stream().anyMatch(Thread::isAlive)) {
+            for (LogRecord r : new ArrayList<>(handler.getView())) {
+                assertNotNull(r);
+            }
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(100, handler.getView().size());
+        assertTrue(handler.getView().stream().allMatch(r -> r.getMessage().startsWith("Thread-")));
+    }
+
+    @Test
+    public void concurrentPublishersOnFirstPass() throws Exception {
+        RingBufferLogHandler handler = new RingBufferLogHandler(100_000);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    handler.publish(new LogRecord(Level.INFO, Thread.currentThread().getName()));
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        while (threads.stream().anyMatch(Thread::isAlive)) {
+            List<LogRecord> view = handler.getView();
+            int size = view.size();
+            for (int i = 0; i < size; i++) {
+                // slots not written yet are still empty
+                assertNotNull(view.get(i));
+            }
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(80_000, handler.getView().size());
+    }
 }
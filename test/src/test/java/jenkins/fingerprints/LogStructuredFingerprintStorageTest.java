@@ -0,0 +1,68 @@
+package jenkins.fingerprints;
+
+import hudson.Util;
+import hudson.model.Fingerprint;
+import hudson.util.StreamTaskListener;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNot.not;
+
+public class LogStructuredFingerprintStorageTest {
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Test
+    public void roundTrip() throws IOException {
+        LogStructuredFingerprintStorage storage = configure();
+        String id = Util.getDigestOf("roundTrip");
+        Fingerprint fingerprintSaved = new Fingerprint(null, "foo.jar", Util.fromHexString(id));
+        fingerprintSaved.add("a/b", 1);
+        fingerprintSaved.add("a/b", 2);
+        fingerprintSaved.add("a/b", 5);
+        fingerprintSaved.add("c", 3);
+        Fingerprint fingerprintLoaded = storage.load(id);
+        assertThat(fingerprintLoaded, is(not(nullValue())));
+        assertThat(fingerprintLoaded.toString(), is(equalTo(fingerprintSaved.toString())));
+        assertThat(fingerprintLoaded.getRangeSet("a/b").toString(), is(equalTo("[1,3),[5,6)")));
+        assertThat(new File(j.jenkins.getRootDir(), FileFingerprintStorage.FINGERPRINTS_DIR_NAME).exists(), is(false));
+
+        Fingerprint.delete(id);
+        assertThat(storage.load(id), is(nullValue()));
+    }
+
+    @Test
+    public void migrate() throws IOException {
+        String id1 = Util.getDigestOf("migrate1");
+        String id2 = Util.getDigestOf("migrate2");
+        Fingerprint fingerprint1 = new Fingerprint(null, "foo.jar", Util.fromHexString(id1));
+        Fingerprint fingerprint2 = new Fingerprint(null, "bar.jar", Util.fromHexString(id2));
+        fingerprint2.add("p", 7);
+        LogStructuredFingerprintStorage storage = configure();
+
+        StreamTaskListener listener = new StreamTaskListener(System.out, StandardCharsets.UTF_8);
+        assertThat(storage.migrate(listener), is(2));
+        assertThat(new File(j.jenkins.getRootDir(), FileFingerprintStorage.FINGERPRINTS_DIR_NAME).exists(), is(false));
+        assertThat(FingerprintStorage.getFileFingerprintStorage().isReady(), is(false));
+        assertThat(storage.load(id1).toString(), is(equalTo(fingerprint1.toString())));
+        assertThat(storage.load(id2).toString(), is(equalTo(fingerprint2.toString())));
+        assertThat(storage.migrate(listener), is(0));
+    }
+
+    private LogStructuredFingerprintStorage configure() {
+        LogStructuredFingerprintStorage storage = new LogStructuredFingerprintStorage();
+        GlobalFingerprintConfiguration.get().setStorage(storage);
+        return storage;
+    }
+
+}
@@ -0,0 +1,121 @@
+package jenkins.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assume.assumeTrue;
+
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.model.AbstractBuild;
+import hudson.model.BuildListener;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.TaskListener;
+import hudson.tasks.ArtifactArchiver;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.Map;
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.TestBuilder;
+
+public class DeduplicatingArtifactManagerTest {
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Before
+    public void setUp() {
+        assumeTrue(DeduplicatingArtifactManager.isSupported());
+        ArtifactManagerConfiguration.get().getArtifactManagerFactories().add(new DeduplicatingArtifactManagerFactory());
+    }
+
+    @Test
+    public void identicalArtifactsAreStoredOnce() throws Exception {
+        FreeStyleProject p = j.createFreeStyleProject();
+        p.setAssignedNode(j.createOnlineSlave());
+        p.getBuildersList().add(new CreateArtifacts());
+        p.getPublishersList().add(new ArtifactArchiver("*.txt"));
+        FreeStyleBuild b1 = j.buildAndAssertSuccess(p);
+        FreeStyleBuild b2 = j.buildAndAssertSuccess(p);
+
+        assertEquals(fileKey(b1, "same.txt"), fileKey(b2, "same.txt"));
+        assertNotEquals(fileKey(b1, "changing.txt"), fileKey(b2, "changing.txt"));
+        assertEquals("same", read(b2, "same.txt"));
+        assertEquals("build 1", read(b1, "changing.txt"));
+        assertEquals("build 2", read(b2, "changing.txt"));
+
+        File blobs = new File(j.jenkins.getRootDir(), DeduplicatingArtifactManager.BLOBS_DIR);
+        assertEquals(0, DeduplicatingArtifactManager.Cleanup.clean(blobs.toPath(), TaskListener.NULL));
+        b1.delete();
+        assertEquals("the changing artifact of the first build", 1, DeduplicatingArtifactManager.Cleanup.clean(blobs.toPath(), TaskListener.NULL));
+        assertEquals("same", read(b2, "same.txt"));
+        b2.delete();
+        assertEquals(2, DeduplicatingArtifactManager.Cleanup.clean(blobs.toPath(), TaskListener.NULL));
+    }
+
+    @Test
+    public void identicalArtifactsOfOtherJobs() throws Exception {
+        FreeStyleProject p1 = j.createFreeStyleProject();
+        p1.getBuildersList().add(new CreateArtifacts());
+        p1.getPublishersList().add(new ArtifactArchiver("*.txt"));
+        FreeStyleProject p2 = j.createFreeStyleProject();
+        p2.setAssignedNode(j.createOnlineSlave());
+        p2.getBuildersList().add(new CreateArtifacts());
+        p2.getPublishersList().add(new ArtifactArchiver("*.txt"));
+        FreeStyleBuild b1 = j.buildAndAssertSuccess(p1);
+        FreeStyleBuild b2 = j.buildAndAssertSuccess(p2);
+
+        // linked without any transfer, as the agent proves to have the same contents
+        assertEquals(fileKey(b1, "same.txt"), fileKey(b2, "same.txt"));
+        assertEquals(fileKey(b1, "changing.txt"), fileKey(b2, "changing.txt"));
+        assertEquals("build 1", read(b2, "changing.txt"));
+    }
+
+    @Test
+    public void claimedDigestNeedsTheContents() throws Exception {
+        FreeStyleProject p = j.createFreeStyleProject();
+        p.getBuildersList().add(new CreateArtifacts());
+        p.getPublishersList().add(new ArtifactArchiver("*.txt"));
+        FreeStyleBuild b = j.buildAndAssertSuccess(p);
+        @SuppressWarnings("deprecation")
+        File blob = new File(b.getArtifactsDir(), "same.txt");
+
+        FilePath ws = j.jenkins.getWorkspaceFor(p);
+        Map<String, File> claims = Collections.singletonMap("same.txt", blob);
+        assertEquals(claims, DeduplicatingArtifactManager.possessed(ws, claims));
+        ws.child("same.txt").write("other", "UTF-8");
+        assertEquals("claiming the digest of the blob without its contents", Collections.emptyMap(), DeduplicatingArtifactManager.possessed(ws, claims));
+        ws.child("same.txt").delete();
+        assertEquals(Collections.emptyMap(), DeduplicatingArtifactManager.possessed(ws, claims));
+    }
+
+    private static Object fileKey(FreeStyleBuild b, String name) throws IOException {
+        @SuppressWarnings("deprecation")
+        File f = new File(b.getArtifactsDir(), name);
+        return Files.readAttributes(f.toPath(), BasicFileAttributes.class).fileKey();
+    }
+
+    private static String read(FreeStyleBuild b, String name) throws IOException {
+        try (InputStream in = b.getArtifactManager().root().child(name).open()) {
+            return IOUtils.toString(in, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static class CreateArtifacts extends TestBuilder {
+        @Override
+        public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener) throws IOException, InterruptedException {
+            build.getWorkspace().child("same.txt").write("same", "UTF-8");
+            build.getWorkspace().child("changing.txt").write("build " + build.getNumber(), "UTF-8");
+            return true;
+        }
+    }
+}
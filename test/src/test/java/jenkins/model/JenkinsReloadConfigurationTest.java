@@ -1,6 +1,8 @@
 package jenkins.model;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 import hudson.Util;
 import hudson.model.FreeStyleProject;
@@ -12,6 +14,7 @@ import hudson.tasks.Mailer;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.List;
 
 import org.junit.Rule;
 import org.junit.Test;
@@ -88,6 +91,26 @@ public class JenkinsReloadConfigurationTest {
         assertEquals("newDescription", project.getDescription());
     }
 
+    @Test
+    public void itemLoadStatistics() throws Exception {
+        j.createFreeStyleProject("small");
+        FreeStyleProject big = j.createFreeStyleProject("big");
+        big.setDescription(new String(new char[10000]).replace('\0', 'x'));
+
+        j.jenkins.reload();
+
+        ItemLoadStatistics statistics = j.jenkins.getItemLoadStatistics();
+        assertNotNull(statistics);
+        List<ItemLoadStatistics.Timing> timings = statistics.getTimings();
+        assertEquals(2, timings.size());
+        for (ItemLoadStatistics.Timing t : timings) {
+            assertTrue(t.getNanos() > 0);
+            assertEquals(new File(j.jenkins.getRootDir(), "jobs/" + t.getName() + "/config.xml").length(), t.getConfigSize());
+        }
+        assertTrue(statistics.getElapsedNanos() > 0);
+        assertEquals(1, statistics.getSlowest(1).size());
+    }
+
     @Test
     public void reloadViewConfig() throws Exception {
         ListView view = new ListView("a_view");
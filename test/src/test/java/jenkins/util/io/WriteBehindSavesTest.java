@@ -0,0 +1,63 @@
+package jenkins.util.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import hudson.model.FreeStyleProject;
+import hudson.model.Queue;
+import hudson.slaves.DumbSlave;
+import java.io.File;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+public class WriteBehindSavesTest {
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private boolean enabled;
+    private long delay;
+
+    @Before
+    public void setUp() {
+        enabled = WriteBehind.ENABLED;
+        delay = WriteBehind.DELAY;
+        WriteBehind.ENABLED = true;
+        WriteBehind.DELAY = 60_000L; // only written when flushed
+    }
+
+    @After
+    public void tearDown() {
+        WriteBehind.flush();
+        WriteBehind.ENABLED = enabled;
+        WriteBehind.DELAY = delay;
+    }
+
+    @Test
+    public void queueLoadFlushesPendingSave() throws Exception {
+        FreeStyleProject p = j.createFreeStyleProject();
+        Queue q = j.jenkins.getQueue();
+        q.schedule2(p, 600);
+        q.save();
+        assertFalse("deferred", new File(j.jenkins.getRootDir(), "queue.xml").exists());
+        q.load();
+        assertEquals(1, q.getItems().length);
+        assertEquals(p, q.getItems()[0].task);
+    }
+
+    @Test
+    public void removedNodeIsNotWrittenAgain() throws Exception {
+        DumbSlave s = j.createSlave();
+        File dir = new File(new File(j.jenkins.getRootDir(), "nodes"), s.getNodeName());
+        s.setNumExecutors(2);
+        j.jenkins.updateNode(s);
+        j.jenkins.removeNode(s);
+        WriteBehind.flush();
+        assertFalse(dir.exists());
+        assertTrue(j.jenkins.getNodes().isEmpty());
+    }
+}